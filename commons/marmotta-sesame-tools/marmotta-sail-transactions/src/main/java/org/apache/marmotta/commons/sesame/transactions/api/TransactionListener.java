@@ -40,6 +40,10 @@ public interface TransactionListener {
      * the last commit. This method should be used in case the transaction listener aims to perform additional activities
      * in a new transaction or outside the transaction management, e.g. notifying a server on the network, adding
      * data to a cache, or similar.
+     * <p/>
+     * Listeners processing the data asynchronously need to call {@link TransactionData#retain()} before this method
+     * returns and {@link TransactionData#release()} when they are done, because spilled transaction data is deleted
+     * once it has been released by all users.
      *
      * @param data
      */
@@ -17,31 +17,64 @@
  */
 package org.apache.marmotta.commons.sesame.transactions.model;
 
-import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
+import com.google.common.collect.Iterators;
+import org.apache.marmotta.commons.sesame.tripletable.CompactTripleTable;
 import org.openrdf.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * Hold the data recorded in a transaction, i.e. the list of added and removed triples.
  * <p/>
+ * The triples are kept in memory until their number exceeds the spill threshold. Then they are written to a
+ * TripleSpill on disk, and only the triples changed afterwards are kept in memory. The collections returned by
+ * getAddedTriples() and getRemovedTriples() combine both parts and stream over the spilled triples, so listeners
+ * can process very large transactions with bounded memory.
+ * <p/>
  * Author: Sebastian Schaffert
  */
 public class TransactionData {
 
+    private static Logger log = LoggerFactory.getLogger(TransactionData.class);
+
+    /**
+     * Default number of triples kept in memory before spilling to disk
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD = 100000;
+
     private String transactionId;
 
 
     /*
     * Triples that have been added to the triple store
     */
-    protected TripleTable<Statement> addedTriples;
+    protected CompactTripleTable<Statement> addedTriples;
 
     /**
      * Triples that have been removed from the triple store
      */
-    protected TripleTable<Statement> removedTriples;
+    protected CompactTripleTable<Statement> removedTriples;
+
+    /**
+     * Triples that have been written to disk because the transaction became too large; null as long as all triples
+     * fit in memory. Triples in addedTriples and removedTriples take precedence over the spilled triples.
+     */
+    protected TripleSpill spill;
+
+    /**
+     * Number of added and removed triples kept in memory before they are written to the spill
+     */
+    protected int spillThreshold;
 
     /**
      * Set by transaction service to indicate the time when this transaction is committed. Used e.g. to ensure
@@ -49,24 +82,104 @@ public class TransactionData {
      */
     protected Date commitTime;
 
+    /**
+     * Number of users of the transaction data; the spill is closed and its files deleted when it drops to zero
+     */
+    private int references = 1;
+
 
 
 
     public TransactionData() {
+        this(DEFAULT_SPILL_THRESHOLD);
+    }
+
+    public TransactionData(int spillThreshold) {
         transactionId  = "TX-" + UUID.randomUUID().toString();
-        removedTriples = new TripleTable<>();
-        addedTriples   = new TripleTable<>();
+        removedTriples = new CompactTripleTable<>();
+        addedTriples   = new CompactTripleTable<>();
+        this.spillThreshold = spillThreshold;
     }
 
 
-    public void addTriple(Statement triple) {
+    public synchronized void addTriple(Statement triple) {
         addedTriples.add(triple);
         removedTriples.remove(triple);
+        checkSpill();
     }
 
-    public void removeTriple(Statement triple) {
+    public synchronized void removeTriple(Statement triple) {
         addedTriples.remove(triple);
         removedTriples.add(triple);
+        checkSpill();
+    }
+
+    /**
+     * Return true in case part of the transaction data has been written to disk.
+     */
+    public synchronized boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * Register an additional user of the transaction data, e.g. a transaction listener processing it asynchronously
+     * after the commit. Every call needs to be matched by a call to {@link #release()}.
+     */
+    public synchronized void retain() {
+        references++;
+    }
+
+    /**
+     * Release the transaction data. The transaction data is released by the connection once all listeners have
+     * been notified; when the last user has released it, the spilled triples are deleted from disk and can no
+     * longer be read.
+     */
+    public synchronized void release() {
+        if(references > 0) {
+            references--;
+            if(references == 0 && spill != null) {
+                spill.close();
+                spill = null;
+            }
+        }
+    }
+
+    /**
+     * Write the in-memory triples to the spill in case there are more than the spill threshold.
+     */
+    private void checkSpill() {
+        if(addedTriples.size() + removedTriples.size() >= spillThreshold) {
+            try {
+                if(spill == null) {
+                    log.info("transaction {} exceeds {} triples, spilling transaction data to disk", transactionId, spillThreshold);
+                    spill = new TripleSpill(null);
+                }
+                spill.write(addedTriples, removedTriples);
+
+                addedTriples   = new CompactTripleTable<>();
+                removedTriples = new CompactTripleTable<>();
+            } catch (IOException e) {
+                log.warn("could not spill transaction data to disk, keeping it in memory (error: {})", e.getMessage());
+                spillThreshold = Integer.MAX_VALUE;
+                if(spill.isEmpty()) {
+                    spill = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keys of the in-memory triples, which override spilled triples with the same key.
+     */
+    private Set<TripleSpill.Key> getInMemoryKeys() {
+        Set<TripleSpill.Key> keys = new HashSet<>();
+        for(Statement stmt : addedTriples) {
+            keys.add(TripleSpill.createKey(stmt));
+        }
+        for(Statement stmt : removedTriples) {
+            keys.add(TripleSpill.createKey(stmt));
+        }
+        return keys;
     }
 
     public Date getCommitTime() {
@@ -77,12 +190,20 @@ public class TransactionData {
         this.commitTime = commitTime;
     }
 
-    public TripleTable<Statement> getAddedTriples() {
-        return addedTriples;
+    /**
+     * Return the triples that have been added in the transaction. In case the transaction data has been spilled to
+     * disk, iterating over the collection reads the spilled triples in a streaming fashion.
+     */
+    public Collection<Statement> getAddedTriples() {
+        return new TriplesView(TripleSpill.ADDED);
     }
 
-    public TripleTable<Statement> getRemovedTriples() {
-        return removedTriples;
+    /**
+     * Return the triples that have been removed in the transaction. In case the transaction data has been spilled
+     * to disk, iterating over the collection reads the spilled triples in a streaming fashion.
+     */
+    public Collection<Statement> getRemovedTriples() {
+        return new TriplesView(TripleSpill.REMOVED);
     }
 
 
@@ -97,6 +218,9 @@ public class TransactionData {
 
         TransactionData that = (TransactionData) o;
 
+        // comparing spilled transactions would require reading them completely
+        if (spill != null || that.spill != null) return transactionId.equals(that.transactionId);
+
         if (!addedTriples.equals(that.addedTriples)) return false;
         if (!removedTriples.equals(that.removedTriples)) return false;
 
@@ -105,6 +229,8 @@ public class TransactionData {
 
     @Override
     public int hashCode() {
+        if (spill != null) return transactionId.hashCode();
+
         int result = addedTriples.hashCode();
         result = 31 * result + removedTriples.hashCode();
         return result;
@@ -112,6 +238,13 @@ public class TransactionData {
 
     @Override
     public String toString() {
+        if (spill != null) {
+            return "TransactionData{" +
+                    "transactionId='" + transactionId + '\'' +
+                    ", spilled=true" +
+                    ", commitTime=" + commitTime +
+                    '}';
+        }
         return "TransactionData{" +
                 "transactionId='" + transactionId + '\'' +
                 ", addedTriples=" + addedTriples +
@@ -119,4 +252,83 @@ public class TransactionData {
                 ", commitTime=" + commitTime +
                 '}';
     }
+
+
+    /**
+     * Live view on the added or removed triples of the transaction, combining spilled and in-memory triples.
+     */
+    private class TriplesView extends AbstractCollection<Statement> {
+
+        private final byte operation;
+
+        private TriplesView(byte operation) {
+            this.operation = operation;
+        }
+
+        private CompactTripleTable<Statement> inMemory() {
+            return operation == TripleSpill.ADDED ? addedTriples : removedTriples;
+        }
+
+        @Override
+        public Iterator<Statement> iterator() {
+            synchronized (TransactionData.this) {
+                if(spill == null) {
+                    return inMemory().iterator();
+                }
+                return Iterators.concat(spill.iterator(operation, getInMemoryKeys()), new ArrayList<>(inMemory()).iterator());
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (TransactionData.this) {
+                if(spill == null) {
+                    return inMemory().size();
+                }
+                long size = spill.count(operation, getInMemoryKeys()) + inMemory().size();
+                return (int) Math.min(size, Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            synchronized (TransactionData.this) {
+                if(spill == null) {
+                    return inMemory().isEmpty();
+                }
+            }
+            return !iterator().hasNext();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            synchronized (TransactionData.this) {
+                if(spill == null || inMemory().contains(o)) {
+                    return inMemory().contains(o);
+                }
+                if(addedTriples.contains(o) || removedTriples.contains(o)) {
+                    // changed again after spilling
+                    return false;
+                }
+            }
+            return super.contains(o);
+        }
+
+        /**
+         * Add a triple to the transaction data, i.e. record it as added or removed. For spilled transactions, the
+         * result only considers the in-memory triples.
+         */
+        @Override
+        public boolean add(Statement statement) {
+            synchronized (TransactionData.this) {
+                boolean changed = !inMemory().contains(statement);
+                if(operation == TripleSpill.ADDED) {
+                    addTriple(statement);
+                } else {
+                    removeTriple(statement);
+                }
+                return changed;
+            }
+        }
+    }
 }
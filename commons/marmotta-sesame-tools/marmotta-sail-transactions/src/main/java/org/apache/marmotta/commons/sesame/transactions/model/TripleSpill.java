@@ -0,0 +1,461 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.transactions.model;
+
+import com.google.common.primitives.UnsignedBytes;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The on-disk part of the transaction data of very large transactions. Whenever the in-memory triple tables of a
+ * transaction grow beyond a threshold, their content is written to a new run file, sorted by a key identifying the
+ * statement (subject, predicate, object and context). Each record of a run stores whether the statement has been
+ * added or removed.
+ * <p/>
+ * Since only the last operation on a statement counts, reading merges the runs by key and takes the record of the
+ * most recent run for each statement. Runs are read through memory-mapped buffers, so iterating over the spilled
+ * statements only needs memory for the statements currently returned.
+ * <p/>
+ * Statements are stored using Java serialization, so they need to be serializable (all Sesame and KiWi statements
+ * are). The run files are deleted when the spill is closed or garbage collected.
+ */
+public class TripleSpill implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(TripleSpill.class);
+
+    public static final byte ADDED   = 1;
+    public static final byte REMOVED = 2;
+
+    /**
+     * Maximum size of a run file; a single mapped buffer can hold at most 2GB
+     */
+    private static final long MAX_RUN_SIZE = 1L << 30;
+
+    private static final Comparator<byte[]> KEY_ORDER = UnsignedBytes.lexicographicalComparator();
+
+    private final File directory;
+
+    /**
+     * Run files in the order they have been written, i.e. later runs take precedence
+     */
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * Create a new spill storing its run files in the given directory, or in the default temporary directory in
+     * case the directory is null.
+     */
+    public TripleSpill(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Write the given statements as a new run. Statements already contained in previous runs are overridden.
+     *
+     * @param added   statements added to the transaction
+     * @param removed statements removed from the transaction
+     */
+    public synchronized void write(Collection<? extends Statement> added, Collection<? extends Statement> removed) throws IOException {
+        List<Record> records = new ArrayList<>(added.size() + removed.size());
+        for(Statement stmt : added) {
+            records.add(new Record(createKey(stmt), ADDED, stmt));
+        }
+        for(Statement stmt : removed) {
+            records.add(new Record(createKey(stmt), REMOVED, stmt));
+        }
+        if(records.isEmpty()) {
+            return;
+        }
+        Collections.sort(records);
+
+        log.debug("spilling {} statements of transaction to disk", records.size());
+
+        // large runs are split into several files; their keys are disjoint, so the order among them does not matter
+        List<File> files = new ArrayList<>();
+        DataOutputStream out = null;
+        try {
+            for(Record record : records) {
+                if(out == null || out.size() > MAX_RUN_SIZE) {
+                    if(out != null) {
+                        out.close();
+                    }
+                    File file = File.createTempFile("marmotta-tx.", ".run", directory);
+                    files.add(file);
+                    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                }
+
+                byte[] payload = serialize(record.statement);
+                out.writeInt(record.key.length);
+                out.write(record.key);
+                out.writeByte(record.operation);
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+            out.close();
+            out = null;
+
+            runs.addAll(files);
+        } finally {
+            if(out != null) {
+                // writing failed, do not keep incomplete runs
+                out.close();
+                for(File file : files) {
+                    if(!file.delete()) {
+                        file.deleteOnExit();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true in case no statements have been spilled so far.
+     */
+    public synchronized boolean isEmpty() {
+        return runs.isEmpty();
+    }
+
+    /**
+     * Count the spilled statements whose last operation is the given operation, ignoring the statements with the
+     * given keys (because they have been changed again after spilling).
+     */
+    public long count(byte operation, Set<Key> overridden) {
+        long count = 0;
+        try (Merger merger = new Merger()) {
+            while(merger.next()) {
+                if(merger.operation() == operation && !overridden.contains(new Key(merger.key()))) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("could not read spilled transaction data", e);
+        }
+        return count;
+    }
+
+    /**
+     * Iterate over the spilled statements whose last operation is the given operation, ignoring the statements with
+     * the given keys (because they have been changed again after spilling).
+     */
+    public Iterator<Statement> iterator(final byte operation, final Set<Key> overridden) {
+        final Merger merger;
+        try {
+            merger = new Merger();
+        } catch (IOException e) {
+            throw new IllegalStateException("could not read spilled transaction data", e);
+        }
+
+        return new Iterator<Statement>() {
+            private Statement next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if(next == null && !done) {
+                    try {
+                        while(merger.next()) {
+                            if(merger.operation() == operation && !overridden.contains(new Key(merger.key()))) {
+                                next = merger.statement();
+                                return true;
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException("could not read spilled transaction data", e);
+                    }
+                    done = true;
+                    merger.close();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Statement next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Statement result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("spilled transaction data cannot be modified through the iterator");
+            }
+        };
+    }
+
+    /**
+     * Delete all run files.
+     */
+    @Override
+    public synchronized void close() {
+        for(File run : runs) {
+            if(!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        close();
+        super.finalize();
+    }
+
+    /**
+     * Create the key identifying a statement in the spill; two statements have the same key if and only if they
+     * have the same subject, predicate, object and context.
+     */
+    public static Key createKey(Statement stmt) {
+        StringBuilder key = new StringBuilder();
+        appendKey(key, stmt.getSubject());
+        appendKey(key, stmt.getPredicate());
+        appendKey(key, stmt.getObject());
+        appendKey(key, stmt.getContext());
+        return new Key(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendKey(StringBuilder key, Value value) {
+        if(value == null) {
+            key.append('N');
+        } else if(value instanceof URI) {
+            key.append('U').append(value.stringValue());
+        } else if(value instanceof BNode) {
+            key.append('B').append(value.stringValue());
+        } else if(value instanceof Literal) {
+            Literal l = (Literal) value;
+            // length prefix, since the label may contain any character
+            key.append('L').append(l.getLabel().length()).append(':').append(l.getLabel());
+            key.append('@').append(l.getLanguage() != null ? l.getLanguage() : "");
+            key.append('^').append(l.getDatatype() != null ? l.getDatatype().stringValue() : "");
+        }
+        key.append('\u0000');
+    }
+
+    private static byte[] serialize(Statement stmt) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(stmt);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Statement deserialize(byte[] payload) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (Statement) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("could not deserialize spilled statement", e);
+        }
+    }
+
+
+    /**
+     * Binary key of a statement, comparable in the order used by the run files.
+     */
+    public static class Key implements Comparable<Key> {
+        private final byte[] bytes;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            return KEY_ORDER.compare(bytes, o.bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes));
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+
+    private static class Record implements Comparable<Record> {
+        private final byte[] key;
+        private final byte operation;
+        private final Statement statement;
+
+        private Record(Key key, byte operation, Statement statement) {
+            this.key = key.bytes;
+            this.operation = operation;
+            this.statement = statement;
+        }
+
+        @Override
+        public int compareTo(Record o) {
+            return KEY_ORDER.compare(key, o.key);
+        }
+    }
+
+    /**
+     * Cursor over the records of a single run file.
+     */
+    private static class RunCursor {
+        private final int run;
+        private final ByteBuffer buffer;
+
+        private byte[] key;
+        private byte operation;
+        private int payloadOffset, payloadLength;
+
+        private RunCursor(int run, File file) throws IOException {
+            this.run = run;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+        }
+
+        private boolean advance() {
+            if(!buffer.hasRemaining()) {
+                return false;
+            }
+            key = new byte[buffer.getInt()];
+            buffer.get(key);
+            operation     = buffer.get();
+            payloadLength = buffer.getInt();
+            payloadOffset = buffer.position();
+            buffer.position(payloadOffset + payloadLength);
+            return true;
+        }
+
+        private Statement statement() throws IOException {
+            byte[] payload = new byte[payloadLength];
+            ByteBuffer view = buffer.duplicate();
+            view.position(payloadOffset);
+            view.get(payload);
+            return deserialize(payload);
+        }
+    }
+
+    /**
+     * Merges all runs in key order, returning the most recent record for each key.
+     */
+    private class Merger implements Closeable {
+        private final PriorityQueue<RunCursor> queue;
+
+        private byte[] key;
+        private byte operation;
+        private RunCursor winner;
+
+        private Merger() throws IOException {
+            List<File> files;
+            synchronized (TripleSpill.this) {
+                files = new ArrayList<>(runs);
+            }
+
+            queue = new PriorityQueue<>(Math.max(1, files.size()), new Comparator<RunCursor>() {
+                @Override
+                public int compare(RunCursor a, RunCursor b) {
+                    int c = KEY_ORDER.compare(a.key, b.key);
+                    // for the same key, later runs come first
+                    return c != 0 ? c : b.run - a.run;
+                }
+            });
+            for(int i = 0; i < files.size(); i++) {
+                RunCursor cursor = new RunCursor(i, files.get(i));
+                if(cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        /**
+         * Move to the next key; returns false when all runs are exhausted.
+         */
+        private boolean next() throws IOException {
+            if(winner != null) {
+                // the winner of the last key still needs to be advanced, its payload might have been needed
+                if(winner.advance()) {
+                    queue.add(winner);
+                }
+                winner = null;
+            }
+
+            RunCursor head = queue.poll();
+            if(head == null) {
+                return false;
+            }
+            key       = head.key;
+            operation = head.operation;
+            winner    = head;
+
+            // skip older records for the same key
+            while(!queue.isEmpty() && KEY_ORDER.compare(queue.peek().key, key) == 0) {
+                RunCursor older = queue.poll();
+                if(older.advance()) {
+                    queue.add(older);
+                }
+            }
+            return true;
+        }
+
+        private byte[] key() {
+            return key;
+        }
+
+        private byte operation() {
+            return operation;
+        }
+
+        private Statement statement() throws IOException {
+            return winner.statement();
+        }
+
+        @Override
+        public void close() {
+            queue.clear();
+            winner = null;
+        }
+    }
+}
@@ -46,11 +46,22 @@ public class KiWiTransactionalConnection extends NotifyingSailConnectionWrapper
 
     private TransactionData data;
 
+    private int spillThreshold;
+
     public KiWiTransactionalConnection(NotifyingSailConnection wrapped, Collection<TransactionListener> listeners) throws SailException {
+        this(wrapped, listeners, TransactionData.DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Create a new transactional connection whose transaction data is spilled to disk when more than the given
+     * number of triples have been added or removed.
+     */
+    public KiWiTransactionalConnection(NotifyingSailConnection wrapped, Collection<TransactionListener> listeners, int spillThreshold) throws SailException {
         super(wrapped);
         wrapped.addConnectionListener(this);
 
-        this.listeners = listeners;
+        this.listeners      = listeners;
+        this.spillThreshold = spillThreshold;
     }
 
     /**
@@ -105,7 +116,8 @@ public class KiWiTransactionalConnection extends NotifyingSailConnectionWrapper
         super.begin();
 
         // start new transaction
-        data = new TransactionData();
+        releaseData();
+        data = new TransactionData(spillThreshold);
 
     }
 
@@ -116,7 +128,7 @@ public class KiWiTransactionalConnection extends NotifyingSailConnectionWrapper
     @Override
     public void commit() throws SailException {
         // notify only if there is actually any data
-        if(data != null && data.getAddedTriples().size() + data.getRemovedTriples().size() > 0) {
+        if(data != null && (!data.getAddedTriples().isEmpty() || !data.getRemovedTriples().isEmpty())) {
             data.setCommitTime(new Date());
 
             // notify beforeCommit listeners
@@ -136,7 +148,8 @@ public class KiWiTransactionalConnection extends NotifyingSailConnectionWrapper
         }
 
         // empty transaction data
-        data = new TransactionData();
+        releaseData();
+        data = new TransactionData(spillThreshold);
     }
 
     /**
@@ -154,14 +167,37 @@ public class KiWiTransactionalConnection extends NotifyingSailConnectionWrapper
         }
 
         // empty transaction data
-        data = new TransactionData();
+        releaseData();
+        data = new TransactionData(spillThreshold);
+    }
+
+    /**
+     * Release the transaction data of a transaction that has neither been committed nor rolled back.
+     */
+    @Override
+    public void close() throws SailException {
+        try {
+            super.close();
+        } finally {
+            releaseData();
+            data = null;
+        }
+    }
+
+    /**
+     * Release the current transaction data, deleting spilled triples unless a listener still uses them.
+     */
+    private void releaseData() {
+        if(data != null) {
+            data.release();
+        }
     }
 
 
     private void ensureTransactionStarted() {
         if(data == null) {
             log.warn("transaction was not properly started, autostarting; please consider using connection.begin() explicitly!");
-            data = new TransactionData();
+            data = new TransactionData(spillThreshold);
         }
     }
 }
@@ -19,6 +19,7 @@ package org.apache.marmotta.commons.sesame.transactions.sail;
 
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
 import org.openrdf.sail.NotifyingSail;
 import org.openrdf.sail.NotifyingSailConnection;
 import org.openrdf.sail.SailException;
@@ -44,11 +45,14 @@ public class KiWiTransactionalSail extends NotifyingSailWrapper implements Trans
 
     private boolean transactionsEnabled;
 
+    private int spillThreshold;
+
     public KiWiTransactionalSail(NotifyingSail base) {
         super(base);
 
         this.listeners           = new ArrayList<>();
         this.transactionsEnabled = true;
+        this.spillThreshold      = TransactionData.DEFAULT_SPILL_THRESHOLD;
     }
 
     /**
@@ -89,6 +93,23 @@ public class KiWiTransactionalSail extends NotifyingSailWrapper implements Trans
         this.transactionsEnabled = transactionsEnabled;
     }
 
+    /**
+     * Return the number of added or removed triples a transaction keeps in memory before spilling them to disk.
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Set the number of added or removed triples a transaction keeps in memory before spilling them to disk. Only
+     * affects connections created afterwards.
+     *
+     * @param spillThreshold
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
     /**
      * Returns a store-specific SailConnection object.
      *
@@ -97,7 +118,7 @@ public class KiWiTransactionalSail extends NotifyingSailWrapper implements Trans
     @Override
     public NotifyingSailConnection getConnection() throws SailException {
         if(transactionsEnabled)
-            return new KiWiTransactionalConnection(super.getConnection(),listeners);
+            return new KiWiTransactionalConnection(super.getConnection(),listeners,spillThreshold);
         else
             return super.getConnection();
     }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test;
+
+import org.apache.marmotta.commons.sesame.model.StatementCommons;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test recording added and removed triples in transaction data, also when the data is spilled to disk.
+ */
+public class TransactionDataTest {
+
+    private static final ValueFactory vf = ValueFactoryImpl.getInstance();
+
+    @Test
+    public void testInMemory() {
+        testTransactionData(new TransactionData(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testSpilled() {
+        testTransactionData(new TransactionData(10));
+    }
+
+    /**
+     * Spilled triples are deleted when the last user releases the transaction data.
+     */
+    @Test
+    public void testRelease() {
+        TransactionData data = new TransactionData(10);
+        URI p = vf.createURI("http://localhost/p");
+        for(int i = 0; i < 100; i++) {
+            data.addTriple(vf.createStatement(vf.createURI("http://localhost/r" + i), p, vf.createLiteral("value " + i)));
+        }
+        Assert.assertTrue(data.isSpilled());
+
+        // e.g. a listener processing the data asynchronously
+        data.retain();
+
+        data.release();
+        Assert.assertTrue(data.isSpilled());
+        Assert.assertEquals(100, data.getAddedTriples().size());
+
+        data.release();
+        Assert.assertFalse(data.isSpilled());
+    }
+
+
+    private void testTransactionData(TransactionData data) {
+        List<Statement> statements = new ArrayList<>();
+        URI p = vf.createURI("http://localhost/p");
+        URI c = vf.createURI("http://localhost/context");
+        for(int i = 0; i < 100; i++) {
+            statements.add(vf.createStatement(vf.createURI("http://localhost/r" + i), p, vf.createLiteral("value " + i, "en"), c));
+        }
+
+        for(Statement stmt : statements) {
+            data.addTriple(stmt);
+        }
+        // remove every third statement again, and add back every ninth one
+        for(int i = 0; i < 100; i += 3) {
+            data.removeTriple(statements.get(i));
+        }
+        for(int i = 0; i < 100; i += 9) {
+            data.addTriple(statements.get(i));
+        }
+
+        Set<Statement> expectedAdded   = StatementCommons.newQuadrupleSet();
+        Set<Statement> expectedRemoved = StatementCommons.newQuadrupleSet();
+        for(int i = 0; i < 100; i++) {
+            if(i % 3 == 0 && i % 9 != 0) {
+                expectedRemoved.add(statements.get(i));
+            } else {
+                expectedAdded.add(statements.get(i));
+            }
+        }
+
+        Assert.assertEquals(expectedAdded.size(), data.getAddedTriples().size());
+        Assert.assertEquals(expectedRemoved.size(), data.getRemovedTriples().size());
+
+        Set<Statement> added = StatementCommons.newQuadrupleSet();
+        for(Statement stmt : data.getAddedTriples()) {
+            added.add(stmt);
+        }
+        Assert.assertEquals(expectedAdded, added);
+
+        Set<Statement> removed = StatementCommons.newQuadrupleSet();
+        for(Statement stmt : data.getRemovedTriples()) {
+            removed.add(stmt);
+        }
+        Assert.assertEquals(expectedRemoved, removed);
+
+        Assert.assertTrue(data.getAddedTriples().contains(statements.get(9)));
+        Assert.assertFalse(data.getAddedTriples().contains(statements.get(3)));
+        Assert.assertTrue(data.getRemovedTriples().contains(statements.get(3)));
+        Assert.assertFalse(data.getRemovedTriples().isEmpty());
+    }
+}
@@ -0,0 +1,712 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.tripletable;
+
+import com.google.common.base.Objects;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A memory efficient variant of the {@link TripleTable}. Instead of keeping each triple in a hash set and two
+ * tree maps, triples are stored once in an append-only slot array. Lookups of individual triples go through an
+ * open addressing hash table of int positions, while pattern queries use two sorted indexes of primitive long keys
+ * (subject/predicate and context/subject hashes) with the positions of the matching triples. Triples are compared
+ * by subject, predicate, object and context (quadruple equivalence).
+ * <p/>
+ * The sorted indexes are immutable and only cover the triples that were present when they were built; triples
+ * added afterwards are scanned linearly until the next query merges them into a new index. Removed triples leave
+ * an empty slot that is skipped by all operations, and the table is compacted once more than half of the slots
+ * are empty.
+ * <p/>
+ * All modifications synchronize on the table itself (so callers can still group several operations in a
+ * synchronized block), while read operations do not take a lock. Reads running concurrently with modifications
+ * are weakly consistent: they may or may not reflect the concurrent modification, but never fail.
+ */
+public class CompactTripleTable<Triple extends Statement> extends AbstractSet<Triple> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Minimum number of triples that need to be added since the last index merge before a query merges them
+     */
+    private static final int MIN_DELTA = 64;
+
+    /**
+     * Minimum number of empty slots before the table is compacted
+     */
+    private static final int MIN_GARBAGE = 1024;
+
+    private static final int EMPTY   = 0;
+    private static final int DELETED = -1;
+
+    private static final long LOW_MASK = 0xFFFFFFFFL;
+
+
+    private transient volatile State state;
+
+
+    public CompactTripleTable() {
+        state = new State(INITIAL_CAPACITY);
+    }
+
+
+    public CompactTripleTable(Collection<Triple> triples) {
+        state = new State(Math.max(INITIAL_CAPACITY, triples.size()));
+        addAll(triples);
+    }
+
+
+    /**
+     * Returns the number of triples in this table.
+     */
+    @Override
+    public int size() {
+        return state.size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains no triples.
+     */
+    @Override
+    public boolean isEmpty() {
+        return state.size == 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains a triple with the same subject, predicate, object and context
+     * as the statement passed as argument.
+     */
+    @Override
+    public boolean contains(Object o) {
+        if(o instanceof Statement) {
+            Statement stmt = (Statement)o;
+            State s = state;
+            return s.find(s.used, stmt.getSubject(), stmt.getPredicate(), stmt.getObject(), stmt.getContext()) >= 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns an iterator over the triples in this table in insertion order. The iterator works on the state of
+     * the table at the time it was created and supports removing triples.
+     */
+    @Override
+    public Iterator<Triple> iterator() {
+        final State s = state;
+        final int n = s.used;
+
+        return new Iterator<Triple>() {
+            private int position = -1;
+            private int next = -1;
+            private Triple nextTriple = advance();
+
+            @SuppressWarnings("unchecked")
+            private Triple advance() {
+                for(next++; next < n; next++) {
+                    Triple triple = (Triple) s.triples[next];
+                    if(triple != null) {
+                        return triple;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextTriple != null;
+            }
+
+            @Override
+            public Triple next() {
+                if(nextTriple == null) {
+                    throw new NoSuchElementException();
+                }
+                Triple result = nextTriple;
+                position   = next;
+                nextTriple = advance();
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                if(position < 0) {
+                    throw new IllegalStateException("next() has not been called");
+                }
+                Object triple = s.triples[position];
+                if(triple != null) {
+                    CompactTripleTable.this.remove(triple);
+                }
+                position = -1;
+            }
+        };
+    }
+
+    /**
+     * Adds the triple to this table if there is not already a triple with the same subject, predicate, object and
+     * context.
+     *
+     * @return <tt>true</tt> if the table did not already contain the triple
+     */
+    @Override
+    public synchronized boolean add(Triple triple) {
+        State s = state;
+        if(s.find(s.used, triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()) >= 0) {
+            return false;
+        }
+        if(s.used == s.triples.length) {
+            s = s.used - s.size > s.size ? s.compact(s.size * 2) : s.grow(s.triples.length * 2);
+            state = s;
+        }
+        s.append(triple);
+        return true;
+    }
+
+    /**
+     * Removes the triple with the same subject, predicate, object and context as the statement passed as argument,
+     * if present.
+     *
+     * @return <tt>true</tt> if this table contained the triple
+     */
+    @Override
+    public synchronized boolean remove(Object o) {
+        if(o instanceof Statement) {
+            Statement stmt = (Statement)o;
+            State s = state;
+            int position = s.find(s.used, stmt.getSubject(), stmt.getPredicate(), stmt.getObject(), stmt.getContext());
+            if(position >= 0) {
+                s.delete(position);
+
+                int garbage = s.used - s.size;
+                if(garbage > s.size && garbage > MIN_GARBAGE) {
+                    state = s.compact(Math.max(INITIAL_CAPACITY, s.size * 2));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends Triple> c) {
+        return super.addAll(c);
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for(Object o : c) {
+            modified = remove(o) || modified;
+        }
+        return modified;
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> c) {
+        return super.retainAll(c);
+    }
+
+    /**
+     * Removes all triples from this table.
+     */
+    @Override
+    public synchronized void clear() {
+        state = new State(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Return the triples matching the filter criteria. Arguments with null value are treated as wildcards. The
+     * result is a snapshot of the matching triples and does not reflect later modifications of the table.
+     *
+     * @param subject         subject to match, or null
+     * @param property        property to match, or null
+     * @param object          object to match, or null
+     * @param context         context to match, or null
+     * @param wildcardContext whether the context is not relevant for the query
+     * @return the matching triples
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<Triple> listTriples(final Resource subject, final URI property, final Value object, final Resource context, boolean wildcardContext) {
+        final State s = state;
+        final int n = s.used;
+
+        if(subject != null && property != null && object != null && context != null) {
+            int position = s.find(n, subject, property, object, context);
+            if(position >= 0) {
+                Triple result = (Triple) s.triples[position];
+                if(result != null) {
+                    return Collections.singletonList(result);
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        List<Triple> result = new ArrayList<>();
+        if(subject != null || context != null) {
+            Index index = s.index(n);
+
+            long from, to;
+            long[] keys;
+            int[] positions;
+            if(subject != null && (wildcardContext || context == null)) {
+                keys      = index.spocKeys;
+                positions = index.spocPositions;
+                from      = key(subject, property);
+                to        = property != null ? from : from | LOW_MASK;
+            } else {
+                keys      = index.cspoKeys;
+                positions = index.cspoPositions;
+                from      = key(context, subject);
+                to        = subject != null ? from : from | LOW_MASK;
+            }
+
+            for(int i = lowerBound(keys, from); i < keys.length && keys[i] <= to; i++) {
+                Triple triple = (Triple) s.triples[positions[i]];
+                if(triple != null && matches(triple, subject, property, object, context)) {
+                    result.add(triple);
+                }
+            }
+
+            // triples added since the index has been built
+            for(int i = index.indexed; i < n; i++) {
+                Triple triple = (Triple) s.triples[i];
+                if(triple != null && matches(triple, subject, property, object, context)) {
+                    result.add(triple);
+                }
+            }
+        } else {
+            for(int i = 0; i < n; i++) {
+                Triple triple = (Triple) s.triples[i];
+                if(triple != null && matches(triple, subject, property, object, context)) {
+                    result.add(triple);
+                }
+            }
+        }
+        return result;
+    }
+
+    public Collection<Resource> listContextIDs() {
+        State s = state;
+        int n = s.used;
+
+        Set<Resource> result = new HashSet<>();
+        for(int i = 0; i < n; i++) {
+            Statement triple = (Statement) s.triples[i];
+            if(triple != null) {
+                result.add(triple.getContext());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hash code based on subject, predicate, object and context, consistent with the equality of triples in
+     * this table.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for(Triple triple : this) {
+            h += hash(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext());
+        }
+        return h;
+    }
+
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        List<Triple> triples = new ArrayList<>(this);
+        out.writeInt(triples.size());
+        for(Triple triple : triples) {
+            out.writeObject(triple);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        int size = in.readInt();
+        state = new State(Math.max(INITIAL_CAPACITY, size));
+        for(int i = 0; i < size; i++) {
+            add((Triple) in.readObject());
+        }
+    }
+
+
+    private static boolean matches(Statement triple, Resource subject, URI property, Value object, Resource context) {
+        if(subject != null && !subject.equals(triple.getSubject())) {
+            return false;
+        }
+        if(property != null && !property.equals(triple.getPredicate())) {
+            return false;
+        }
+        if(object != null && !object.equals(triple.getObject())) {
+            return false;
+        }
+        if(context != null && !context.equals(triple.getContext())) {
+            return false;
+        }
+        return true;
+    }
+
+    private static int hash(Resource subject, URI property, Value object, Resource context) {
+        int h = subject != null ? subject.hashCode() : 0;
+        h = 31 * h + (property != null ? property.hashCode() : 0);
+        h = 31 * h + (object != null ? object.hashCode() : 0);
+        h = 31 * h + (context != null ? context.hashCode() : 0);
+        // spread the bits, the lookup table uses the lower bits only
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long key(Value first, Value second) {
+        long high = first  != null ? first.hashCode()  : 0;
+        long low  = second != null ? second.hashCode() : 0;
+        return (high << 32) | (low & LOW_MASK);
+    }
+
+    /**
+     * Return the first position in the sorted array whose key is greater than or equal to the key passed as
+     * argument.
+     */
+    private static int lowerBound(long[] keys, long key) {
+        int low = 0, high = keys.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * The triple slots, lookup table and indexes of the table. A state is replaced as a whole when the slot array
+     * needs to be reallocated, so readers always see consistent positions.
+     */
+    private static final class State {
+
+        /**
+         * Triples in insertion order; removed triples leave a null slot
+         */
+        final Object[] triples;
+
+        /**
+         * Number of slots in use, including empty slots of removed triples
+         */
+        volatile int used;
+
+        /**
+         * Number of triples
+         */
+        volatile int size;
+
+        /**
+         * Open addressing hash table with the positions of the triples (plus one), EMPTY or DELETED
+         */
+        volatile int[] lookup;
+
+        /**
+         * Number of lookup entries that are not EMPTY
+         */
+        int filled;
+
+        final AtomicReference<Index> index;
+
+
+        State(int capacity) {
+            triples = new Object[capacity];
+            lookup  = new int[tableSize(capacity)];
+            index   = new AtomicReference<>(Index.NONE);
+        }
+
+        private State(Object[] triples, int used, int size, int[] lookup, int filled, Index index) {
+            this.triples = triples;
+            this.used    = used;
+            this.size    = size;
+            this.lookup  = lookup;
+            this.filled  = filled;
+            this.index   = new AtomicReference<>(index);
+        }
+
+        private static int tableSize(int capacity) {
+            int size = INITIAL_CAPACITY;
+            while(size < capacity * 2) {
+                size <<= 1;
+            }
+            return size;
+        }
+
+        /**
+         * Find the position of the triple with the given components among the first n triples.
+         *
+         * @return the position, or -1 in case there is no such triple
+         */
+        int find(int n, Resource subject, URI property, Value object, Resource context) {
+            int[] table = lookup;
+            int mask = table.length - 1;
+            for(int slot = hash(subject, property, object, context) & mask, probes = 0; probes < table.length; slot = (slot + 1) & mask, probes++) {
+                int entry = table[slot];
+                if(entry == EMPTY) {
+                    return -1;
+                } else if(entry != DELETED && entry <= n) {
+                    Statement triple = (Statement) triples[entry - 1];
+                    if(triple != null
+                            && Objects.equal(subject, triple.getSubject())
+                            && Objects.equal(property, triple.getPredicate())
+                            && Objects.equal(object, triple.getObject())
+                            && Objects.equal(context, triple.getContext())) {
+                        return entry - 1;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Append a triple; the caller needs to make sure there is a free slot.
+         */
+        void append(Statement triple) {
+            if((filled + 1) * 2 > lookup.length) {
+                rehash(tableSize(size * 2 + 2));
+            }
+            int position = used;
+            triples[position] = triple;
+            insert(lookup, hash(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()), position + 1);
+            filled++;
+            size++;
+            // publishes the new slot to readers
+            used = position + 1;
+        }
+
+        void delete(int position) {
+            Statement triple = (Statement) triples[position];
+            int[] table = lookup;
+            int mask = table.length - 1;
+            int slot = hash(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()) & mask;
+            while(table[slot] != position + 1) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = DELETED;
+            triples[position] = null;
+            size--;
+        }
+
+        /**
+         * Return a new state with a larger slot array. Positions stay the same, so lookup table and index can be
+         * shared.
+         */
+        State grow(int capacity) {
+            return new State(Arrays.copyOf(triples, capacity), used, size, lookup, filled, index.get());
+        }
+
+        /**
+         * Return a new state containing only the remaining triples. The index is rebuilt lazily by the next query.
+         */
+        State compact(int capacity) {
+            State result = new State(Math.max(capacity, size + 1));
+            for(int i = 0; i < used; i++) {
+                if(triples[i] != null) {
+                    result.append((Statement) triples[i]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Return an index covering at least the first n triples, merging the triples added since the current index
+         * has been built in case there are too many of them to scan.
+         */
+        Index index(int n) {
+            Index current = index.get();
+            int delta = n - current.indexed;
+            if(delta > Math.max(MIN_DELTA, (int) Math.sqrt(current.indexed))) {
+                Index merged = current.merge(triples, n);
+                // another reader might have merged concurrently, both results are valid
+                index.compareAndSet(current, merged);
+                return merged;
+            }
+            return current;
+        }
+
+        private void rehash(int tableSize) {
+            int[] table = new int[tableSize];
+            for(int entry : lookup) {
+                if(entry != EMPTY && entry != DELETED) {
+                    Statement triple = (Statement) triples[entry - 1];
+                    insert(table, hash(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()), entry);
+                }
+            }
+            filled = size;
+            lookup = table;
+        }
+
+        private static void insert(int[] table, int hash, int entry) {
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while(table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry;
+        }
+    }
+
+
+    /**
+     * Immutable sorted indexes over the first triples of a state. The SPOC index is ordered by subject and
+     * predicate hash, the CSPO index by context and subject hash.
+     */
+    private static final class Index {
+
+        static final Index NONE = new Index(0, new long[0], new int[0], new long[0], new int[0]);
+
+        final int indexed;
+
+        final long[] spocKeys;
+        final int[]  spocPositions;
+
+        final long[] cspoKeys;
+        final int[]  cspoPositions;
+
+        Index(int indexed, long[] spocKeys, int[] spocPositions, long[] cspoKeys, int[] cspoPositions) {
+            this.indexed       = indexed;
+            this.spocKeys      = spocKeys;
+            this.spocPositions = spocPositions;
+            this.cspoKeys      = cspoKeys;
+            this.cspoPositions = cspoPositions;
+        }
+
+        /**
+         * Build a new index covering the first n triples. Entries of removed triples are dropped.
+         */
+        Index merge(Object[] triples, int n) {
+            int count = 0;
+            long[] spocDelta = new long[n - indexed];
+            long[] cspoDelta = new long[n - indexed];
+            int[] spocDeltaPositions = new int[n - indexed];
+            int[] cspoDeltaPositions = new int[n - indexed];
+            for(int i = indexed; i < n; i++) {
+                Statement triple = (Statement) triples[i];
+                if(triple != null) {
+                    spocDelta[count] = key(triple.getSubject(), triple.getPredicate());
+                    cspoDelta[count] = key(triple.getContext(), triple.getSubject());
+                    spocDeltaPositions[count] = i;
+                    cspoDeltaPositions[count] = i;
+                    count++;
+                }
+            }
+            sort(spocDelta, spocDeltaPositions, 0, count - 1);
+            sort(cspoDelta, cspoDeltaPositions, 0, count - 1);
+
+            long[] newSpocKeys = new long[spocKeys.length + count];
+            int[] newSpocPositions = new int[spocKeys.length + count];
+            int spocLength = merge(triples, spocKeys, spocPositions, spocDelta, spocDeltaPositions, count, newSpocKeys, newSpocPositions);
+
+            long[] newCspoKeys = new long[cspoKeys.length + count];
+            int[] newCspoPositions = new int[cspoKeys.length + count];
+            int cspoLength = merge(triples, cspoKeys, cspoPositions, cspoDelta, cspoDeltaPositions, count, newCspoKeys, newCspoPositions);
+
+            // entries of removed triples have been dropped
+            if(spocLength < newSpocKeys.length) {
+                newSpocKeys      = Arrays.copyOf(newSpocKeys, spocLength);
+                newSpocPositions = Arrays.copyOf(newSpocPositions, spocLength);
+            }
+            if(cspoLength < newCspoKeys.length) {
+                newCspoKeys      = Arrays.copyOf(newCspoKeys, cspoLength);
+                newCspoPositions = Arrays.copyOf(newCspoPositions, cspoLength);
+            }
+            return new Index(n, newSpocKeys, newSpocPositions, newCspoKeys, newCspoPositions);
+        }
+
+        /**
+         * Merge the sorted existing entries (skipping removed triples) and the sorted delta into the result arrays.
+         *
+         * @return the number of entries written to the result arrays
+         */
+        private static int merge(Object[] triples, long[] keys, int[] positions, long[] delta, int[] deltaPositions, int count, long[] resultKeys, int[] resultPositions) {
+            int i = 0, j = 0, k = 0;
+            while(i < keys.length || j < count) {
+                if(i < keys.length && triples[positions[i]] == null) {
+                    i++;
+                } else if(i < keys.length && (j >= count || keys[i] <= delta[j])) {
+                    resultKeys[k] = keys[i];
+                    resultPositions[k++] = positions[i++];
+                } else {
+                    resultKeys[k] = delta[j];
+                    resultPositions[k++] = deltaPositions[j++];
+                }
+            }
+            return k;
+        }
+
+        /**
+         * Sort the keys and the positions in parallel (quicksort, insertion sort for small ranges).
+         */
+        private static void sort(long[] keys, int[] positions, int low, int high) {
+            while(high - low > 16) {
+                long pivot = keys[(low + high) >>> 1];
+                int i = low, j = high;
+                while(i <= j) {
+                    while(keys[i] < pivot) i++;
+                    while(keys[j] > pivot) j--;
+                    if(i <= j) {
+                        swap(keys, positions, i++, j--);
+                    }
+                }
+                // recurse into the smaller part to bound the stack depth
+                if(j - low < high - i) {
+                    sort(keys, positions, low, j);
+                    low = i;
+                } else {
+                    sort(keys, positions, i, high);
+                    high = j;
+                }
+            }
+            for(int i = low + 1; i <= high; i++) {
+                for(int j = i; j > low && keys[j - 1] > keys[j]; j--) {
+                    swap(keys, positions, j - 1, j);
+                }
+            }
+        }
+
+        private static void swap(long[] keys, int[] positions, int i, int j) {
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+
+            int position = positions[i];
+            positions[i] = positions[j];
+            positions[j] = position;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.commons.sesame.tripletable;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Test;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for compact triple tables.
+ */
+public class CompactTripleTableTest {
+
+
+
+    @Test
+    public void testListTriples() {
+        URI subject1 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI subject2 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI predicate1 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI predicate2 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        Literal object1 = new LiteralImpl("http://localhost/"+ RandomStringUtils.random(40));
+        Literal object2 = new LiteralImpl("http://localhost/"+ RandomStringUtils.random(40));
+
+        Statement stmt1 = new StatementImpl(subject1,predicate1,object1);
+        Statement stmt2 = new StatementImpl(subject1,predicate1,object2);
+        Statement stmt3 = new StatementImpl(subject1,predicate2,object1);
+        Statement stmt4 = new StatementImpl(subject1,predicate2,object2);
+        Statement stmt5 = new StatementImpl(subject2,predicate1,object1);
+        Statement stmt6 = new StatementImpl(subject2,predicate1,object2);
+        Statement stmt7 = new StatementImpl(subject2,predicate2,object1);
+
+        CompactTripleTable<Statement> table = new CompactTripleTable<>();
+        table.add(stmt1);
+        table.add(stmt2);
+        table.add(stmt3);
+        table.add(stmt4);
+        table.add(stmt5);
+        table.add(stmt6);
+        table.add(stmt7);
+
+        // tests
+
+        // 1. test existence and non-existence of a triple
+        assertEquals(1, table.listTriples(subject2,predicate2,object1,null, true).size());
+        assertEquals(0, table.listTriples(subject2,predicate2,object2,null, true).size());
+
+        // 2. test listing with wildcards
+        assertEquals(7, table.listTriples(null,null,null,null, true).size());
+        assertEquals(4, table.listTriples(subject1,null,null,null, true).size());
+        assertEquals(3, table.listTriples(subject2,null,null,null, true).size());
+        assertEquals(4, table.listTriples(null,predicate1,null,null, true).size());
+        assertEquals(3, table.listTriples(null,predicate2,null,null, true).size());
+        assertEquals(4, table.listTriples(null,null,object1,null, true).size());
+        assertEquals(3, table.listTriples(null,null,object2,null, true).size());
+        assertEquals(2, table.listTriples(subject1,predicate1,null,null, true).size());
+        assertEquals(1, table.listTriples(subject2,predicate2,null,null, true).size());
+    }
+
+    @Test
+    public void testRemoveTriples() {
+        URI subject1 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI subject2 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI predicate1 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI predicate2 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        Literal object1 = new LiteralImpl("http://localhost/"+ RandomStringUtils.random(40));
+        Literal object2 = new LiteralImpl("http://localhost/"+ RandomStringUtils.random(40));
+
+        Statement stmt1 = new StatementImpl(subject1,predicate1,object1);
+        Statement stmt2 = new StatementImpl(subject1,predicate1,object2);
+        Statement stmt3 = new StatementImpl(subject1,predicate2,object1);
+        Statement stmt4 = new StatementImpl(subject1,predicate2,object2);
+        Statement stmt5 = new StatementImpl(subject2,predicate1,object1);
+        Statement stmt6 = new StatementImpl(subject2,predicate1,object2);
+        Statement stmt7 = new StatementImpl(subject2,predicate2,object1);
+        Statement stmt8 = new StatementImpl(subject2,predicate2,object2);
+
+        CompactTripleTable<Statement> table = new CompactTripleTable<>();
+        table.add(stmt1);
+        table.add(stmt2);
+        table.add(stmt3);
+        table.add(stmt4);
+        table.add(stmt5);
+        table.add(stmt6);
+        table.add(stmt7);
+        table.add(stmt8);
+
+        // 1. test existence and non-existence of a triple
+        assertEquals(1, table.listTriples(subject2,predicate2,object1,null, true).size());
+        assertEquals(1, table.listTriples(subject2,predicate2,object2,null, true).size());
+
+
+        table.remove(stmt8);
+
+        assertEquals(1, table.listTriples(subject2,predicate2,object1,null, true).size());
+        assertEquals(0, table.listTriples(subject2,predicate2,object2,null, true).size());
+        assertEquals(7, table.size());
+
+        // 2. test removal through the iterator
+        for(Iterator<Statement> it = table.iterator(); it.hasNext(); ) {
+            if(it.next().getSubject().equals(subject1)) {
+                it.remove();
+            }
+        }
+        assertEquals(3, table.size());
+        assertEquals(0, table.listTriples(subject1,null,null,null, true).size());
+        assertFalse(table.contains(stmt1));
+        assertTrue(table.contains(stmt5));
+    }
+
+    /**
+     * Triples with the same subject, predicate and object but different contexts are distinct.
+     */
+    @Test
+    public void testContexts() {
+        URI subject = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI predicate = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        Literal object = new LiteralImpl("http://localhost/"+ RandomStringUtils.random(40));
+        URI context1 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        URI context2 = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+
+        CompactTripleTable<Statement> table = new CompactTripleTable<>();
+        assertTrue(table.add(new ContextStatementImpl(subject, predicate, object, context1)));
+        assertTrue(table.add(new ContextStatementImpl(subject, predicate, object, context2)));
+        assertFalse(table.add(new ContextStatementImpl(subject, predicate, object, context2)));
+
+        assertEquals(2, table.size());
+        assertEquals(2, table.listContextIDs().size());
+        assertEquals(2, table.listTriples(subject,null,null,null, true).size());
+        assertEquals(1, table.listTriples(subject,null,null,context1, false).size());
+        assertEquals(1, table.listTriples(subject,predicate,object,context2, false).size());
+        assertEquals(1, table.listTriples(null,null,null,context2, false).size());
+
+        table.remove(new ContextStatementImpl(subject, predicate, object, context1));
+        assertEquals(0, table.listTriples(null,null,null,context1, false).size());
+        assertEquals(1, table.listTriples(subject,null,null,null, true).size());
+    }
+
+    /**
+     * Add and remove enough triples to merge the indexes and compact the table several times.
+     */
+    @Test
+    public void testLargeTable() {
+        List<URI> resources = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            resources.add(new URIImpl("http://localhost/resource/" + i));
+        }
+        List<Resource> contexts = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            contexts.add(new URIImpl("http://localhost/context/" + i));
+        }
+
+        List<Statement> statements = new ArrayList<>();
+        for(int i = 0; i < 10000; i++) {
+            statements.add(new ContextStatementImpl(resources.get(i % 100), resources.get(i % 7), resources.get(i / 100), contexts.get(i % 5)));
+        }
+
+        CompactTripleTable<Statement> table = new CompactTripleTable<>();
+        for(int i = 0; i < statements.size(); i++) {
+            table.add(statements.get(i));
+            if(i % 1000 == 0) {
+                assertEquals((i / 100) + 1, table.listTriples(resources.get(0),null,null,null, true).size());
+            }
+        }
+        assertEquals(10000, table.size());
+        assertEquals(100, table.listTriples(resources.get(42),null,null,null, true).size());
+        assertEquals(2000, table.listTriples(null,null,null,contexts.get(3), false).size());
+        assertEquals(100, table.listTriples(resources.get(42),null,null,contexts.get(2), false).size());
+        assertEquals(0, table.listTriples(resources.get(42),null,null,contexts.get(3), false).size());
+
+        // remove all statements except the ones with subjects 0, 10, 20, ...
+        for(int i = 0; i < statements.size(); i++) {
+            if(i % 10 != 0) {
+                assertTrue(table.remove(statements.get(i)));
+            }
+        }
+        assertEquals(1000, table.size());
+        assertEquals(0, table.listTriples(resources.get(42),null,null,null, true).size());
+        assertEquals(100, table.listTriples(resources.get(10),null,null,null, true).size());
+        assertEquals(1000, table.listTriples(null,null,null,contexts.get(0), false).size());
+        assertEquals(0, table.listTriples(null,null,null,contexts.get(1), false).size());
+
+        for(int i = 0; i < statements.size(); i++) {
+            assertEquals(i % 10 == 0, table.contains(statements.get(i)));
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.commons.sesame.tripletable;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing the {@link TripleTable} with the {@link CompactTripleTable}. Measures the time for
+ * building a table and for the typical listTriples queries; the memory used per triple by both implementations is
+ * printed when setting up a trial. The benchmarks are not run as part of the build; run the main method of this
+ * class with the test classpath of the module (e.g. from the IDE) to execute them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TripleTableBenchmark {
+
+    @Param({"10000", "100000"})
+    public int triples;
+
+    private List<Statement> statements;
+
+    private URI[] subjects, predicates, contexts;
+
+    private TripleTable<Statement> table;
+
+    private CompactTripleTable<Statement> compactTable;
+
+    private Random random;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new Random(42);
+
+        subjects   = createURIs("subject", triples / 10);
+        predicates = createURIs("predicate", 20);
+        contexts   = createURIs("context", 10);
+
+        statements = new ArrayList<>(triples);
+        for(int i = 0; i < triples; i++) {
+            Literal object = new LiteralImpl("value " + random.nextInt(triples));
+            statements.add(new ContextStatementImpl(subjects[i % subjects.length], predicates[random.nextInt(predicates.length)], object, contexts[random.nextInt(contexts.length)]));
+        }
+
+        long before = usedMemory();
+        table = new TripleTable<>(statements);
+        long afterTable = usedMemory();
+        compactTable = new CompactTripleTable<>(statements);
+        // force building the sorted indexes
+        compactTable.listTriples(subjects[0], null, null, null, true);
+        long afterCompactTable = usedMemory();
+
+        System.out.printf("%nmemory per triple (%d triples): TripleTable %d bytes, CompactTripleTable %d bytes%n",
+                triples, (afterTable - before) / triples, (afterCompactTable - afterTable) / triples);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        table        = null;
+        compactTable = null;
+        statements   = null;
+    }
+
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TripleTable<Statement> buildTripleTable() {
+        return new TripleTable<>(statements);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CompactTripleTable<Statement> buildCompactTripleTable() {
+        return new CompactTripleTable<>(statements);
+    }
+
+    @Benchmark
+    public void listBySubjectTripleTable(Blackhole bh) {
+        consume(bh, table.listTriples(randomSubject(), null, null, null, true));
+    }
+
+    @Benchmark
+    public void listBySubjectCompactTripleTable(Blackhole bh) {
+        consume(bh, compactTable.listTriples(randomSubject(), null, null, null, true));
+    }
+
+    @Benchmark
+    public void listBySubjectPredicateTripleTable(Blackhole bh) {
+        consume(bh, table.listTriples(randomSubject(), randomPredicate(), null, null, true));
+    }
+
+    @Benchmark
+    public void listBySubjectPredicateCompactTripleTable(Blackhole bh) {
+        consume(bh, compactTable.listTriples(randomSubject(), randomPredicate(), null, null, true));
+    }
+
+    @Benchmark
+    public void listByContextSubjectTripleTable(Blackhole bh) {
+        consume(bh, table.listTriples(randomSubject(), null, null, randomContext(), false));
+    }
+
+    @Benchmark
+    public void listByContextSubjectCompactTripleTable(Blackhole bh) {
+        consume(bh, compactTable.listTriples(randomSubject(), null, null, randomContext(), false));
+    }
+
+    @Benchmark
+    public boolean containsTripleTable() {
+        return table.contains(randomStatement());
+    }
+
+    @Benchmark
+    public boolean containsCompactTripleTable() {
+        return compactTable.contains(randomStatement());
+    }
+
+
+    private URI randomSubject() {
+        return subjects[random.nextInt(subjects.length)];
+    }
+
+    private URI randomPredicate() {
+        return predicates[random.nextInt(predicates.length)];
+    }
+
+    private URI randomContext() {
+        return contexts[random.nextInt(contexts.length)];
+    }
+
+    private Statement randomStatement() {
+        return statements.get(random.nextInt(statements.size()));
+    }
+
+    private static void consume(Blackhole bh, Iterable<Statement> result) {
+        for(Statement stmt : result) {
+            bh.consume(stmt);
+        }
+    }
+
+    private static URI[] createURIs(String prefix, int count) {
+        URI[] result = new URI[count];
+        for(int i = 0; i < count; i++) {
+            result[i] = new URIImpl("http://localhost/" + prefix + "/" + i);
+        }
+        return result;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TripleTableBenchmark.class.getSimpleName()).build()).run();
+    }
+}
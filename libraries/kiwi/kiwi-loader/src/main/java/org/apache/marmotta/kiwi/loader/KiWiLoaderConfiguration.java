@@ -36,6 +36,7 @@ public class KiWiLoaderConfiguration {
     public static final String LOADER_STATISTICS_ENABLED = "loader.statistics.enabled";
     public static final String LOADER_STATISTICS_GRAPH = "loader.statistics.graph";
     public static final String IGNORE_NAMESPACES = "loader.namespaces.ignore";
+    public static final String LOADER_DICTIONARY_DIRECTORY = "loader.dictionary.directory";
 
 
     private Configuration config;
@@ -162,4 +163,21 @@ public class KiWiLoaderConfiguration {
     }
 
 
+    /**
+     * If not null, the dictionary used by batch loaders for looking up nodes that have not yet been written to the
+     * database is stored in a memory-mapped file in this directory instead of direct (off-heap) memory.
+     * Default: null
+     */
+    public String getDictionaryDirectory() {
+        return config.getString(LOADER_DICTIONARY_DIRECTORY, null);
+    }
+
+    /**
+     * If not null, the dictionary used by batch loaders for looking up nodes that have not yet been written to the
+     * database is stored in a memory-mapped file in this directory instead of direct (off-heap) memory.
+     */
+    public void setDictionaryDirectory(String directory) {
+        config.setProperty(LOADER_DICTIONARY_DIRECTORY, directory);
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.dump;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Constants and low-level encoding helpers shared by the {@link KiWiDumpWriter} and the {@link KiWiDumpRestorer}.
+ * <p/>
+ * A dump starts with the magic number and the format version, followed by a sequence of blocks. Each block starts
+ * with its type, the number of records, the uncompressed and the compressed length of its payload, followed by the
+ * deflate-compressed payload. The stream is terminated by a block of type BLOCK_END without payload. Namespaces are
+ * written first, then all nodes in id order and finally all triples in id order, so that a restore never inserts a
+ * row referencing a node that has not been inserted before.
+ * <ul>
+ *     <li>node blocks store the node ids as deltas, URIs are split into a namespace and a local name and the
+ *         namespaces are replaced by references into a dictionary that is shared by all blocks of the dump; all
+ *         other nodes are written using the KiWiIO encoding</li>
+ *     <li>triple blocks are stored column by column, so that the ids of subjects, predicates, objects and contexts
+ *         end up next to each other and compress well; ids and timestamps are written as variable-length deltas</li>
+ * </ul>
+ */
+final class KiWiDumpFormat {
+
+    static final int MAGIC   = 0x4B695769; // "KiWi"
+    static final int VERSION = 1;
+
+    static final int BLOCK_END        = 0;
+    static final int BLOCK_NAMESPACES = 1;
+    static final int BLOCK_NODES      = 2;
+    static final int BLOCK_TRIPLES    = 3;
+
+    static final int NODE_URI   = 1;
+    static final int NODE_OTHER = 2;
+
+    static final int FLAG_INFERRED = 1;
+    static final int FLAG_DELETED  = 2;
+
+    /**
+     * Dictionary reference used for URIs that are written without namespace (e.g. when the dictionary is full)
+     */
+    static final int NO_NAMESPACE = 0;
+
+    /**
+     * Maximum number of namespaces kept in the URI dictionary
+     */
+    static final int MAX_NAMESPACES = 1 << 20;
+
+    /**
+     * Default number of records written per block
+     */
+    static final int DEFAULT_BLOCK_SIZE = 10000;
+
+
+    private KiWiDumpFormat() {
+    }
+
+    /**
+     * Return the length of the namespace part of the given URI, i.e. everything up to and including the last '#' or
+     * '/'. Returns 0 in case the URI does not contain any of these characters.
+     */
+    static int namespaceLength(String uri) {
+        return Math.max(uri.lastIndexOf('#'), uri.lastIndexOf('/')) + 1;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed variable-length number in dump");
+    }
+
+    /**
+     * Write a signed value (e.g. the difference between two ids) as zig-zag encoded variable-length number, so that
+     * small negative values also only take few bytes.
+     */
+    static void writeVarDelta(DataOutput out, long delta) throws IOException {
+        writeVarLong(out, (delta << 1) ^ (delta >> 63));
+    }
+
+    static long readVarDelta(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
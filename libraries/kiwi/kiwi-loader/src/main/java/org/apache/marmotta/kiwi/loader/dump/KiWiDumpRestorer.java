@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.dump;
+
+import org.apache.marmotta.commons.io.DataIO;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.loader.mysql.MySQLLoadUtil;
+import org.apache.marmotta.kiwi.loader.pgsql.PGCopyUtil;
+import org.apache.marmotta.kiwi.model.rdf.*;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.apache.marmotta.kiwi.loader.dump.KiWiDumpFormat.*;
+
+/**
+ * Restores a dump created by the {@link KiWiDumpWriter} into a KiWi store, preserving all node and triple ids.
+ * Blocks are loaded using the fastest insert route of the database: the COPY command for PostgreSQL, LOAD DATA
+ * for MySQL and JDBC batch inserts for all other databases. Each block is committed separately.
+ * <p/>
+ * The target store needs to be initialised and empty, restoring into a store that already contains data will
+ * fail with duplicate key errors.
+ */
+public class KiWiDumpRestorer {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiDumpRestorer.class);
+
+    private static final String INSERT_TRIPLE = "INSERT INTO triples (id,subject,predicate,object,context,creator,inferred,deleted,createdAt,deletedAt) VALUES (?,?,?,?,?,?,?,?,?,?)";
+
+    private KiWiStore store;
+
+    // URI namespace dictionary, the namespace with reference i is stored at position i-1
+    private List<String> namespaces;
+
+    private Inflater inflater;
+
+    public KiWiDumpRestorer(KiWiStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Restore the dump read from the given input stream into the store. The stream is not closed.
+     *
+     * @param in the source of the dump
+     * @throws IOException  in case the dump cannot be read or is not a valid dump
+     * @throws SQLException in case writing to the database fails
+     */
+    public void restore(InputStream in) throws IOException, SQLException {
+        namespaces = new ArrayList<>();
+        inflater   = new Inflater();
+
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if(data.readInt() != MAGIC) {
+            throw new IOException("input is not a KiWi dump");
+        }
+        int version = data.readUnsignedByte();
+        if(version != VERSION) {
+            throw new IOException("unsupported KiWi dump version: " + version);
+        }
+
+        long start = System.currentTimeMillis();
+        long nodeCount = 0, tripleCount = 0;
+
+        KiWiConnection connection = store.getPersistence().getConnection();
+        try {
+            int type;
+            while ((type = data.readUnsignedByte()) != BLOCK_END) {
+                int count = data.readInt();
+                DataInputStream block = readBlock(data);
+
+                switch (type) {
+                    case BLOCK_NAMESPACES:
+                        for(int i = 0; i < count; i++) {
+                            KiWiNamespace ns = new KiWiNamespace(DataIO.readString(block), DataIO.readString(block));
+                            ns.setCreated(new Date(block.readLong()));
+                            connection.storeNamespace(ns);
+                        }
+                        break;
+                    case BLOCK_NODES:
+                        storeNodes(connection, readNodes(block, count));
+                        nodeCount += count;
+                        break;
+                    case BLOCK_TRIPLES:
+                        storeTriples(connection, readTriples(block, count));
+                        tripleCount += count;
+                        break;
+                    default:
+                        throw new IOException("unknown block type in KiWi dump: " + type);
+                }
+
+                connection.commit();
+            }
+
+            log.info("KiWi dump: restored {} nodes and {} triples in {} ms", nodeCount, tripleCount, System.currentTimeMillis() - start);
+        } catch (IOException | SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.close();
+            inflater.end();
+        }
+    }
+
+    private DataInputStream readBlock(DataInputStream data) throws IOException {
+        int rawLength        = data.readInt();
+        int compressedLength = data.readInt();
+
+        byte[] compressed = new byte[compressedLength];
+        data.readFully(compressed);
+
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if(length != rawLength) {
+                throw new IOException("truncated block in KiWi dump");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("corrupted block in KiWi dump", ex);
+        }
+
+        return new DataInputStream(new ByteArrayInputStream(raw));
+    }
+
+    private List<KiWiNode> readNodes(DataInputStream block, int count) throws IOException {
+        List<KiWiNode> nodes = new ArrayList<>(count);
+
+        long id = 0;
+        for(int i = 0; i < count; i++) {
+            id += readVarDelta(block);
+
+            KiWiNode node;
+            int type = block.readUnsignedByte();
+            if(type == NODE_URI) {
+                node = readURI(block);
+            } else if(type == NODE_OTHER) {
+                node = KiWiIO.readNode(block);
+            } else {
+                throw new IOException("unknown node type in KiWi dump: " + type);
+            }
+            node.setId(id);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private KiWiUriResource readURI(DataInputStream block) throws IOException {
+        int ref = (int) readVarLong(block);
+
+        String namespace;
+        if(ref == NO_NAMESPACE) {
+            namespace = "";
+        } else if(ref == namespaces.size() + 1) {
+            namespace = DataIO.readString(block);
+            namespaces.add(namespace);
+        } else if(ref <= namespaces.size()) {
+            namespace = namespaces.get(ref - 1);
+        } else {
+            throw new IOException("invalid namespace reference in KiWi dump: " + ref);
+        }
+
+        String uri = namespace + DataIO.readString(block);
+        return new KiWiUriResource(uri, new Date(block.readLong()));
+    }
+
+    private List<KiWiTriple> readTriples(DataInputStream block, int count) throws IOException {
+        long[] ids        = readColumn(block, count);
+        long[] subjects   = readColumn(block, count);
+        long[] predicates = readColumn(block, count);
+        long[] objects    = readColumn(block, count);
+        long[] contexts   = readColumn(block, count);
+        long[] creators   = readColumn(block, count);
+        byte[] flags      = new byte[count];
+        block.readFully(flags);
+        long[] created    = readColumn(block, count);
+        long[] deleted    = readColumn(block, count);
+
+        List<KiWiTriple> triples = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            KiWiTriple triple = new KiWiTriple(new Date(created[i]));
+            triple.setId(ids[i]);
+            triple.setSubject(reference(subjects[i]));
+            triple.setPredicate(reference(predicates[i]));
+            triple.setObject(reference(objects[i]));
+            triple.setContext(reference(contexts[i]));
+            triple.setCreator(reference(creators[i]));
+            triple.setInferred((flags[i] & FLAG_INFERRED) != 0);
+            triple.setDeleted((flags[i] & FLAG_DELETED) != 0);
+            if(deleted[i] != 0) {
+                triple.setDeletedAt(new Date(deleted[i]));
+            }
+            triples.add(triple);
+        }
+        return triples;
+    }
+
+    private static long[] readColumn(DataInputStream block, int count) throws IOException {
+        long[] column = new long[count];
+        long value = 0;
+        for(int i = 0; i < count; i++) {
+            value += readVarDelta(block);
+            column[i] = value;
+        }
+        return column;
+    }
+
+    /**
+     * Triples in a dump only refer to their nodes by id, and only the ids are needed for inserting the triples, so
+     * we use a placeholder carrying only the node id instead of loading the node.
+     */
+    private static KiWiUriResource reference(long id) {
+        if(id == 0) {
+            return null;
+        }
+        KiWiUriResource node = new KiWiUriResource();
+        node.setId(id);
+        return node;
+    }
+
+    private void storeNodes(KiWiConnection connection, List<KiWiNode> nodes) throws IOException, SQLException {
+        KiWiDialect dialect = store.getPersistence().getDialect();
+        if(dialect instanceof PostgreSQLDialect) {
+            PGCopyUtil.copyNodes(connection.getJDBCConnection(), nodes);
+        } else if(dialect instanceof MySQLDialect) {
+            MySQLLoadUtil.loadNodes(connection.getJDBCConnection(), nodes);
+        } else {
+            for(KiWiNode node : nodes) {
+                connection.storeNode(node);
+            }
+        }
+    }
+
+    private void storeTriples(KiWiConnection connection, List<KiWiTriple> triples) throws IOException, SQLException {
+        KiWiDialect dialect = store.getPersistence().getDialect();
+        if(dialect instanceof PostgreSQLDialect) {
+            PGCopyUtil.copyTriples(connection.getJDBCConnection(), triples);
+        } else if(dialect instanceof MySQLDialect) {
+            MySQLLoadUtil.loadTriples(connection.getJDBCConnection(), triples);
+        } else {
+            try (PreparedStatement insert = connection.getJDBCConnection().prepareStatement(INSERT_TRIPLE)) {
+                for(KiWiTriple triple : triples) {
+                    insert.setLong(1, triple.getId());
+                    insert.setLong(2, triple.getSubject().getId());
+                    insert.setLong(3, triple.getPredicate().getId());
+                    insert.setLong(4, triple.getObject().getId());
+                    if(triple.getContext() != null) {
+                        insert.setLong(5, triple.getContext().getId());
+                    } else {
+                        insert.setNull(5, Types.BIGINT);
+                    }
+                    if(triple.getCreator() != null) {
+                        insert.setLong(6, triple.getCreator().getId());
+                    } else {
+                        insert.setNull(6, Types.BIGINT);
+                    }
+                    insert.setBoolean(7, triple.isInferred());
+                    insert.setBoolean(8, triple.isDeleted());
+                    insert.setTimestamp(9, new Timestamp(triple.getCreated().getTime()));
+                    if(triple.getDeletedAt() != null) {
+                        insert.setTimestamp(10, new Timestamp(triple.getDeletedAt().getTime()));
+                    } else {
+                        insert.setNull(10, Types.TIMESTAMP);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+}
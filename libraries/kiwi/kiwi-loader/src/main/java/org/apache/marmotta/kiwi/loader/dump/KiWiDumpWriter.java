@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.dump;
+
+import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.commons.io.DataIO;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNamespace;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static org.apache.marmotta.kiwi.loader.dump.KiWiDumpFormat.*;
+
+/**
+ * Writes a binary snapshot of a KiWi store (namespaces, nodes and triples including deleted triples) to an output
+ * stream. The nodes and triples tables are streamed in id order in blocks of a configurable size, so the dump needs
+ * only constant memory (apart from the URI namespace dictionary). The node and triple ids are preserved, so a
+ * restored database can be used as replica of the original database.
+ * <p/>
+ * The dump is read in a single database transaction; whether concurrent updates are visible depends on the
+ * isolation level of the database, so for a consistent snapshot updates should be paused while dumping.
+ * See {@link KiWiDumpFormat} for a description of the format and {@link KiWiDumpRestorer} for loading a dump.
+ */
+public class KiWiDumpWriter {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiDumpWriter.class);
+
+    private KiWiStore store;
+
+    private int blockSize;
+
+    // URI namespace dictionary, maps namespaces to their reference in the dump
+    private Map<String,Integer> namespaces;
+
+    private Deflater deflater;
+
+    public KiWiDumpWriter(KiWiStore store) {
+        this(store, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Create a new dump writer for the given store.
+     *
+     * @param store     the store to dump
+     * @param blockSize number of nodes or triples written per compressed block
+     */
+    public KiWiDumpWriter(KiWiStore store, int blockSize) {
+        this.store     = store;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Write a dump of the store to the given output stream. The stream is flushed but not closed.
+     *
+     * @param out the destination of the dump
+     * @throws IOException  in case writing to the output stream fails
+     * @throws SQLException in case reading from the database fails
+     */
+    public void dump(OutputStream out) throws IOException, SQLException {
+        namespaces = new HashMap<>();
+        deflater   = new Deflater(Deflater.BEST_SPEED);
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+
+        long start = System.currentTimeMillis();
+
+        KiWiConnection connection = store.getPersistence().getConnection();
+        try {
+            long namespaceCount = dumpNamespaces(connection, data);
+            long nodeCount      = dumpNodes(connection, data);
+            long tripleCount    = dumpTriples(connection, data);
+
+            data.writeByte(BLOCK_END);
+            data.flush();
+
+            connection.commit();
+
+            log.info("KiWi dump: wrote {} namespaces, {} nodes and {} triples in {} ms", namespaceCount, nodeCount, tripleCount, System.currentTimeMillis() - start);
+        } finally {
+            connection.close();
+            deflater.end();
+        }
+    }
+
+    private long dumpNamespaces(KiWiConnection connection, DataOutputStream out) throws IOException, SQLException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(payload);
+
+        int count = 0;
+        CloseableIteration<KiWiNamespace, SQLException> it = connection.listNamespaces();
+        try {
+            while (it.hasNext()) {
+                KiWiNamespace ns = it.next();
+                DataIO.writeString(data, ns.getPrefix());
+                DataIO.writeString(data, ns.getUri());
+                data.writeLong(ns.getCreated().getTime());
+                count++;
+            }
+        } finally {
+            it.close();
+        }
+
+        if(count > 0) {
+            writeBlock(out, BLOCK_NAMESPACES, count, payload);
+        }
+        return count;
+    }
+
+    private long dumpNodes(KiWiConnection connection, DataOutputStream out) throws IOException, SQLException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(payload);
+
+        long count = 0;
+        long lastId = Long.MIN_VALUE;
+
+        List<KiWiNode> nodes;
+        while (!(nodes = connection.listNodesAfter(lastId, blockSize)).isEmpty()) {
+            payload.reset();
+
+            long previous = 0;
+            for(KiWiNode node : nodes) {
+                writeVarDelta(data, node.getId() - previous);
+                previous = node.getId();
+
+                if(node instanceof KiWiUriResource) {
+                    data.writeByte(NODE_URI);
+                    writeURI(data, (KiWiUriResource) node);
+                } else {
+                    data.writeByte(NODE_OTHER);
+                    KiWiIO.writeNode(data, node);
+                }
+            }
+            data.flush();
+            writeBlock(out, BLOCK_NODES, nodes.size(), payload);
+
+            lastId = previous;
+            count += nodes.size();
+        }
+        return count;
+    }
+
+    /**
+     * Write a URI as reference to its namespace in the dictionary followed by the local name. New namespaces are
+     * added to the dictionary by writing the next free reference followed by the namespace itself.
+     */
+    private void writeURI(DataOutputStream data, KiWiUriResource uri) throws IOException {
+        String value = uri.stringValue();
+        int length = namespaceLength(value);
+
+        Integer ref = length > 0 ? namespaces.get(value.substring(0, length)) : null;
+        if(ref != null) {
+            writeVarLong(data, ref);
+        } else if(length > 0 && namespaces.size() < MAX_NAMESPACES) {
+            ref = namespaces.size() + 1;
+            namespaces.put(value.substring(0, length), ref);
+
+            writeVarLong(data, ref);
+            DataIO.writeString(data, value.substring(0, length));
+        } else {
+            writeVarLong(data, NO_NAMESPACE);
+            length = 0;
+        }
+        DataIO.writeString(data, value.substring(length));
+        data.writeLong(uri.getCreated().getTime());
+    }
+
+    private long dumpTriples(KiWiConnection connection, DataOutputStream out) throws IOException, SQLException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(payload);
+
+        long[] ids        = new long[blockSize];
+        long[] subjects   = new long[blockSize];
+        long[] predicates = new long[blockSize];
+        long[] objects    = new long[blockSize];
+        long[] contexts   = new long[blockSize];
+        long[] creators   = new long[blockSize];
+        long[] created    = new long[blockSize];
+        long[] deleted    = new long[blockSize];
+        byte[] flags      = new byte[blockSize];
+
+        long count = 0;
+        long lastId = Long.MIN_VALUE;
+
+        PreparedStatement query = connection.getPreparedStatement("load.triples_after");
+        while (true) {
+            int size = 0;
+            synchronized (query) {
+                query.setLong(1, lastId);
+                query.setInt(2, blockSize);
+
+                // columns: id,subject,predicate,object,context,creator,inferred,deleted,createdAt,deletedAt
+                try (ResultSet rows = query.executeQuery()) {
+                    while (rows.next()) {
+                        ids[size]        = rows.getLong(1);
+                        subjects[size]   = rows.getLong(2);
+                        predicates[size] = rows.getLong(3);
+                        objects[size]    = rows.getLong(4);
+                        contexts[size]   = rows.getLong(5); // 0 in case of null
+                        creators[size]   = rows.getLong(6); // 0 in case of null
+                        flags[size]      = (byte) ((rows.getBoolean(7) ? FLAG_INFERRED : 0) | (rows.getBoolean(8) ? FLAG_DELETED : 0));
+                        created[size]    = rows.getTimestamp(9).getTime();
+
+                        Timestamp deletedAt = rows.getTimestamp(10);
+                        deleted[size]    = deletedAt != null ? deletedAt.getTime() : 0;
+                        size++;
+                    }
+                }
+            }
+
+            if(size == 0) {
+                break;
+            }
+
+            payload.reset();
+            writeColumn(data, ids, size);
+            writeColumn(data, subjects, size);
+            writeColumn(data, predicates, size);
+            writeColumn(data, objects, size);
+            writeColumn(data, contexts, size);
+            writeColumn(data, creators, size);
+            data.write(flags, 0, size);
+            writeColumn(data, created, size);
+            writeColumn(data, deleted, size);
+            data.flush();
+            writeBlock(out, BLOCK_TRIPLES, size, payload);
+
+            lastId = ids[size - 1];
+            count += size;
+        }
+        return count;
+    }
+
+    private static void writeColumn(DataOutputStream data, long[] column, int size) throws IOException {
+        long previous = 0;
+        for(int i = 0; i < size; i++) {
+            writeVarDelta(data, column[i] - previous);
+            previous = column[i];
+        }
+    }
+
+    private void writeBlock(DataOutputStream out, int type, int count, ByteArrayOutputStream payload) throws IOException {
+        byte[] raw = payload.toByteArray();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] buffer = new byte[8192];
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+
+        out.writeByte(type);
+        out.writeInt(count);
+        out.writeInt(raw.length);
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+    }
+}
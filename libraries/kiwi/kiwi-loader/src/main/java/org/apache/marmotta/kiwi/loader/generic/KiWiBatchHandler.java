@@ -27,11 +27,11 @@ import org.openrdf.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -47,9 +47,8 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
     protected List<KiWiNode> nodeBacklog;
     protected List<KiWiTriple> tripleBacklog;
 
-    protected Map<String,KiWiLiteral> literalBacklogLookup;
-    protected Map<String,KiWiUriResource> uriBacklogLookup;
-    protected Map<String,KiWiAnonResource> bnodeBacklogLookup;
+    // maps the keys of all nodes in the backlog to their position in nodeBacklog
+    protected NodeDictionary backlogLookup;
 
 
     protected String backend;
@@ -100,6 +99,10 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
                 throw new RDFHandlerException("error while creating indexes", e);
             }
         }
+        if(backlogLookup != null) {
+            backlogLookup.close();
+            backlogLookup = null;
+        }
         super.shutdown();
     }
 
@@ -116,9 +119,17 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
         this.tripleBacklog = new ArrayList<>(config.getStatementBatchSize());
         this.nodeBacklog   = new ArrayList<>(config.getStatementBatchSize()*2);
-        this.literalBacklogLookup = new HashMap<>();
-        this.uriBacklogLookup = new HashMap<>();
-        this.bnodeBacklogLookup = new HashMap<>();
+
+        if(backlogLookup == null) {
+            try {
+                String directory = config.getDictionaryDirectory();
+                backlogLookup = new NodeDictionary(config.getCommitBatchSize() * 2, directory != null ? new File(directory) : null);
+            } catch (IOException e) {
+                throw new RDFHandlerException("could not create node dictionary", e);
+            }
+        } else {
+            backlogLookup.clear();
+        }
 
         super.startRDF();
 
@@ -150,7 +161,7 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
     @Override
     protected KiWiAnonResource createBNode(String nodeID) {
         // check in backlog, if not found call super method
-        KiWiAnonResource result = bnodeBacklogLookup.get(nodeID);
+        KiWiAnonResource result = (KiWiAnonResource) lookupBacklog(KiWiAnonResource.class, nodeID);
         if(result == null) {
             result = super.createBNode(nodeID);
         }
@@ -159,7 +170,7 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
     @Override
     protected KiWiLiteral createLiteral(Literal l) throws ExecutionException {
-        KiWiLiteral result = literalBacklogLookup.get(LiteralCommons.createCacheKey(l));
+        KiWiLiteral result = (KiWiLiteral) lookupBacklog(KiWiLiteral.class, LiteralCommons.createCacheKey(l));
         if(result == null) {
             result = super.createLiteral(l);
         }
@@ -168,7 +179,7 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
     @Override
     protected KiWiUriResource createURI(String uri) {
-        KiWiUriResource result = uriBacklogLookup.get(uri);
+        KiWiUriResource result = (KiWiUriResource) lookupBacklog(KiWiUriResource.class, uri);
         if(result == null) {
             result = super.createURI(uri);
         }
@@ -181,19 +192,56 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
             node.setId(connection.getNextSequence());
         }
 
+        if(backlogLookup.isFull()) {
+            log.info("{}: node dictionary full, flushing backlog early", backend);
+            flushBacklog();
+        }
+
         nodeBacklog.add(node);
 
-        if(node instanceof KiWiUriResource) {
-            uriBacklogLookup.put(node.stringValue(),(KiWiUriResource)node);
-        } else if(node instanceof KiWiAnonResource) {
-            bnodeBacklogLookup.put(node.stringValue(), (KiWiAnonResource)node);
-        } else if(node instanceof KiWiLiteral) {
-            literalBacklogLookup.put(LiteralCommons.createCacheKey((Literal) node), (KiWiLiteral)node);
+        try {
+            backlogLookup.put(NodeDictionary.hash(backlogType(node.getClass()), backlogKey(node)), nodeBacklog.size() - 1);
+        } catch (IOException e) {
+            throw new SQLException("could not extend node dictionary", e);
         }
 
         nodes++;
     }
 
+    /**
+     * Look up a node of the given type with the given key in the backlog.
+     *
+     * @return the node or null in case it is not contained in the backlog
+     */
+    private KiWiNode lookupBacklog(final Class<? extends KiWiNode> type, final String key) {
+        int position = backlogLookup.get(NodeDictionary.hash(backlogType(type), key), new NodeDictionary.Matcher() {
+            @Override
+            public boolean matches(int value) {
+                KiWiNode candidate = nodeBacklog.get(value);
+                return type.isInstance(candidate) && key.equals(backlogKey(candidate));
+            }
+        });
+        return position >= 0 ? nodeBacklog.get(position) : null;
+    }
+
+    private static String backlogKey(KiWiNode node) {
+        if(node instanceof KiWiLiteral) {
+            return LiteralCommons.createCacheKey((Literal) node);
+        } else {
+            return node.stringValue();
+        }
+    }
+
+    private static char backlogType(Class<? extends KiWiNode> type) {
+        if(KiWiUriResource.class.isAssignableFrom(type)) {
+            return 'U';
+        } else if(KiWiAnonResource.class.isAssignableFrom(type)) {
+            return 'B';
+        } else {
+            return 'L';
+        }
+    }
+
     @Override
     protected void storeTriple(KiWiTriple result) throws SQLException {
 
@@ -234,10 +282,7 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
         nodeBacklog.clear();
         tripleBacklog.clear();
 
-        uriBacklogLookup.clear();
-        bnodeBacklogLookup.clear();
-        literalBacklogLookup.clear();
-
+        backlogLookup.clear();
     }
 
     /**
@@ -29,6 +29,7 @@ import org.apache.marmotta.kiwi.persistence.registry.CacheTripleRegistry;
 import org.apache.marmotta.kiwi.persistence.registry.DBTripleRegistry;
 import org.apache.marmotta.kiwi.persistence.registry.KiWiTripleRegistry;
 import org.apache.marmotta.kiwi.persistence.registry.LocalTripleRegistry;
+import org.apache.marmotta.kiwi.persistence.registry.ShardedTripleRegistry;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
@@ -117,6 +118,10 @@ public class KiWiHandler implements RDFHandler {
                     log.info("KiWi Loader: in-memory registry");
                     registry        = new LocalTripleRegistry();
                     break;
+                case SHARDED:
+                    log.info("KiWi Loader: sharded in-memory registry");
+                    registry        = new ShardedTripleRegistry();
+                    break;
                 default:
                     log.info("KiWi Loader: in-memory registry");
                     registry        = new LocalTripleRegistry();
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.generic;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact dictionary mapping 64bit hashes of node keys to int values (e.g. positions in the node backlog of a
+ * batch handler). The dictionary is an open addressing hash table stored outside the Java heap, either in direct
+ * memory or, if a directory is given, in a memory-mapped temporary file. Each entry takes 16 bytes regardless of
+ * the size of the key, so memory consumption only depends on the number of entries.
+ * <p/>
+ * Since different keys may have the same hash, lookups are given a matcher that verifies candidate values against
+ * the actual key. Clearing the dictionary is a constant time operation, so it can be cleared cheaply after every
+ * flush of a batch.
+ */
+public class NodeDictionary implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(NodeDictionary.class);
+
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+    /**
+     * Slot layout: 8 bytes hash, 4 bytes epoch, 4 bytes value
+     */
+    private static final int SLOT_SIZE = 16;
+
+    /**
+     * Maximum number of slots (a single buffer can hold at most 2GB)
+     */
+    private static final int MAX_SLOTS = 1 << 26;
+
+    /**
+     * Verifies whether the value found for a hash actually belongs to the key that has been looked up.
+     */
+    public interface Matcher {
+
+        boolean matches(int value);
+
+    }
+
+
+    private final File directory;
+
+    private ByteBuffer table;
+    private File tableFile;
+
+    private int slots;
+    private int mask;
+    private int size;
+
+    /**
+     * Slots are only valid when they carry the current epoch; incrementing it empties the dictionary.
+     */
+    private int epoch = 1;
+
+
+    /**
+     * Create a new dictionary in direct (off-heap) memory.
+     *
+     * @param capacity expected number of entries
+     */
+    public NodeDictionary(int capacity) throws IOException {
+        this(capacity, null);
+    }
+
+    /**
+     * Create a new dictionary. In case directory is not null, the dictionary is stored in a memory-mapped file in
+     * this directory, otherwise it is stored in direct (off-heap) memory.
+     *
+     * @param capacity  expected number of entries
+     * @param directory directory for the memory-mapped file, or null
+     */
+    public NodeDictionary(int capacity, File directory) throws IOException {
+        this.directory = directory;
+
+        int initial = 1024;
+        while(initial < capacity * 2 && initial < MAX_SLOTS) {
+            initial <<= 1;
+        }
+        allocate(initial);
+    }
+
+
+    /**
+     * Compute the hash of a node key. The type allows to distinguish keys of different kinds of nodes (e.g. URIs
+     * and blank nodes) that have the same string representation.
+     */
+    public static long hash(char type, String key) {
+        return hashFunction.newHasher().putChar(type).putUnencodedChars(key).hash().asLong();
+    }
+
+    /**
+     * Look up the value stored for the given hash that is accepted by the matcher.
+     *
+     * @return the value, or -1 in case there is no such value
+     */
+    public int get(long hash, Matcher matcher) {
+        int slot = home(hash);
+        while(table.getInt(slot * SLOT_SIZE + 8) == epoch) {
+            if(table.getLong(slot * SLOT_SIZE) == hash) {
+                int value = table.getInt(slot * SLOT_SIZE + 12);
+                if(matcher.matches(value)) {
+                    return value;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a value for the given hash. Existing values for the same hash are kept, so callers should only add a
+     * value after a lookup failed.
+     *
+     * @throws IllegalStateException in case the dictionary is full
+     */
+    public void put(long hash, int value) throws IOException {
+        if(isFull()) {
+            throw new IllegalStateException("node dictionary is full");
+        }
+        if((size + 1) * 2 > slots) {
+            resize(slots << 1);
+        }
+        insert(table, mask, hash, value);
+        size++;
+    }
+
+    /**
+     * Return true in case no further values can be added to the dictionary.
+     */
+    public boolean isFull() {
+        return size >= MAX_SLOTS / 2;
+    }
+
+    /**
+     * Return the number of entries in the dictionary.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries from the dictionary. The allocated memory is kept for reuse.
+     */
+    public void clear() {
+        epoch++;
+        if(epoch == 0) {
+            // epoch wrapped around, entries of older epochs might become valid again
+            for(int i = 0; i < slots; i++) {
+                table.putInt(i * SLOT_SIZE + 8, 0);
+            }
+            epoch = 1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Release the memory used by the dictionary.
+     */
+    @Override
+    public void close() {
+        release();
+        table = null;
+        size  = 0;
+    }
+
+
+    private int home(long hash) {
+        return (int)(hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void insert(ByteBuffer target, int targetMask, long hash, int value) {
+        int slot = (int)(hash ^ (hash >>> 32)) & targetMask;
+        while(target.getInt(slot * SLOT_SIZE + 8) == epoch) {
+            slot = (slot + 1) & targetMask;
+        }
+        target.putLong(slot * SLOT_SIZE, hash);
+        target.putInt(slot * SLOT_SIZE + 8, epoch);
+        target.putInt(slot * SLOT_SIZE + 12, value);
+    }
+
+    private void allocate(int newSlots) throws IOException {
+        if(directory != null) {
+            tableFile = File.createTempFile("kiwi-dictionary.", ".bin", directory);
+            try (RandomAccessFile file = new RandomAccessFile(tableFile, "rw")) {
+                file.setLength((long) newSlots * SLOT_SIZE);
+                table = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) newSlots * SLOT_SIZE);
+            }
+        } else {
+            table = ByteBuffer.allocateDirect(newSlots * SLOT_SIZE);
+        }
+        slots = newSlots;
+        mask  = newSlots - 1;
+    }
+
+    private void resize(int newSlots) throws IOException {
+        log.debug("resizing node dictionary to {} slots", newSlots);
+
+        ByteBuffer oldTable = table;
+        File oldFile = tableFile;
+        int oldSlots = slots;
+
+        allocate(newSlots);
+        for(int i = 0; i < oldSlots; i++) {
+            if(oldTable.getInt(i * SLOT_SIZE + 8) == epoch) {
+                insert(table, mask, oldTable.getLong(i * SLOT_SIZE), oldTable.getInt(i * SLOT_SIZE + 12));
+            }
+        }
+
+        if(oldFile != null && !oldFile.delete()) {
+            oldFile.deleteOnExit();
+        }
+    }
+
+    private void release() {
+        if(tableFile != null) {
+            if(!tableFile.delete()) {
+                log.debug("could not delete node dictionary file {}, deleting on exit", tableFile);
+                tableFile.deleteOnExit();
+            }
+            tableFile = null;
+        }
+    }
+}
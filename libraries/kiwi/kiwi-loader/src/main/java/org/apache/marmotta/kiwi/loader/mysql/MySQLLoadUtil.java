@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.kiwi.loader.mysql;
 
+import com.mysql.jdbc.Statement;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.marmotta.kiwi.loader.csv.*;
@@ -36,6 +37,8 @@ import org.supercsv.util.CsvContext;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -96,6 +99,53 @@ public class MySQLLoadUtil {
 
 
 
+    /**
+     * Bulk load the given nodes into the nodes table using the MySQL LOAD DATA command.
+     *
+     * @param con   the JDBC connection to use
+     * @param nodes the nodes to load; all nodes need to have an id
+     */
+    public static void loadNodes(Connection con, Iterable<KiWiNode> nodes) throws IOException, SQLException {
+        Statement statement = (Statement) con.createStatement();
+        try {
+            statement.setLocalInfileInputStream(flushNodes(nodes));
+            statement.execute(
+                    "LOAD DATA LOCAL INFILE 'nodes.csv' " +
+                            "INTO TABLE nodes " +
+                            "COLUMNS TERMINATED BY ',' " +
+                            "OPTIONALLY ENCLOSED BY '\"' " +
+                            "ESCAPED BY '\"' " +
+                            "LINES TERMINATED BY '\\r\\n' " +
+                            "(id,ntype,svalue,dvalue,ivalue,tvalue,bvalue,ltype,lang,createdAt)");
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Bulk load the given triples into the triples table using the MySQL LOAD DATA command. Only the ids of the
+     * nodes referenced by the triples are used.
+     *
+     * @param con     the JDBC connection to use
+     * @param triples the triples to load; all triples need to have an id
+     */
+    public static void loadTriples(Connection con, Iterable<KiWiTriple> triples) throws IOException, SQLException {
+        Statement statement = (Statement) con.createStatement();
+        try {
+            statement.setLocalInfileInputStream(flushTriples(triples));
+            statement.execute(
+                    "LOAD DATA LOCAL INFILE 'triples.csv' " +
+                            "INTO TABLE triples " +
+                            "COLUMNS TERMINATED BY ',' " +
+                            "OPTIONALLY ENCLOSED BY '\"' " +
+                            "ESCAPED BY '\"' " +
+                            "LINES TERMINATED BY '\\r\\n' " +
+                            "(id,subject,predicate,object,context,creator,inferred,deleted,createdAt,deletedAt)");
+        } finally {
+            statement.close();
+        }
+    }
+
     public static InputStream flushTriples(Iterable<KiWiTriple> tripleBacklog) throws IOException {
         StringWriter out = new StringWriter();
         CsvListWriter writer = new CsvListWriter(out, CsvPreference.STANDARD_PREFERENCE);
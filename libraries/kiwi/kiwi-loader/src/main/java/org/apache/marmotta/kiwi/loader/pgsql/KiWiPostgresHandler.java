@@ -22,7 +22,6 @@ import org.apache.marmotta.kiwi.loader.generic.KiWiBatchHandler;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.openrdf.rio.RDFHandler;
-import org.postgresql.copy.PGCopyOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,14 +51,10 @@ public class KiWiPostgresHandler extends KiWiBatchHandler implements RDFHandler
     protected void flushBacklogInternal() throws SQLException {
         try {
             // flush out nodes
-            PGCopyOutputStream nodesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(connection.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)");
-            PGCopyUtil.flushNodes(nodeBacklog, nodesOut);
-            nodesOut.close();
+            PGCopyUtil.copyNodes(connection.getJDBCConnection(), nodeBacklog);
 
             // flush out triples
-            PGCopyOutputStream triplesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(connection.getJDBCConnection()), "COPY triples FROM STDIN (FORMAT csv)");
-            PGCopyUtil.flushTriples(tripleBacklog, triplesOut);
-            triplesOut.close();
+            PGCopyUtil.copyTriples(connection.getJDBCConnection(), tripleBacklog);
         } catch (IOException ex) {
             throw new SQLException("error while flushing out data",ex);
         }
@@ -22,6 +22,7 @@ import org.apache.marmotta.kiwi.model.rdf.*;
 import org.joda.time.DateTime;
 import org.openrdf.model.URI;
 import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.supercsv.cellprocessor.Optional;
@@ -113,6 +114,31 @@ public class PGCopyUtil {
 
     }
 
+    /**
+     * Bulk load the given nodes into the nodes table using the PostgreSQL COPY command.
+     *
+     * @param con   the JDBC connection to use (may be wrapped by the connection pool)
+     * @param nodes the nodes to load; all nodes need to have an id
+     */
+    public static void copyNodes(Connection con, Iterable<KiWiNode> nodes) throws IOException, SQLException {
+        PGCopyOutputStream nodesOut = new PGCopyOutputStream(getWrappedConnection(con), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)");
+        flushNodes(nodes, nodesOut);
+        nodesOut.close();
+    }
+
+    /**
+     * Bulk load the given triples into the triples table using the PostgreSQL COPY command. Only the ids of the
+     * nodes referenced by the triples are used.
+     *
+     * @param con     the JDBC connection to use (may be wrapped by the connection pool)
+     * @param triples the triples to load; all triples need to have an id
+     */
+    public static void copyTriples(Connection con, Iterable<KiWiTriple> triples) throws IOException, SQLException {
+        PGCopyOutputStream triplesOut = new PGCopyOutputStream(getWrappedConnection(con), "COPY triples(id,subject,predicate,object,context,creator,inferred,deleted,createdAt,deletedAt) FROM STDIN (FORMAT csv)");
+        flushTriples(triples, triplesOut);
+        triplesOut.close();
+    }
+
     public static void flushTriples(Iterable<KiWiTriple> tripleBacklog, OutputStream out) throws IOException {
         CsvListWriter writer = new CsvListWriter(new OutputStreamWriter(out), CsvPreference.STANDARD_PREFERENCE);
 
@@ -13,7 +13,8 @@
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
 
-CREATE INDEX idx_triples_p ON triples(predicate) WHERE deleted = false;
+CREATE INDEX idx_triples_pos ON triples(predicate,object,subject,context) WHERE deleted = false;
+CREATE INDEX idx_triples_ops ON triples(object,predicate,subject,context) WHERE deleted = false;
 CREATE INDEX idx_triples_spo ON triples(subject,predicate,object) WHERE deleted = false;
 CREATE INDEX idx_triples_cspo ON triples(context,subject,predicate,object) WHERE deleted = false;
 CREATE INDEX idx_node_dcontent ON nodes(dvalue) WHERE dvalue IS NOT NULL;
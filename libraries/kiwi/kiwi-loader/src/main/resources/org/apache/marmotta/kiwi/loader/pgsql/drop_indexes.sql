@@ -13,7 +13,8 @@
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
 
-DROP INDEX IF EXISTS idx_triples_p;
+DROP INDEX IF EXISTS idx_triples_pos;
+DROP INDEX IF EXISTS idx_triples_ops;
 DROP INDEX IF EXISTS idx_triples_spo;
 DROP INDEX IF EXISTS idx_triples_cspo;
 DROP INDEX IF EXISTS idx_node_dcontent;
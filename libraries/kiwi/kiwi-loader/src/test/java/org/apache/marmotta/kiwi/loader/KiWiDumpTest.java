@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader;
+
+import info.aduna.iteration.Iterations;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.loader.dump.KiWiDumpRestorer;
+import org.apache.marmotta.kiwi.loader.dump.KiWiDumpWriter;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.Statement;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.sail.SailException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Test dumping a KiWi store with the KiWiDumpWriter and restoring it into an empty store with the KiWiDumpRestorer.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class KiWiDumpTest {
+
+    private KiWiStore store;
+    private Repository repository;
+
+    private final KiWiConfiguration dbConfig;
+
+    public KiWiDumpTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+    }
+
+
+    @Before
+    public void initDatabase() throws RepositoryException {
+        store = new KiWiStore(dbConfig);
+        store.setDropTablesOnShutdown(true);
+        repository = new SailRepository(store);
+        repository.initialize();
+    }
+
+    @After
+    public void dropDatabase() throws RepositoryException, SQLException, SailException {
+        repository.shutDown();
+    }
+
+
+    @Test
+    public void testDumpRestore() throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            con.add(this.getClass().getResourceAsStream("demo-data.foaf"), "http://localhost/foaf/", RDFFormat.RDFXML);
+            con.setNamespace("foaf", "http://xmlns.com/foaf/0.1/");
+            con.commit();
+        } finally {
+            con.close();
+        }
+
+        Set<Statement> statements = listStatements();
+        Assert.assertFalse(statements.isEmpty());
+
+        // use a small block size so the dump consists of several blocks
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        new KiWiDumpWriter(store, 10).dump(dump);
+
+        // drop the database and restore the dump into a fresh store
+        repository.shutDown();
+        initDatabase();
+
+        new KiWiDumpRestorer(store).restore(new ByteArrayInputStream(dump.toByteArray()));
+
+        Assert.assertEquals(statements, listStatements());
+
+        con = repository.getConnection();
+        try {
+            con.begin();
+            Assert.assertEquals("http://xmlns.com/foaf/0.1/", con.getNamespace("foaf"));
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    private Set<Statement> listStatements() throws RepositoryException {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            Set<Statement> result = new HashSet<>(Iterations.asList(con.getStatements(null, null, null, true)));
+            con.commit();
+            return result;
+        } finally {
+            con.close();
+        }
+    }
+}
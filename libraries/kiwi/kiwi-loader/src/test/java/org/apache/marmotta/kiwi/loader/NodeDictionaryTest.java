@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.marmotta.kiwi.loader.generic.NodeDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test the off-heap node dictionary used by the batch loaders.
+ */
+public class NodeDictionaryTest {
+
+    @Test
+    public void testDirect() throws IOException {
+        NodeDictionary dictionary = new NodeDictionary(16);
+        try {
+            testDictionary(dictionary);
+        } finally {
+            dictionary.close();
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        File directory = Files.createTempDirectory("dictionary").toFile();
+        NodeDictionary dictionary = new NodeDictionary(16, directory);
+        try {
+            testDictionary(dictionary);
+        } finally {
+            dictionary.close();
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Values with the same hash need to be distinguished by the matcher.
+     */
+    @Test
+    public void testCollisions() throws IOException {
+        NodeDictionary dictionary = new NodeDictionary(16);
+        try {
+            for(int i = 0; i < 100; i++) {
+                dictionary.put(42L, i);
+            }
+            for(int i = 0; i < 100; i++) {
+                Assert.assertEquals(i, dictionary.get(42L, new ValueMatcher(i)));
+            }
+            Assert.assertEquals(-1, dictionary.get(42L, new ValueMatcher(100)));
+        } finally {
+            dictionary.close();
+        }
+    }
+
+
+    private void testDictionary(NodeDictionary dictionary) throws IOException {
+        final List<String> keys = new ArrayList<>();
+
+        // insert more keys than the initial capacity to force resizing
+        for(int i = 0; i < 10000; i++) {
+            String key = "http://localhost/resource/" + i;
+            keys.add(key);
+            dictionary.put(NodeDictionary.hash('U', key), i);
+        }
+        Assert.assertEquals(10000, dictionary.size());
+
+        for(int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals(i, dictionary.get(NodeDictionary.hash('U', keys.get(i)), new KeyMatcher(keys, keys.get(i))));
+        }
+
+        // same string, different type
+        Assert.assertEquals(-1, dictionary.get(NodeDictionary.hash('B', keys.get(0)), new KeyMatcher(keys, keys.get(0))));
+        Assert.assertEquals(-1, dictionary.get(NodeDictionary.hash('U', "http://localhost/resource/unknown"), new KeyMatcher(keys, "http://localhost/resource/unknown")));
+
+        dictionary.clear();
+        Assert.assertEquals(0, dictionary.size());
+        for(String key : keys) {
+            Assert.assertEquals(-1, dictionary.get(NodeDictionary.hash('U', key), new KeyMatcher(keys, key)));
+        }
+
+        // reuse after clearing
+        dictionary.put(NodeDictionary.hash('U', keys.get(5)), 5);
+        Assert.assertEquals(5, dictionary.get(NodeDictionary.hash('U', keys.get(5)), new KeyMatcher(keys, keys.get(5))));
+    }
+
+
+    private static class KeyMatcher implements NodeDictionary.Matcher {
+        private final List<String> keys;
+        private final String key;
+
+        private KeyMatcher(List<String> keys, String key) {
+            this.keys = keys;
+            this.key = key;
+        }
+
+        @Override
+        public boolean matches(int value) {
+            return keys.get(value).equals(key);
+        }
+    }
+
+    private static class ValueMatcher implements NodeDictionary.Matcher {
+        private final int expected;
+
+        private ValueMatcher(int expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public boolean matches(int value) {
+            return value == expected;
+        }
+    }
+}
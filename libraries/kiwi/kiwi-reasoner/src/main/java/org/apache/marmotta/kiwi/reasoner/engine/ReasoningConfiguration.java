@@ -39,6 +39,18 @@ public class ReasoningConfiguration {
      */
     private int workers = 4;
 
+    /**
+     * Evaluate the rules matched by a batch of added triples concurrently on a pool of {@link #workers} threads.
+     */
+    private boolean parallel = false;
+
+    /**
+     * Evaluate rule bodies set-at-a-time: the triples added in a transaction are stored in a temporary delta table
+     * and each rule body is joined against it in a single database query per matching pattern, instead of running
+     * one query per matching triple.
+     */
+    private boolean semiNaive = false;
+
     public ReasoningConfiguration() {
     }
 
@@ -58,4 +70,28 @@ public class ReasoningConfiguration {
         this.removeDuplicateJustifications = removeDuplicateJustifications;
     }
 
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isSemiNaive() {
+        return semiNaive;
+    }
+
+    public void setSemiNaive(boolean semiNaive) {
+        this.semiNaive = semiNaive;
+    }
+
 }
@@ -20,6 +20,7 @@ package org.apache.marmotta.kiwi.reasoner.engine;
 import com.google.common.base.Equivalence;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.EmptyIteration;
 import info.aduna.iteration.Iterations;
@@ -28,7 +29,6 @@ import org.apache.marmotta.commons.sesame.model.StatementCommons;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
 import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
-import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
 import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
@@ -52,6 +52,11 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -68,10 +73,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * <p/>
  * The reasoning engine uses its own connection to the database to carry out reasoning tasks.
  * <p/>
- * TODO: we need to clarify conceptually whether it would be correct to run several reasoner threads in parallel.
- * In theory, reasoning here is strictly monotonic so there should not be a problem. In practice, we might miss
- * certain triples because the order of transactions might be messed up. Maybe it makes more sense to parallelize
- * the execution or rules instead.
+ * Transaction data is still consumed by a single reasoner thread, so the order of transactions is preserved. When
+ * parallel reasoning is enabled in the {@link ReasoningConfiguration}, the rules matched by the triples of a
+ * transaction are instead distributed over a pool of worker threads; each worker evaluates its share of the
+ * rules using its own connections and commits the inferred triples and justifications in batches.
  * <p/>
  * User: Sebastian Schaffert (sschaffert@apache.org)
  */
@@ -81,6 +86,12 @@ public class ReasoningEngine implements TransactionListener {
 
     private static final String TASK_GROUP = "Reasoner";
 
+    /**
+     * Maximum number of added triples processed at once in incremental reasoning; larger transactions are streamed
+     * through the rule evaluation in chunks of this size, so they do not need to be kept in memory as a whole.
+     */
+    private static final int WORKLIST_CHUNK_SIZE = 100000;
+
     /**
      * A queue of transaction data objects of committed transactions, will be consumed by the reasoner
      * thread in incremental reasoning.
@@ -128,6 +139,11 @@ public class ReasoningEngine implements TransactionListener {
      */
     private SKWRLReasoner reasonerThread;
 
+    /**
+     * The worker pool for evaluating rules in parallel; null in case parallel reasoning is disabled.
+     */
+    private ExecutorService workers;
+
     protected static Equivalence<Statement> equivalence = StatementCommons.quadrupleEquivalence();
 
     /**
@@ -150,6 +166,10 @@ public class ReasoningEngine implements TransactionListener {
 
         this.reasoningQueue = new LinkedBlockingQueue<>();
         this.reasonerThread = new SKWRLReasoner();
+
+        if(config.isParallel() && config.getWorkers() > 1) {
+            this.workers = Executors.newFixedThreadPool(config.getWorkers(), new ThreadFactoryBuilder().setNameFormat("SKWRL Reasoner Worker %d").setDaemon(true).build());
+        }
     }
 
     public void loadPrograms() {
@@ -259,9 +279,18 @@ public class ReasoningEngine implements TransactionListener {
      */
     @Override
     public void afterCommit(TransactionData data) {
-        if( (data.getAddedTriples().size() > 0 || data.getRemovedTriples().size() > 0) && patternRuleMap.size() > 0) {
+        if( (!data.getAddedTriples().isEmpty() || !data.getRemovedTriples().isEmpty()) && patternRuleMap.size() > 0) {
+
+            // the data is processed asynchronously, so it must not be released by the connection before we are done
+            data.retain();
 
-            reasoningQueue.remove(data);
+            for(Iterator<TransactionData> it = reasoningQueue.iterator(); it.hasNext(); ) {
+                TransactionData queued = it.next();
+                if(queued.equals(data)) {
+                    it.remove();
+                    queued.release();
+                }
+            }
             if (!reasoningQueue.offer(data)) {
                 log.info("waiting for reasoning queue to become available ...");
                 try {
@@ -269,6 +298,7 @@ public class ReasoningEngine implements TransactionListener {
                     log.info("reasoning queue available, added data");
                 } catch (InterruptedException e) {
                     log.error("interrupted while waiting for reasoning queue to become available ...");
+                    data.release();
                 }
             }
 
@@ -341,6 +371,11 @@ public class ReasoningEngine implements TransactionListener {
     private void executeReasoner(TransactionData data) {
         try {
             updateTaskStatus("fetching worklist");
+
+            // evaluate the rules for all added triples; the added triples of large (spilled) transactions are read
+            // in a streaming fashion, so they are processed in chunks of bounded size
+            long start2 = System.currentTimeMillis();
+            long count = 0;
             Set<KiWiTriple> newTriples = StatementCommons.newQuadrupleSet();
             for(Statement stmt : data.getAddedTriples()) {
                 KiWiTriple t = (KiWiTriple)stmt;
@@ -348,19 +383,18 @@ public class ReasoningEngine implements TransactionListener {
                     newTriples.add(t);
                     t.setNewTriple(false);
                 }
+                if(newTriples.size() >= WORKLIST_CHUNK_SIZE) {
+                    count += processWorklist(newTriples);
+                    newTriples = StatementCommons.newQuadrupleSet();
+                }
             }
-
-            //taskManagerService.setTaskSteps(newTriples.size() + data.getRemovedTriples().size());
-            // evaluate the rules for all added triples
-            if(newTriples.size() > 0) {
-                long start2 = System.currentTimeMillis();
-                updateTaskStatus("reasoning over " + newTriples.size() + " new triples");
-                processRules(newTriples);
-                log.debug("REASONER: reasoning for {} new triples took {} ms overall", newTriples.size(), System.currentTimeMillis() - start2);
+            count += processWorklist(newTriples);
+            if(count > 0) {
+                log.debug("REASONER: reasoning for {} new triples took {} ms overall", count, System.currentTimeMillis() - start2);
             }
 
-            if(data.getRemovedTriples().size() > 0) {
-                log.debug("cleaning up justifications and inferences for {} triples",data.getRemovedTriples().size());
+            if(!data.getRemovedTriples().isEmpty()) {
+                log.debug("cleaning up justifications and inferences for removed triples");
                 try {
                     KiWiReasoningConnection connection = persistence.getConnection();
                     try {
@@ -391,7 +425,20 @@ public class ReasoningEngine implements TransactionListener {
             }
         } catch (SQLException | SailException | ReasoningException ex) {
             log.error("REASONER: processing of transaction data with ID {} aborted; reason: {}", data.getTransactionId(), ex.getMessage());
+        } finally {
+            data.release();
+        }
+    }
+
+    /**
+     * Evaluate the rules for a chunk of new triples and return the number of triples processed.
+     */
+    private int processWorklist(Set<KiWiTriple> newTriples) throws SQLException, SailException, ReasoningException {
+        if(newTriples.size() > 0) {
+            updateTaskStatus("reasoning over " + newTriples.size() + " new triples");
+            processRules(newTriples);
         }
+        return newTriples.size();
     }
 
     /**
@@ -447,30 +494,24 @@ public class ReasoningEngine implements TransactionListener {
         try {
             updateTaskStatus("processing rules ...");
 
-            //Set<Callable<Boolean>> tasks = new HashSet<Callable<Boolean>>();
-            for(Program p : programs) {
-                for(final Rule rule : p.getRules()) {
-                    startTask("Rule Processing", TASK_GROUP);
-                    updateTaskStatus("processing rule " + rule.getName() + " ...");
-                    processRule(rule, null, null);
-                    endTask();
-                    // TODO: multithreading is currently not working reliably (some nodes might get inserted twice)
-
-/*
-                    tasks.add(new Callable<Boolean>() {
-                        @Override
-                        public Boolean call() throws Exception {
-                            startTask("Rule Processing", TASK_GROUP);
-                            updateTaskStatus("processing rule " + rule.getName() + " ...");
-                            processRule(rule, null, null);
-                            endTask();
-                            return Boolean.TRUE;
-                        }
-                    });
-*/
+            if(workers != null) {
+                List<List<RuleMatch>> tasks = new ArrayList<>();
+                for(Program p : programs) {
+                    for(Rule rule : p.getRules()) {
+                        tasks.add(Collections.singletonList(new RuleMatch(rule, null, null)));
+                    }
+                }
+                processParallel(tasks, null);
+            } else {
+                for(Program p : programs) {
+                    for(final Rule rule : p.getRules()) {
+                        startTask("Rule Processing", TASK_GROUP);
+                        updateTaskStatus("processing rule " + rule.getName() + " ...");
+                        processRule(rule, null, null);
+                        endTask();
+                    }
                 }
             }
-            //workers.invokeAll(tasks);
         } catch(Exception ex) {
             log.error("error while processing rules", ex);
         }
@@ -486,8 +527,8 @@ public class ReasoningEngine implements TransactionListener {
      *
      * @param removedTriples
      */
-    private void cleanupJustifications(KiWiReasoningConnection connection, TripleTable<Statement> removedTriples) throws SQLException {
-        updateTaskStatus("cleaning up justifications for " + removedTriples.size() + " removed triples");
+    private void cleanupJustifications(KiWiReasoningConnection connection, Collection<Statement> removedTriples) throws SQLException {
+        updateTaskStatus("cleaning up justifications for removed triples");
         for(Statement stmt : removedTriples) {
             KiWiTriple t = (KiWiTriple)stmt;
             connection.deleteJustifications(t);
@@ -536,6 +577,13 @@ public class ReasoningEngine implements TransactionListener {
 
 
     /**
+     * Evaluate all rules having a pattern that matches one of the added triples. Matches are grouped by rule;
+     * in parallel mode, the groups are distributed over the worker pool, otherwise they are evaluated in turn
+     * using a single connection.
+     * <p/>
+     * In semi-naive mode, a rule is only recorded once for each of its patterns matching at least one added
+     * triple; its body is then evaluated for all added triples at once by joining the pattern with the delta
+     * table holding the added triples.
      *
      * @param addedTriples
      */
@@ -543,168 +591,219 @@ public class ReasoningEngine implements TransactionListener {
         updateTaskStatus("processing rules ...");
         // select the rules that have at least one matching pattern; the match method will
         // return a set of variable bindings that we will be used to prepopulate the bindings
+        Map<Rule,List<RuleMatch>> matchesByRule = new LinkedHashMap<>();
         for(final Pattern pattern : patternRuleMap.keySet()) {
             for(KiWiTriple triple : addedTriples) {
                 QueryResult match = matches(pattern,triple);
                 if(match != null) {
                     for(Rule rule : patternRuleMap.get(pattern)) {
                         log.debug("REASONER(rule '{}'): pattern {} matched with triple {}", rule.getName(), pattern.toString(), triple.toString());
-                        processRule(rule, match, pattern);
+
+                        List<RuleMatch> ruleMatches = matchesByRule.get(rule);
+                        if(ruleMatches == null) {
+                            ruleMatches = new ArrayList<>();
+                            matchesByRule.put(rule, ruleMatches);
+                        }
+                        ruleMatches.add(new RuleMatch(rule, pattern, config.isSemiNaive() ? null : match));
+                    }
+
+                    // in semi-naive mode, the pattern will be joined with all added triples anyways
+                    if(config.isSemiNaive()) {
+                        break;
                     }
                 }
             }
         }
+
+        Set<KiWiTriple> delta = config.isSemiNaive() ? addedTriples : null;
+        if(workers != null && matchesByRule.size() > 1) {
+            processParallel(matchesByRule.values(), delta);
+        } else {
+            List<RuleMatch> all = new ArrayList<>();
+            for(List<RuleMatch> ruleMatches : matchesByRule.values()) {
+                all.addAll(ruleMatches);
+            }
+            if(all.size() > 0) {
+                processMatches(all, delta, false);
+            }
+        }
     }
 
     /**
-     * Process the rule given as argument. The set of bindings passed as argument is used as a seed of
-     * bindings and will be further populated by pattern matches. The set of justifications is passed over
-     * from previous calls so that justifications can be persisted in a batch.
+     * Distribute the groups of rule matches passed as argument over the worker pool and wait until all of
+     * them have been processed. A group is never split, so all matches of a rule are evaluated by the same
+     * worker; groups are assigned to the currently least loaded partition, largest groups first.
      *
-     * @param rule
-     * @param match
+     * @param groups
+     * @param delta   the added triples in semi-naive mode, stored in the delta table of each worker; null otherwise
      */
-    private void processRule(Rule rule, QueryResult match, Pattern p) throws SQLException, SailException, ReasoningException {
+    private void processParallel(Collection<List<RuleMatch>> groups, final Collection<KiWiTriple> delta) throws SQLException, SailException, ReasoningException {
+        List<List<RuleMatch>> sorted = new ArrayList<>(groups);
+        Collections.sort(sorted, new Comparator<List<RuleMatch>>() {
+            @Override
+            public int compare(List<RuleMatch> o1, List<RuleMatch> o2) {
+                return Integer.compare(o2.size(), o1.size());
+            }
+        });
 
-        // get the variable bindings for the rule evaluation
-        log.debug("REASONER(rule '{}'): evaluating rule body {} ...", rule.getName() != null ? rule.getName() : rule.getId(), rule);
+        List<List<RuleMatch>> partitions = new ArrayList<>();
+        for(int i = 0; i < Math.min(config.getWorkers(), sorted.size()); i++) {
+            partitions.add(new ArrayList<RuleMatch>());
+        }
+        for(List<RuleMatch> group : sorted) {
+            List<RuleMatch> smallest = partitions.get(0);
+            for(List<RuleMatch> partition : partitions) {
+                if(partition.size() < smallest.size()) {
+                    smallest = partition;
+                }
+            }
+            smallest.addAll(group);
+        }
 
-        // create a collection consisting of the body minus the pattern that already matched
-        Set<Pattern> body = new HashSet<>(rule.getBody());
+        log.debug("REASONER: evaluating {} rules in {} partitions", sorted.size(), partitions.size());
+        updateTaskStatus("processing " + sorted.size() + " rules in " + partitions.size() + " workers ...");
 
-        if(p != null) {
-            body.remove(p);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(final List<RuleMatch> partition : partitions) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    processMatches(partition, delta, true);
+                    return null;
+                }
+            });
         }
 
-        CloseableIteration<QueryResult, SQLException> bodyResult;
+        try {
+            for(Future<Void> result : workers.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ReasoningException("interrupted while waiting for reasoner workers", ex);
+        } catch (ExecutionException ex) {
+            if(ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            } else if(ex.getCause() instanceof SailException) {
+                throw (SailException) ex.getCause();
+            } else if(ex.getCause() instanceof ReasoningException) {
+                throw (ReasoningException) ex.getCause();
+            } else {
+                throw new ReasoningException("error in reasoner worker", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Process the rule given as argument. The set of bindings passed as argument is used as a seed of
+     * bindings and will be further populated by pattern matches.
+     *
+     * @param rule
+     * @param match
+     */
+    private void processRule(Rule rule, QueryResult match, Pattern p) throws SQLException, SailException, ReasoningException {
+        processMatches(Collections.singletonList(new RuleMatch(rule, p, match)), null, false);
+    }
 
+    /**
+     * Process the rule matches given as argument using a single reasoning connection and sail connection. For
+     * each match, the body of the rule minus the matched pattern is evaluated with the match bindings as seed,
+     * and the rule head is added as inferred triple for every result. Inferred triples are committed and their
+     * justifications persisted in batches of {@link ReasoningConfiguration#getBatchSize()}.
+     * <p/>
+     * In case delta is given, the triples are stored in the delta table of the connection, and for each match
+     * the complete rule body is evaluated with the matched pattern restricted to the delta table.
+     * <p/>
+     * The task status is only updated by the thread coordinating the reasoning, so workers evaluating matches in
+     * parallel do not report any status.
+     *
+     * @param ruleMatches
+     * @param delta        the added triples in semi-naive mode, null otherwise
+     * @param worker       true in case the matches are processed by a worker of the parallel reasoner
+     */
+    private void processMatches(List<RuleMatch> ruleMatches, Collection<KiWiTriple> delta, boolean worker) throws SQLException, SailException, ReasoningException {
         KiWiReasoningConnection connection = persistence.getConnection();
         SailConnection     sail = store.getConnection();
         KiWiSailConnection isail = getWrappedConnection(sail);
         try {
-
-            // if there are further patterns, evaluate them; if the matched pattern was the only pattern, then
-            // simply take the match as binding
-            if(body.size() > 0) {
-                bodyResult = connection.query(body,match,null,null,true);
-            } else if(match != null) {
-                bodyResult = new SingletonIteration<>(match);
-            } else {
-                bodyResult = new EmptyIteration<>();
-            }
-
             // construct triples out of the bindings and the rule heads
             long counter = 0;
 
             // initialise a new set of justifications
             Set<Justification> justifications = new HashSet<>();
 
+            if(delta != null) {
+                connection.storeDelta(delta);
+            }
+
             sail.begin();
-            while(bodyResult.hasNext()) {
-                QueryResult row = bodyResult.next();
-                Map<VariableField,KiWiNode> binding = row.getBindings();
-
-                Resource subject = null;
-                URI property = null;
-                Value object;
-
-                if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isVariableField()) {
-                    if(!binding.get(rule.getHead().getSubject()).isUriResource() && !binding.get(rule.getHead().getSubject()).isAnonymousResource()) {
-                        log.info("cannot use value {} as subject, because it is not a resource",binding.get(rule.getHead().getSubject()));
-                        continue;
-                    }
-                    subject = (KiWiResource)binding.get(rule.getHead().getSubject());
-                } else if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isResourceField()) {
-                    subject = ((ResourceField)rule.getHead().getSubject()).getResource();
-                } else
-                    throw new IllegalArgumentException("Subject of rule head may only be a variable or a resource; rule: "+rule);
-
-                if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isVariableField()) {
-                    if(!binding.get(rule.getHead().getProperty()).isUriResource()) {
-                        log.info("cannot use value {} as property, because it is not a URI resource",binding.get(rule.getHead().getProperty()));
-                        continue;
-                    }
-                    property = (KiWiUriResource)binding.get(rule.getHead().getProperty());
-                } else if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isResourceField()) {
-                    property = (KiWiUriResource)((ResourceField)rule.getHead().getProperty()).getResource();
-                } else
-                    throw new IllegalArgumentException("Property of rule head may only be a variable or a resource; rule: "+rule);
-
-                if(rule.getHead().getObject() != null && rule.getHead().getObject().isVariableField()) {
-                    object = binding.get(rule.getHead().getObject());
-                } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isResourceField()) {
-                    object = ((ResourceField)rule.getHead().getObject()).getResource();
-                } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isLiteralField()) {
-                    object = ((LiteralField)rule.getHead().getObject()).getLiteral();
-                } else
-                    throw new IllegalArgumentException("Object of rule head may only be a variable, a literal, or a resource; rule: "+rule);
-
-
-                KiWiTriple triple = isail.addInferredStatement(subject, property, object);
-
-                Justification justification = new Justification();
-                justification.setTriple(triple);
-                justification.getSupportingRules().add(rule);
-                justification.getSupportingTriples().addAll(row.getJustifications());
-                justifications.add(justification);
-
-                // when the batch size is reached, commit the transaction, save the justifications, and start a new
-                // transaction and new justification set
-                if(++counter % config.getBatchSize() == 0) {
-                    persistenceLock.lock();
+            for(RuleMatch ruleMatch : ruleMatches) {
+                Rule rule = ruleMatch.rule;
 
-                    try {
+                // get the variable bindings for the rule evaluation
+                log.debug("REASONER(rule '{}'): evaluating rule body {} ...", rule.getName() != null ? rule.getName() : rule.getId(), rule);
 
-                        sail.commit();
+                // create a collection consisting of the body minus the pattern that already matched
+                Set<Pattern> body = new HashSet<>(rule.getBody());
 
-                        log.debug("adding {} justifications",justifications.size());
+                CloseableIteration<QueryResult, SQLException> bodyResult;
+                if(delta != null && ruleMatch.pattern != null) {
+                    // semi-naive evaluation: evaluate the complete body, restricting the matched pattern to the delta
+                    bodyResult = connection.query(body,ruleMatch.pattern,null,null,true);
+                } else {
+                    if(ruleMatch.pattern != null) {
+                        body.remove(ruleMatch.pattern);
+                    }
+
+                    // if there are further patterns, evaluate them; if the matched pattern was the only pattern, then
+                    // simply take the match as binding
+                    if(body.size() > 0) {
+                        bodyResult = connection.query(body,ruleMatch.match,null,null,true);
+                    } else if(ruleMatch.match != null) {
+                        bodyResult = new SingletonIteration<>(ruleMatch.match);
+                    } else {
+                        bodyResult = new EmptyIteration<>();
+                    }
+                }
 
-                        updateTaskStatus("storing justifications ...");
-                        Set<Justification> baseJustifications = getBaseJustifications(connection,justifications);
+                try {
+                    while(bodyResult.hasNext()) {
+                        QueryResult row = bodyResult.next();
 
-                        if(config.isRemoveDuplicateJustifications()) {
-                            removeDuplicateJustifications(connection,baseJustifications);
+                        KiWiTriple triple = addHead(isail, rule, row.getBindings());
+                        if(triple == null) {
+                            continue;
                         }
 
-                        log.debug("{} justifications added after resolving inferred triples", baseJustifications.size());
-
-                        // persist the justifications that have been created in the rule processing
-                        if(baseJustifications.size() > 0) {
-                            connection.storeJustifications(baseJustifications);
+                        Justification justification = new Justification();
+                        justification.setTriple(triple);
+                        justification.getSupportingRules().add(rule);
+                        justification.getSupportingTriples().addAll(row.getJustifications());
+                        justifications.add(justification);
+
+                        // when the batch size is reached, commit the transaction, save the justifications, and start a new
+                        // transaction and new justification set
+                        if(++counter % config.getBatchSize() == 0) {
+                            if(!worker) {
+                                updateTaskStatus("storing justifications ...");
+                            }
+                            storeJustifications(connection, sail, justifications, true);
+                            justifications.clear();
                         }
-                        connection.commit();
-                        sail.begin();
-                    } finally {
-                        persistenceLock.unlock();
                     }
-                    justifications.clear();
+                } finally {
+                    Iterations.closeCloseable(bodyResult);
                 }
             }
 
-            persistenceLock.lock();
-            try {
-                sail.commit();
+            if(delta != null) {
+                connection.clearDelta();
+            }
 
-                log.debug("adding {} justifications",justifications.size());
+            if(!worker) {
                 updateTaskStatus("storing justifications ...");
-                Set<Justification> baseJustifications = getBaseJustifications(connection,justifications);
-
-                if(config.isRemoveDuplicateJustifications()) {
-                    removeDuplicateJustifications(connection,baseJustifications);
-                }
-
-                // persist the justifications that have been created in the rule processing
-                if(baseJustifications.size() > 0) {
-                    connection.storeJustifications(baseJustifications);
-                }
-
-                log.debug("{} justifications added after resolving inferred triples", baseJustifications.size());
-
-                Iterations.closeCloseable(bodyResult);
-                connection.commit();
-            } finally {
-                persistenceLock.unlock();
             }
+            storeJustifications(connection, sail, justifications, false);
         } catch(SailException | SQLException | ReasoningException ex) {
             log.error("REASONING ERROR: could not process rule, database state will be inconsistent! Message: {}",ex.getMessage());
             log.debug("Exception details:",ex);
@@ -719,6 +818,84 @@ public class ReasoningEngine implements TransactionListener {
 
     }
 
+    /**
+     * Add the head of the rule passed as argument as inferred triple, using the variable bindings of a body
+     * result. Returns null in case the bindings cannot be used to construct a valid triple.
+     */
+    private KiWiTriple addHead(KiWiSailConnection isail, Rule rule, Map<VariableField,KiWiNode> binding) throws SailException {
+        Resource subject = null;
+        URI property = null;
+        Value object;
+
+        if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isVariableField()) {
+            if(!binding.get(rule.getHead().getSubject()).isUriResource() && !binding.get(rule.getHead().getSubject()).isAnonymousResource()) {
+                log.info("cannot use value {} as subject, because it is not a resource",binding.get(rule.getHead().getSubject()));
+                return null;
+            }
+            subject = (KiWiResource)binding.get(rule.getHead().getSubject());
+        } else if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isResourceField()) {
+            subject = ((ResourceField)rule.getHead().getSubject()).getResource();
+        } else
+            throw new IllegalArgumentException("Subject of rule head may only be a variable or a resource; rule: "+rule);
+
+        if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isVariableField()) {
+            if(!binding.get(rule.getHead().getProperty()).isUriResource()) {
+                log.info("cannot use value {} as property, because it is not a URI resource",binding.get(rule.getHead().getProperty()));
+                return null;
+            }
+            property = (KiWiUriResource)binding.get(rule.getHead().getProperty());
+        } else if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isResourceField()) {
+            property = (KiWiUriResource)((ResourceField)rule.getHead().getProperty()).getResource();
+        } else
+            throw new IllegalArgumentException("Property of rule head may only be a variable or a resource; rule: "+rule);
+
+        if(rule.getHead().getObject() != null && rule.getHead().getObject().isVariableField()) {
+            object = binding.get(rule.getHead().getObject());
+        } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isResourceField()) {
+            object = ((ResourceField)rule.getHead().getObject()).getResource();
+        } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isLiteralField()) {
+            object = ((LiteralField)rule.getHead().getObject()).getLiteral();
+        } else
+            throw new IllegalArgumentException("Object of rule head may only be a variable, a literal, or a resource; rule: "+rule);
+
+        return isail.addInferredStatement(subject, property, object);
+    }
+
+    /**
+     * Commit the inferred triples added to the sail connection and persist the justifications collected for
+     * them. Runs under the persistence lock, so the justifications of inferred triples are always stored
+     * before another worker resolves them as supporting triples. If restart is true, a new sail transaction
+     * is started afterwards.
+     */
+    private void storeJustifications(KiWiReasoningConnection connection, SailConnection sail, Set<Justification> justifications, boolean restart) throws SQLException, SailException, ReasoningException {
+        persistenceLock.lock();
+        try {
+            sail.commit();
+
+            log.debug("adding {} justifications",justifications.size());
+            Set<Justification> baseJustifications = getBaseJustifications(connection,justifications);
+
+            if(config.isRemoveDuplicateJustifications()) {
+                removeDuplicateJustifications(connection,baseJustifications);
+            }
+
+            // persist the justifications that have been created in the rule processing
+            if(baseJustifications.size() > 0) {
+                connection.storeJustifications(baseJustifications);
+            }
+
+            log.debug("{} justifications added after resolving inferred triples", baseJustifications.size());
+
+            connection.commit();
+
+            if(restart) {
+                sail.begin();
+            }
+        } finally {
+            persistenceLock.unlock();
+        }
+    }
+
     /**
      * Return the justifications for the triple passed as argument.
      * @param t
@@ -898,7 +1075,11 @@ public class ReasoningEngine implements TransactionListener {
         if(force) {
             log.warn("forced shutdown of reasoning service initiated, state will be inconsistent ...");
 
-            reasoningQueue.clear();
+            List<TransactionData> pending = new ArrayList<>();
+            reasoningQueue.drainTo(pending);
+            for(TransactionData data : pending) {
+                data.release();
+            }
             reasonerThread.shutdown(true);
 
             for(int i = 0; i<5 && isRunning(); i++) {
@@ -926,6 +1107,14 @@ public class ReasoningEngine implements TransactionListener {
             reasonerThread.shutdown(false);
         }
 
+        if(workers != null) {
+            if(force) {
+                workers.shutdownNow();
+            } else {
+                workers.shutdown();
+            }
+        }
+
         isshutdown = true;
     }
 
@@ -946,6 +1135,21 @@ public class ReasoningEngine implements TransactionListener {
         throw new SailException("no underlying KiWiSailConnection found for connection");
     }
 
+    /**
+     * A match of one of the patterns in the body of a rule, used as seed when evaluating the rest of the body.
+     */
+    private static class RuleMatch {
+        private final Rule rule;
+        private final Pattern pattern;
+        private final QueryResult match;
+
+        private RuleMatch(Rule rule, Pattern pattern, QueryResult match) {
+            this.rule = rule;
+            this.pattern = pattern;
+            this.match = match;
+        }
+    }
+
     private static int indexerCounter = 0;
 
     private class SKWRLReasoner extends Thread {
@@ -892,6 +892,75 @@ public class KiWiReasoningConnection extends KiWiConnection {
 
 
 
+    /**
+     * Store the triples passed as argument in the delta table of this connection, replacing its previous
+     * content. The delta table is a temporary table that only exists for the underlying database connection and
+     * holds the triples added since the last reasoning iteration; it is used by
+     * {@link #query(java.util.Collection, org.apache.marmotta.kiwi.reasoner.model.program.Pattern, java.util.Set, java.util.List, boolean)}
+     * to evaluate rule bodies for all new triples at once (semi-naive evaluation).
+     *
+     * @param triples the triples added in this reasoning iteration; all triples must be persistent
+     * @throws SQLException
+     */
+    public void storeDelta(Iterable<KiWiTriple> triples) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement createDelta = getPreparedStatement("delta.create");
+        synchronized (createDelta) {
+            createDelta.execute();
+        }
+
+        clearDelta();
+
+        PreparedStatement insertDelta = getPreparedStatement("delta.insert");
+        synchronized (insertDelta) {
+            insertDelta.clearBatch();
+            for(KiWiTriple triple : triples) {
+                if(triple.getId() < 0) {
+                    log.error("triple is not persistent, cannot add it to the delta table (triple={})",triple);
+                } else {
+                    insertDelta.setLong(1, triple.getId());
+                    insertDelta.addBatch();
+                }
+            }
+            insertDelta.executeBatch();
+        }
+    }
+
+    /**
+     * Remove all triples from the delta table of this connection. The delta table must have been created
+     * before by {@link #storeDelta(Iterable)}.
+     *
+     * @throws SQLException
+     */
+    public void clearDelta() throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement clearDelta = getPreparedStatement("delta.clear");
+        synchronized (clearDelta) {
+            clearDelta.executeUpdate();
+        }
+    }
+
+    /**
+     * Evaluate a query on the triple store, restricting the triples matched by the pattern deltaPattern to the
+     * triples contained in the delta table (see {@link #storeDelta(Iterable)}). This allows evaluating the body of a
+     * rule for all triples of a reasoning iteration matching one of its patterns in a single database query,
+     * instead of issuing a query for every matching triple.
+     *
+     * @param patterns       the set of patterns to query; patterns are considered to be connected by AND
+     * @param deltaPattern   one of the patterns; it will only be matched against triples in the delta table
+     * @param filters        a set of filters to apply to the result before returning the bindings
+     * @param orderBy        list of variables by whose bindings the result rows should be ordered
+     * @return a list of bindings matching the query patterns and filters
+     */
+    public CloseableIteration<QueryResult, SQLException> query(final Collection<Pattern> patterns, Pattern deltaPattern, Set<Filter> filters, List<VariableField> orderBy, final boolean justifications) throws SQLException {
+        if(!patterns.contains(deltaPattern)) {
+            throw new IllegalArgumentException("delta pattern is not contained in the query patterns");
+        }
+        return query(patterns, null, deltaPattern, filters, orderBy, justifications);
+    }
+
     /**
      * Evaluate a query on the triple store. The query parameters passed to the method call are
      * translated into database queries in HQL and directly evaluated by a single database
@@ -915,6 +984,10 @@ public class KiWiReasoningConnection extends KiWiConnection {
      *         variables and offset and limited by the parameters given
      */
     public CloseableIteration<QueryResult, SQLException> query(final Collection<Pattern> patterns, final QueryResult initialBindings, Set<Filter> filters, List<VariableField> orderBy, final boolean justifications) throws SQLException {
+        return query(patterns, initialBindings, null, filters, orderBy, justifications);
+    }
+
+    private CloseableIteration<QueryResult, SQLException> query(final Collection<Pattern> patterns, final QueryResult initialBindings, Pattern deltaPattern, Set<Filter> filters, List<VariableField> orderBy, final boolean justifications) throws SQLException {
         requireJDBCConnection();
 
         if(filters != null) {
@@ -1030,6 +1103,9 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 fromClause.append(",\n ");
             }
         }
+        if(deltaPattern != null) {
+            fromClause.append(",\n reasoner_delta D");
+        }
 
 
         // build the where clause as follows:
@@ -1100,6 +1176,11 @@ public class KiWiReasoningConnection extends KiWiConnection {
             whereConditions.add(pName+".deleted = false");
         }
 
+        // 5. restrict the delta pattern to the triples contained in the delta table
+        if(deltaPattern != null) {
+            whereConditions.add("D.triple_id = " + patternNames.get(deltaPattern) + ".id");
+        }
+
         // construct the where clause
         StringBuilder whereClause = new StringBuilder();
         for(Iterator<String> it = whereConditions.iterator(); it.hasNext(); ) {
@@ -23,8 +23,10 @@ import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.Iterations;
 
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
 import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
@@ -231,6 +233,28 @@ public class ReasoningEngineTest {
      */
     @Test
     public void testIncrementalReasoningConjunction() throws Exception {
+        runIncrementalReasoningConjunction();
+    }
+
+    /**
+     * Test incremental reasoning for rule1 with semi-naive evaluation enabled. The added triples are stored in the
+     * delta table and the rule body is evaluated in a single database query, so the outcome needs to be the same as
+     * when evaluating the rule body for each matching triple.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIncrementalReasoningConjunctionSemiNaive() throws Exception {
+        engine.shutdown(true);
+
+        ReasoningConfiguration rconfig = new ReasoningConfiguration();
+        rconfig.setSemiNaive(true);
+        engine = new ReasoningEngine(rpersistence,tsail,rconfig);
+
+        runIncrementalReasoningConjunction();
+    }
+
+    private void runIncrementalReasoningConjunction() throws Exception {
         RepositoryConnection con = repository.getConnection();
         KiWiReasoningConnection rcon = rpersistence.getConnection();
         try {
@@ -355,6 +379,103 @@ public class ReasoningEngineTest {
      */
     @Test
     public void testFullReasoning() throws Exception {
+        runFullReasoning();
+    }
+
+    /**
+     * Test running a full reasoning with parallel rule evaluation enabled. The rules of the program are distributed
+     * over the worker pool, so the outcome needs to be the same as for the sequential full reasoning.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFullReasoningParallel() throws Exception {
+        engine.shutdown(true);
+
+        ReasoningConfiguration rconfig = new ReasoningConfiguration();
+        rconfig.setParallel(true);
+        rconfig.setWorkers(2);
+        engine = new ReasoningEngine(rpersistence,tsail,rconfig);
+
+        runFullReasoning();
+    }
+
+    /**
+     * Test incremental reasoning with parallel rule evaluation enabled. The added triples match both rules of the
+     * program, so the rules are evaluated by different workers; each inferred triple and its justification must
+     * only be stored once.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIncrementalReasoningParallel() throws Exception {
+        engine.shutdown(true);
+
+        ReasoningConfiguration rconfig = new ReasoningConfiguration();
+        rconfig.setParallel(true);
+        rconfig.setWorkers(2);
+        engine = new ReasoningEngine(rpersistence,tsail,rconfig);
+
+        RepositoryConnection con = repository.getConnection();
+        KiWiReasoningConnection rcon = rpersistence.getConnection();
+        try {
+            con.begin();
+
+            Resource a   = con.getValueFactory().createURI(NS+"a");
+            Resource b   = con.getValueFactory().createURI(NS+"b");
+            Resource c   = con.getValueFactory().createURI(NS+"c");
+            Resource d   = con.getValueFactory().createURI(NS+"d");
+            URI      t   = con.getValueFactory().createURI(NS+"transitive");
+            URI      s   = con.getValueFactory().createURI(NS+"symmetric");
+
+            con.add(a,t,b);
+            con.add(b,t,c);
+            con.add(c,t,d);
+            con.add(a,s,b);
+            con.add(c,s,d);
+            con.commit();
+
+            // load the statements from the connection so we can add them to the reasoner
+            List<Statement> statements = Iterations.asList(con.getStatements(null,null,null, false));
+            Assert.assertEquals(5,statements.size());
+
+            TransactionData data = new TransactionData();
+            data.getAddedTriples().addAll(statements);
+            engine.afterCommit(data);
+
+            // wait for reasoning to complete
+            while(engine.isRunning()) {
+                log.debug("sleeping for 100ms to let engine finish processing ... ");
+                Thread.sleep(100);
+            }
+            con.begin();
+
+            Assert.assertTrue("expected inferred triple not found", con.hasStatement(a,t,c,true));
+            Assert.assertTrue("expected inferred triple not found", con.hasStatement(b,t,d,true));
+            Assert.assertTrue("expected inferred triple not found", con.hasStatement(b,s,a,true));
+            Assert.assertTrue("expected inferred triple not found", con.hasStatement(d,s,c,true));
+
+            // every inferred triple is stored once and has exactly one justification
+            List<Statement> inferred = Iterations.asList(con.getStatements(null,null,null,true, con.getValueFactory().createURI(store.getInferredContext())));
+            Assert.assertEquals("number of inferred triples differs from expected result", 4, inferred.size());
+
+            Set<String> keys = new HashSet<>();
+            for(Statement stmt : inferred) {
+                Assert.assertTrue("inferred triple stored twice: " + stmt, keys.add(stmt.getSubject().stringValue() + " " + stmt.getPredicate().stringValue() + " " + stmt.getObject().stringValue()));
+
+                List<Justification> justifications = Iterations.asList(rcon.listJustificationsForTriple((KiWiTriple) stmt));
+                Assert.assertEquals("number of justifications for triple " + stmt + " differs from expected result", 1, justifications.size());
+            }
+
+            con.commit();
+            rcon.commit();
+        } finally {
+            con.close();
+            rcon.close();
+        }
+    }
+
+    private void runFullReasoning() throws Exception {
         RepositoryConnection con = repository.getConnection();
         KiWiReasoningConnection rcon = rpersistence.getConnection();
         try {
@@ -44,10 +44,12 @@ import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 import org.junit.runner.RunWith;
 import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
 import org.openrdf.repository.sail.SailRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -228,6 +230,62 @@ public class PatternQueryTest {
 
     }
 
+    /**
+     * Test a conjunction of two patterns where one of the patterns is restricted to the triples in the delta table
+     */
+    @Test
+    public void testDeltaPattern() throws Exception {
+        ValueFactory v = repository.getValueFactory();
+        URI predicate1 = v.createURI(PREDICATE1);
+
+        VariableField x =  new VariableField("X");
+        VariableField y =  new VariableField("Y");
+        VariableField z =  new VariableField("Z");
+
+        Pattern p1 = new Pattern(x, new ResourceField(predicate1), y);
+        Pattern p2 = new Pattern(y, new ResourceField(predicate1), z);
+
+        // the delta only contains the triple (S2 P1 O2)
+        List<KiWiTriple> delta = new ArrayList<>();
+        RepositoryConnection con = repository.getConnection();
+        try {
+            RepositoryResult<Statement> triples = con.getStatements(v.createURI(SUBJECT2), predicate1, v.createURI(OBJECT2), false);
+            while(triples.hasNext()) {
+                delta.add((KiWiTriple) triples.next());
+            }
+            triples.close();
+            con.commit();
+        } finally {
+            con.close();
+        }
+        Assert.assertEquals(1, delta.size());
+
+        KiWiReasoningConnection connection = rpersistence.getConnection();
+        try {
+            connection.storeDelta(delta);
+
+            // (S2 P1 O2) as first pattern does not have a continuation
+            List<QueryResult> results1 = asList(connection.query(ImmutableSet.of(p1,p2), p1, null, null, true));
+            Assert.assertEquals(0, results1.size());
+
+            // (S2 P1 O2) as second pattern joins with (S1 P1 S2)
+            List<QueryResult> results2 = asList(connection.query(ImmutableSet.of(p1,p2), p2, null, null, true));
+            Assert.assertEquals(1, results2.size());
+            Assert.assertEquals(2, results2.get(0).getJustifications().size());
+
+            Assert.assertEquals(SUBJECT1, results2.get(0).getBindings().get(x).stringValue());
+            Assert.assertEquals(SUBJECT2, results2.get(0).getBindings().get(y).stringValue());
+            Assert.assertEquals(OBJECT2, results2.get(0).getBindings().get(z).stringValue());
+
+            // after clearing the delta, the delta pattern does not match anything
+            connection.clearDelta();
+            Assert.assertEquals(0, asList(connection.query(ImmutableSet.of(p1,p2), p2, null, null, true)).size());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
 
 
     /**
@@ -57,6 +57,7 @@ import org.openrdf.model.Value;
 import org.openrdf.model.vocabulary.SESAME;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.ArbitraryLengthPath;
 import org.openrdf.query.algebra.Avg;
 import org.openrdf.query.algebra.BNodeGenerator;
 import org.openrdf.query.algebra.Compare;
@@ -178,6 +179,21 @@ public class SQLBuilder {
     // a prefix for naming table aliases (needed in case this is a subquery)
     private String prefix;
 
+    /**
+     * In case a parameterized query is built, maps the names of variables that have a value to the index of the
+     * parameter slot holding the value; the builder then writes parameter markers instead of node IDs for these
+     * variables. Null in case the node IDs are written into the query string.
+     *
+     * @see SQLQueryShape
+     */
+    private Map<String,Integer> parameterSlots;
+
+    /**
+     * The SQL table reference used for the triples table in all patterns of the query, e.g. a derived table holding
+     * the triples of a historic snapshot. Null in case the triples table itself is used.
+     */
+    private String triplesTable;
+
     /**
      * Create a new SQLBuilder for the given query, initial bindings, dataset, and
      * @param query
@@ -198,6 +214,27 @@ public class SQLBuilder {
         this(query,bindings, dataset, converter, dialect, "", projectedVars, new HashMap<String, SQLVariable>());
     }
 
+    /**
+     * Create a new SQLBuilder for a parameterized query. Variables with a value that are listed in the parameter
+     * slots are represented by parameter markers in the constructed query string, which can then be turned into an
+     * SQLTemplate and reused for all queries of the same shape.
+     *
+     * @see SQLQueryShape
+     * @see SQLTemplate
+     */
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, Map<String,Integer> parameterSlots) throws UnsatisfiableQueryException {
+        this(query,bindings, dataset, converter, dialect, "", projectedVars, new HashMap<String, SQLVariable>(), parameterSlots, null);
+    }
+
+    /**
+     * Create a new SQLBuilder for a query over a restricted set of triples. The triples table reference is used in
+     * place of the triples table for all patterns, including the patterns of subqueries; it needs to provide the
+     * columns id, subject, predicate, object, context, inferred and deleted.
+     */
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, String triplesTable) throws UnsatisfiableQueryException {
+        this(query,bindings, dataset, converter, dialect, "", projectedVars, new HashMap<String, SQLVariable>(), null, triplesTable);
+    }
+
     /**
      * Create a new SQLBuilder for the given query, initial bindings, dataset, and
      * @param query
@@ -205,6 +242,17 @@ public class SQLBuilder {
      * @param dataset
      */
     public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables) throws UnsatisfiableQueryException {
+        this(query, bindings, dataset, converter, dialect, prefix, projectedVars, variables, null, null);
+    }
+
+    /**
+     * Create a new SQLBuilder for a subquery, using the given triples table reference (see {@link #getTriplesTable()}).
+     */
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables, String triplesTable) throws UnsatisfiableQueryException {
+        this(query, bindings, dataset, converter, dialect, prefix, projectedVars, variables, null, triplesTable);
+    }
+
+    private SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables, Map<String,Integer> parameterSlots, String triplesTable) throws UnsatisfiableQueryException {
         this.query = query;
         this.bindings = bindings;
         this.dataset = dataset;
@@ -213,6 +261,8 @@ public class SQLBuilder {
         this.projectedVars = projectedVars;
         this.prefix = prefix;
         this.variables = variables;
+        this.parameterSlots = parameterSlots;
+        this.triplesTable = triplesTable;
 
         prepareBuilder();
     }
@@ -241,12 +291,19 @@ public class SQLBuilder {
         return projectedVars;
     }
 
+    /**
+     * Return the SQL table reference used for the triples table in the patterns of this query.
+     */
+    public String getTriplesTable() {
+        return triplesTable != null ? triplesTable : "triples";
+    }
+
     private void prepareBuilder()  throws UnsatisfiableQueryException {
-        Preconditions.checkArgument(query instanceof Projection || query instanceof Union || query instanceof Extension || query instanceof Order || query instanceof Group || query instanceof LeftJoin ||query instanceof Join || query instanceof Filter || query instanceof StatementPattern || query instanceof Distinct || query instanceof Slice || query instanceof Reduced);
+        Preconditions.checkArgument(query instanceof Projection || query instanceof Union || query instanceof ArbitraryLengthPath || query instanceof Extension || query instanceof Order || query instanceof Group || query instanceof LeftJoin ||query instanceof Join || query instanceof Filter || query instanceof StatementPattern || query instanceof Distinct || query instanceof Slice || query instanceof Reduced);
 
 
         // collect all patterns in a list, using depth-first search over the join
-        PatternCollector pc = new PatternCollector(query, bindings, dataset, converter, dialect, projectedVars, prefix);
+        PatternCollector pc = new PatternCollector(query, bindings, dataset, converter, dialect, projectedVars, prefix, getTriplesTable());
 
         fragments = pc.parts;
 
@@ -283,7 +340,12 @@ public class SQLBuilder {
                         sv.setProjectionType(ValueType.NODE);
                     }
 
-                    sv.addExpression(""+ converter.convert(v.getValue()).getId());
+                    if(isParameter(v.getName())) {
+                        // the expression is also projected, so the database needs to know the parameter type
+                        sv.addExpression(dialect.getCastBigint(SQLTemplate.marker(parameterSlots.get(v.getName()))));
+                    } else {
+                        sv.addExpression(""+ converter.convert(v.getValue()).getId());
+                    }
 
                     addVariable(sv);
                 }
@@ -572,6 +634,11 @@ public class SQLBuilder {
                     // in this way we can avoid setting too many query parameters
                     long nodeId = -1;
                     if (fields[i] != null && fields[i].hasValue()) {
+                        if(isParameter(fields[i].getName())) {
+                            p.addCondition(pName + "." + positions[i] + " = " + SQLTemplate.marker(parameterSlots.get(fields[i].getName())));
+                            continue;
+                        }
+
                         Value v = converter.convert(fields[i].getValue());
                         nodeId = ((KiWiNode) v).getId();
 
@@ -592,14 +659,23 @@ public class SQLBuilder {
                 String varName = p.getName();
 
                 if (p.getVariableContexts() != null) {
+                    Var contextVar = p.getSparqlPattern().getContextVar();
+
                     // the string we are building
                     StringBuilder cCond = new StringBuilder();
                     cCond.append("(");
                     for (Iterator<Resource> it = p.getVariableContexts().iterator(); it.hasNext(); ) {
-                        Value v = converter.convert(it.next());
-                        long nodeId = ((KiWiNode) v).getId();
+                        Resource context = it.next();
+
+                        cCond.append(varName).append(".context = ");
+                        if(contextVar != null && contextVar.hasValue() && contextVar.getValue().equals(context) && isParameter(contextVar.getName())) {
+                            cCond.append(SQLTemplate.marker(parameterSlots.get(contextVar.getName())));
+                        } else {
+                            Value v = converter.convert(context);
+                            long nodeId = ((KiWiNode) v).getId();
 
-                        cCond.append(varName).append(".context = ").append(nodeId);
+                            cCond.append(nodeId);
+                        }
 
                         if (it.hasNext()) {
                             cCond.append(" OR ");
@@ -746,8 +822,12 @@ public class SQLBuilder {
                 if(sv != null && sv.hasExpressions()) {
                     List<String> vNames = sv.getExpressions();
                     String vName = vNames.get(0);
-                    Value binding = converter.convert(bindings.getValue(v));
-                    whereConditions.add(vName+" = "+((KiWiNode)binding).getId());
+                    if(isParameter(v)) {
+                        whereConditions.add(vName+" = "+SQLTemplate.marker(parameterSlots.get(v)));
+                    } else {
+                        Value binding = converter.convert(bindings.getValue(v));
+                        whereConditions.add(vName+" = "+((KiWiNode)binding).getId());
+                    }
                 }
             }
         }
@@ -1016,6 +1096,13 @@ public class SQLBuilder {
         return queryString;
     }
 
+    /**
+     * Return true if the value of the variable with the given name is passed as query parameter.
+     */
+    private boolean isParameter(String varName) {
+        return parameterSlots != null && parameterSlots.containsKey(varName);
+    }
+
     /**
      * Return true if a variable is a Sesame constant.
      * @param v
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder;
+
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.ArbitraryLengthPath;
+import org.openrdf.query.algebra.Exists;
+import org.openrdf.query.algebra.Projection;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Union;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The normalized shape of a query part that is evaluated natively. All variables that have a value (constants in
+ * statement patterns and variables bound by initial bindings) are abstracted into numbered parameter slots, so that
+ * queries only differing in these values have the same shape key and can share the same SQL translation.
+ * <p/>
+ * Queries containing subqueries (UNION, EXISTS, nested SELECT, property paths) are not cacheable, because their translation is
+ * built by separate builders that write node IDs directly into the query string. The same holds for patterns with
+ * a constant context in case a dataset is given, since the builder checks the context against the dataset.
+ */
+public class SQLQueryShape {
+
+    private boolean cacheable = true;
+
+    private String key;
+
+    /**
+     * Variable name -> slot index
+     */
+    private Map<String,Integer> slots = new HashMap<>();
+
+    /**
+     * Slot index -> value
+     */
+    private List<Value> values = new ArrayList<>();
+
+
+    public SQLQueryShape(TupleExpr query, BindingSet bindings, Dataset dataset, Set<String> projectedVars) {
+        // work on a copy, the variables are renamed and their values removed
+        TupleExpr shape = query.clone();
+        shape.visit(new ShapeVisitor(dataset != null));
+
+        StringBuilder key = new StringBuilder(shape.toString());
+
+        key.append("\nbindings:");
+        if(bindings != null) {
+            for(String name : new TreeSet<>(bindings.getBindingNames())) {
+                Value value = bindings.getValue(name);
+                if(value != null) {
+                    key.append(" ").append(name).append("#").append(addSlot(name, value));
+                }
+            }
+        }
+
+        key.append("\ndataset: ").append(dataset);
+        key.append("\nprojected: ").append(new TreeSet<>(projectedVars));
+
+        this.key = key.toString();
+    }
+
+    /**
+     * Return false in case the query contains constructs that prevent reusing its translation.
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * The shape key of the query; queries with the same key are translated into the same SQL query string.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * A map from the names of the variables having a value to the index of the parameter slot holding the value.
+     */
+    public Map<String, Integer> getSlots() {
+        return Collections.unmodifiableMap(slots);
+    }
+
+    /**
+     * The values of the parameter slots, in slot order.
+     */
+    public List<Value> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    private int addSlot(String name, Value value) {
+        Integer slot = slots.get(name);
+        if(slot == null) {
+            slot = values.size();
+            slots.put(name, slot);
+            values.add(value);
+        } else if(!values.get(slot).equals(value)) {
+            // the same name is bound to different values, e.g. an initial binding overriding a pattern value
+            cacheable = false;
+        }
+        return slot;
+    }
+
+
+    private class ShapeVisitor extends QueryModelVisitorBase<RuntimeException> {
+
+        private boolean hasDataset;
+
+        private ShapeVisitor(boolean hasDataset) {
+            this.hasDataset = hasDataset;
+        }
+
+        @Override
+        public void meet(Var node) throws RuntimeException {
+            if(node.hasValue()) {
+                int slot = addSlot(node.getName(), node.getValue());
+
+                // constant names are derived from the value, so they must not be part of the key
+                if(isConst(node)) {
+                    node.setName("_const_" + slot);
+                } else {
+                    node.setName(node.getName() + "#" + slot);
+                }
+                node.setValue(null);
+            }
+        }
+
+        @Override
+        public void meet(StatementPattern node) throws RuntimeException {
+            if(hasDataset && node.getContextVar() != null && node.getContextVar().hasValue()) {
+                cacheable = false;
+            }
+            super.meet(node);
+        }
+
+        @Override
+        public void meet(Union node) throws RuntimeException {
+            cacheable = false;
+        }
+
+        @Override
+        public void meet(Projection node) throws RuntimeException {
+            cacheable = false;
+        }
+
+        @Override
+        public void meet(Exists node) throws RuntimeException {
+            cacheable = false;
+        }
+
+        @Override
+        public void meet(ArbitraryLengthPath node) throws RuntimeException {
+            cacheable = false;
+        }
+    }
+
+    /**
+     * Return true if a variable is a Sesame constant.
+     */
+    private static boolean isConst(Var v) {
+        return v.getName().startsWith("-const") || v.getName().startsWith("_const");
+    }
+}
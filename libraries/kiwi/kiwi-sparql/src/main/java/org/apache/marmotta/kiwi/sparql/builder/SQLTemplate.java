@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder;
+
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A translated SQL query whose constant node IDs are JDBC parameters. A template is created once for a query shape
+ * and then reused for all queries of the same shape by binding the node IDs of the parameter slots. Since the query
+ * string stays the same, the database (or the JDBC driver) can also reuse its prepared query plan.
+ *
+ * @see SQLQueryShape
+ */
+public class SQLTemplate {
+
+    // the random part avoids clashes with string constants contained in the query
+    private static final String MARKER_PREFIX = "{?" + UUID.randomUUID().toString() + ":";
+
+    private static final Pattern MARKER = Pattern.compile(Pattern.quote(MARKER_PREFIX) + "(\\d+)\\}");
+
+    private String queryString;
+
+    /**
+     * For each JDBC parameter (in order of occurrence) the index of the parameter slot providing its value
+     */
+    private int[] parameters;
+
+    private Collection<SQLVariable> variables;
+
+    private Set<String> projectedVars;
+
+
+    private SQLTemplate(String queryString, int[] parameters, Collection<SQLVariable> variables, Set<String> projectedVars) {
+        this.queryString   = queryString;
+        this.parameters    = parameters;
+        this.variables     = variables;
+        this.projectedVars = projectedVars;
+    }
+
+    /**
+     * Build the query of the given (parameterized) builder and create a template from it.
+     */
+    public static SQLTemplate create(SQLBuilder builder) {
+        StringBuilder query = builder.build();
+
+        List<Integer> parameters = new ArrayList<>();
+        StringBuffer queryString = new StringBuffer(query.length());
+
+        Matcher m = MARKER.matcher(query);
+        while (m.find()) {
+            parameters.add(Integer.parseInt(m.group(1)));
+            m.appendReplacement(queryString, "?");
+        }
+        m.appendTail(queryString);
+
+        int[] slots = new int[parameters.size()];
+        for(int i=0; i<slots.length; i++) {
+            slots[i] = parameters.get(i);
+        }
+
+        return new SQLTemplate(queryString.toString(), slots,
+                Collections.unmodifiableCollection(new ArrayList<>(builder.getVariables().values())),
+                Collections.unmodifiableSet(new HashSet<>(builder.getProjectedVars())));
+    }
+
+    /**
+     * The marker representing the given parameter slot in query strings constructed by a builder.
+     */
+    static String marker(int slot) {
+        return MARKER_PREFIX + slot + "}";
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * The variables of the translated query, needed for constructing binding sets from the result rows.
+     */
+    public Collection<SQLVariable> getVariables() {
+        return variables;
+    }
+
+    public Set<String> getProjectedVars() {
+        return projectedVars;
+    }
+
+    /**
+     * Set the parameters of a statement prepared from the query string of this template.
+     *
+     * @param statement the prepared statement
+     * @param nodeIds   node IDs of the parameter slots, in slot order
+     */
+    public void bindParameters(PreparedStatement statement, long[] nodeIds) throws SQLException {
+        for(int i=0; i<parameters.length; i++) {
+            statement.setLong(i+1, nodeIds[parameters[i]]);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A bounded cache of SQL translations, keyed by the shape of the translated query part. The cache is shared by all
+ * connections of a SPARQL sail; repeated queries only differing in their constants skip the translation and only
+ * bind new node IDs.
+ *
+ * @see SQLQueryShape
+ */
+public class SQLTranslationCache {
+
+    private Cache<String,SQLTemplate> templates;
+
+    /**
+     * Create a new translation cache holding at most the given number of translations.
+     */
+    public SQLTranslationCache(int maxSize) {
+        this.templates = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Return the translation for the given query shape, or null in case it has not been translated yet.
+     */
+    public SQLTemplate get(SQLQueryShape shape) {
+        return templates.getIfPresent(shape.getKey());
+    }
+
+    public void put(SQLQueryShape shape, SQLTemplate template) {
+        templates.put(shape.getKey(), template);
+    }
+
+    public long size() {
+        return templates.size();
+    }
+
+    public void clear() {
+        templates.invalidateAll();
+    }
+}
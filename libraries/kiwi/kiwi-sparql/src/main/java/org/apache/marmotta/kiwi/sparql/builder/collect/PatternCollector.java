@@ -21,6 +21,7 @@ import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLFragment;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLPattern;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLPath;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLSubQuery;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLUnion;
 import org.openrdf.query.BindingSet;
@@ -48,14 +49,20 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
     private KiWiDialect dialect;
     private Set<String> projectedVars;
     private String prefix;
+    private String triplesTable;
 
     public PatternCollector(TupleExpr expr, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, String prefix) {
+        this(expr, bindings, dataset, converter, dialect, projectedVars, prefix, "triples");
+    }
+
+    public PatternCollector(TupleExpr expr, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, String prefix, String triplesTable) {
         this.bindings = bindings;
         this.dataset = dataset;
         this.converter = converter;
         this.dialect = dialect;
         this.projectedVars = projectedVars;
         this.prefix  = prefix;
+        this.triplesTable = triplesTable;
 
         parts.push(new SQLFragment());
         expr.visit(this);
@@ -63,7 +70,7 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
 
     @Override
     public void meet(StatementPattern node) throws RuntimeException {
-        parts.getLast().getPatterns().add(new SQLPattern(prefix + "P" + (++counter), node));
+        parts.getLast().getPatterns().add(new SQLPattern(prefix + "P" + (++counter), node, triplesTable));
 
         super.meet(node);
     }
@@ -94,7 +101,7 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
     public void meet(Union node) throws RuntimeException {
         // unions are treated as subqueries, don't continue collection, but add the Union to the last part
 
-        final SQLUnion union = new SQLUnion(prefix + "U" + (++counter), node, bindings, dataset, converter, dialect);
+        final SQLUnion union = new SQLUnion(prefix + "U" + (++counter), node, bindings, dataset, converter, dialect, triplesTable);
         parts.getLast().getSubqueries().add(union);
     }
 
@@ -103,7 +110,14 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
         // subqueries are represented with a projection inside a JOIN; we don't continue collection
 
         parts.getLast().getSubqueries().add(new SQLSubQuery(prefix + "S" + (++counter),
-                                            node, bindings, dataset, converter, dialect, projectedVars));
+                                            node, bindings, dataset, converter, dialect, projectedVars, triplesTable));
+    }
+
+    @Override
+    public void meet(ArbitraryLengthPath node) throws RuntimeException {
+        // property paths are computed by a recursive subquery; the path expression is not collected as pattern
+
+        parts.getLast().getSubqueries().add(new SQLPath(prefix + "A" + (++counter), node, bindings, dataset, converter, dialect, triplesTable));
     }
 
     @Override
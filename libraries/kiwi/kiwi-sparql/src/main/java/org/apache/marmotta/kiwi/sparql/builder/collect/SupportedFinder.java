@@ -18,6 +18,7 @@
 package org.apache.marmotta.kiwi.sparql.builder.collect;
 
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLPath;
 import org.apache.marmotta.kiwi.sparql.function.NativeFunctionRegistry;
 import org.openrdf.query.algebra.*;
 import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
@@ -52,7 +53,10 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
 
     @Override
     public void meet(ArbitraryLengthPath node) throws RuntimeException {
-        supported = false;
+        // simple property paths are translated into recursive queries in case the database supports them
+        if(!SQLPath.isSupported(node, dialect)) {
+            supported = false;
+        }
     }
 
     @Override
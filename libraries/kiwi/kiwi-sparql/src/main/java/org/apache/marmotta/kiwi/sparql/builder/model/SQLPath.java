@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder.model;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.SESAME;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.ArbitraryLengthPath;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents a SPARQL property path of arbitrary length (e.g. rdfs:subClassOf* or ^skos:broader+) in SQL. The
+ * transitive closure of the path is computed by the database using a recursive common table expression. The
+ * recursive part is combined with UNION (not UNION ALL), so each pair of start and end node is produced only once;
+ * this also makes the recursion terminate on cyclic graphs.
+ * <p/>
+ * In case the start node of the path is bound, the recursion starts from this node and follows the path forward;
+ * otherwise, if the end node is bound, it starts from the end node and follows the path backwards. Only if both ends
+ * are unbound, the closure of the whole property is computed.
+ * <p/>
+ * Currently, only paths over a single property (optionally inverse) are supported, see isSupported().
+ *
+ * @author Sebastian Schaffert (sschaffert@apache.org)
+ */
+public class SQLPath extends SQLAbstractSubquery {
+
+    private static final String START = "V1";
+    private static final String END   = "V2";
+
+    private Set<SQLVariable> variables = new HashSet<>();
+
+    private Var startVar, endVar;
+
+    /**
+     * Triple columns representing the start and end node of a single step of the path
+     */
+    private String stepFrom, stepTo;
+
+    private long predicate;
+
+    private long startNode = -1, endNode = -1;
+
+    private boolean zeroLength;
+
+    /**
+     * Condition on the triples table restricting the contexts considered by the path, or null
+     */
+    private String contextCondition;
+
+    /**
+     * SQL table reference for the triples table
+     */
+    private String triplesTable;
+
+
+    public SQLPath(String alias, ArbitraryLengthPath path, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect) throws UnsatisfiableQueryException {
+        this(alias, path, bindings, dataset, converter, dialect, "triples");
+    }
+
+    public SQLPath(String alias, ArbitraryLengthPath path, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String triplesTable) throws UnsatisfiableQueryException {
+        super(alias);
+
+        this.triplesTable = triplesTable;
+
+        StatementPattern step = (StatementPattern) path.getPathExpression();
+
+        startVar   = path.getSubjectVar();
+        endVar     = path.getObjectVar();
+        zeroLength = path.getMinLength() == 0;
+
+        if(step.getSubjectVar().getName().equals(startVar.getName())) {
+            stepFrom = "subject";
+            stepTo   = "object";
+        } else {
+            stepFrom = "object";
+            stepTo   = "subject";
+        }
+
+        predicate = getNodeId(step.getPredicateVar().getValue(), converter);
+        if(predicate < 0 && !zeroLength) {
+            throw new UnsatisfiableQueryException("path property does not exist in database");
+        }
+
+        Value start = getValue(startVar, bindings);
+        if(start != null) {
+            startNode = getNodeId(start, converter);
+            if(startNode < 0) {
+                throw new UnsatisfiableQueryException("path start node does not exist in database");
+            }
+        } else {
+            SQLVariable sv = new SQLVariable(START, startVar.getName());
+            sv.setProjectionType(ValueType.NODE);
+            variables.add(sv);
+        }
+
+        Value end = getValue(endVar, bindings);
+        if(end != null) {
+            endNode = getNodeId(end, converter);
+            if(endNode < 0) {
+                throw new UnsatisfiableQueryException("path end node does not exist in database");
+            }
+        } else if(start != null || !endVar.getName().equals(startVar.getName())) {
+            SQLVariable sv = new SQLVariable(END, endVar.getName());
+            sv.setProjectionType(ValueType.NODE);
+            variables.add(sv);
+        }
+
+        contextCondition = buildContextCondition(path, dataset, converter);
+    }
+
+    /**
+     * Return true in case the given path can be translated into SQL for the given dialect. This is the case for paths
+     * over a single constant property in forward or inverse direction with a length of 0 or 1 to unbounded, evaluated
+     * in the default graph or in a constant named graph.
+     */
+    public static boolean isSupported(ArbitraryLengthPath path, KiWiDialect dialect) {
+        if(!dialect.isRecursiveQuerySupported() || path.getMinLength() > 1) {
+            return false;
+        }
+        if(path.getContextVar() != null && !path.getContextVar().hasValue()) {
+            return false;
+        }
+
+        TupleExpr expr = path.getPathExpression();
+        if(!(expr instanceof StatementPattern)) {
+            return false;
+        }
+
+        StatementPattern step = (StatementPattern) expr;
+        if(!step.getPredicateVar().hasValue() || !(step.getPredicateVar().getValue() instanceof URI)) {
+            return false;
+        }
+
+        String start = path.getSubjectVar().getName(), end = path.getObjectVar().getName();
+        String subject = step.getSubjectVar().getName(), object = step.getObjectVar().getName();
+
+        return (subject.equals(start) && object.equals(end)) || (subject.equals(end) && object.equals(start));
+    }
+
+    /**
+     * Return the SQL variables used by the subquery; we need this to do proper mapping in the parent query.
+     *
+     * @return
+     */
+    @Override
+    public Set<SQLVariable> getQueryVariables() {
+        return variables;
+    }
+
+    /**
+     * Build the query fragment that can be used in the FROM clause of a SQL query for representing this SPARQL construct.
+     * The fragment will be joined appropriately by the enclosing construct using CROSS JOIN, LEFT JOIN or normal JOIN.
+     *
+     * @return
+     */
+    @Override
+    public String buildFromClause() {
+        String closure = alias + "_closure";
+
+        // follow the path backwards in case only the end node is known
+        boolean backwards = startNode < 0 && endNode >= 0;
+
+        StringBuilder fromClause = new StringBuilder();
+        fromClause
+                .append("(WITH RECURSIVE ").append(closure).append("(start_id, end_id) AS (\n")
+                .append("    SELECT t.").append(stepFrom).append(", t.").append(stepTo)
+                .append(" FROM ").append(triplesTable).append(" t WHERE ").append(buildStepCondition("t"));
+        if(backwards) {
+            fromClause.append(" AND t.").append(stepTo).append(" = ").append(endNode);
+        } else if(startNode >= 0) {
+            fromClause.append(" AND t.").append(stepFrom).append(" = ").append(startNode);
+        }
+        fromClause.append("\n  UNION\n");
+        if(backwards) {
+            fromClause
+                    .append("    SELECT t.").append(stepFrom).append(", c.end_id FROM ").append(closure)
+                    .append(" c JOIN ").append(triplesTable).append(" t ON t.").append(stepTo).append(" = c.start_id");
+        } else {
+            fromClause
+                    .append("    SELECT c.start_id, t.").append(stepTo).append(" FROM ").append(closure)
+                    .append(" c JOIN ").append(triplesTable).append(" t ON t.").append(stepFrom).append(" = c.end_id");
+        }
+        fromClause.append(" WHERE ").append(buildStepCondition("t")).append("\n )\n");
+
+        fromClause.append(" SELECT ").append(buildProjection("start_id", "end_id"))
+                .append(" FROM ").append(closure);
+
+        List<String> conditions = new ArrayList<>();
+        if(endNode >= 0 && !backwards) {
+            conditions.add("end_id = " + endNode);
+        }
+        if(startNode < 0 && endNode < 0 && startVar.getName().equals(endVar.getName())) {
+            conditions.add("start_id = end_id");
+        }
+        for(int i = 0; i < conditions.size(); i++) {
+            fromClause.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+
+        // the zero length path connects each node with itself
+        if(zeroLength && (startNode < 0 || endNode < 0 || startNode == endNode)) {
+            fromClause.append("\n UNION\n ");
+            if(startNode >= 0 || endNode >= 0) {
+                long node = startNode >= 0 ? startNode : endNode;
+                fromClause.append("SELECT ").append(buildProjection("" + node, "" + node));
+            } else {
+                String contexts = contextCondition != null ? " AND " + contextCondition : "";
+                fromClause
+                        .append("SELECT ").append(buildProjection("subject", "subject"))
+                        .append(" FROM ").append(triplesTable).append(" t WHERE deleted = false").append(contexts)
+                        .append("\n UNION\n SELECT ").append(buildProjection("object", "object"))
+                        .append(" FROM ").append(triplesTable).append(" t WHERE deleted = false").append(contexts);
+            }
+        }
+
+        fromClause.append(") AS ").append(alias);
+
+        for(VariableMapping var : getJoinFields()) {
+            fromClause.append(" LEFT JOIN nodes AS ");  // outer join because binding might be NULL
+            fromClause.append(alias).append("_").append(var.getParentName());
+
+            fromClause
+                    .append(" ON ").append(alias).append(".").append(var.getSubqueryName())
+                    .append(" = ").append(alias).append("_").append(var.getParentName()).append(".id ");
+        }
+
+        return fromClause.toString();
+    }
+
+    /**
+     * Conditions for a single step of the path on the triple table with the given alias.
+     */
+    private String buildStepCondition(String table) {
+        StringBuilder condition = new StringBuilder();
+        condition.append(table).append(".deleted = false AND ").append(table).append(".predicate = ").append(predicate);
+        if(contextCondition != null) {
+            condition.append(" AND ").append(table).append(".").append(contextCondition);
+        }
+        return condition.toString();
+    }
+
+    /**
+     * Build the SELECT part for the given start and end expressions; there is always at least one column, because
+     * some databases do not accept empty selections.
+     */
+    private String buildProjection(String start, String end) {
+        List<String> projections = new ArrayList<>();
+        for(SQLVariable v : variables) {
+            projections.add((START.equals(v.getName()) ? start : end) + " AS " + v.getName());
+        }
+        if(projections.isEmpty()) {
+            projections.add(start + " AS " + START);
+        }
+
+        StringBuilder result = new StringBuilder();
+        for(String p : projections) {
+            if(result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(p);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Build the condition restricting the contexts of the path triples, following the same rules as for statement
+     * patterns (MARMOTTA-340); the condition refers to the "context" column without table alias.
+     */
+    private static String buildContextCondition(ArbitraryLengthPath path, Dataset dataset, ValueConverter converter) throws UnsatisfiableQueryException {
+        Value contextValue = path.getContextVar() != null ? path.getContextVar().getValue() : null;
+
+        Set<URI> graphs = null;
+        if (dataset != null) {
+            if (path.getScope() == StatementPattern.Scope.DEFAULT_CONTEXTS) {
+                graphs = dataset.getDefaultGraphs();
+                if(graphs.isEmpty() && !dataset.getNamedGraphs().isEmpty()) {
+                    throw new UnsatisfiableQueryException("dataset does not contain any default graphs");
+                }
+            } else {
+                graphs = dataset.getNamedGraphs();
+                if(graphs.isEmpty() && !dataset.getDefaultGraphs().isEmpty()) {
+                    throw new UnsatisfiableQueryException("dataset does not contain any named graphs");
+                }
+            }
+        }
+
+        if(contextValue != null) {
+            if(graphs != null && !graphs.isEmpty() && !graphs.contains(contextValue)) {
+                throw new UnsatisfiableQueryException("dataset does not contain path context '" + contextValue.stringValue() + "'");
+            }
+            return "context = " + getNodeId(contextValue, converter);
+        } else if(graphs != null && !graphs.isEmpty()) {
+            StringBuilder condition = new StringBuilder("context IN (");
+            boolean first = true;
+            for(URI graph : graphs) {
+                if(!SESAME.NIL.equals(graph)) {
+                    if(!first) {
+                        condition.append(", ");
+                    }
+                    condition.append(getNodeId(graph, converter));
+                    first = false;
+                }
+            }
+            return first ? null : condition.append(")").toString();
+        } else {
+            return null;
+        }
+    }
+
+    private static Value getValue(Var var, BindingSet bindings) {
+        if(var.hasValue()) {
+            return var.getValue();
+        } else if(bindings != null) {
+            return bindings.getValue(var.getName());
+        } else {
+            return null;
+        }
+    }
+
+    private static long getNodeId(Value value, ValueConverter converter) {
+        KiWiNode node = converter.convert(value);
+        return node != null ? node.getId() : -1;
+    }
+}
@@ -83,9 +83,19 @@ public class SQLPattern extends SQLClause {
      */
     private List<Resource> variableContexts;
 
+    /**
+     * SQL table reference for the triples table, aliased with the pattern name in the FROM part
+     */
+    private String triplesTable;
+
     public SQLPattern(String name, StatementPattern sparqlPattern) {
+        this(name, sparqlPattern, "triples");
+    }
+
+    public SQLPattern(String name, StatementPattern sparqlPattern, String triplesTable) {
         super();
         this.name = name;
+        this.triplesTable = triplesTable;
         this.conditions.add(name + ".deleted = false");
         this.sparqlPattern = sparqlPattern;
 
@@ -155,7 +165,7 @@ public class SQLPattern extends SQLClause {
         StringBuilder fromClause = new StringBuilder();
 
 
-        fromClause.append("triples ").append(name);
+        fromClause.append(triplesTable).append(" ").append(name);
 
 
         for(Map.Entry<TripleColumns,String> colEntry : joinFields.entrySet()) {
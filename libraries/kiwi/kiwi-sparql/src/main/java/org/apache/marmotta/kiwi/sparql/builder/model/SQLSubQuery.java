@@ -42,6 +42,10 @@ public class SQLSubQuery extends SQLAbstractSubquery {
     private Set<SQLVariable> variables = new HashSet<>();
 
     public SQLSubQuery(String alias, Projection query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> parentProjectedVars) throws UnsatisfiableQueryException {
+        this(alias, query, bindings, dataset, converter, dialect, parentProjectedVars, null);
+    }
+
+    public SQLSubQuery(String alias, Projection query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> parentProjectedVars, String triplesTable) throws UnsatisfiableQueryException {
         super(alias);
 
         Set<String> projectedVars = new HashSet<>(parentProjectedVars);
@@ -53,7 +57,7 @@ public class SQLSubQuery extends SQLAbstractSubquery {
 
 
         // we build a full subquery for each of the UNION's arguments
-        builder = new SQLBuilder(query.getArg(), bindings, dataset, converter, dialect, projectedVars);
+        builder = new SQLBuilder(query.getArg(), bindings, dataset, converter, dialect, projectedVars, triplesTable);
 
         for(SQLVariable svl : builder.getVariables().values()) {
             if(projectedVars.contains(svl.getSparqlName())) {
@@ -53,14 +53,18 @@ public class SQLUnion extends SQLAbstractSubquery {
     private Set<SQLVariable> variables = new HashSet<>();
 
     public SQLUnion(String alias, Union query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect) throws UnsatisfiableQueryException {
+        this(alias, query, bindings, dataset, converter, dialect, null);
+    }
+
+    public SQLUnion(String alias, Union query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String triplesTable) throws UnsatisfiableQueryException {
         super(alias);
 
         Set<String> leftProjected = getProjectedVariables(query.getLeftArg());
         Set<String> rightProjected = getProjectedVariables(query.getRightArg());
 
         // we build a full subquery for each of the UNION's arguments
-        left  = new SQLBuilder(query.getLeftArg(), bindings, dataset, converter, dialect, leftProjected);
-        right = new SQLBuilder(query.getRightArg(), bindings, dataset, converter, dialect, rightProjected);
+        left  = new SQLBuilder(query.getLeftArg(), bindings, dataset, converter, dialect, leftProjected, triplesTable);
+        right = new SQLBuilder(query.getRightArg(), bindings, dataset, converter, dialect, rightProjected, triplesTable);
 
         // next we make sure that both subqueries share the same SQL variables so the SQL UNION succeeds by
         // adding NULL aliases for all variables present in one but not the other
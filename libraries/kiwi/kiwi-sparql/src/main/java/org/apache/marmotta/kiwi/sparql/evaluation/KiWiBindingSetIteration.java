@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.evaluation;
+
+import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.commons.vocabulary.XSD;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.MapBindingSet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * An iteration over the result of a natively evaluated SPARQL query that materializes the result rows in windows:
+ * the raw column values of a window of rows are read first, then all nodes referenced by these rows (including the
+ * datatypes of computed literals) are resolved with a single batch lookup, and only then the binding sets are
+ * created. This avoids one node lookup per result row when the node cache is cold.
+ * <p/>
+ * The result set and its statement are closed when the iteration is exhausted or closed.
+ */
+public class KiWiBindingSetIteration implements CloseableIteration<BindingSet, SQLException> {
+
+    private final ResultSet result;
+
+    private final KiWiConnection connection;
+
+    private final BindingSet bindings;
+
+    private final int windowSize;
+
+    private final SQLVariable[] vars;
+
+    // true for variables that need to be returned in the binding sets
+    private final boolean[] projected;
+
+    private List<BindingSet> window = Collections.emptyList();
+
+    private int position = 0;
+
+    private boolean exhausted = false;
+
+    private boolean closed = false;
+
+
+    /**
+     * Create a new iteration over the given query result.
+     *
+     * @param result     the result of the SQL query created by the builder
+     * @param builder    the SQL builder used for creating the query
+     * @param bindings   bindings to add to every result row (may be null)
+     * @param connection the connection used for resolving nodes
+     * @param windowSize the number of rows whose nodes are resolved together
+     */
+    public KiWiBindingSetIteration(ResultSet result, SQLBuilder builder, BindingSet bindings, KiWiConnection connection, int windowSize) {
+        this(result, builder.getVariables().values(), builder.getProjectedVars(), bindings, connection, windowSize);
+    }
+
+    /**
+     * Create a new iteration over the result of a query created from a cached translation.
+     *
+     * @param result        the result of the SQL query
+     * @param variables     the variables of the translated query
+     * @param projectedVars the names of the projected SPARQL variables
+     * @param bindings      bindings to add to every result row (may be null)
+     * @param connection    the connection used for resolving nodes
+     * @param windowSize    the number of rows whose nodes are resolved together
+     */
+    public KiWiBindingSetIteration(ResultSet result, Collection<SQLVariable> variables, Set<String> projectedVars, BindingSet bindings, KiWiConnection connection, int windowSize) {
+        this.result     = result;
+        this.connection = connection;
+        this.bindings   = bindings;
+        this.windowSize = Math.max(1, windowSize);
+
+        this.vars      = variables.toArray(new SQLVariable[variables.size()]);
+        this.projected = new boolean[vars.length];
+        for (int i = 0; i < vars.length; i++) {
+            projected[i] = vars[i].getProjectionType() != ValueType.NONE && (projectedVars.isEmpty() || projectedVars.contains(vars[i].getSparqlName()));
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws SQLException {
+        if(position < window.size()) {
+            return true;
+        }
+        if(exhausted || closed) {
+            return false;
+        }
+        fetchWindow();
+        return position < window.size();
+    }
+
+    @Override
+    public BindingSet next() throws SQLException {
+        if(!hasNext()) {
+            throw new NoSuchElementException("no more results");
+        }
+        return window.get(position++);
+    }
+
+    @Override
+    public void remove() throws SQLException {
+        throw new UnsupportedOperationException("removing result rows not supported");
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if(!closed) {
+            closed = true;
+            try {
+                result.close();
+            } finally {
+                result.getStatement().close();
+            }
+        }
+    }
+
+    /**
+     * Read the next window of rows, resolve all nodes they reference in one batch and create the binding sets.
+     */
+    private void fetchWindow() throws SQLException {
+        List<Row> rows = new ArrayList<>(Math.min(windowSize, 1024));
+        Set<Long> nodeIds = new HashSet<>();
+
+        while (rows.size() < windowSize && result.next()) {
+            Row row = readRow();
+            for (int i = 0; i < vars.length; i++) {
+                if(row.nodeIds[i] > 0) {
+                    nodeIds.add(row.nodeIds[i]);
+                }
+                if(row.typeIds[i] > 0) {
+                    nodeIds.add(row.typeIds[i]);
+                }
+            }
+            rows.add(row);
+        }
+
+        if(rows.size() < windowSize) {
+            exhausted = true;
+            close();
+        }
+
+        Map<Long,KiWiNode> nodes = nodeIds.isEmpty() ? Collections.<Long,KiWiNode>emptyMap() : connection.loadNodeMap(nodeIds);
+
+        window = new ArrayList<>(rows.size());
+        position = 0;
+        for (Row row : rows) {
+            window.add(createBindingSet(row, nodes));
+        }
+    }
+
+    /**
+     * Copy the values needed for creating the binding set from the current row of the result set.
+     */
+    private Row readRow() throws SQLException {
+        Row row = new Row(vars.length);
+
+        for (int i = 0; i < vars.length; i++) {
+            if(!projected[i]) {
+                continue;
+            }
+
+            String name = vars[i].getName();
+            switch (vars[i].getProjectionType()) {
+                case NODE:
+                    row.nodeIds[i] = result.getLong(name);
+                    break;
+                case URI:
+                case BNODE:
+                    row.values[i] = result.getString(name);
+                    break;
+                case INT:
+                    if (result.getObject(name) != null) {
+                        row.values[i] = Integer.toString(result.getInt(name));
+                        row.typeIds[i] = getTypeId(name);
+                    }
+                    break;
+                case DOUBLE:
+                    if (result.getObject(name) != null) {
+                        row.values[i] = Double.toString(result.getDouble(name));
+                        row.typeIds[i] = getTypeId(name);
+                    }
+                    break;
+                case DECIMAL:
+                    if (result.getObject(name) != null) {
+                        row.values[i] = result.getBigDecimal(name).toString();
+                        row.typeIds[i] = getTypeId(name);
+                    }
+                    break;
+                case BOOL:
+                    if (result.getObject(name) != null) {
+                        row.values[i] = Boolean.toString(result.getBoolean(name)).toLowerCase();
+                    }
+                    break;
+                case STRING:
+                default:
+                    row.values[i] = result.getString(name);
+                    if (row.values[i] != null) {
+                        // retrieve optional type and language information, because string functions
+                        // need to preserve this in certain cases, even when constructing new literals
+                        try {
+                            row.langs[i] = result.getString(name + "_LANG");
+                        } catch (SQLException ex) {
+                        }
+                        row.typeIds[i] = getTypeId(name);
+                    }
+                    break;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Return the id of the datatype of a computed literal, or 0 in case the query does not provide it.
+     */
+    private long getTypeId(String name) {
+        try {
+            return result.getLong(name + "_TYPE");
+        } catch (SQLException ex) {
+            return 0;
+        }
+    }
+
+    private BindingSet createBindingSet(Row row, Map<Long,KiWiNode> nodes) {
+        MapBindingSet resultRow = new MapBindingSet();
+
+        for (int i = 0; i < vars.length; i++) {
+            String name = vars[i].getSparqlName();
+
+            if (row.nodeIds[i] > 0) {
+                // resolved node
+                KiWiNode node = nodes.get(row.nodeIds[i]);
+                if(node != null) {
+                    resultRow.addBinding(name, node);
+                }
+            } else if (row.values[i] != null) {
+                // literal value
+                String svalue = row.values[i];
+                switch (vars[i].getProjectionType()) {
+                    case URI:
+                        try {
+                            resultRow.addBinding(name, new URIImpl(svalue));
+                        } catch (IllegalArgumentException ex) {
+                        } // illegal URI unbound
+                        break;
+                    case BNODE:
+                        resultRow.addBinding(name, new BNodeImpl(svalue));
+                        break;
+                    case INT:
+                        resultRow.addBinding(name, new LiteralImpl(svalue, getType(nodes, row.typeIds[i], XSD.Integer)));
+                        break;
+                    case DOUBLE:
+                        resultRow.addBinding(name, new LiteralImpl(svalue, getType(nodes, row.typeIds[i], XSD.Double)));
+                        break;
+                    case DECIMAL:
+                        resultRow.addBinding(name, new LiteralImpl(svalue, getType(nodes, row.typeIds[i], XSD.Decimal)));
+                        break;
+                    case BOOL:
+                        resultRow.addBinding(name, new LiteralImpl(svalue, XSD.Boolean));
+                        break;
+                    case STRING:
+                    default:
+                        Value value = createStringLiteral(svalue, row.langs[i], getType(nodes, row.typeIds[i], null));
+                        if (value != null) {
+                            resultRow.addBinding(name, value);
+                        }
+                        break;
+                }
+            }
+        }
+
+        if (bindings != null) {
+            for (Binding binding : bindings) {
+                resultRow.addBinding(binding);
+            }
+        }
+        return resultRow;
+    }
+
+    private static Value createStringLiteral(String svalue, String lang, URI type) {
+        if (lang != null) {
+            if (svalue.length() > 0) {
+                return new LiteralImpl(svalue, lang);
+            } else {
+                // string functions that return empty literal should yield no type or language
+                return new LiteralImpl("");
+            }
+        } else if (type != null) {
+            if (type.stringValue().equals(XSD.String.stringValue())) {
+                // string functions on other datatypes than string should yield no binding
+                if (svalue.length() > 0) {
+                    return new LiteralImpl(svalue, type);
+                } else {
+                    // string functions that return empty literal should yield no type or language
+                    return new LiteralImpl("");
+                }
+            }
+            return null;
+        } else {
+            return new LiteralImpl(svalue);
+        }
+    }
+
+    private static URI getType(Map<Long,KiWiNode> nodes, long typeId, URI defaultType) {
+        if (typeId > 0) {
+            KiWiNode type = nodes.get(typeId);
+            if (type instanceof URI) {
+                return (URI) type;
+            }
+        }
+        return defaultType;
+    }
+
+
+    /**
+     * The raw values of a result row needed for creating its binding set.
+     */
+    private static class Row {
+        final long[] nodeIds;
+        final long[] typeIds;
+        final String[] values;
+        final String[] langs;
+
+        Row(int size) {
+            nodeIds = new long[size];
+            typeIds = new long[size];
+            values  = new String[size];
+            langs   = new String[size];
+        }
+    }
+}
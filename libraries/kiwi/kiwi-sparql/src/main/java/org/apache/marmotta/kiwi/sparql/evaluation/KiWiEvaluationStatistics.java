@@ -17,21 +17,42 @@
 
 package org.apache.marmotta.kiwi.sparql.evaluation;
 
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiTripleStatistics;
 import org.openrdf.model.Value;
 import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.Var;
 import org.openrdf.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
 
 /**
- * Add file description here!
+ * Evaluation statistics for the KiWi triple store, used by the QueryJoinOptimizer to order the statement patterns of
+ * a query before it is either translated into SQL or evaluated in memory. The cardinality of a statement pattern is
+ * estimated from the triple statistics maintained by the persistence (triples per predicate, per context and per
+ * frequent predicate/object combination). In case no statistics are available, the Sesame default estimates are used.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
 public class KiWiEvaluationStatistics extends EvaluationStatistics {
 
+    private static Logger log = LoggerFactory.getLogger(KiWiEvaluationStatistics.class);
+
+    private KiWiConnection connection;
+
     public KiWiEvaluationStatistics() {
     }
 
+    /**
+     * Estimate cardinalities using the triple statistics of the persistence of the given connection; the connection
+     * is also used for looking up the database ids of constants in the query.
+     */
+    public KiWiEvaluationStatistics(KiWiConnection connection) {
+        this.connection = connection;
+    }
+
     @Override
     protected CardinalityCalculator createCardinalityCalculator() {
         return new KiWiCardinalityCalculator();
@@ -41,6 +62,18 @@ public class KiWiEvaluationStatistics extends EvaluationStatistics {
 
         @Override
         protected double getCardinality(StatementPattern sp) {
+            KiWiTripleStatistics statistics = connection != null ? connection.getTripleStatistics() : null;
+            if(statistics != null) {
+                try {
+                    double cardinality = statistics.getCardinality(connection, getConstantValue(sp.getSubjectVar()), getConstantValue(sp.getPredicateVar()),
+                            getConstantValue(sp.getObjectVar()), getConstantValue(sp.getContextVar()));
+                    if(cardinality >= 0) {
+                        return cardinality;
+                    }
+                } catch (SQLException ex) {
+                    log.warn("could not look up constants for cardinality estimation: {}", ex.getMessage());
+                }
+            }
             return super.getCardinality(sp);
         }
 
@@ -18,44 +18,38 @@
 package org.apache.marmotta.kiwi.sparql.evaluation;
 
 import info.aduna.iteration.*;
-import org.apache.marmotta.commons.vocabulary.XSD;
-import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
-import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
-import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
-import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.builder.SQLQueryShape;
+import org.apache.marmotta.kiwi.sparql.builder.SQLTemplate;
+import org.apache.marmotta.kiwi.sparql.builder.SQLTranslationCache;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
 import org.apache.marmotta.kiwi.sparql.builder.collect.SupportedFinder;
-import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
 import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
-import org.openrdf.model.URI;
-import org.openrdf.model.impl.BNodeImpl;
-import org.openrdf.model.impl.LiteralImpl;
-import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.Value;
 import org.openrdf.query.*;
 import org.openrdf.query.algebra.*;
 import org.openrdf.query.algebra.evaluation.TripleSource;
 import org.openrdf.query.algebra.evaluation.impl.EvaluationStrategyImpl;
-import org.openrdf.query.impl.MapBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.*;
 
 /**
  * An implementation of the SPARQL query evaluation strategy with specific extensions and optimizations. The KiWi
  * evaluation strategy is able to apply optimizations to certain frequently found query patterns by directly translating
  * them into SQL queries. Currently, the following constructs are supported:
  * <ul>
- *     <li>JOINs of statement patterns are translated into SQL joins (no OPTIONAL and no path expressions supporterd)</li>
+ *     <li>JOINs of statement patterns are translated into SQL joins (no OPTIONAL supporterd)</li>
+ *     <li>simple property paths (e.g. rdfs:subClassOf*) are translated into recursive SQL queries, in case the database supports them</li>
  *     <li>FILTERs are translated to SQL where conditions, in case the FILTER conditions are supported (no aggregation constructs are supported)</li>
  * </ul>
  * In case a query is not completely supported by the optimizer, the optimizer might still improve performance by
@@ -73,27 +67,57 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
      */
     private KiWiConnection connection;
     private KiWiValueFactory valueFactory;
-    private ExecutorService executorService;
+
+    /**
+     * The bounded executor shared by all connections of the SPARQL sail; interruptible queries run in its threads.
+     */
+    private KiWiQueryExecutor queryExecutor;
+
+    /**
+     * The SQL translations shared by all connections of the SPARQL sail; null in case translations are not cached.
+     */
+    private SQLTranslationCache translationCache;
+
+    /**
+     * The SQL table reference used in place of the triples table in native queries, e.g. for evaluating queries
+     * against a historic snapshot; null in case the triples table itself is queried.
+     */
+    private String triplesTable;
 
 
     private Set<String> projectedVars = new HashSet<>();
 
-    public KiWiEvaluationStrategy(TripleSource tripleSource, KiWiConnection connection, KiWiValueFactory valueFactory) {
+    public KiWiEvaluationStrategy(TripleSource tripleSource, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor) {
+        this(tripleSource, connection, valueFactory, queryExecutor, null);
+    }
+
+    public KiWiEvaluationStrategy(TripleSource tripleSource, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor, SQLTranslationCache translationCache) {
         super(tripleSource);
         this.connection = connection;
         this.valueFactory = valueFactory;
+        this.queryExecutor = queryExecutor;
+        this.translationCache = translationCache;
+    }
 
-        // interruptible queries run in a separate thread
-        this.executorService = Executors.newCachedThreadPool();
+    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor) {
+        this(tripleSource, dataset, connection, valueFactory, queryExecutor, null);
     }
 
-    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory) {
+    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor, SQLTranslationCache translationCache) {
         super(tripleSource, dataset);
         this.connection = connection;
         this.valueFactory = valueFactory;
+        this.queryExecutor = queryExecutor;
+        this.translationCache = translationCache;
+    }
 
-        // interruptible queries run in a separate thread
-        this.executorService = Executors.newCachedThreadPool();
+    /**
+     * Create an evaluation strategy whose native queries run against the given triples table reference instead of
+     * the triples table (see {@link SQLBuilder#getTriplesTable()}). SQL translations are not cached in this case.
+     */
+    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor, String triplesTable) {
+        this(tripleSource, dataset, connection, valueFactory, queryExecutor, (SQLTranslationCache) null);
+        this.triplesTable = triplesTable;
     }
 
     @Override
@@ -182,6 +206,15 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         }
     }
 
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(ArbitraryLengthPath path, BindingSet bindings) throws QueryEvaluationException {
+        if(isSupported(path)) {
+            return evaluateNative(path, bindings);
+        } else {
+            return super.evaluate(path, bindings);
+        }
+    }
+
     @Override
     public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Distinct distinct, BindingSet bindings) throws QueryEvaluationException {
         if(isSupported(distinct)) {
@@ -202,207 +235,45 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         log.debug("applying KiWi native optimizations on SPARQL query ...");
 
         try {
-            final SQLBuilder builder = new SQLBuilder(join, bindings, dataset, valueFactory, connection.getDialect(), projectedVars);
+            final PreparedStatement queryStatement;
+            final KiWiBindingSetIteration it;
 
-            final PreparedStatement queryStatement = connection.getJDBCConnection().prepareStatement(builder.build().toString());
-            if (connection.getDialect().isCursorSupported()) {
-                queryStatement.setFetchSize(connection.getConfiguration().getCursorSize());
-            }
+            SQLQueryShape shape = translationCache != null ? new SQLQueryShape(join, bindings, dataset, projectedVars) : null;
+            long[] parameters = shape != null && shape.isCacheable() ? getParameters(shape) : null;
+
+            if(parameters != null) {
+                SQLTemplate template = translationCache.get(shape);
+                if(template == null) {
+                    template = SQLTemplate.create(new SQLBuilder(join, bindings, dataset, getConverter(), connection.getDialect(), projectedVars, shape.getSlots()));
+                    translationCache.put(shape, template);
+                }
+
+                queryStatement = connection.getJDBCConnection().prepareStatement(template.getQueryString());
+                template.bindParameters(queryStatement, parameters);
+                if (connection.getDialect().isCursorSupported()) {
+                    queryStatement.setFetchSize(connection.getConfiguration().getCursorSize());
+                }
+
+                it = new KiWiBindingSetIteration(executeQuery(queryStatement), template.getVariables(), template.getProjectedVars(), bindings, connection, connection.getConfiguration().getResultWindowSize());
+            } else {
+                final SQLBuilder builder = new SQLBuilder(join, bindings, dataset, getConverter(), connection.getDialect(), projectedVars, triplesTable);
 
-            Future<ResultSet> queryFuture =
-                    executorService.submit(new Callable<ResultSet>() {
-                                               @Override
-                                               public ResultSet call() throws Exception {
-                                                   try {
-                                                       return queryStatement.executeQuery();
-                                                   } catch (SQLException ex) {
-                                                       if (Thread.interrupted()) {
-                                                           log.info("SQL query execution cancelled; not returning result (Thread={})", Thread.currentThread());
-                                                           throw new InterruptedException("SPARQL query execution cancelled");
-                                                       } else {
-                                                           throw ex;
-                                                       }
-                                                   }
-                                               }
-                                           }
-                    );
-
-            try {
-                ResultSet result = queryFuture.get();
-
-                ResultSetIteration<BindingSet> it = new ResultSetIteration<>(result, true, new ResultTransformerFunction<BindingSet>() {
-                    @Override
-                    public BindingSet apply(ResultSet row) throws SQLException {
-                        MapBindingSet resultRow = new MapBindingSet();
-
-                        List<SQLVariable> vars = new ArrayList<>(builder.getVariables().values());
-
-                        long[] nodeIds = new long[vars.size()];
-                        for (int i = 0; i < vars.size(); i++) {
-                            SQLVariable sv = vars.get(i);
-                            if (sv.getProjectionType() == ValueType.NODE && (builder.getProjectedVars().isEmpty()
-                                    || builder.getProjectedVars().contains(sv.getSparqlName()))) {
-                                nodeIds[i] = row.getLong(sv.getName());
-                            }
-                        }
-                        KiWiNode[] nodes = connection.loadNodesByIds(nodeIds);
-
-                        for (int i = 0; i < vars.size(); i++) {
-                            SQLVariable sv = vars.get(i);
-                            if (nodes[i] != null) {
-                                // resolved node
-                                resultRow.addBinding(sv.getSparqlName(), nodes[i]);
-                            } else if (sv.getProjectionType() != ValueType.NONE && (builder.getProjectedVars().isEmpty()
-                                    || builder.getProjectedVars().contains(sv.getSparqlName()))) {
-                                // literal value
-                                String svalue;
-                                switch (sv.getProjectionType()) {
-                                    case URI:
-                                        svalue = row.getString(sv.getName());
-                                        if (svalue != null)
-                                            try {
-                                                resultRow.addBinding(sv.getSparqlName(), new URIImpl(svalue));
-                                            } catch (IllegalArgumentException ex) {
-                                            } // illegal URI unbound
-                                        break;
-                                    case BNODE:
-                                        svalue = row.getString(sv.getName());
-                                        if (svalue != null)
-                                            resultRow.addBinding(sv.getSparqlName(), new BNodeImpl(svalue));
-                                        break;
-                                    case INT:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = Integer.toString(row.getInt(sv.getName()));
-                                            URI type = XSD.Integer;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case DOUBLE:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = Double.toString(row.getDouble(sv.getName()));
-                                            URI type = XSD.Double;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case DECIMAL:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = row.getBigDecimal(sv.getName()).toString();
-                                            URI type = XSD.Decimal;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case BOOL:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = Boolean.toString(row.getBoolean(sv.getName()));
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue.toLowerCase(), XSD.Boolean));
-                                        }
-                                        break;
-                                    case STRING:
-                                    default:
-                                        svalue = row.getString(sv.getName());
-
-                                        if (svalue != null) {
-
-                                            // retrieve optional type and language information, because string functions
-                                            // need to preserve this in certain cases, even when constructing new literals
-                                            String lang = null;
-                                            try {
-                                                lang = row.getString(sv.getName() + "_LANG");
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            URI type = null;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            if (lang != null) {
-                                                if (svalue.length() > 0) {
-                                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, lang));
-                                                } else {
-                                                    // string functions that return empty literal should yield no type or language
-                                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
-                                                }
-                                            } else if (type != null) {
-                                                if (type.stringValue().equals(XSD.String.stringValue())) {
-                                                    // string functions on other datatypes than string should yield no binding
-                                                    if (svalue.length() > 0) {
-                                                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                                    } else {
-                                                        // string functions that return empty literal should yield no type or language
-                                                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
-                                                    }
-                                                }
-                                            } else {
-                                                resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue));
-                                            }
-
-                                        }
-                                        break;
-                                }
-                            }
-                        }
-
-
-                        if (bindings != null) {
-                            for (Binding binding : bindings) {
-                                resultRow.addBinding(binding);
-                            }
-                        }
-                        return resultRow;
-                    }
-                });
-
-
-                return new ExceptionConvertingIteration<BindingSet, QueryEvaluationException>(
-                        new CloseableIteratorIteration<BindingSet, SQLException>(Iterations.asList(it).iterator())) {
-                    @Override
-                    protected QueryEvaluationException convert(Exception e) {
-                        return new QueryEvaluationException(e);
-                    }
-                };
-
-            } catch (InterruptedException | CancellationException e) {
-                log.info("SPARQL query execution cancelled");
-                queryFuture.cancel(true);
-                queryStatement.cancel();
-                queryStatement.close();
-
-                throw new QueryInterruptedException("SPARQL query execution cancelled");
-            } catch (ExecutionException e) {
-                log.error("error executing SPARQL query", e.getCause());
-                if (e.getCause() instanceof SQLException) {
-                    throw new QueryEvaluationException(e.getCause());
-                } else if (e.getCause() instanceof InterruptedException) {
-                    throw new QueryInterruptedException(e.getCause());
-                } else {
-                    throw new QueryEvaluationException("error executing SPARQL query", e);
+                queryStatement = connection.getJDBCConnection().prepareStatement(builder.build().toString());
+                if (connection.getDialect().isCursorSupported()) {
+                    queryStatement.setFetchSize(connection.getConfiguration().getCursorSize());
                 }
+
+                // nodes referenced by the result rows are resolved in windows of rows to avoid one lookup per row
+                it = new KiWiBindingSetIteration(executeQuery(queryStatement), builder, bindings, connection, connection.getConfiguration().getResultWindowSize());
             }
+
+            return new ExceptionConvertingIteration<BindingSet, QueryEvaluationException>(
+                    new CloseableIteratorIteration<BindingSet, SQLException>(Iterations.asList(it).iterator())) {
+                @Override
+                protected QueryEvaluationException convert(Exception e) {
+                    return new QueryEvaluationException(e);
+                }
+            };
         } catch (SQLException | IllegalArgumentException e) {
             throw new QueryEvaluationException(e);
         } catch (UnsatisfiableQueryException ex) {
@@ -411,6 +282,41 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
     }
 
 
+    private ResultSet executeQuery(PreparedStatement queryStatement) throws SQLException, QueryInterruptedException {
+        try {
+            return queryExecutor.executeQuery(queryStatement);
+        } catch (InterruptedException e) {
+            // the executor has already cancelled the statement on the database
+            throw new QueryInterruptedException("SPARQL query execution cancelled");
+        }
+    }
+
+    /**
+     * Look up the node IDs of the parameter slots of a query shape. Returns null in case one of the values is not
+     * a node in the database, because the uncached translation then leaves out the corresponding condition.
+     */
+    private long[] getParameters(SQLQueryShape shape) {
+        List<Value> values = shape.getValues();
+
+        long[] ids = new long[values.size()];
+        for(int i=0; i<ids.length; i++) {
+            ids[i] = valueFactory.convert(values.get(i)).getId();
+            if(ids[i] < 0) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    private ValueConverter getConverter() {
+        return new ValueConverter() {
+            @Override
+            public KiWiNode convert(Value value) {
+                return valueFactory.convert(value);
+            }
+        };
+    }
+
     /**
      * Test if a tuple expression is supported nby the optimized evaluation; in this case we can apply a specific optimization.
      *
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.evaluation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded executor for natively evaluated SPARQL queries, shared by all connections of a KiWi SPARQL sail. At most
+ * a fixed number of SQL queries run concurrently; further queries wait in a bounded queue, and once the queue is full
+ * the calling thread blocks until a slot becomes available. When the calling thread is interrupted while waiting for
+ * the result (e.g. because of a query timeout), the running JDBC statement is cancelled so that the database stops
+ * working on it.
+ */
+public class KiWiQueryExecutor {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiQueryExecutor.class);
+
+    private static final AtomicInteger executorCount = new AtomicInteger(0);
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Admission control: one permit per running or queued query
+     */
+    private final Semaphore slots;
+
+
+    /**
+     * Create a new query executor running at most the given number of queries concurrently and holding at most
+     * queueSize further queries waiting for execution.
+     *
+     * @param threads   maximum number of concurrently executed queries
+     * @param queueSize maximum number of queries waiting for execution
+     */
+    public KiWiQueryExecutor(int threads, int queueSize) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("the number of query threads must be at least 1");
+        }
+        if(queueSize < 0) {
+            throw new IllegalArgumentException("the query queue size must not be negative");
+        }
+
+        final int executorId = executorCount.incrementAndGet();
+
+        this.slots    = new Semaphore(threads + queueSize, true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "KiWi SPARQL Query " + executorId + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * Execute the given prepared statement in one of the query threads and wait for its result. Blocks while the
+     * maximum number of queries is already running or waiting. In case the calling thread is interrupted, the
+     * statement is cancelled on the database and closed, and an InterruptedException is thrown.
+     *
+     * @param statement the statement to execute
+     * @return the result of the statement
+     * @throws SQLException in case the query failed
+     * @throws InterruptedException in case the calling thread was interrupted while waiting for a slot or the result
+     */
+    public ResultSet executeQuery(final PreparedStatement statement) throws SQLException, InterruptedException {
+        slots.acquire();
+
+        QueryTask query = new QueryTask(statement);
+        FutureTask<ResultSet> task = new FutureTask<>(query);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            slots.release();
+            throw new SQLException("SPARQL query executor has been shut down", ex);
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException | CancellationException ex) {
+            log.info("SPARQL query execution cancelled, cancelling SQL statement");
+
+            if(query.abandon()) {
+                // cancel the statement first, a thread blocked in executeQuery() does not react on interrupts; the
+                // query thread closes the statement and releases the slot once executeQuery() returns
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    log.warn("could not cancel SQL statement: {}", e.getMessage());
+                }
+                task.cancel(true);
+            } else {
+                if(!query.isStarted()) {
+                    // the query thread will not execute the statement anymore
+                    task.cancel(false);
+                    slots.release();
+                }
+                closeQuietly(query.getResult());
+                statement.close();
+            }
+
+            throw new InterruptedException("SPARQL query execution cancelled");
+        } catch (ExecutionException ex) {
+            if(ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            } else {
+                throw new SQLException("error executing SPARQL query", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Return the number of queries currently running or waiting for execution.
+     */
+    public int getPendingQueries() {
+        return executor.getActiveCount() + executor.getQueue().size();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("could not close cancelled SQL query: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Shut down the executor. Queries that have not started yet are cancelled, running queries are interrupted.
+     */
+    public void shutdown() {
+        for(Runnable r : executor.shutdownNow()) {
+            if(r instanceof Future) {
+                ((Future<?>) r).cancel(true);
+            }
+        }
+    }
+
+
+    /**
+     * Executes a statement in a query thread. The slot of the query is released by the query thread when the
+     * statement has been executed; in case the waiting thread gave up while the statement was running, the query
+     * thread also closes the statement and its late result.
+     */
+    private class QueryTask implements Callable<ResultSet> {
+
+        private final PreparedStatement statement;
+
+        // guarded by this
+        private boolean started, finished, abandoned;
+
+        private ResultSet result;
+
+        private QueryTask(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public ResultSet call() throws Exception {
+            synchronized (this) {
+                if(abandoned) {
+                    return null;
+                }
+                started = true;
+            }
+
+            ResultSet r = null;
+            try {
+                r = statement.executeQuery();
+            } finally {
+                boolean close;
+                synchronized (this) {
+                    finished = true;
+                    result   = r;
+                    close    = abandoned;
+                }
+                if(close) {
+                    closeQuietly(r);
+                    closeQuietly(statement);
+                    r = null;
+                }
+                slots.release();
+            }
+            return r;
+        }
+
+        /**
+         * Mark the query as abandoned by the waiting thread.
+         *
+         * @return true in case the statement is still being executed; the query thread then takes care of closing
+         *         the statement and releasing the slot
+         */
+        private synchronized boolean abandon() {
+            abandoned = true;
+            return started && !finished;
+        }
+
+        private synchronized boolean isStarted() {
+            return started;
+        }
+
+        private synchronized ResultSet getResult() {
+            return result;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiSailConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.builder.SQLTranslationCache;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiQueryExecutor;
 import org.openrdf.sail.*;
 import org.openrdf.sail.helpers.NotifyingSailWrapper;
 import org.openrdf.sail.helpers.SailConnectionWrapper;
@@ -49,6 +51,16 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
 
     private KiWiStore parent;
 
+    /**
+     * Executor for natively evaluated queries, shared by all connections of this sail
+     */
+    private KiWiQueryExecutor queryExecutor;
+
+    /**
+     * SQL translations of natively evaluated queries, shared by all connections of this sail; null if disabled
+     */
+    private SQLTranslationCache translationCache;
+
     public KiWiSparqlSail(NotifyingSail baseSail) {
         super(baseSail);
 
@@ -59,6 +71,12 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
     public void initialize() throws SailException {
         super.initialize();
 
+        KiWiConfiguration configuration = parent.getPersistence().getConfiguration();
+        queryExecutor = new KiWiQueryExecutor(configuration.getQueryThreads(), configuration.getQueryQueueSize());
+        if(configuration.getTranslationCacheSize() > 0) {
+            translationCache = new SQLTranslationCache(configuration.getTranslationCacheSize());
+        }
+
         // start fulltext indexing in a separate thread (MARMOTTA-415)
         Thread indexer = new Thread("Fulltext Indexer") {
             @Override
@@ -69,6 +87,24 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
         indexer.start();
     }
 
+    @Override
+    public void shutDown() throws SailException {
+        if(queryExecutor != null) {
+            queryExecutor.shutdown();
+            queryExecutor = null;
+        }
+        translationCache = null;
+
+        super.shutDown();
+    }
+
+    /**
+     * The SQL translations of natively evaluated queries cached by this sail, or null in case caching is disabled.
+     */
+    public SQLTranslationCache getTranslationCache() {
+        return translationCache;
+    }
+
     /**
      * Get the root sail in the wrapped sail stack
      * @param sail
@@ -197,7 +233,7 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
         NotifyingSailConnection connection = super.getConnection();
         KiWiSailConnection root   = getRootConnection(connection);
 
-        return new KiWiSparqlSailConnection(connection, root.getDatabaseConnection(), root.getValueFactory());
+        return new KiWiSparqlSailConnection(connection, root.getDatabaseConnection(), root.getValueFactory(), queryExecutor, translationCache);
     }
 
 
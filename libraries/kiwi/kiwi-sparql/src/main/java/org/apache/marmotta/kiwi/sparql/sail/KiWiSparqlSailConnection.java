@@ -20,8 +20,10 @@ package org.apache.marmotta.kiwi.sparql.sail;
 import info.aduna.iteration.CloseableIteration;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.sparql.builder.SQLTranslationCache;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStatistics;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiQueryExecutor;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiTripleSource;
 import org.apache.marmotta.kiwi.sparql.optimizer.DifferenceOptimizer;
 import org.apache.marmotta.kiwi.sparql.optimizer.DistinctLimitOptimizer;
@@ -51,11 +53,19 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
 
     private KiWiConnection connection;
     private KiWiValueFactory valueFactory;
+    private KiWiQueryExecutor queryExecutor;
+    private SQLTranslationCache translationCache;
 
-    public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory) {
+    public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor) {
+        this(parent, connection, valueFactory, queryExecutor, null);
+    }
+
+    public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiQueryExecutor queryExecutor, SQLTranslationCache translationCache) {
         super(parent);
         this.connection = connection;
         this.valueFactory = valueFactory;
+        this.queryExecutor = queryExecutor;
+        this.translationCache = translationCache;
     }
 
     @Override
@@ -71,7 +81,7 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
 
         try {
             KiWiTripleSource tripleSource = new KiWiTripleSource(this, valueFactory, includeInferred);
-            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, connection, valueFactory);
+            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, connection, valueFactory, queryExecutor, translationCache);
 
             new BindingAssigner().optimize(tupleExpr, dataset, bindings);
             //new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
@@ -83,7 +93,7 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
             //new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
 
             new QueryModelNormalizer().optimize(tupleExpr, dataset, bindings);
-            new QueryJoinOptimizer(new KiWiEvaluationStatistics()).optimize(tupleExpr, dataset, bindings);
+            new QueryJoinOptimizer(new KiWiEvaluationStatistics(connection)).optimize(tupleExpr, dataset, bindings);
             new IterativeEvaluationOptimizer().optimize(tupleExpr, dataset, bindings);
 
             new NativeFilterOptimizer().optimize(tupleExpr, dataset, bindings);
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiQueryExecutor;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test the shared query executor used for natively evaluated SPARQL queries.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class KiWiQueryExecutorTest {
+
+    private KiWiPersistence persistence;
+
+    private final KiWiConfiguration dbConfig;
+
+    public KiWiQueryExecutorTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+    }
+
+    @Before
+    public void initDatabase() throws SQLException {
+        persistence = new KiWiPersistence(dbConfig);
+        persistence.initialise();
+        persistence.initDatabase();
+    }
+
+    @After
+    public void dropDatabase() throws SQLException {
+        persistence.dropDatabase();
+        persistence.shutdown();
+    }
+
+    /**
+     * More callers than query threads and queue slots; all queries need to complete, the excess callers are
+     * blocked until a slot becomes available.
+     */
+    @Test
+    public void testBoundedExecution() throws Exception {
+        final KiWiQueryExecutor queryExecutor = new KiWiQueryExecutor(2, 2);
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for(int i = 0; i < 64; i++) {
+                results.add(callers.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        try (KiWiConnection connection = persistence.getConnection()) {
+                            PreparedStatement stmt = connection.getJDBCConnection().prepareStatement("SELECT count(*) FROM nodes");
+                            try (ResultSet result = queryExecutor.executeQuery(stmt)) {
+                                Assert.assertTrue(result.next());
+                                return result.getLong(1);
+                            } finally {
+                                stmt.close();
+                                connection.commit();
+                            }
+                        }
+                    }
+                }));
+            }
+
+            for(Future<Long> result : results) {
+                Assert.assertEquals(0L, (long) result.get());
+            }
+            Assert.assertEquals(0, queryExecutor.getPendingQueries());
+        } finally {
+            callers.shutdown();
+            queryExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Interrupting the caller cancels the running statement on the database; the slot of the query is only released
+     * once the statement has stopped, so the next query can only run after the cancellation took effect.
+     */
+    @Test(timeout = 60000)
+    public void testCancelRunningQuery() throws Exception {
+        final KiWiQueryExecutor queryExecutor = new KiWiQueryExecutor(1, 0);
+        try (KiWiConnection connection = persistence.getConnection()) {
+            final PreparedStatement stmt = connection.getJDBCConnection().prepareStatement(getSlowQuery());
+            final AtomicReference<Exception> error = new AtomicReference<>();
+
+            Thread caller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        queryExecutor.executeQuery(stmt).close();
+                    } catch (Exception e) {
+                        error.set(e);
+                    }
+                }
+            };
+            caller.start();
+
+            // wait until the statement is running
+            while(queryExecutor.getPendingQueries() == 0) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(500);
+
+            caller.interrupt();
+            caller.join();
+            Assert.assertTrue(error.get() instanceof InterruptedException);
+            connection.rollback();
+
+            // without cancelling the statement, this would block until the slow query finished
+            try (KiWiConnection other = persistence.getConnection()) {
+                PreparedStatement count = other.getJDBCConnection().prepareStatement("SELECT count(*) FROM nodes");
+                try (ResultSet result = queryExecutor.executeQuery(count)) {
+                    Assert.assertTrue(result.next());
+                } finally {
+                    count.close();
+                    other.commit();
+                }
+            }
+            Assert.assertEquals(0, queryExecutor.getPendingQueries());
+        } finally {
+            queryExecutor.shutdown();
+        }
+    }
+
+    /**
+     * A query running for several minutes unless it is cancelled.
+     */
+    private String getSlowQuery() {
+        if(dbConfig.getDialect() instanceof PostgreSQLDialect) {
+            return "SELECT pg_sleep(300)";
+        } else if(dbConfig.getDialect() instanceof MySQLDialect) {
+            return "SELECT SLEEP(300)";
+        } else {
+            return "SELECT sum(A.X * B.X) FROM SYSTEM_RANGE(1, 1000000) A, SYSTEM_RANGE(1, 1000000) B";
+        }
+    }
+
+    /**
+     * Queries submitted after shutdown are rejected with an SQLException.
+     */
+    @Test(expected = SQLException.class)
+    public void testShutdown() throws Exception {
+        KiWiQueryExecutor queryExecutor = new KiWiQueryExecutor(1, 0);
+        queryExecutor.shutdown();
+
+        try (KiWiConnection connection = persistence.getConnection()) {
+            PreparedStatement stmt = connection.getJDBCConnection().prepareStatement("SELECT count(*) FROM nodes");
+            try {
+                queryExecutor.executeQuery(stmt);
+            } finally {
+                stmt.close();
+                connection.rollback();
+            }
+        }
+    }
+}
@@ -122,6 +122,7 @@ public class KiWiSparqlJoinTest {
     public void dropDatabase() throws RepositoryException, SQLException {
         store.getPersistence().dropDatabase();
         repository.shutDown();
+        dbConfig.setResultWindowSize(1000);
     }
 
     final Logger logger =
@@ -343,6 +344,38 @@ public class KiWiSparqlJoinTest {
         testQuery("query36.sparql");
     }
 
+    // property path with bound start node over a cyclic graph
+    @Test
+    public void testQuery37() throws Exception {
+        testQuery("query37.sparql");
+    }
+
+    // zero-or-more property path with bound end node joined with a pattern
+    @Test
+    public void testQuery38() throws Exception {
+        testQuery("query38.sparql");
+    }
+
+    // inverse property path with unbound ends
+    @Test
+    public void testQuery39() throws Exception {
+        testQuery("query39.sparql");
+    }
+
+    // result windows smaller than the result, node resolution spans several windows
+    @Test
+    public void testQuery1SmallWindow() throws Exception {
+        dbConfig.setResultWindowSize(1);
+        testQuery("query1.sparql");
+    }
+
+    // math expression, computed literals resolved across windows
+    @Test
+    public void testQuery7SmallWindow() throws Exception {
+        dbConfig.setResultWindowSize(3);
+        testQuery("query7.sparql");
+    }
+
     // INSERT/UPDATE
     @Test
     public void testUpdate01() throws Exception {
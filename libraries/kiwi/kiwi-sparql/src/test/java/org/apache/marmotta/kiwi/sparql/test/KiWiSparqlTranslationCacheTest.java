@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.test;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Test reusing the SQL translation of natively evaluated queries that only differ in their constants.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class KiWiSparqlTranslationCacheTest {
+
+    private static final String NS = "http://localhost/test/";
+
+    private KiWiStore store;
+
+    private KiWiSparqlSail ssail;
+
+    private Repository repository;
+
+    private final KiWiConfiguration dbConfig;
+
+    public KiWiSparqlTranslationCacheTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+    }
+
+    @Before
+    public void initDatabase() throws Exception {
+        store = new KiWiStore(dbConfig);
+        ssail = new KiWiSparqlSail(store);
+        repository = new SailRepository(ssail);
+        repository.initialize();
+
+        // ten resources, each linked to one of three groups and carrying a name
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            ValueFactory vf = con.getValueFactory();
+            for(int i = 0; i < 10; i++) {
+                URI r = vf.createURI(NS + "r" + i);
+                con.add(r, vf.createURI(NS + "group"), vf.createURI(NS + "g" + (i % 3)));
+                con.add(r, vf.createURI(NS + "name"), vf.createLiteral("name " + i));
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        store.getPersistence().dropDatabase();
+        repository.shutDown();
+    }
+
+    /**
+     * Queries differing only in a constant of a pattern share one translation and still return their own results.
+     */
+    @Test
+    public void testConstants() throws Exception {
+        ssail.getTranslationCache().clear();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            Assert.assertEquals(set("r0", "r3", "r6", "r9"), query(con, "SELECT ?r ?n WHERE { ?r <" + NS + "group> <" + NS + "g0> . ?r <" + NS + "name> ?n }"));
+            Assert.assertEquals(set("r1", "r4", "r7"), query(con, "SELECT ?r ?n WHERE { ?r <" + NS + "group> <" + NS + "g1> . ?r <" + NS + "name> ?n }"));
+            Assert.assertEquals(set("r2", "r5", "r8"), query(con, "SELECT ?r ?n WHERE { ?r <" + NS + "group> <" + NS + "g2> . ?r <" + NS + "name> ?n }"));
+            con.commit();
+        } finally {
+            con.close();
+        }
+
+        Assert.assertEquals(1, ssail.getTranslationCache().size());
+    }
+
+    /**
+     * Queries differing only in the value of a binding share one translation.
+     */
+    @Test
+    public void testBindings() throws Exception {
+        ssail.getTranslationCache().clear();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            for(int g = 0; g < 3; g++) {
+                TupleQuery query = con.prepareTupleQuery(QueryLanguage.SPARQL, "SELECT ?r ?n WHERE { ?r <" + NS + "group> ?g . ?r <" + NS + "name> ?n }");
+                query.setBinding("g", con.getValueFactory().createURI(NS + "g" + g));
+
+                Set<String> resources = result(query);
+                Assert.assertEquals(g == 0 ? 4 : 3, resources.size());
+                for(String r : resources) {
+                    Assert.assertEquals(g, Integer.parseInt(r.substring(1)) % 3);
+                }
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+
+        Assert.assertEquals(1, ssail.getTranslationCache().size());
+    }
+
+    /**
+     * A constant that does not exist in the database yields no results.
+     */
+    @Test
+    public void testUnknownConstant() throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            Assert.assertEquals(set("r0", "r3", "r6", "r9"), query(con, "SELECT ?r ?n WHERE { ?r <" + NS + "group> <" + NS + "g0> . ?r <" + NS + "name> ?n }"));
+            Assert.assertTrue(query(con, "SELECT ?r ?n WHERE { ?r <" + NS + "group> <" + NS + "unknown> . ?r <" + NS + "name> ?n }").isEmpty());
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    private static Set<String> query(RepositoryConnection con, String sparql) throws Exception {
+        return result(con.prepareTupleQuery(QueryLanguage.SPARQL, sparql));
+    }
+
+    private static Set<String> result(TupleQuery query) throws Exception {
+        Set<String> resources = new HashSet<>();
+        TupleQueryResult result = query.evaluate();
+        try {
+            while (result.hasNext()) {
+                BindingSet row = result.next();
+                resources.add(row.getValue("r").stringValue().substring(NS.length()));
+            }
+        } finally {
+            result.close();
+        }
+        return resources;
+    }
+
+    private static Set<String> set(String... values) {
+        Set<String> result = new HashSet<>();
+        for(String v : values) {
+            result.add(v);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLPath;
+import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.algebra.ArbitraryLengthPath;
+import org.openrdf.query.algebra.Join;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.impl.EmptyBindingSet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+
+/**
+ * Test the SQL generated for SPARQL property paths of arbitrary length. This test does not need a database, so the
+ * translation is also covered when the tests only run on H2 (which does not support the recursive queries used).
+ */
+public class SQLPathTest {
+
+    private static final URI PROPERTY = new URIImpl("http://localhost/property");
+    private static final URI OTHER    = new URIImpl("http://localhost/other");
+    private static final URI START    = new URIImpl("http://localhost/start");
+    private static final URI END      = new URIImpl("http://localhost/end");
+    private static final URI GRAPH    = new URIImpl("http://localhost/graph");
+
+    private KiWiDialect dialect;
+
+    private ValueConverter converter;
+
+    @Before
+    public void setup() throws Exception {
+        dialect = new PostgreSQLDialect();
+
+        final Map<Value, KiWiNode> nodes = new HashMap<>();
+        long id = 10;
+        for(URI uri : new URI[] { PROPERTY, START, END, GRAPH }) {
+            KiWiUriResource node = new KiWiUriResource(uri.stringValue());
+            node.setId(id++);
+            nodes.put(uri, node);
+        }
+        converter = new ValueConverter() {
+            @Override
+            public KiWiNode convert(Value value) {
+                return nodes.get(value);
+            }
+        };
+    }
+
+    @Test
+    public void testSupported() throws Exception {
+        Assert.assertTrue(SQLPath.isSupported(path(var("s"), PROPERTY, var("o"), false, 1), dialect));
+        Assert.assertTrue(SQLPath.isSupported(path(var("s"), PROPERTY, var("o"), true, 0), dialect));
+        Assert.assertFalse(SQLPath.isSupported(path(var("s"), PROPERTY, var("o"), false, 1), new H2Dialect()));
+
+        // minimum length larger than 1
+        Assert.assertFalse(SQLPath.isSupported(path(var("s"), PROPERTY, var("o"), false, 2), dialect));
+
+        // unbound property
+        ArbitraryLengthPath unbound = new ArbitraryLengthPath(StatementPattern.Scope.DEFAULT_CONTEXTS, var("s"),
+                new StatementPattern(var("s"), var("p"), var("o")), var("o"), null, 1);
+        Assert.assertFalse(SQLPath.isSupported(unbound, dialect));
+
+        // sequence paths
+        ArbitraryLengthPath sequence = new ArbitraryLengthPath(StatementPattern.Scope.DEFAULT_CONTEXTS, var("s"),
+                new Join(new StatementPattern(var("s"), constant(PROPERTY), var("x")), new StatementPattern(var("x"), constant(PROPERTY), var("o"))),
+                var("o"), null, 1);
+        Assert.assertFalse(SQLPath.isSupported(sequence, dialect));
+
+        // unbound named graph
+        ArbitraryLengthPath graph = new ArbitraryLengthPath(StatementPattern.Scope.NAMED_CONTEXTS, var("s"),
+                new StatementPattern(StatementPattern.Scope.NAMED_CONTEXTS, var("s"), constant(PROPERTY), var("o"), var("g")), var("o"), var("g"), 1);
+        Assert.assertFalse(SQLPath.isSupported(graph, dialect));
+    }
+
+    @Test
+    public void testBoundStart() throws Exception {
+        String sql = build(path(constant(START), PROPERTY, var("o"), false, 1));
+
+        Assert.assertThat(sql, containsString("WITH RECURSIVE P1_closure(start_id, end_id)"));
+        Assert.assertThat(sql, containsString("SELECT t.subject, t.object FROM triples t WHERE t.deleted = false AND t.predicate = 10 AND t.subject = 11"));
+        Assert.assertThat(sql, containsString("SELECT c.start_id, t.object FROM P1_closure c JOIN triples t ON t.subject = c.end_id"));
+        Assert.assertThat(sql, containsString("SELECT end_id AS V2 FROM P1_closure"));
+        Assert.assertThat(sql, not(containsString("UNION ALL")));
+    }
+
+    @Test
+    public void testBoundEnd() throws Exception {
+        // only the end node is known, so the recursion follows the path backwards
+        String sql = build(path(var("s"), PROPERTY, constant(END), false, 1));
+
+        Assert.assertThat(sql, containsString("WHERE t.deleted = false AND t.predicate = 10 AND t.object = 12"));
+        Assert.assertThat(sql, containsString("SELECT t.subject, c.end_id FROM P1_closure c JOIN triples t ON t.object = c.start_id"));
+        Assert.assertThat(sql, containsString("SELECT start_id AS V1 FROM P1_closure"));
+    }
+
+    @Test
+    public void testInverse() throws Exception {
+        String sql = build(path(constant(START), PROPERTY, var("o"), true, 1));
+
+        Assert.assertThat(sql, containsString("SELECT t.object, t.subject FROM triples t WHERE t.deleted = false AND t.predicate = 10 AND t.object = 11"));
+        Assert.assertThat(sql, containsString("JOIN triples t ON t.object = c.end_id"));
+    }
+
+    @Test
+    public void testZeroLength() throws Exception {
+        String sql = build(path(constant(START), PROPERTY, var("o"), false, 0));
+        Assert.assertThat(sql, containsString("UNION\n SELECT 11 AS V2"));
+
+        // all nodes are connected to themselves in case both ends are unbound
+        sql = build(path(var("s"), PROPERTY, var("o"), false, 0));
+        Assert.assertThat(sql, containsString("subject AS V1"));
+        Assert.assertThat(sql, containsString("object AS V2"));
+        Assert.assertThat(sql, containsString("FROM triples t WHERE deleted = false"));
+
+        // the same variable at both ends only selects cycles
+        sql = build(path(var("s"), PROPERTY, var("s"), false, 1));
+        Assert.assertThat(sql, containsString("WHERE start_id = end_id"));
+    }
+
+    @Test
+    public void testContext() throws Exception {
+        ArbitraryLengthPath path = new ArbitraryLengthPath(StatementPattern.Scope.NAMED_CONTEXTS, constant(START),
+                new StatementPattern(StatementPattern.Scope.NAMED_CONTEXTS, constant(START), constant(PROPERTY), var("o"), constant(GRAPH)),
+                var("o"), constant(GRAPH), 1);
+        String sql = build(path);
+
+        Assert.assertThat(sql, containsString("t.predicate = 10 AND t.context = 13"));
+    }
+
+    @Test(expected = UnsatisfiableQueryException.class)
+    public void testUnknownProperty() throws Exception {
+        build(path(constant(START), OTHER, var("o"), false, 1));
+    }
+
+    @Test(expected = UnsatisfiableQueryException.class)
+    public void testUnknownStart() throws Exception {
+        build(path(constant(OTHER), PROPERTY, var("o"), false, 1));
+    }
+
+
+    private String build(ArbitraryLengthPath path) throws UnsatisfiableQueryException {
+        return new SQLPath("P1", path, EmptyBindingSet.getInstance(), null, converter, dialect).buildFromClause();
+    }
+
+    /**
+     * Build a path start property* end or start ^property* end
+     */
+    private static ArbitraryLengthPath path(Var start, URI property, Var end, boolean inverse, long minLength) {
+        StatementPattern step = inverse
+                ? new StatementPattern(end.clone(), constant(property), start.clone())
+                : new StatementPattern(start.clone(), constant(property), end.clone());
+        return new ArbitraryLengthPath(StatementPattern.Scope.DEFAULT_CONTEXTS, start, step, end, null, minLength);
+    }
+
+    private static Var var(String name) {
+        return new Var(name);
+    }
+
+    private static Var constant(Value value) {
+        return new Var("const_" + Integer.toHexString(value.hashCode()), value);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test.profile;
+
+import info.aduna.iteration.Iterations;
+import org.apache.commons.io.IOUtils;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+
+/**
+ * An executable class that measures native SPARQL evaluation with different result window sizes. It loads the demo
+ * data of the kiwi-sparql tests and runs the test queries with windows of 1 to 1000 rows, clearing the node cache
+ * before every run so that node resolution actually hits the database. It requires a JDBC connection string to an
+ * existing database for running.
+ */
+public class ProfileResultWindow {
+
+    private static Logger log = LoggerFactory.getLogger(ProfileResultWindow.class);
+
+    private static final String TEST_PACKAGE = "/org/apache/marmotta/kiwi/sparql/test/";
+
+    private static final int[] WINDOWS = new int[] {1, 10, 100, 1000};
+
+    private static final int QUERIES = 35;
+
+    private static final int ROUNDS = 10;
+
+    private String jdbcUrl, user, password;
+
+
+    public ProfileResultWindow(String jdbcUrl, String user, String password) {
+        this.jdbcUrl  = jdbcUrl;
+        this.user     = user;
+        this.password = password;
+    }
+
+
+    public void profileResultWindow() throws Exception {
+        KiWiConfiguration cfg = new KiWiConfiguration("profiling",jdbcUrl,user,password, new PostgreSQLDialect());
+
+        KiWiStore store = new KiWiStore(cfg);
+        Repository repository = new SailRepository(new KiWiSparqlSail(store));
+        repository.initialize();
+        try {
+            RepositoryConnection con = repository.getConnection();
+            try {
+                con.begin();
+                con.add(ProfileResultWindow.class.getResourceAsStream(TEST_PACKAGE + "demo-data.foaf"), "http://localhost/test/", RDFFormat.RDFXML);
+                con.commit();
+            } finally {
+                con.close();
+            }
+
+            String[] queries = new String[QUERIES];
+            for(int i = 0; i < QUERIES; i++) {
+                InputStream in = ProfileResultWindow.class.getResourceAsStream(TEST_PACKAGE + "query" + (i + 1) + ".sparql");
+                try {
+                    queries[i] = IOUtils.toString(in, "UTF-8");
+                } finally {
+                    in.close();
+                }
+            }
+
+            for(int window : WINDOWS) {
+                cfg.setResultWindowSize(window);
+                profileQueries(store, repository, queries, window);
+            }
+
+            store.getPersistence().dropDatabase();
+        } finally {
+            repository.shutDown();
+        }
+    }
+
+
+    private void profileQueries(KiWiStore store, Repository repository, String[] queries, int window) throws Exception {
+        long rows = 0, time = 0;
+        for(int round = 0; round < ROUNDS; round++) {
+            for(String query : queries) {
+                store.getPersistence().clearCache();
+
+                RepositoryConnection con = repository.getConnection();
+                try {
+                    con.begin();
+                    TupleQuery q = con.prepareTupleQuery(QueryLanguage.SPARQL, query);
+
+                    long start = System.nanoTime();
+                    rows += Iterations.asList(q.evaluate()).size();
+                    time += System.nanoTime() - start;
+
+                    con.commit();
+                } finally {
+                    con.close();
+                }
+            }
+        }
+
+        log.info("window size {}: evaluated {} queries returning {} rows in {} ms", window, ROUNDS * queries.length, rows, time / 1000000);
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        if(args.length != 3) {
+            log.error("arguments: <jdbc-url> <user> <password>");
+            System.exit(1);
+        }
+
+        ProfileResultWindow p = new ProfileResultWindow(args[0],args[1],args[2]);
+        p.profileResultWindow();
+    }
+}
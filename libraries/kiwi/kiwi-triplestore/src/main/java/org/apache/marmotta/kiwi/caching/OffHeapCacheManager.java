@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.caching;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A cache manager keeping the large id-based node and triple caches in serialized form in off-heap memory, so
+ * that they can grow to millions of entries without adding to the heap traced by the garbage collector. All other
+ * caches are the same in-memory Guava caches as used by the {@link GuavaCacheManager}.
+ * <p/>
+ * The amount of off-heap memory is configured with {@link KiWiConfiguration#setOffHeapCacheMemory(int)}; three
+ * quarters of it are used by the node cache, the rest by the triple cache. Note that lookups return a fresh copy
+ * of the cached object for each call.
+ */
+public class OffHeapCacheManager extends GuavaCacheManager {
+
+    private static Logger log = LoggerFactory.getLogger(OffHeapCacheManager.class);
+
+    private OffHeapCacheMap<KiWiNode> nodeCache;
+    private OffHeapCacheMap<KiWiTriple> tripleCache;
+
+    public OffHeapCacheManager(KiWiConfiguration configuration) {
+        super(configuration);
+
+        long memory = configuration.getOffHeapCacheMemory() * 1024L * 1024L;
+
+        log.info("initialising off-heap node and triple caches ({} MB)", configuration.getOffHeapCacheMemory());
+
+        nodeCache = new OffHeapCacheMap<KiWiNode>(memory / 4 * 3) {
+            @Override
+            protected void writeValue(DataOutput out, KiWiNode value) throws IOException {
+                KiWiIO.writeNode(out, value);
+            }
+
+            @Override
+            protected KiWiNode readValue(DataInput in) throws IOException {
+                return KiWiIO.readNode(in);
+            }
+        };
+
+        tripleCache = new OffHeapCacheMap<KiWiTriple>(memory / 4) {
+            @Override
+            protected void writeValue(DataOutput out, KiWiTriple value) throws IOException {
+                KiWiIO.writeTriple(out, value);
+            }
+
+            @Override
+            protected KiWiTriple readValue(DataInput in) throws IOException {
+                return KiWiIO.readTriple(in);
+            }
+        };
+    }
+
+    /**
+     * Return the node id -> node cache from the cache manager. This cache is heavily used to lookup
+     * nodes when querying or loading triples and should therefore have a decent size (default 500.000 elements).
+     *
+     * @return an off-heap map from node IDs to nodes
+     */
+    @Override
+    public Map<Long, KiWiNode> getNodeCache() {
+        return nodeCache;
+    }
+
+    /**
+     * Return the triple id -> triple cache from the cache manager. This cache is used for speeding up the
+     * construction of query results.
+     *
+     * @return an off-heap map from triple IDs to triples
+     */
+    @Override
+    public Map<Long, KiWiTriple> getTripleCache() {
+        return tripleCache;
+    }
+
+    /**
+     * Clear all caches managed by this cache manager.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+
+        nodeCache.clear();
+        tripleCache.clear();
+    }
+
+    /**
+     * Shutdown this cache manager instance. Releases the index tables of the off-heap caches; the off-heap memory
+     * itself is freed once the buffers are garbage collected.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+
+        nodeCache.clear();
+        tripleCache.clear();
+    }
+}
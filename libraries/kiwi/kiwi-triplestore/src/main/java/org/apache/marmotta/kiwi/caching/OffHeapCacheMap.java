@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.caching;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A size-bounded cache map with primitive long keys that keeps its values in serialized form in off-heap memory.
+ * Values are appended to a direct memory ring buffer per segment; once the ring buffer wraps around, the oldest
+ * entries are overwritten (FIFO eviction). Keys are kept in primitive open-addressing tables, so neither keys nor
+ * values are boxed or held as objects on the heap, and the garbage collector does not need to trace cache entries.
+ * <p/>
+ * Since values are deserialized on every lookup, {@link #get(Object)} returns a new object instance for each call.
+ * To avoid needless deserialization, {@link #put(Long, Object)} and {@link #remove(Object)} always return null.
+ *
+ * @param <V> the type of the cached values
+ */
+public abstract class OffHeapCacheMap<V> extends AbstractMap<Long,V> {
+
+    private static Logger log = LoggerFactory.getLogger(OffHeapCacheMap.class);
+
+    private static final int SEGMENTS = 16;
+
+    private static final int MIN_SEGMENT_CAPACITY = 1 << 16;
+
+    private static final int INITIAL_INDEX_SIZE = 1 << 10;
+
+    private static final long EMPTY = -1L;
+
+    private final Segment[] segments;
+
+    /**
+     * Create a new off-heap cache map using at most the given number of bytes for storing serialized values.
+     *
+     * @param capacity maximum amount of off-heap memory in bytes
+     */
+    public OffHeapCacheMap(long capacity) {
+        int segmentCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(capacity / SEGMENTS, MIN_SEGMENT_CAPACITY));
+
+        segments = new OffHeapCacheMap.Segment[SEGMENTS];
+        for(int i=0; i<SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Serialize the value passed as argument to the given destination.
+     */
+    protected abstract void writeValue(DataOutput out, V value) throws IOException;
+
+    /**
+     * Deserialize a value written by writeValue from the given source.
+     */
+    protected abstract V readValue(DataInput in) throws IOException;
+
+
+    /**
+     * Look up the value for the given primitive key.
+     *
+     * @param key the key to look up
+     * @return a freshly deserialized copy of the cached value, or null if the key is not (or no longer) cached
+     */
+    public V get(long key) {
+        byte[] data = segmentFor(key).get(key);
+        if(data != null) {
+            try {
+                return readValue(ByteStreams.newDataInput(data));
+            } catch (IOException | RuntimeException e) {
+                log.warn("could not deserialize off-heap cache entry for key {}: {}", key, e.getMessage());
+                segmentFor(key).remove(key);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public V get(Object key) {
+        if(key instanceof Long) {
+            return get(((Long) key).longValue());
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && segmentFor((Long) key).contains((Long) key);
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        try {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            writeValue(out, value);
+            segmentFor(key).put(key, out.toByteArray());
+        } catch (IOException | RuntimeException e) {
+            log.warn("could not serialize value for off-heap cache (key: {}): {}", key, e.getMessage());
+            segmentFor(key).remove(key);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if(key instanceof Long) {
+            segmentFor((Long) key).remove((Long) key);
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Return a snapshot of all entries currently contained in the cache. Note that this requires deserializing
+     * all cached values and should therefore be avoided on large caches.
+     */
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        Map<Long,V> snapshot = new HashMap<>();
+        for(Segment segment : segments) {
+            for(long key : segment.keys()) {
+                V value = get(key);
+                if(value != null) {
+                    snapshot.put(key, value);
+                }
+            }
+        }
+        return snapshot.entrySet();
+    }
+
+    private Segment segmentFor(long key) {
+        // the upper bits select the segment, the lower bits the slot within a segment
+        return segments[(int) (hash(key) >>> 60)];
+    }
+
+    private static long hash(long key) {
+        // finalization step of MurmurHash3
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+
+    /**
+     * A segment of the cache, consisting of a direct memory ring buffer holding length-prefixed serialized values
+     * and a linear probing index mapping keys to logical buffer addresses. A logical address grows monotonically
+     * with each write; a record is still valid as long as it lies within the last capacity bytes written.
+     */
+    private final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ByteBuffer data;
+
+        private final int capacity;
+
+        // logical address of the next record to be written
+        private long writeAddress = 0;
+
+        private long[] keys;
+        private long[] addresses;
+
+        // number of occupied index slots, including slots pointing to records that have been overwritten
+        private int used;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.data     = ByteBuffer.allocateDirect(capacity);
+
+            initIndex(INITIAL_INDEX_SIZE);
+        }
+
+        private void initIndex(int slots) {
+            keys      = new long[slots];
+            addresses = new long[slots];
+            Arrays.fill(addresses, EMPTY);
+            used = 0;
+        }
+
+        private boolean isValid(long address) {
+            return address >= writeAddress - capacity;
+        }
+
+        private int slot(long key) {
+            return (int) hash(key) & (keys.length - 1);
+        }
+
+        private int find(long key) {
+            int i = slot(key);
+            while(addresses[i] != EMPTY) {
+                if(keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & (keys.length - 1);
+            }
+            return -1;
+        }
+
+        private byte[] get(long key) {
+            lock.lock();
+            try {
+                int i = find(key);
+                if(i < 0) {
+                    return null;
+                }
+                if(!isValid(addresses[i])) {
+                    delete(i);
+                    return null;
+                }
+
+                int position = (int) (addresses[i] % capacity);
+                byte[] result = new byte[data.getInt(position)];
+
+                ByteBuffer view = data.duplicate();
+                view.position(position + 4);
+                view.get(result);
+
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean contains(long key) {
+            lock.lock();
+            try {
+                int i = find(key);
+                return i >= 0 && isValid(addresses[i]);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(long key, byte[] value) {
+            int length = value.length + 4;
+            if(length > capacity) {
+                // values larger than the segment are not cached at all
+                remove(key);
+                return;
+            }
+
+            lock.lock();
+            try {
+                // records never wrap around the end of the buffer; skip the remaining bytes instead
+                int position = (int) (writeAddress % capacity);
+                if(position + length > capacity) {
+                    writeAddress += capacity - position;
+                    position = 0;
+                }
+
+                long address = writeAddress;
+
+                data.putInt(position, value.length);
+                ByteBuffer view = data.duplicate();
+                view.position(position + 4);
+                view.put(value);
+
+                writeAddress += length;
+
+                int i = find(key);
+                if(i >= 0) {
+                    addresses[i] = address;
+                } else {
+                    if((used + 1) * 4 > keys.length * 3) {
+                        rehash();
+                    }
+                    insert(key, address);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove(long key) {
+            lock.lock();
+            try {
+                int i = find(key);
+                if(i >= 0) {
+                    delete(i);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                int size = 0;
+                for(long address : addresses) {
+                    if(address != EMPTY && isValid(address)) {
+                        size++;
+                    }
+                }
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long[] keys() {
+            lock.lock();
+            try {
+                long[] result = new long[used];
+                int count = 0;
+                for(int i=0; i<addresses.length; i++) {
+                    if(addresses[i] != EMPTY && isValid(addresses[i])) {
+                        result[count++] = keys[i];
+                    }
+                }
+                return Arrays.copyOf(result, count);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                initIndex(INITIAL_INDEX_SIZE);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void insert(long key, long address) {
+            int i = slot(key);
+            while(addresses[i] != EMPTY) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            keys[i]      = key;
+            addresses[i] = address;
+            used++;
+        }
+
+        /**
+         * Remove the index slot at the given position, shifting back subsequent entries of the same probe sequence
+         * so that lookups do not need tombstones.
+         */
+        private void delete(int i) {
+            int mask = keys.length - 1;
+
+            addresses[i] = EMPTY;
+            used--;
+
+            int j = i;
+            while(true) {
+                j = (j + 1) & mask;
+                if(addresses[j] == EMPTY) {
+                    return;
+                }
+                int k = slot(keys[j]);
+                // entry j may stay in place if its home slot k lies cyclically in (i, j]
+                if(i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                    continue;
+                }
+                keys[i]      = keys[j];
+                addresses[i] = addresses[j];
+                addresses[j] = EMPTY;
+                i = j;
+            }
+        }
+
+        /**
+         * Rebuild the index, dropping all entries whose records have been overwritten, and grow it in case the
+         * remaining live entries would still fill more than half of it.
+         */
+        private void rehash() {
+            long[] oldKeys      = keys;
+            long[] oldAddresses = addresses;
+
+            int live = 0;
+            for(long address : oldAddresses) {
+                if(address != EMPTY && isValid(address)) {
+                    live++;
+                }
+            }
+
+            int slots = INITIAL_INDEX_SIZE;
+            while(slots < live * 2) {
+                slots <<= 1;
+            }
+            if(slots < oldKeys.length && live * 4 > slots) {
+                slots = oldKeys.length;
+            }
+
+            initIndex(slots);
+            for(int i=0; i<oldKeys.length; i++) {
+                if(oldAddresses[i] != EMPTY && isValid(oldAddresses[i])) {
+                    insert(oldKeys[i], oldAddresses[i]);
+                }
+            }
+
+            log.debug("rebuilt off-heap cache index ({} live entries, {} slots)", live, slots);
+        }
+    }
+}
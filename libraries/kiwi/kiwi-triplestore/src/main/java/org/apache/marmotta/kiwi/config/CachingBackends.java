@@ -29,6 +29,12 @@ public enum CachingBackends {
      */
     GUAVA("org.apache.marmotta.kiwi.caching.GuavaCacheManagerFactory"),
 
+    /**
+     * In-memory cache backend keeping the node and triple caches in serialized form in off-heap memory; reduces
+     * garbage collection pressure for very large caches; no clustering support
+     */
+    OFFHEAP("org.apache.marmotta.kiwi.caching.OffHeapCacheManagerFactory"),
+
     /**
      * Cache backend based on Infinispan using a dynamic cluster setup (UDP multicast)
      */
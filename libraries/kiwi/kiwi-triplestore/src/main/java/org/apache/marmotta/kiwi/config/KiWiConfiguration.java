@@ -79,6 +79,26 @@ public class KiWiConfiguration {
 
     private int tripleBatchSize = 10000;
 
+    /**
+     * Run the garbage collector in a background thread, removing deleted triples and unreferenced nodes
+     */
+    private boolean garbageCollectionEnabled = false;
+
+    private long garbageCollectionInterval = 24L * 60 * 60 * 1000;
+
+    private int garbageCollectionChunkSize = 1000;
+
+    private int garbageCollectionRate = 10000;
+
+    /**
+     * Maintain cardinality statistics over the triples table for the query optimizer, refreshed in a background thread
+     */
+    private boolean statisticsEnabled = false;
+
+    private long statisticsInterval = 60L * 60 * 1000;
+
+    private int statisticsPairThreshold = 100;
+
     /**
      * Size of the database cursor for pre-fetching rows on database supporting this feature. If the size is set to 0,
      * no cursor is used and all rows are retrieved in one batch.
@@ -87,6 +107,30 @@ public class KiWiConfiguration {
      */
     private int cursorSize = 1000;
 
+    /**
+     * Number of rows of a natively evaluated SPARQL query result whose nodes are resolved together in a single
+     * batch lookup.
+     */
+    private int resultWindowSize = 1000;
+
+    /**
+     * Maximum number of natively evaluated SPARQL queries that are executed on the database concurrently by a
+     * SPARQL sail.
+     */
+    private int queryThreads = 8;
+
+    /**
+     * Maximum number of natively evaluated SPARQL queries that wait for execution once all query threads are busy;
+     * further queries block the caller until a slot becomes available.
+     */
+    private int queryQueueSize = 64;
+
+    /**
+     * Maximum number of SQL translations of natively evaluated SPARQL queries that are cached by a SPARQL sail; 0
+     * disables the cache.
+     */
+    private int translationCacheSize = 500;
+
     private boolean fulltextEnabled     = false;
     private String[] fulltextLanguages;
 
@@ -109,6 +153,8 @@ public class KiWiConfiguration {
 
     private int namespaceCacheSize = 500;
 
+    private int offHeapCacheMemory = 1024;
+
     private int datacenterId = 0;
 
 
@@ -244,6 +290,117 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Return true if the garbage collector runs in a background thread, removing deleted triples and unreferenced
+     * nodes from the database in regular intervals.
+     */
+    public boolean isGarbageCollectionEnabled() {
+        return garbageCollectionEnabled;
+    }
+
+    /**
+     * Run the garbage collector in a background thread, removing deleted triples and unreferenced nodes from the
+     * database in regular intervals.
+     */
+    public KiWiConfiguration setGarbageCollectionEnabled(boolean garbageCollectionEnabled) {
+        this.garbageCollectionEnabled = garbageCollectionEnabled;
+        return this;
+    }
+
+    /**
+     * The interval between two garbage collection runs of the background thread (milliseconds)
+     */
+    public long getGarbageCollectionInterval() {
+        return garbageCollectionInterval;
+    }
+
+    /**
+     * The interval between two garbage collection runs of the background thread (milliseconds)
+     */
+    public KiWiConfiguration setGarbageCollectionInterval(long garbageCollectionInterval) {
+        this.garbageCollectionInterval = garbageCollectionInterval;
+        return this;
+    }
+
+    /**
+     * The maximum number of rows the garbage collector examines and deletes in a single transaction
+     */
+    public int getGarbageCollectionChunkSize() {
+        return garbageCollectionChunkSize;
+    }
+
+    /**
+     * The maximum number of rows the garbage collector examines and deletes in a single transaction
+     */
+    public KiWiConfiguration setGarbageCollectionChunkSize(int garbageCollectionChunkSize) {
+        this.garbageCollectionChunkSize = garbageCollectionChunkSize;
+        return this;
+    }
+
+    /**
+     * The maximum number of rows per second examined by the garbage collector (0 for no limit)
+     */
+    public int getGarbageCollectionRate() {
+        return garbageCollectionRate;
+    }
+
+    /**
+     * The maximum number of rows per second examined by the garbage collector (0 for no limit)
+     */
+    public KiWiConfiguration setGarbageCollectionRate(int garbageCollectionRate) {
+        this.garbageCollectionRate = garbageCollectionRate;
+        return this;
+    }
+
+    /**
+     * Return true if cardinality statistics over the triples table are maintained for the query optimizer. The
+     * statistics are recomputed by a background thread in regular intervals and updated on every commit in between.
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Maintain cardinality statistics over the triples table for the query optimizer. The statistics are recomputed
+     * by a background thread in regular intervals and updated on every commit in between.
+     */
+    public KiWiConfiguration setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+        return this;
+    }
+
+    /**
+     * The interval between two full recomputations of the triple statistics (milliseconds)
+     */
+    public long getStatisticsInterval() {
+        return statisticsInterval;
+    }
+
+    /**
+     * The interval between two full recomputations of the triple statistics (milliseconds)
+     */
+    public KiWiConfiguration setStatisticsInterval(long statisticsInterval) {
+        this.statisticsInterval = statisticsInterval;
+        return this;
+    }
+
+    /**
+     * The minimum number of triples a (predicate, object) combination needs to have to be counted individually in
+     * the triple statistics; lower values give better estimates for rare classes but need more memory
+     */
+    public int getStatisticsPairThreshold() {
+        return statisticsPairThreshold;
+    }
+
+    /**
+     * The minimum number of triples a (predicate, object) combination needs to have to be counted individually in
+     * the triple statistics; lower values give better estimates for rare classes but need more memory
+     */
+    public KiWiConfiguration setStatisticsPairThreshold(int statisticsPairThreshold) {
+        this.statisticsPairThreshold = statisticsPairThreshold;
+        return this;
+    }
+
     /**
      * Size of the database cursor for pre-fetching rows on database supporting this feature. If the size is set to 0,
      * no cursor is used and all rows are retrieved in one batch.
@@ -265,6 +422,80 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Number of rows of a natively evaluated SPARQL query result whose nodes are resolved together in a single
+     * batch lookup. Larger windows need fewer database roundtrips when the node cache is cold, but keep more rows
+     * in memory.
+     */
+    public int getResultWindowSize() {
+        return resultWindowSize;
+    }
+
+    /**
+     * Number of rows of a natively evaluated SPARQL query result whose nodes are resolved together in a single
+     * batch lookup. Larger windows need fewer database roundtrips when the node cache is cold, but keep more rows
+     * in memory.
+     */
+    public KiWiConfiguration setResultWindowSize(int resultWindowSize) {
+        this.resultWindowSize = resultWindowSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of natively evaluated SPARQL queries that are executed on the database concurrently by a
+     * SPARQL sail. Each running query occupies a database connection, so this value should stay well below the
+     * size of the connection pool.
+     */
+    public int getQueryThreads() {
+        return queryThreads;
+    }
+
+    /**
+     * Maximum number of natively evaluated SPARQL queries that are executed on the database concurrently by a
+     * SPARQL sail. Each running query occupies a database connection, so this value should stay well below the
+     * size of the connection pool.
+     */
+    public KiWiConfiguration setQueryThreads(int queryThreads) {
+        this.queryThreads = queryThreads;
+        return this;
+    }
+
+    /**
+     * Maximum number of natively evaluated SPARQL queries that wait for execution once all query threads are busy.
+     * When the queue is full, further queries block the calling thread until a slot becomes available.
+     */
+    public int getQueryQueueSize() {
+        return queryQueueSize;
+    }
+
+    /**
+     * Maximum number of natively evaluated SPARQL queries that wait for execution once all query threads are busy.
+     * When the queue is full, further queries block the calling thread until a slot becomes available.
+     */
+    public KiWiConfiguration setQueryQueueSize(int queryQueueSize) {
+        this.queryQueueSize = queryQueueSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of SQL translations of natively evaluated SPARQL queries that are cached by a SPARQL sail.
+     * Queries only differing in their constants share the same translation, the constants are passed as query
+     * parameters. A value of 0 disables the cache.
+     */
+    public int getTranslationCacheSize() {
+        return translationCacheSize;
+    }
+
+    /**
+     * Maximum number of SQL translations of natively evaluated SPARQL queries that are cached by a SPARQL sail.
+     * Queries only differing in their constants share the same translation, the constants are passed as query
+     * parameters. A value of 0 disables the cache.
+     */
+    public KiWiConfiguration setTranslationCacheSize(int translationCacheSize) {
+        this.translationCacheSize = translationCacheSize;
+        return this;
+    }
+
     /**
      * Return true in case fulltext support is enabled in this configuration. If this is the case, the SPARQL module
      * will prepare the database with appropriate fulltext index support. Since this adds additional overhead, it is
@@ -429,6 +660,21 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * The amount of off-heap memory (in MB) used by the OFFHEAP caching backend for storing nodes and triples by id.
+     */
+    public int getOffHeapCacheMemory() {
+        return offHeapCacheMemory;
+    }
+
+    /**
+     * The amount of off-heap memory (in MB) used by the OFFHEAP caching backend for storing nodes and triples by id.
+     */
+    public KiWiConfiguration setOffHeapCacheMemory(int offHeapCacheMemory) {
+        this.offHeapCacheMemory = offHeapCacheMemory;
+        return this;
+    }
+
     /**
      * The datacenter ID of this server for generating unique database IDs. If not given, a random value will
      * be generated.
@@ -624,7 +870,7 @@ public class KiWiConfiguration {
 
     /**
      * Return true if statistics collection in JMX. The JMX name of the KiWi statistics bean will be
-     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean
+     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=[configuration name]
      */
     public boolean isJmxEnabled() {
         return jmxEnabled;
@@ -632,7 +878,7 @@ public class KiWiConfiguration {
 
     /**
      * Enable/disable statistics collection in JMX. The JMX name of the KiWi statistics bean will be
-     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean
+     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=[configuration name]
      *
      * @param jmxEnabled
      */
@@ -40,6 +40,12 @@ public enum RegistryStrategy {
      * Use a local in-memory hash map to synchronize between parallel instances. Does not synchronize across machines
      * in a cluster
      */
-    LOCAL
+    LOCAL,
+
+    /**
+     * Use a lock-striped local in-memory registry partitioned by triple key. Like LOCAL, but transactions creating
+     * different triples do not block each other. Does not synchronize across machines in a cluster
+     */
+    SHARDED
 
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics collected by a KiWi triple store. The counters are updated by the connections of the store and
+ * published in JMX under the name org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=[store name] in
+ * case JMX is enabled in the configuration.
+ */
+public class KiWiStatistics implements KiWiStatisticsMBean {
+
+    private final AtomicLong tripleQueryCacheHits   = new AtomicLong();
+    private final AtomicLong tripleQueryCacheMisses = new AtomicLong();
+
+    private final AtomicLong gcTriples  = new AtomicLong();
+    private final AtomicLong gcNodes    = new AtomicLong();
+    private final AtomicLong gcRuns     = new AtomicLong();
+    private final AtomicLong gcTime     = new AtomicLong();
+
+    public KiWiStatistics() {
+    }
+
+    /**
+     * Record that a triple pattern query could reuse a cached prepared statement.
+     */
+    public void tripleQueryCacheHit() {
+        tripleQueryCacheHits.incrementAndGet();
+    }
+
+    /**
+     * Record that a triple pattern query needed to prepare a new statement.
+     */
+    public void tripleQueryCacheMiss() {
+        tripleQueryCacheMisses.incrementAndGet();
+    }
+
+    /**
+     * Record the number of triples removed by a garbage collection chunk.
+     */
+    public void garbageCollectedTriples(int count) {
+        gcTriples.addAndGet(count);
+    }
+
+    /**
+     * Record the number of nodes removed by a garbage collection chunk.
+     */
+    public void garbageCollectedNodes(int count) {
+        gcNodes.addAndGet(count);
+    }
+
+    /**
+     * Record a completed garbage collection run and its duration in milliseconds.
+     */
+    public void garbageCollectionRun(long duration) {
+        gcRuns.incrementAndGet();
+        gcTime.addAndGet(duration);
+    }
+
+    @Override
+    public long getTripleQueryCacheHits() {
+        return tripleQueryCacheHits.get();
+    }
+
+    @Override
+    public long getTripleQueryCacheMisses() {
+        return tripleQueryCacheMisses.get();
+    }
+
+    @Override
+    public double getTripleQueryCacheHitRatio() {
+        long hits  = tripleQueryCacheHits.get();
+        long total = hits + tripleQueryCacheMisses.get();
+
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    @Override
+    public long getGarbageCollectedTriples() {
+        return gcTriples.get();
+    }
+
+    @Override
+    public long getGarbageCollectedNodes() {
+        return gcNodes.get();
+    }
+
+    @Override
+    public long getGarbageCollectionRuns() {
+        return gcRuns.get();
+    }
+
+    @Override
+    public long getGarbageCollectionTime() {
+        return gcTime.get();
+    }
+
+    @Override
+    public void reset() {
+        tripleQueryCacheHits.set(0);
+        tripleQueryCacheMisses.set(0);
+        gcTriples.set(0);
+        gcNodes.set(0);
+        gcRuns.set(0);
+        gcTime.set(0);
+    }
+}
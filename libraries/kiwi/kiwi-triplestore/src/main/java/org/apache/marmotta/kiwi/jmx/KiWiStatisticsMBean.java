@@ -23,4 +23,44 @@ package org.apache.marmotta.kiwi.jmx;
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
 public interface KiWiStatisticsMBean {
+
+    /**
+     * Return the number of triple pattern queries that could reuse a prepared statement for their pattern shape.
+     */
+    long getTripleQueryCacheHits();
+
+    /**
+     * Return the number of triple pattern queries that needed to prepare a new statement.
+     */
+    long getTripleQueryCacheMisses();
+
+    /**
+     * Return the ratio of triple pattern queries reusing a prepared statement (between 0 and 1).
+     */
+    double getTripleQueryCacheHitRatio();
+
+    /**
+     * Return the number of deleted triples removed from the database by the garbage collector.
+     */
+    long getGarbageCollectedTriples();
+
+    /**
+     * Return the number of unreferenced nodes removed from the database by the garbage collector.
+     */
+    long getGarbageCollectedNodes();
+
+    /**
+     * Return the number of garbage collection runs.
+     */
+    long getGarbageCollectionRuns();
+
+    /**
+     * Return the total time spent in garbage collection runs (milliseconds), including throttling.
+     */
+    long getGarbageCollectionTime();
+
+    /**
+     * Reset all statistics counters to 0.
+     */
+    void reset();
 }
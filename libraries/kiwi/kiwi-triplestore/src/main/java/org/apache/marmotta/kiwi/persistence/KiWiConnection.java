@@ -20,12 +20,11 @@ package org.apache.marmotta.kiwi.persistence;
 import com.google.common.base.Preconditions;
 import com.google.common.hash.BloomFilter;
 import com.google.common.hash.Funnels;
-import com.google.common.primitives.Longs;
 import info.aduna.iteration.*;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.marmotta.commons.sesame.model.LiteralCommons;
 import org.apache.marmotta.commons.sesame.model.Namespaces;
-import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
+import org.apache.marmotta.commons.sesame.tripletable.CompactTripleTable;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.exception.ResultInterruptedException;
@@ -45,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -68,7 +68,7 @@ public class KiWiConnection implements AutoCloseable {
 
     protected CacheManager cacheManager;
 
-    protected TripleTable<KiWiTriple> tripleBatch;
+    protected CompactTripleTable<KiWiTriple> tripleBatch;
 
     /**
      * Cache nodes by database ID
@@ -113,7 +113,11 @@ public class KiWiConnection implements AutoCloseable {
     private static Calendar calendarUTC = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
 
 
-    private Map<String,PreparedStatement> statementCache = new HashMap<>();
+    private Map<String,PreparedStatement> statementCache = new ConcurrentHashMap<>();
+
+    // cached triple pattern statements that currently have an open result set; a nested query of the same pattern
+    // shape cannot reuse such a statement, because executing it again would close the result set of the outer query
+    private Set<PreparedStatement> activeTripleQueries = Collections.newSetFromMap(new ConcurrentHashMap<PreparedStatement, Boolean>());
 
     private boolean autoCommit = false;
     private boolean batchCommit = true;
@@ -123,9 +127,6 @@ public class KiWiConnection implements AutoCloseable {
     private int batchSize = 1000;
 
     private ReentrantLock commitLock  = new ReentrantLock();
-    private ReentrantLock literalLock = new ReentrantLock();
-    private ReentrantLock uriLock     = new ReentrantLock();
-    private ReentrantLock bnodeLock   = new ReentrantLock();
 
     // this set keeps track of all statements that have been deleted in the active transaction of this connection
     // this is needed to be able to determine if adding the triple again will merely undo a deletion or is a
@@ -134,6 +135,9 @@ public class KiWiConnection implements AutoCloseable {
 
     private long transactionId;
 
+    // changes of the active transaction to the triple statistics, applied on commit
+    private KiWiTripleStatistics.Delta statisticsDelta = new KiWiTripleStatistics.Delta();
+
     private int QUERY_BATCH_SIZE = 1024;
 
     public KiWiConnection(KiWiPersistence persistence, KiWiDialect dialect, CacheManager cacheManager) throws SQLException {
@@ -168,7 +172,7 @@ public class KiWiConnection implements AutoCloseable {
             connection.setAutoCommit(autoCommit);
         }
         if (tripleBatch == null) {
-            tripleBatch = new TripleTable<>();
+            tripleBatch = new CompactTripleTable<>();
         }
     }
 
@@ -199,6 +203,13 @@ public class KiWiConnection implements AutoCloseable {
         return persistence.getConfiguration();
     }
 
+    /**
+     * Return the cardinality statistics over the triples table maintained by the persistence of this connection.
+     */
+    public KiWiTripleStatistics getTripleStatistics() {
+        return persistence.getTripleStatistics();
+    }
+
     /**
      * Load a KiWiNamespace with the given prefix, or null if the namespace does not exist. The method will first
      * look in the node cache for cached nodes. If no cache entry is found, it will run a database query
@@ -416,64 +427,121 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException
      */
     public KiWiNode[] loadNodesByIds(long... ids) throws SQLException {
-        requireJDBCConnection();
+        Set<Long> toLoad = new HashSet<>(ids.length << 1);
+        for(long id : ids) {
+            if(id != 0) {
+                toLoad.add(id);
+            }
+        }
 
-        KiWiNode[] result = new KiWiNode[ids.length];
+        Map<Long,KiWiNode> nodes = loadNodeMap(toLoad);
 
-        // first look in the cache for any ids that have already been loaded
-        ArrayList<Long> toFetch = new ArrayList<>(ids.length);
+        KiWiNode[] result = new KiWiNode[ids.length];
         for(int i=0; i < ids.length; i++) {
             if(ids[i] != 0) {
-                result[i] = nodeCache.get(ids[i]);
-                if(result[i] == null) {
-                    toFetch.add(ids[i]);
-                }
+                result[i] = nodes.get(ids[i]);
             }
         }
+        return result;
+    }
 
-        if(toFetch.size() > 0) {
-            // declare variables before to optimize stack allocation
-            int position = 0;
-            int nextBatchSize;
-            PreparedStatement query;
-            KiWiNode node;
+    /**
+     * Batch load the nodes with the given ids and return them as a map from id to node. Nodes found in the node
+     * cache are taken from there, all other nodes are retrieved with as few multi-id queries as possible. Ids of
+     * nodes that do not exist in the database are not contained in the result.
+     *
+     * @param ids the ids to retrieve
+     * @return a map from node id to node
+     * @throws SQLException
+     */
+    public Map<Long,KiWiNode> loadNodeMap(Set<Long> ids) throws SQLException {
+        requireJDBCConnection();
 
-            while(position < toFetch.size()) {
-                nextBatchSize = computeBatchSize(position, toFetch.size());
+        Map<Long,KiWiNode> result = new HashMap<>(ids.size() << 1);
 
-                query = getPreparedStatement("load.nodes_by_ids", nextBatchSize);
-                synchronized (query) {
+        // first look in the cache for any ids that have already been loaded
+        long[] toFetch = new long[ids.size()];
+        int fetchCount = 0;
+        for(Long id : ids) {
+            KiWiNode cached = nodeCache.get(id);
+            if(cached != null) {
+                result.put(id, cached);
+            } else {
+                toFetch[fetchCount++] = id;
+            }
+        }
 
-                    for(int i=0; i<nextBatchSize; i++) {
-                        query.setLong(i+1, toFetch.get(position + i));
-                    }
-                    query.setMaxRows(nextBatchSize);
-
-                    // run the database query and if it yields a result, construct a new node; the method call will take care of
-                    // caching the constructed node for future calls
-                    try (ResultSet rows = query.executeQuery()) {
-                        while (rows.next()) {
-                            node = constructNodeFromDatabase(rows);
-                            for (int i = 0; i < ids.length; i++) {
-                                if (ids[i] == node.getId()) {
-                                    result[i] = node;
-                                }
-                            }
-                        }
-                    }
+        // declare variables before to optimize stack allocation
+        int position = 0;
+        int nextBatchSize;
+        PreparedStatement query;
+        KiWiNode node;
 
-                    position += nextBatchSize;
+        while(position < fetchCount) {
+            nextBatchSize = computeBatchSize(position, fetchCount);
+
+            query = getPreparedStatement("load.nodes_by_ids", nextBatchSize);
+            synchronized (query) {
+
+                // the last batch is padded by repeating the last id, so all ids are retrieved with a single query
+                // while the number of different statements to prepare is kept small
+                for(int i=0; i<nextBatchSize; i++) {
+                    query.setLong(i+1, toFetch[Math.min(position + i, fetchCount - 1)]);
                 }
+                query.setMaxRows(nextBatchSize);
+
+                // run the database query and if it yields a result, construct a new node; the method call will take care of
+                // caching the constructed node for future calls
+                try (ResultSet rows = query.executeQuery()) {
+                    while (rows.next()) {
+                        node = constructNodeFromDatabase(rows);
+                        result.put(node.getId(), node);
+                    }
+                }
+
+                position += nextBatchSize;
             }
+        }
 
+        return result;
+    }
 
+    /**
+     * Load at most limit nodes with an id greater than the given id, ordered by id. Calling this method repeatedly
+     * with the id of the last node returned allows streaming the complete nodes table in chunks, e.g. for creating
+     * a dump of the database.
+     *
+     * @param id    only nodes with an id greater than this value are returned
+     * @param limit maximum number of nodes to return
+     * @return the nodes following the given id in id order; empty if there are no more nodes
+     * @throws SQLException
+     */
+    public List<KiWiNode> listNodesAfter(long id, int limit) throws SQLException {
+        requireJDBCConnection();
+
+        List<KiWiNode> result = new ArrayList<>(limit);
+
+        PreparedStatement query = getPreparedStatement("load.nodes_after");
+        synchronized (query) {
+            query.setLong(1, id);
+            query.setInt(2, limit);
+
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    result.add(constructNodeFromDatabase(rows));
+                }
+            }
         }
         return result;
     }
 
+    /**
+     * Return the number of ids to retrieve in the next node query: the smallest power of two that covers all
+     * remaining ids, but at most QUERY_BATCH_SIZE.
+     */
     private int computeBatchSize(int position, int length) {
         int batchSize = QUERY_BATCH_SIZE;
-        while (length - position < batchSize) {
+        while (batchSize > 1 && length - position <= batchSize >> 1) {
             batchSize = batchSize >> 1;
         }
         return batchSize;
@@ -526,10 +594,9 @@ public class KiWiConnection implements AutoCloseable {
 
         requireJDBCConnection();
 
-        uriLock.lock();
-        try {
-            // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
-            PreparedStatement query = getPreparedStatement("load.uri_by_uri");
+        // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
+        PreparedStatement query = getPreparedStatement("load.uri_by_uri");
+        synchronized (query) {
             query.setString(1, uri);
             query.setMaxRows(1);
 
@@ -540,8 +607,6 @@ public class KiWiConnection implements AutoCloseable {
                     return (KiWiUriResource) constructNodeFromDatabase(result);
                 }
             }
-        } finally {
-            uriLock.unlock();
         }
         return null;
     }
@@ -567,11 +632,9 @@ public class KiWiConnection implements AutoCloseable {
 
         requireJDBCConnection();
 
-        bnodeLock.lock();
-
-        try {
-            // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
-            PreparedStatement query = getPreparedStatement("load.bnode_by_anonid");
+        // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
+        PreparedStatement query = getPreparedStatement("load.bnode_by_anonid");
+        synchronized (query) {
             query.setString(1,id);
             query.setMaxRows(1);
 
@@ -582,8 +645,6 @@ public class KiWiConnection implements AutoCloseable {
                     return (KiWiAnonResource) constructNodeFromDatabase(result);
                 }
             }
-        } finally {
-            bnodeLock.unlock();
         }
         return null;
     }
@@ -617,21 +678,21 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
+        // otherwise prepare a query, depending on the parameters given
+        final PreparedStatement query;
+        if(lang == null && ltype == null) {
+            query = getPreparedStatement("load.literal_by_v");
+        } else if(lang != null) {
+            query = getPreparedStatement("load.literal_by_vl");
+        } else {
+            query = getPreparedStatement("load.literal_by_vt");
+        }
 
-        try {
-            // otherwise prepare a query, depending on the parameters given
-            final PreparedStatement query;
-            if(lang == null && ltype == null) {
-                query = getPreparedStatement("load.literal_by_v");
-                query.setString(1,value);
-            } else if(lang != null) {
-                query = getPreparedStatement("load.literal_by_vl");
-                query.setString(1,value);
+        synchronized (query) {
+            query.setString(1,value);
+            if(lang != null) {
                 query.setString(2, lang);
-            } else {
-                query = getPreparedStatement("load.literal_by_vt");
-                query.setString(1,value);
+            } else if(ltype != null) {
                 query.setLong(2,ltype.getId());
             }
 
@@ -642,8 +703,6 @@ public class KiWiConnection implements AutoCloseable {
                     return (KiWiLiteral) constructNodeFromDatabase(result);
                 }
             }
-        } finally {
-            literalLock.unlock();
         }
         return null;
     }
@@ -676,11 +735,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-        try {
-
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_tv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_tv");
+        synchronized (query) {
             query.setTimestamp(1, new Timestamp(date.getMillis()), calendarUTC);
             query.setInt(2, date.getZone().getOffset(date)/1000);
             query.setLong(3,ltype.getId());
@@ -693,8 +750,6 @@ public class KiWiConnection implements AutoCloseable {
                 }
                 return null;
             }
-        } finally {
-            literalLock.unlock();
         }
     }
 
@@ -728,12 +783,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-
-        try {
-
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_iv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_iv");
+        synchronized (query) {
             query.setLong(1,value);
             query.setLong(2,ltype.getId());
 
@@ -744,8 +796,6 @@ public class KiWiConnection implements AutoCloseable {
                     return (KiWiIntLiteral) constructNodeFromDatabase(result);
                 }
             }
-        } finally {
-            literalLock.unlock();
         }
         return null;
     }
@@ -779,11 +829,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-
-        try {
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_dv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_dv");
+        synchronized (query) {
             query.setDouble(1, value);
             query.setLong(2, ltype.getId());
 
@@ -797,8 +845,6 @@ public class KiWiConnection implements AutoCloseable {
                 log.error("Unable to create KiWiDoubleLiteral for node value '{}': {}", value, e.getMessage(), e);
                 throw e;
             }
-        } finally {
-            literalLock.unlock();
         }
         return null;
     }
@@ -832,11 +878,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-        try {
-
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_bv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_bv");
+        synchronized (query) {
             query.setBoolean(1, value);
             query.setLong(2,ltype.getId());
 
@@ -847,8 +891,6 @@ public class KiWiConnection implements AutoCloseable {
                     return (KiWiBooleanLiteral) constructNodeFromDatabase(result);
                 }
             }
-        } finally {
-            literalLock.unlock();
         }
         return null;
     }
@@ -864,7 +906,7 @@ public class KiWiConnection implements AutoCloseable {
      * @param node the KiWiNode to store
      * @throws SQLException
      */
-    public synchronized void storeNode(KiWiNode node) throws SQLException {
+    public void storeNode(KiWiNode node) throws SQLException {
 
         // ensure the data type of a literal is persisted first
         if (node instanceof KiWiLiteral) {
@@ -886,79 +928,91 @@ public class KiWiConnection implements AutoCloseable {
             KiWiUriResource uriResource = (KiWiUriResource)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.uri");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2,uriResource.stringValue());
-            insertNode.setTimestamp(3, new Timestamp(uriResource.getCreated().getTime()), calendarUTC);
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2,uriResource.stringValue());
+                insertNode.setTimestamp(3, new Timestamp(uriResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+                insertNode.executeUpdate();
+            }
 
         } else if (node instanceof KiWiAnonResource) {
             KiWiAnonResource anonResource = (KiWiAnonResource)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.bnode");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2,anonResource.stringValue());
-            insertNode.setTimestamp(3, new Timestamp(anonResource.getCreated().getTime()), calendarUTC);
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2,anonResource.stringValue());
+                insertNode.setTimestamp(3, new Timestamp(anonResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+                insertNode.executeUpdate();
+            }
         } else if (node instanceof KiWiDateLiteral) {
             KiWiDateLiteral dateLiteral = (KiWiDateLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.tliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, dateLiteral.stringValue());
-            insertNode.setTimestamp(3, new Timestamp(dateLiteral.getDateContent().getMillis()), calendarUTC);
-            insertNode.setInt(4, dateLiteral.getDateContent().getZone().getOffset(dateLiteral.getDateContent())/1000);
-            if (dateLiteral.getType() != null)
-                insertNode.setLong(5,dateLiteral.getType().getId());
-            else
-                throw new IllegalStateException("a date literal must have a datatype");
-            insertNode.setTimestamp(6, new Timestamp(dateLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, dateLiteral.stringValue());
+                insertNode.setTimestamp(3, new Timestamp(dateLiteral.getDateContent().getMillis()), calendarUTC);
+                insertNode.setInt(4, dateLiteral.getDateContent().getZone().getOffset(dateLiteral.getDateContent())/1000);
+                if (dateLiteral.getType() != null)
+                    insertNode.setLong(5,dateLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("a date literal must have a datatype");
+                insertNode.setTimestamp(6, new Timestamp(dateLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if (node instanceof KiWiIntLiteral) {
             KiWiIntLiteral intLiteral = (KiWiIntLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.iliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, intLiteral.getContent());
-            insertNode.setDouble(3, intLiteral.getDoubleContent());
-            insertNode.setLong(4, intLiteral.getIntContent());
-            if (intLiteral.getType() != null)
-                insertNode.setLong(5,intLiteral.getType().getId());
-            else
-                throw new IllegalStateException("an integer literal must have a datatype");
-            insertNode.setTimestamp(6, new Timestamp(intLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, intLiteral.getContent());
+                insertNode.setDouble(3, intLiteral.getDoubleContent());
+                insertNode.setLong(4, intLiteral.getIntContent());
+                if (intLiteral.getType() != null)
+                    insertNode.setLong(5,intLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("an integer literal must have a datatype");
+                insertNode.setTimestamp(6, new Timestamp(intLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if (node instanceof KiWiDoubleLiteral) {
             KiWiDoubleLiteral doubleLiteral = (KiWiDoubleLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.dliteral");
-            insertNode.setLong(1, node.getId());
-            insertNode.setString(2, doubleLiteral.getContent());
-            insertNode.setDouble(3, doubleLiteral.getDoubleContent());
-            if (doubleLiteral.getType() != null)
-                insertNode.setLong(4,doubleLiteral.getType().getId());
-            else
-                throw new IllegalStateException("a double literal must have a datatype");
-            insertNode.setTimestamp(5, new Timestamp(doubleLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1, node.getId());
+                insertNode.setString(2, doubleLiteral.getContent());
+                insertNode.setDouble(3, doubleLiteral.getDoubleContent());
+                if (doubleLiteral.getType() != null)
+                    insertNode.setLong(4,doubleLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("a double literal must have a datatype");
+                insertNode.setTimestamp(5, new Timestamp(doubleLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if (node instanceof KiWiBooleanLiteral) {
             KiWiBooleanLiteral booleanLiteral = (KiWiBooleanLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.bliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, booleanLiteral.getContent());
-            insertNode.setBoolean(3, booleanLiteral.booleanValue());
-            if (booleanLiteral.getType() != null)
-                insertNode.setLong(4,booleanLiteral.getType().getId());
-            else
-                throw new IllegalStateException("a boolean literal must have a datatype");
-            insertNode.setTimestamp(5, new Timestamp(booleanLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, booleanLiteral.getContent());
+                insertNode.setBoolean(3, booleanLiteral.booleanValue());
+                if (booleanLiteral.getType() != null)
+                    insertNode.setLong(4,booleanLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("a boolean literal must have a datatype");
+                insertNode.setTimestamp(5, new Timestamp(booleanLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if (node instanceof KiWiStringLiteral) {
             KiWiStringLiteral stringLiteral = (KiWiStringLiteral)node;
 
@@ -975,32 +1029,34 @@ public class KiWiConnection implements AutoCloseable {
 
 
             PreparedStatement insertNode = getPreparedStatement("store.sliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, stringLiteral.getContent());
-            if (dbl_value != null) {
-                insertNode.setDouble(3, dbl_value);
-            } else {
-                insertNode.setObject(3, null);
-            }
-            if (lng_value != null) {
-                insertNode.setLong(4, lng_value);
-            } else {
-                insertNode.setObject(4, null);
-            }
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, stringLiteral.getContent());
+                if (dbl_value != null) {
+                    insertNode.setDouble(3, dbl_value);
+                } else {
+                    insertNode.setObject(3, null);
+                }
+                if (lng_value != null) {
+                    insertNode.setLong(4, lng_value);
+                } else {
+                    insertNode.setObject(4, null);
+                }
 
-            if (stringLiteral.getLocale() != null) {
-                insertNode.setString(5, stringLiteral.getLocale().getLanguage().toLowerCase());
-            } else {
-                insertNode.setObject(5, null);
-            }
-            if(stringLiteral.getType() != null) {
-                insertNode.setLong(6,stringLiteral.getType().getId());
-            } else {
-                insertNode.setObject(6, null);
-            }
-            insertNode.setTimestamp(7, new Timestamp(stringLiteral.getCreated().getTime()), calendarUTC);
+                if (stringLiteral.getLocale() != null) {
+                    insertNode.setString(5, stringLiteral.getLocale().getLanguage().toLowerCase());
+                } else {
+                    insertNode.setObject(5, null);
+                }
+                if(stringLiteral.getType() != null) {
+                    insertNode.setLong(6,stringLiteral.getType().getId());
+                } else {
+                    insertNode.setObject(6, null);
+                }
+                insertNode.setTimestamp(7, new Timestamp(stringLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+                insertNode.executeUpdate();
+            }
         } else {
             log.warn("unrecognized node type: {}", node.getClass().getCanonicalName());
         }
@@ -1033,6 +1089,8 @@ public class KiWiConnection implements AutoCloseable {
                 //deletedStatementsLog.remove(triple.getId());
                 undeleteTriple(triple);
 
+                recordStatistics(triple, true);
+
             } else {
 
                 if(batchCommit) {
@@ -1083,6 +1141,11 @@ public class KiWiConnection implements AutoCloseable {
                         }
                     }
                 }
+
+                // existing triples that are stored again must not be counted twice
+                if (triple.isNewTriple()) {
+                    recordStatistics(triple, true);
+                }
             }
         }
     }
@@ -1136,11 +1199,13 @@ public class KiWiConnection implements AutoCloseable {
     public void deleteTriple(final KiWiTriple triple) throws SQLException {
         requireJDBCConnection();
 
-        RetryExecution<Void> execution = new RetryExecution<>("DELETE");
+        RetryExecution<Boolean> execution = new RetryExecution<>("DELETE");
         execution.setUseSavepoint(true);
-        execution.execute(connection, new RetryCommand<Void>() {
+        Boolean removed = execution.execute(connection, new RetryCommand<Boolean>() {
             @Override
-            public Void run() throws SQLException {
+            public Boolean run() throws SQLException {
+                boolean removed = false;
+
                 // mutual exclusion: prevent parallel adding and removing of the same triple
                 synchronized (triple) {
 
@@ -1160,9 +1225,11 @@ public class KiWiConnection implements AutoCloseable {
                                     PreparedStatement deleteTriple = getPreparedStatement("delete.triple");
                                     synchronized (deleteTriple) {
                                         deleteTriple.setLong(1, triple.getId());
-                                        deleteTriple.executeUpdate();
+                                        removed = deleteTriple.executeUpdate() > 0;
                                     }
                                     deletedStatementsLog.put(triple.getId());
+                                } else {
+                                    removed = true;
                                 }
                             } finally {
                                 commitLock.unlock();
@@ -1173,7 +1240,7 @@ public class KiWiConnection implements AutoCloseable {
                             PreparedStatement deleteTriple = getPreparedStatement("delete.triple");
                             synchronized (deleteTriple) {
                                 deleteTriple.setLong(1, triple.getId());
-                                deleteTriple.executeUpdate();
+                                removed = deleteTriple.executeUpdate() > 0;
                             }
                             deletedStatementsLog.put(triple.getId());
 
@@ -1183,10 +1250,30 @@ public class KiWiConnection implements AutoCloseable {
                     removeCachedTriple(triple);
                 }
 
-                return null;
+                return removed;
             }
         });
 
+        // triples that were already deleted must not be counted again
+        if (Boolean.TRUE.equals(removed)) {
+            recordStatistics(triple, false);
+        }
+    }
+
+    /**
+     * Record the addition or removal of a triple in the statistics changes of the active transaction, in case
+     * triple statistics are maintained by the persistence.
+     */
+    private void recordStatistics(KiWiTriple triple, boolean added) {
+        if (persistence.getTripleStatistics() != null && persistence.getTripleStatistics().isAvailable()) {
+            synchronized (statisticsDelta) {
+                if (added) {
+                    statisticsDelta.tripleAdded(triple);
+                } else {
+                    statisticsDelta.tripleRemoved(triple);
+                }
+            }
+        }
     }
 
     /**
@@ -1551,13 +1638,40 @@ public class KiWiConnection implements AutoCloseable {
 
         requireJDBCConnection();
 
-        // otherwise we need to create an appropriate SQL query and execute it, the repository result will be read-only
-        // and only allow forward iteration, so we can limit the query using the respective flags
-        PreparedStatement query = connection.prepareStatement(
-                constructTripleQuery(subject,predicate,object,context,inferred, wildcardContext),
-                ResultSet.TYPE_FORWARD_ONLY,
-                ResultSet.CONCUR_READ_ONLY
-        );
+        // otherwise we need an appropriate SQL query for the pattern shape and execute it; the statement is prepared
+        // once per shape and connection and reused unless it is still in use by another open iteration
+        final String shape = getTripleQueryShape(subject, predicate, object, context, inferred, wildcardContext);
+
+        PreparedStatement cached = statementCache.get(shape);
+        final PreparedStatement query;
+        final boolean shared;
+        if(cached != null && !cached.isClosed() && activeTripleQueries.add(cached)) {
+            persistence.getStatistics().tripleQueryCacheHit();
+
+            query  = cached;
+            shared = true;
+        } else {
+            persistence.getStatistics().tripleQueryCacheMiss();
+
+            // the repository result will be read-only and only allow forward iteration, so we can limit the query
+            // using the respective flags
+            query = connection.prepareStatement(
+                    constructTripleQuery(subject,predicate,object,context,inferred, wildcardContext),
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+
+            if(cached == null) {
+                shared = statementCache.putIfAbsent(shape, query) == null;
+            } else if(cached.isClosed()) {
+                shared = statementCache.replace(shape, cached, query);
+            } else {
+                shared = false;
+            }
+            if(shared) {
+                activeTripleQueries.add(query);
+            }
+        }
         query.clearParameters();
 
         if(persistence.getDialect().isCursorSupported()) {
@@ -1579,17 +1693,31 @@ public class KiWiConnection implements AutoCloseable {
             query.setLong(position++, context.getId());
         }
 
-        final ResultSet result = query.executeQuery();
+        final ResultSet result;
+        try {
+            result = query.executeQuery();
+        } catch (SQLException ex) {
+            releaseTripleQuery(query, shared);
+            throw ex;
+        }
 
 
         return new CloseableIteration<Statement, SQLException>() {
 
             List<KiWiTriple> batch = null;
             int batchPosition = 0;
+            boolean closed = false;
 
             @Override
             public void close() throws SQLException {
-                result.close();
+                if(!closed) {
+                    closed = true;
+                    try {
+                        result.close();
+                    } finally {
+                        releaseTripleQuery(query, shared);
+                    }
+                }
             }
 
             @Override
@@ -1623,6 +1751,40 @@ public class KiWiConnection implements AutoCloseable {
         };
     }
 
+    /**
+     * Release a statement used by listTriplesInternal after its result set has been closed. Cached statements are
+     * made available for reuse, statements created for a nested query are closed.
+     */
+    private void releaseTripleQuery(PreparedStatement query, boolean shared) throws SQLException {
+        if(shared) {
+            activeTripleQueries.remove(query);
+        } else {
+            query.close();
+        }
+    }
+
+    /**
+     * Return the key identifying the shape of a triple pattern query in the statement cache. Queries of the same
+     * shape only differ in their parameter values and can therefore share the same prepared statement.
+     *
+     * @param subject    the subject to query for, or null for a wildcard query
+     * @param predicate  the predicate to query for, or null for a wildcard query
+     * @param object     the object to query for, or null for a wildcard query
+     * @param context    the context to query for, or null for a wildcard query
+     * @param inferred   if true, the result will also contain triples inferred by the reasoner, if false not
+     * @param wildcardContext if true, a null context will be interpreted as a wildcard, if false, a null context will be interpreted as "no context"
+     * @return a statement cache key for the pattern shape
+     */
+    private static String getTripleQueryShape(KiWiResource subject, KiWiUriResource predicate, KiWiNode object, KiWiResource context, boolean inferred, boolean wildcardContext) {
+        return new StringBuilder("query.triples.")
+                .append(subject   != null ? 's' : '_')
+                .append(predicate != null ? 'p' : '_')
+                .append(object    != null ? 'o' : '_')
+                .append(context   != null ? 'c' : (wildcardContext ? '*' : '_'))
+                .append(inferred ? 'i' : '_')
+                .toString();
+    }
+
     /**
      * Construct the SQL query string from the query pattern passed as arguments
      *
@@ -1635,7 +1797,9 @@ public class KiWiConnection implements AutoCloseable {
      */
     protected String constructTripleQuery(KiWiResource subject, KiWiUriResource predicate, KiWiNode object, KiWiResource context, boolean inferred, boolean wildcardContext) {
         StringBuilder builder = new StringBuilder();
-        builder.append("SELECT id,subject,predicate,object,context,deleted,inferred,creator,createdAt,deletedAt FROM triples WHERE deleted = false");
+        builder.append("SELECT id,subject,predicate,object,context,deleted,inferred,creator,createdAt,deletedAt FROM ");
+        builder.append(dialect.getTriplesTable(selectTripleIndex(subject, predicate, object, context)));
+        builder.append(" WHERE deleted = false");
         if(subject != null) {
             builder.append(" AND subject = ?");
         }
@@ -1657,6 +1821,32 @@ public class KiWiConnection implements AutoCloseable {
 
     }
 
+    /**
+     * Select the triple index whose leading columns best match the bound positions of the query pattern. Patterns
+     * with a bound subject use the subject-first indexes, patterns with only predicate and/or object bound use the
+     * covering predicate-object or object-predicate indexes, so reverse lookups (e.g. ?s rdf:type X or incoming
+     * links ?s ?p X) do not degrade to a predicate or table scan.
+     *
+     * @param subject    the subject to query for, or null for a wildcard query
+     * @param predicate  the predicate to query for, or null for a wildcard query
+     * @param object     the object to query for, or null for a wildcard query
+     * @param context    the context to query for, or null for a wildcard query
+     * @return the name of the matching index, or null in case no index supports the pattern
+     */
+    protected String selectTripleIndex(KiWiResource subject, KiWiUriResource predicate, KiWiNode object, KiWiResource context) {
+        if(subject != null) {
+            return context != null ? "idx_triples_cspo" : "idx_triples_spo";
+        } else if(predicate != null) {
+            return "idx_triples_pos";
+        } else if(object != null) {
+            return "idx_triples_ops";
+        } else if(context != null) {
+            return "idx_triples_cspo";
+        } else {
+            return null;
+        }
+    }
+
     protected KiWiNamespace constructNamespaceFromDatabase(ResultSet row) throws SQLException {
         KiWiNamespace result = new KiWiNamespace(row.getString("prefix"),row.getString("uri"));
         result.setId(row.getLong("id"));
@@ -1808,15 +1998,12 @@ public class KiWiConnection implements AutoCloseable {
         KiWiTriple result = new KiWiTriple();
         result.setId(id);
 
-        KiWiNode[] batch = loadNodesByIds(row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5));
+        KiWiNode[] batch = loadNodesByIds(row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5), row.getLong(8));
         result.setSubject((KiWiResource) batch[0]);
         result.setPredicate((KiWiUriResource) batch[1]);
         result.setObject(batch[2]);
         result.setContext((KiWiResource) batch[3]);
-
-        if (row.getLong(8) != 0) {
-            result.setCreator((KiWiResource)loadNodeById(row.getLong(8)));
-        }
+        result.setCreator((KiWiResource) batch[4]);
         result.setDeleted(row.getBoolean(6));
         result.setInferred(row.getBoolean(7));
         result.setCreated(new Date(row.getTimestamp(9).getTime()));
@@ -1850,7 +2037,7 @@ public class KiWiConnection implements AutoCloseable {
         long id;
 
         List<KiWiTriple> result = new ArrayList<>();
-        Map<Long,Long[]> tripleIds  = new HashMap<>();
+        Map<Long,long[]> tripleIds  = new HashMap<>();
         Set<Long> nodeIds   = new HashSet<>();
         while(count < maxPrefetch && row.next()) {
             count++;
@@ -1885,7 +2072,7 @@ public class KiWiConnection implements AutoCloseable {
                 }
 
                 // remember which node ids where relevant for the triple
-                tripleIds.put(id, new Long[]{row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5), row.getLong(8)});
+                tripleIds.put(id, new long[]{row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5), row.getLong(8)});
 
                 triple.setDeleted(row.getBoolean(6));
                 triple.setInferred(row.getBoolean(7));
@@ -1902,16 +2089,13 @@ public class KiWiConnection implements AutoCloseable {
             result.add(triple);
         }
 
-        KiWiNode[] nodes = loadNodesByIds(Longs.toArray(nodeIds));
-        Map<Long,KiWiNode> nodeMap = new HashMap<>(nodes.length << 1);
-        for (KiWiNode node : nodes) {
-            nodeMap.put(node.getId(), node);
-        }
+        // resolve the nodes of all triples in the prefetch window at once
+        Map<Long,KiWiNode> nodeMap = loadNodeMap(nodeIds);
 
         for (KiWiTriple t : result) {
             if (tripleIds.containsKey(t.getId())) {
                 // need to set subject, predicate, object, context and creator
-                Long[] ids = tripleIds.get(t.getId());
+                long[] ids = tripleIds.get(t.getId());
                 t.setSubject((KiWiResource) nodeMap.get(ids[0]));
                 t.setPredicate((KiWiUriResource) nodeMap.get(ids[1]));
                 t.setObject(nodeMap.get(ids[2]));
@@ -2261,6 +2445,13 @@ public class KiWiConnection implements AutoCloseable {
             }
         });
 
+        synchronized (statisticsDelta) {
+            if (!statisticsDelta.isEmpty()) {
+                persistence.getTripleStatistics().apply(statisticsDelta);
+                statisticsDelta.clear();
+            }
+        }
+
         this.transactionId = getNextSequence();
     }
 
@@ -2286,6 +2477,9 @@ public class KiWiConnection implements AutoCloseable {
             }
         }
         deletedStatementsLog = BloomFilter.create(Funnels.longFunnel(), 100000);
+        synchronized (statisticsDelta) {
+            statisticsDelta.clear();
+        }
         if(connection != null && !connection.isClosed()) {
             connection.rollback();
         }
@@ -2370,33 +2564,7 @@ public class KiWiConnection implements AutoCloseable {
                 execution.execute(connection, new RetryCommand<Void>() {
                     @Override
                     public Void run() throws SQLException {
-                        PreparedStatement insertTriple = getPreparedStatement("store.triple");
-                        insertTriple.clearParameters();
-                        insertTriple.clearBatch();
-
-                        synchronized (tripleBatch) {
-                            for(KiWiTriple triple : tripleBatch) {
-                                // retrieve a new triple ID and set it in the object
-                                if(triple.getId() < 0) {
-                                    triple.setId(getNextSequence());
-                                }
-
-                                insertTriple.setLong(1,triple.getId());
-                                insertTriple.setLong(2,triple.getSubject().getId());
-                                insertTriple.setLong(3,triple.getPredicate().getId());
-                                insertTriple.setLong(4,triple.getObject().getId());
-                                if(triple.getContext() != null) {
-                                    insertTriple.setLong(5,triple.getContext().getId());
-                                } else {
-                                    insertTriple.setNull(5, Types.BIGINT);
-                                }
-                                insertTriple.setBoolean(6,triple.isInferred());
-                                insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
-
-                                insertTriple.addBatch();
-                            }
-                        }
-                        insertTriple.executeBatch();
+                        executeTripleBatch(tripleBatch);
 
                         tripleBatch.clear();
 
@@ -2412,6 +2580,39 @@ public class KiWiConnection implements AutoCloseable {
 
     }
 
+    /**
+     * Write the triples contained in the batch passed as argument to the database as a single JDBC batch.
+     */
+    private void executeTripleBatch(CompactTripleTable<KiWiTriple> batch) throws SQLException {
+        PreparedStatement insertTriple = getPreparedStatement("store.triple");
+        insertTriple.clearParameters();
+        insertTriple.clearBatch();
+
+        synchronized (batch) {
+            for(KiWiTriple triple : batch) {
+                // retrieve a new triple ID and set it in the object
+                if(triple.getId() < 0) {
+                    triple.setId(getNextSequence());
+                }
+
+                insertTriple.setLong(1,triple.getId());
+                insertTriple.setLong(2,triple.getSubject().getId());
+                insertTriple.setLong(3,triple.getPredicate().getId());
+                insertTriple.setLong(4,triple.getObject().getId());
+                if(triple.getContext() != null) {
+                    insertTriple.setLong(5,triple.getContext().getId());
+                } else {
+                    insertTriple.setNull(5, Types.BIGINT);
+                }
+                insertTriple.setBoolean(6,triple.isInferred());
+                insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
+
+                insertTriple.addBatch();
+            }
+        }
+        insertTriple.executeBatch();
+    }
+
     /**
      * Return the current transaction ID
      * @return the current transaction id
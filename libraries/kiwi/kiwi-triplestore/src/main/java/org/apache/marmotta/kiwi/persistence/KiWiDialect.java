@@ -37,7 +37,7 @@ public abstract class KiWiDialect {
 
     private static Logger log = LoggerFactory.getLogger(KiWiDialect.class);
 
-    public final static int VERSION = 4;
+    public final static int VERSION = 5;
 
     private Properties statements;
 
@@ -45,16 +45,25 @@ public abstract class KiWiDialect {
     protected KiWiDialect() throws DriverNotFoundException {
         statements = new Properties();
 
-        // load all statements.properties files that can be located in the same package (from different modules in different jar files)
+        loadStatements("statements.properties");
+    }
+
+    /**
+     * Load all statement definitions from properties files with the given name that can be located in the same
+     * package (from different modules in different jar files). Statements loaded later override statements with
+     * the same identifier loaded before.
+     *
+     * @param fileName name of the properties files to load
+     */
+    protected void loadStatements(String fileName) {
         try {
-            Enumeration<URL> urls = this.getClass().getClassLoader().getResources(this.getClass().getPackage().getName().replace('.','/')+"/statements.properties");
+            Enumeration<URL> urls = this.getClass().getClassLoader().getResources(this.getClass().getPackage().getName().replace('.','/')+"/"+fileName);
             while(urls.hasMoreElements()) {
                 statements.load(urls.nextElement().openStream());
             }
         } catch (Exception e) {
-            log.error("could not load statement definitions (statement.properties)",e);
+            log.error("could not load statement definitions ({})", fileName, e);
         }
-
     }
 
     public int getVersion() {
@@ -229,4 +238,37 @@ public abstract class KiWiDialect {
     public boolean isCursorSupported() {
         return false;
     }
+
+    /**
+     * Return true in case the database supports recursive common table expressions (WITH RECURSIVE ... UNION ...)
+     * inside of subqueries in the FROM clause. SPARQL property paths are then evaluated by the database.
+     * @return {@code true} if recursive queries are supported
+     */
+    public boolean isRecursiveQuerySupported() {
+        return false;
+    }
+
+    /**
+     * Return the SQL expression casting the given expression (e.g. a query parameter) to a 64 bit integer. The
+     * default implementation uses the standard BIGINT type, MySQL e.g. needs SIGNED instead.
+     *
+     * @param expression the SQL expression to cast
+     * @return SQL expression of type BIGINT
+     */
+    public String getCastBigint(String expression) {
+        return "CAST(" + expression + " AS BIGINT)";
+    }
+
+    /**
+     * Return a table reference for the triples table that routes the query to the given index, e.g.
+     * "triples USE INDEX (idx_triples_pos)" in MySQL. The default implementation returns the plain table name
+     * and leaves the index choice to the query planner.
+     *
+     * @param index the name of the triple index best matching the query pattern (one of idx_triples_spo,
+     *              idx_triples_pos, idx_triples_ops, idx_triples_cspo), or null if no index matches
+     * @return SQL table reference for the triples table
+     */
+    public String getTriplesTable(String index) {
+        return "triples";
+    }
 }
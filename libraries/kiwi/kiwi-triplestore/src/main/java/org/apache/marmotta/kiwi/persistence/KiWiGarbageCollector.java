@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.kiwi.persistence;
 
+import org.apache.marmotta.kiwi.jmx.KiWiStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class implements a garbage collector for the database that cleans up deleted triples and nodes when they
@@ -36,6 +38,11 @@ import java.util.concurrent.TimeUnit;
  * a complex SQL query, checking for all tables referencing rows in the triples and nodes tables. References need
  * to be registered by other components via the addTripleTableDependency and addNodeTableDependency methods.
  * <p/>
+ * Garbage collection is carried out incrementally: the tables are processed in chunks of a bounded number of rows
+ * in ascending id order, each in its own transaction, and the collector sleeps between chunks so that no more than
+ * the configured number of rows per second is examined. The position of the last completed chunk is stored in the
+ * metadata table, so an interrupted garbage collection resumes where it left off after a restart.
+ * <p/>
  * Author: Sebastian Schaffert (sschaffert@apache.org)
  */
 public class KiWiGarbageCollector extends Thread {
@@ -51,13 +58,27 @@ public class KiWiGarbageCollector extends Thread {
 
     private KiWiPersistence persistence;
 
-    private boolean shutdown = false;
+    private volatile boolean shutdown = false;
+
+    // number of rows examined per chunk
+    private int chunkSize = 1000;
+
+    // maximum number of rows examined per second, 0 for no limit
+    private int rowsPerSecond = 0;
+
+    // only one garbage collection may be running at the same time
+    private final ReentrantLock gcLock = new ReentrantLock();
+
+    // metadata key storing the position of the last completed chunk, in the form "<table>:<id>"
+    private static final String POSITION_KEY = "gc.position";
 
     public KiWiGarbageCollector(KiWiPersistence persistence) {
         super("KiWi Garbage Collector");
 
         this.persistence = persistence;
 
+        setDaemon(true);
+
         this.tripleTableDependencies = new HashSet<>();
         this.nodeTableDependencies   = new HashSet<>();
     }
@@ -77,6 +98,36 @@ public class KiWiGarbageCollector extends Thread {
         this.interval = interval;
     }
 
+    /**
+     * Get the maximum number of rows examined in a single garbage collection chunk (and transaction)
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the maximum number of rows examined in a single garbage collection chunk (and transaction)
+     * @param chunkSize number of rows per chunk
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Get the maximum number of rows examined by the garbage collector per second (0 for no limit)
+     */
+    public int getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    /**
+     * Set the maximum number of rows examined by the garbage collector per second (0 for no limit)
+     * @param rowsPerSecond throughput budget of the garbage collector
+     */
+    public void setRowsPerSecond(int rowsPerSecond) {
+        this.rowsPerSecond = Math.max(0, rowsPerSecond);
+    }
+
     /**
      * Add information about a dependency of a column in some table to the "triples" table; this information
      * is used when cleaning up unreferenced deleted entries in the triples table. In theory, we could
@@ -199,48 +250,194 @@ public class KiWiGarbageCollector extends Thread {
     }
 
 
+    /**
+     * Run a full garbage collection on the triples table and (every 10th round in case triples have been removed)
+     * the nodes table. The tables are processed in chunks, resuming at the position stored by a previous
+     * interrupted garbage collection.
+     *
+     * @return the number of rows removed from the database
+     */
     protected int garbageCollect() throws SQLException {
-        round++;
-
-        long start = System.currentTimeMillis();
-
-        Connection con = persistence.getJDBCConnection(false);
+        gcLock.lock();
         try {
-            int count = 0;
+            round++;
+
+            long start = System.currentTimeMillis();
 
-            // garbage collect triples
+            Connection con = persistence.getJDBCConnection(false);
             try {
-                String gcTripleQuery = buildGCTriplesQuery();
-                PreparedStatement stmtGcTriples = con.prepareStatement(gcTripleQuery);
-                count += stmtGcTriples.executeUpdate();
-                stmtGcTriples.close();
-                con.commit();
-            } catch (SQLException ex) {
-                con.rollback();
+                String table = "triples";
+                long position = 0;
+
+                // resume an interrupted garbage collection
+                String stored = loadPosition(con);
+                if(stored != null && stored.indexOf(':') > 0) {
+                    try {
+                        table    = stored.substring(0, stored.indexOf(':'));
+                        position = Long.parseLong(stored.substring(stored.indexOf(':') + 1));
+                        log.info("resuming garbage collection of table {} at id {}", table, position);
+                    } catch (NumberFormatException ex) {
+                        log.warn("invalid garbage collection position {} stored in database, starting from scratch", stored);
+                        table    = "triples";
+                        position = 0;
+                    }
+                }
+
+                int count = 0;
+
+                if("triples".equals(table)) {
+                    try {
+                        count += garbageCollectTable(con, "triples", buildGCTriplesQuery(), position);
+                    } catch (SQLException ex) {
+                        log.warn("SQL error while executing garbage collection on triples table: {}", ex.getMessage());
+                    }
+                    position = 0;
+
+                    // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted triples ...)
+                    if(count > 0 && round % 10 == 1 && !shutdown) {
+                        table = "nodes";
+                    }
+                }
+
+                if("nodes".equals(table) && nodeTableDependencies.size() > 0) {
+                    // then delete all unconnected nodes
+                    try {
+                        count += garbageCollectTable(con, "nodes", buildGCNodesQuery(), position);
+                    } catch (SQLException ex) {
+                        log.warn("SQL error while executing garbage collection on nodes table: {}", ex.getMessage());
+                    }
+                }
+
+                long duration = System.currentTimeMillis()-start;
+                persistence.getStatistics().garbageCollectionRun(duration);
+
+                log.info("... cleaned up {} entries (duration: {} ms)", count, duration);
 
-                log.warn("SQL error while executing garbage collection on triples table: {}", ex.getMessage());
+                return count;
+            } finally {
+                persistence.releaseJDBCConnection(con);
             }
+        } finally {
+            gcLock.unlock();
+        }
+    }
+
+    /**
+     * Garbage collect the given table in chunks of ascending ids, starting after the given position. Each chunk
+     * is deleted in its own transaction together with storing the new position, and the collector is throttled
+     * between chunks to stay within the configured rows per second.
+     *
+     * @param con       the database connection to use
+     * @param table     the table to collect (either "triples" or "nodes")
+     * @param gcQuery   the delete query for the table, restricted by the id range parameters of a chunk
+     * @param position  the id after which to start
+     * @return the number of rows deleted
+     */
+    private int garbageCollectTable(Connection con, String table, String gcQuery, long position) throws SQLException {
+        try(PreparedStatement stmtChunk = con.prepareStatement(buildChunkQuery(table));
+            PreparedStatement stmtGc    = con.prepareStatement(gcQuery)) {
+
+            KiWiStatistics statistics = persistence.getStatistics();
+
+            int count = 0;
+            while(!shutdown) {
+                long chunkStart = System.currentTimeMillis();
+
+                // determine the upper id bound of the next chunk
+                long upper = position;
+                int rows = 0;
+                stmtChunk.setLong(1, position);
+                try(ResultSet result = stmtChunk.executeQuery()) {
+                    while(result.next()) {
+                        upper = result.getLong(1);
+                        rows++;
+                    }
+                }
+                if(rows == 0) {
+                    // table is completely processed, the next garbage collection starts from scratch
+                    storePosition(con, "");
+                    con.commit();
+                    break;
+                }
 
-            // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted triples ...)
-            if(count > 0 && round % 10 == 1) {
-                // then delete all unconnected nodes
+                // the last chunk of the table also resets the position, so the next garbage collection starts from scratch
+                boolean last = rows < chunkSize;
                 try {
-                    String gcNodesQuery = buildGCNodesQuery();
-                    PreparedStatement stmtGcNodes = con.prepareStatement(gcNodesQuery);
-                    count += stmtGcNodes.executeUpdate();
-                    stmtGcNodes.close();
+                    stmtGc.setLong(1, position);
+                    stmtGc.setLong(2, upper);
+                    int deleted = stmtGc.executeUpdate();
+
+                    storePosition(con, last ? "" : table + ":" + upper);
                     con.commit();
+
+                    count += deleted;
+                    if("triples".equals(table)) {
+                        statistics.garbageCollectedTriples(deleted);
+                    } else {
+                        statistics.garbageCollectedNodes(deleted);
+                    }
                 } catch (SQLException ex) {
                     con.rollback();
+                    throw ex;
+                }
+
+                position = upper;
 
-                    log.warn("SQL error while executing garbage collection on nodes table: {}", ex.getMessage());
+                if(last) {
+                    break;
                 }
-            }
-            log.info("... cleaned up {} entries (duration: {} ms)", count, (System.currentTimeMillis()-start));
 
+                throttle(rows, System.currentTimeMillis() - chunkStart);
+            }
             return count;
-        } finally {
-            persistence.releaseJDBCConnection(con);
+        }
+    }
+
+    /**
+     * Sleep long enough so that examining the given number of rows took at least as long as permitted by
+     * the rows per second budget.
+     */
+    private void throttle(int rows, long elapsed) {
+        if(rowsPerSecond > 0) {
+            long sleep = rows * 1000L / rowsPerSecond - elapsed;
+            if(sleep > 0) {
+                synchronized (this) {
+                    if(!shutdown) {
+                        try {
+                            this.wait(sleep);
+                        } catch (InterruptedException ignore) {
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private String loadPosition(Connection con) throws SQLException {
+        try(PreparedStatement stmt = con.prepareStatement(persistence.getDialect().getStatement("meta.get"))) {
+            stmt.setString(1, POSITION_KEY);
+            try(ResultSet result = stmt.executeQuery()) {
+                if(result.next()) {
+                    return result.getString(1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void storePosition(Connection con, String position) throws SQLException {
+        int updated;
+        try(PreparedStatement stmt = con.prepareStatement(persistence.getDialect().getStatement("meta.update"))) {
+            stmt.setString(1, position);
+            stmt.setString(2, POSITION_KEY);
+            updated = stmt.executeUpdate();
+        }
+        if(updated == 0) {
+            try(PreparedStatement stmt = con.prepareStatement(persistence.getDialect().getStatement("meta.insert"))) {
+                stmt.setString(1, POSITION_KEY);
+                stmt.setString(2, position);
+                stmt.executeUpdate();
+            }
         }
     }
 
@@ -254,47 +451,51 @@ public class KiWiGarbageCollector extends Thread {
      */
     @Override
     public void run() {
-        synchronized (this) {
+        boolean started = false;
 
-            boolean started = false;
+        while(!shutdown) {
+            // don't run immediately on startup; the monitor is not held while collecting, so shutdown() does not
+            // need to wait for a complete garbage collection run
+            if(started) {
+                log.info("running database consistency checks ...");
+                try {
+                    checkConsistency();
+                } catch (SQLException e) {
+                    log.error("error while executing consistency checks: {}",e.getMessage());
+                }
 
-            while(!shutdown) {
-                // don't run immediately on startup
-                if(started) {
-                    log.info("running database consistency checks ...");
-                    try {
-                        checkConsistency();
-                    } catch (SQLException e) {
-                        log.error("error while executing consistency checks: {}",e.getMessage());
-                    }
+                log.info("running garbage collection ...");
+                try {
+                    int count = garbageCollect();
+                    log.debug("GC touched {} rows in the DB", count);
+                } catch (SQLException e) {
+                    log.error("error while executing garbage collection: {}",e.getMessage());
+                }
+            }
+            started = true;
 
-                    log.info("running garbage collection ...");
+            synchronized (this) {
+                if(!shutdown) {
                     try {
-                        int count = garbageCollect();
-                        log.debug("GC touched {} rows in the DB", count);
-                    } catch (SQLException e) {
-                        log.error("error while executing garbage collection: {}",e.getMessage());
+                        this.wait(interval);
+                    } catch (InterruptedException ignore) {
                     }
                 }
-                started = true;
-                try {
-                    this.wait(interval);
-                } catch (InterruptedException ignore) {
-                }
             }
         }
     }
 
     public void shutdown() {
+        // set the flag before taking the monitor, so a running garbage collection stops after the current chunk
+        shutdown = true;
         synchronized (this) {
-            shutdown = true;
             this.notifyAll();
         }
     }
 
     private String buildGCTriplesQuery() {
         StringBuilder builder = new StringBuilder();
-        builder.append("DELETE FROM triples WHERE deleted = true");
+        builder.append("DELETE FROM triples WHERE deleted = true AND id > ? AND id <= ?");
 
         if(tripleTableDependencies.size() > 0) {
             builder.append(" AND NOT EXISTS (");
@@ -325,11 +526,23 @@ public class KiWiGarbageCollector extends Thread {
     }
 
 
+    /**
+     * Build the query listing the ids of the next chunk of candidate rows in the given table, starting after the
+     * id given as parameter.
+     */
+    private String buildChunkQuery(String table) {
+        if("triples".equals(table)) {
+            return "SELECT id FROM triples WHERE deleted = true AND id > ? ORDER BY id LIMIT " + chunkSize;
+        } else {
+            return "SELECT id FROM " + table + " WHERE id > ? ORDER BY id LIMIT " + chunkSize;
+        }
+    }
+
     private String buildGCNodesQuery() {
         StringBuilder builder = new StringBuilder();
 
         if(nodeTableDependencies.size() > 0) {
-            builder.append("DELETE FROM nodes T1 WHERE NOT EXISTS (");
+            builder.append("DELETE FROM nodes T1 WHERE T1.id > ? AND T1.id <= ? AND NOT EXISTS (");
 
             Iterator<TableDependency> iterator = nodeTableDependencies.iterator();
             while (iterator.hasNext()) {
@@ -17,12 +17,14 @@
  */
 package org.apache.marmotta.kiwi.persistence;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.caching.CacheManagerFactory;
 import org.apache.marmotta.kiwi.caching.GuavaCacheManagerFactory;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.generator.IDGenerator;
 import org.apache.marmotta.kiwi.generator.SnowflakeIDGenerator;
+import org.apache.marmotta.kiwi.jmx.KiWiStatistics;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.tomcat.jdbc.pool.DataSource;
@@ -30,11 +32,18 @@ import org.apache.tomcat.jdbc.pool.PoolProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Add file description here!
@@ -59,6 +68,16 @@ public class KiWiPersistence {
 
     private KiWiGarbageCollector  garbageCollector;
 
+    /**
+     * Cardinality statistics over the triples table, used by the SPARQL query optimizer
+     */
+    private KiWiTripleStatistics  tripleStatistics;
+
+    /**
+     * Background thread periodically recomputing the triple statistics, in case enabled in the configuration
+     */
+    private ScheduledExecutorService statisticsExecutor;
+
     /**
      * The KiWi configuration for this persistence.
      */
@@ -72,6 +91,13 @@ public class KiWiPersistence {
 
     private IDGenerator    idGenerator;
 
+    /**
+     * Statistics collected by the connections of this persistence; published in JMX if enabled in the configuration
+     */
+    private KiWiStatistics statistics = new KiWiStatistics();
+
+    private ObjectName     statisticsName;
+
 
     /**
      * This lock allows setting the backend into maintenance mode (by locking the write lock), which essentially
@@ -103,6 +129,11 @@ public class KiWiPersistence {
         // init garbage collector thread
         initGarbageCollector();
 
+        // register statistics in JMX
+        initStatistics();
+
+        tripleStatistics = new KiWiTripleStatistics(this, configuration.getStatisticsPairThreshold());
+
         try {
             logPoolInfo();
         } catch (SQLException ignore) {
@@ -113,9 +144,11 @@ public class KiWiPersistence {
 
         log.info("database key generation strategy: Twitter Snowflake");
 
-        //garbageCollector.start();
-
         initialized = true;
+
+        if(configuration.isGarbageCollectionEnabled()) {
+            garbageCollector.start();
+        }
     }
 
 
@@ -187,6 +220,9 @@ public class KiWiPersistence {
 
     private void initGarbageCollector() {
         this.garbageCollector = new KiWiGarbageCollector(this);
+        garbageCollector.setInterval(configuration.getGarbageCollectionInterval());
+        garbageCollector.setChunkSize(configuration.getGarbageCollectionChunkSize());
+        garbageCollector.setRowsPerSecond(configuration.getGarbageCollectionRate());
 
         garbageCollector.addNodeTableDependency("triples","subject");
         garbageCollector.addNodeTableDependency("triples","predicate");
@@ -197,6 +233,40 @@ public class KiWiPersistence {
 
     }
 
+    private synchronized void initTripleStatisticsRefresh() {
+        if(configuration.isStatisticsEnabled() && statisticsExecutor == null) {
+            statisticsExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("KiWi Statistics %d").setDaemon(true).build());
+            statisticsExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        tripleStatistics.refresh();
+                    } catch (SQLException ex) {
+                        log.warn("could not refresh triple statistics: {}", ex.getMessage());
+                    }
+                }
+            }, 0, configuration.getStatisticsInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void initStatistics() {
+        if(configuration.isJmxEnabled()) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                statisticsName = new ObjectName("org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=" + ObjectName.quote(configuration.getName()));
+                if(!server.isRegistered(statisticsName)) {
+                    server.registerMBean(statistics, statisticsName);
+                } else {
+                    log.warn("KiWi statistics bean {} already registered in JMX, not publishing statistics", statisticsName);
+                    statisticsName = null;
+                }
+            } catch (JMException e) {
+                log.warn("could not register KiWi statistics in JMX (error: {})", e.getMessage());
+                statisticsName = null;
+            }
+        }
+    }
+
     public void logPoolInfo() throws SQLException {
         if (log.isDebugEnabled()) {
             if (connectionPool != null) {
@@ -258,6 +328,11 @@ public class KiWiPersistence {
                 }
             }
             connection.getJDBCConnection().commit();
+
+            // the statistics can only be computed once the base tables exist
+            if("base".equals(scriptName)) {
+                initTripleStatisticsRefresh();
+            }
         } catch (SQLException ex) {
             log.error("SQL exception while initialising database, rolling back");
             connection.rollback();
@@ -455,6 +530,21 @@ public class KiWiPersistence {
 
         idGenerator.shutdown();
         garbageCollector.shutdown();
+
+        if(statisticsExecutor != null) {
+            statisticsExecutor.shutdownNow();
+            statisticsExecutor = null;
+        }
+
+        if(statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (JMException e) {
+                log.warn("could not unregister KiWi statistics from JMX (error: {})", e.getMessage());
+            }
+            statisticsName = null;
+        }
+
         cacheManager.shutdown();
         connectionPool.close();
 
@@ -494,5 +584,21 @@ public class KiWiPersistence {
         return idGenerator;
     }
 
+    /**
+     * Return the statistics collected by the connections of this persistence.
+     */
+    public KiWiStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Return the cardinality statistics over the triples table of this persistence. The statistics are only
+     * available after they have been refreshed at least once, which happens automatically in case statistics are
+     * enabled in the configuration.
+     */
+    public KiWiTripleStatistics getTripleStatistics() {
+        return tripleStatistics;
+    }
+
 
 }
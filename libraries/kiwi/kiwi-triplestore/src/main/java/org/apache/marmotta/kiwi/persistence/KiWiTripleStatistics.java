@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cardinality statistics over the triples table, used by the SPARQL query optimizer for ordering joins. The statistics
+ * consist of the total number of triples, the number of distinct subjects, the number of triples per predicate and per
+ * context, and the number of triples per (predicate, object) pair for all pairs occurring at least a configurable
+ * number of times (e.g. rdf:type with a frequent class).
+ * <p/>
+ * The statistics are computed from the database by refresh(), which is called periodically by the persistence, and
+ * are kept up-to-date in between by applying the changes of committed transactions (see Delta). They are estimates:
+ * bulk operations like deleting a whole context are only reflected after the next refresh.
+ */
+public class KiWiTripleStatistics {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiTripleStatistics.class);
+
+    private KiWiPersistence persistence;
+
+    /**
+     * Minimum number of triples a (predicate, object) pair needs to have to be tracked individually
+     */
+    private int pairThreshold;
+
+    private volatile Snapshot snapshot;
+
+
+    public KiWiTripleStatistics(KiWiPersistence persistence, int pairThreshold) {
+        this.persistence   = persistence;
+        this.pairThreshold = Math.max(1, pairThreshold);
+    }
+
+    /**
+     * Return true in case the statistics have been computed at least once.
+     */
+    public boolean isAvailable() {
+        return snapshot != null;
+    }
+
+    /**
+     * Minimum number of triples a (predicate, object) pair needs to have to be tracked individually; all other pairs
+     * have fewer triples than this value.
+     */
+    public int getPairThreshold() {
+        return pairThreshold;
+    }
+
+    /**
+     * Return the total number of (non-deleted) triples, or -1 if the statistics are not available.
+     */
+    public long getTripleCount() {
+        Snapshot s = snapshot;
+        return s != null ? s.total : -1;
+    }
+
+    /**
+     * Return the number of distinct subjects as of the last refresh, or -1 if the statistics are not available.
+     */
+    public long getSubjectCount() {
+        Snapshot s = snapshot;
+        return s != null ? s.subjects : -1;
+    }
+
+    /**
+     * Return the number of triples with the predicate with the given node id, or -1 if the statistics are not available.
+     */
+    public long getPredicateCount(long predicate) {
+        Snapshot s = snapshot;
+        return s != null ? get(s.predicates, predicate) : -1;
+    }
+
+    /**
+     * Return the number of triples in the context with the given node id, or -1 if the statistics are not available.
+     */
+    public long getContextCount(long context) {
+        Snapshot s = snapshot;
+        return s != null ? get(s.contexts, context) : -1;
+    }
+
+    /**
+     * Return the number of triples with the given predicate and object node ids, or -1 if the pair is not tracked
+     * because it occurs less often than the pair threshold (or the statistics are not available).
+     */
+    public long getPredicateObjectCount(long predicate, long object) {
+        Snapshot s = snapshot;
+        if(s != null) {
+            Map<Long,Long> objects = s.pairs.get(predicate);
+            if(objects != null) {
+                Long count = objects.get(object);
+                if(count != null) {
+                    return count;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Estimate the number of triples matching a triple pattern with the given constant values (null for variables),
+     * or return -1 if no statistics are available. Constants are resolved to database ids using the connection
+     * passed as argument; a URI that does not exist in the database cannot match any triple.
+     */
+    public double getCardinality(KiWiConnection connection, Value subject, Value predicate, Value object, Value context) throws SQLException {
+        Snapshot s = snapshot;
+        if(s == null || s.total <= 0) {
+            return -1;
+        }
+
+        Long subjectId   = getNodeId(connection, subject);
+        Long predicateId = getNodeId(connection, predicate);
+        Long objectId    = getNodeId(connection, object);
+        Long contextId   = getNodeId(connection, context);
+
+        if(isMissing(subjectId) || isMissing(predicateId) || isMissing(objectId) || isMissing(contextId)) {
+            return 0;
+        }
+
+        long subjects = Math.max(1, s.subjects);
+
+        double cardinality;
+        if(predicateId != null) {
+            cardinality = get(s.predicates, predicateId);
+
+            if(objectId != null && objectId > 0) {
+                long pairCount = getPredicateObjectCount(predicateId, objectId);
+                if(pairCount >= 0) {
+                    cardinality = pairCount;
+                } else {
+                    // untracked combinations are less frequent than the tracking threshold
+                    cardinality = Math.min(cardinality, pairThreshold - 1);
+                }
+            } else if(objectId != null) {
+                cardinality = cardinality / subjects;
+            }
+        } else {
+            cardinality = s.total;
+
+            if(objectId != null) {
+                // without a predicate, assume a similar fan-in of objects as the fan-out of subjects
+                cardinality = cardinality / subjects;
+            }
+        }
+
+        if(subjectId != null) {
+            cardinality = cardinality / subjects;
+        }
+
+        if(contextId != null && contextId > 0) {
+            cardinality = cardinality * get(s.contexts, contextId) / s.total;
+        }
+
+        boolean constant = subject != null || predicate != null || object != null || context != null;
+        return Math.max(cardinality, constant ? 1.0 : 0.0);
+    }
+
+    private static boolean isMissing(Long id) {
+        return id != null && id < 0;
+    }
+
+    /**
+     * Look up the database id of a constant value. Returns null if the value is not a constant, -1 if the value is a
+     * URI that does not exist in the database, and 0 if the id cannot be determined by a cheap lookup (blank nodes,
+     * literals without an exact match).
+     */
+    private static Long getNodeId(KiWiConnection connection, Value value) throws SQLException {
+        if(value == null) {
+            return null;
+        } else if(value instanceof KiWiNode && ((KiWiNode) value).getId() >= 0) {
+            return ((KiWiNode) value).getId();
+        } else if(value instanceof URI) {
+            KiWiUriResource r = connection.loadUriResource(value.stringValue());
+            return r != null ? r.getId() : -1L;
+        } else if(value instanceof Literal) {
+            Literal l = (Literal) value;
+            KiWiUriResource type = null;
+            if(l.getDatatype() != null) {
+                type = connection.loadUriResource(l.getDatatype().stringValue());
+                if(type == null) {
+                    return 0L;
+                }
+            }
+            KiWiNode n = connection.loadLiteral(l.getLabel(), l.getLanguage(), type);
+            return n != null ? n.getId() : 0L;
+        } else {
+            return 0L;
+        }
+    }
+
+    private static long get(Map<Long,Long> counts, long key) {
+        Long count = counts.get(key);
+        return count != null ? count : 0;
+    }
+
+
+    /**
+     * Recompute the statistics from the database. Changes committed while the refresh is running may be missing
+     * from the result until the next refresh.
+     */
+    public void refresh() throws SQLException {
+        long start = System.currentTimeMillis();
+
+        Snapshot s = new Snapshot();
+
+        Connection con = persistence.getJDBCConnection();
+        try {
+            KiWiDialect dialect = persistence.getDialect();
+
+            try (PreparedStatement stmt = con.prepareStatement(dialect.getStatement("query.size"));
+                 ResultSet result = stmt.executeQuery()) {
+                if(result.next()) {
+                    s.total = result.getLong(1);
+                }
+            }
+
+            try (PreparedStatement stmt = con.prepareStatement(dialect.getStatement("stats.subjects"));
+                 ResultSet result = stmt.executeQuery()) {
+                if(result.next()) {
+                    s.subjects = result.getLong(1);
+                }
+            }
+
+            try (PreparedStatement stmt = con.prepareStatement(dialect.getStatement("stats.predicates"));
+                 ResultSet result = stmt.executeQuery()) {
+                while(result.next()) {
+                    s.predicates.put(result.getLong(1), result.getLong(2));
+                }
+            }
+
+            try (PreparedStatement stmt = con.prepareStatement(dialect.getStatement("stats.contexts"));
+                 ResultSet result = stmt.executeQuery()) {
+                while(result.next()) {
+                    // triples without context are counted under id 0
+                    s.contexts.put(result.getLong(1), result.getLong(2));
+                }
+            }
+
+            try (PreparedStatement stmt = con.prepareStatement(dialect.getStatement("stats.predicate_objects"))) {
+                stmt.setInt(1, pairThreshold);
+                try (ResultSet result = stmt.executeQuery()) {
+                    while(result.next()) {
+                        s.pair(result.getLong(1)).put(result.getLong(2), result.getLong(3));
+                    }
+                }
+            }
+
+            con.commit();
+        } finally {
+            persistence.releaseJDBCConnection(con);
+        }
+
+        synchronized (this) {
+            snapshot = s;
+        }
+
+        log.debug("refreshed triple statistics: {} triples, {} predicates, {} contexts (duration: {} ms)", s.total, s.predicates.size(), s.contexts.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Apply the changes of a committed transaction to the statistics. Only (predicate, object) pairs that are
+     * already tracked are updated; new frequent pairs are picked up by the next refresh.
+     */
+    public synchronized void apply(Delta delta) {
+        Snapshot s = snapshot;
+        if(s == null || delta.isEmpty()) {
+            return;
+        }
+
+        // writers are serialized by the monitor, readers access the concurrent maps without locking
+        s.total += delta.total;
+        for(Map.Entry<Long,Long> e : delta.predicates.entrySet()) {
+            add(s.predicates, e.getKey(), e.getValue());
+        }
+        for(Map.Entry<Long,Long> e : delta.contexts.entrySet()) {
+            add(s.contexts, e.getKey(), e.getValue());
+        }
+        for(Map.Entry<Long,Map<Long,Long>> p : delta.pairs.entrySet()) {
+            Map<Long,Long> objects = s.pairs.get(p.getKey());
+            if(objects != null) {
+                for(Map.Entry<Long,Long> e : p.getValue().entrySet()) {
+                    if(objects.containsKey(e.getKey())) {
+                        add(objects, e.getKey(), e.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void add(Map<Long,Long> counts, long key, long delta) {
+        Long count = counts.get(key);
+        counts.put(key, Math.max(0, (count != null ? count : 0) + delta));
+    }
+
+
+    /**
+     * The changes to the statistics caused by a single transaction; collected by a KiWiConnection and applied on
+     * commit.
+     */
+    public static class Delta {
+
+        private long total;
+        private Map<Long,Long> predicates = new HashMap<>();
+        private Map<Long,Long> contexts   = new HashMap<>();
+        private Map<Long,Map<Long,Long>> pairs = new HashMap<>();
+
+        public void tripleAdded(KiWiTriple triple) {
+            update(triple, 1);
+        }
+
+        public void tripleRemoved(KiWiTriple triple) {
+            update(triple, -1);
+        }
+
+        private void update(KiWiTriple triple, long delta) {
+            long predicate = triple.getPredicate().getId();
+            long object    = triple.getObject().getId();
+            long context   = triple.getContext() != null ? triple.getContext().getId() : 0;
+
+            total += delta;
+            add(predicates, predicate, delta);
+            add(contexts, context, delta);
+
+            Map<Long,Long> objects = pairs.get(predicate);
+            if(objects == null) {
+                objects = new HashMap<>();
+                pairs.put(predicate, objects);
+            }
+            Long count = objects.get(object);
+            objects.put(object, (count != null ? count : 0) + delta);
+        }
+
+        private static void add(Map<Long,Long> counts, long key, long delta) {
+            Long count = counts.get(key);
+            counts.put(key, (count != null ? count : 0) + delta);
+        }
+
+        public boolean isEmpty() {
+            return predicates.isEmpty();
+        }
+
+        public void clear() {
+            total = 0;
+            predicates.clear();
+            contexts.clear();
+            pairs.clear();
+        }
+    }
+
+
+    private static class Snapshot {
+        private volatile long total;
+        private long subjects;
+        private Map<Long,Long> predicates = new ConcurrentHashMap<>();
+        private Map<Long,Long> contexts   = new ConcurrentHashMap<>();
+        private Map<Long,Map<Long,Long>> pairs = new ConcurrentHashMap<>();
+
+        private Map<Long,Long> pair(long predicate) {
+            Map<Long,Long> objects = pairs.get(predicate);
+            if(objects == null) {
+                objects = new ConcurrentHashMap<>();
+                pairs.put(predicate, objects);
+            }
+            return objects;
+        }
+    }
+}
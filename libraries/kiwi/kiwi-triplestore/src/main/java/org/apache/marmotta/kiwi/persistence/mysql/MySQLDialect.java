@@ -38,6 +38,10 @@ import org.apache.marmotta.kiwi.persistence.KiWiDialect;
  */
 public class MySQLDialect extends KiWiDialect {
 
+    /**
+     * Recursive common table expressions are only available from MySQL 8.0 on
+     */
+    private boolean recursiveQuerySupported = false;
 
     public MySQLDialect() throws DriverNotFoundException {
         try {
@@ -139,4 +143,49 @@ public class MySQLDialect extends KiWiDialect {
         return "SELECT 1";
     }
 
+    /**
+     * Return a table reference for the triples table that routes the query to the given index. MySQL tends to
+     * prefer the single-column foreign key indexes over the covering triple indexes, so we give it a hint.
+     *
+     * @param index the name of the triple index best matching the query pattern, or null if no index matches
+     * @return SQL table reference for the triples table, including the index hint if an index is given
+     */
+    @Override
+    public String getTriplesTable(String index) {
+        if(index != null) {
+            return "triples USE INDEX (" + index + ")";
+        } else {
+            return "triples";
+        }
+    }
+
+    /**
+     * MySQL does not support BIGINT as cast target, SIGNED is a 64 bit integer.
+     *
+     * @param expression the SQL expression to cast
+     * @return SQL expression of type SIGNED
+     */
+    @Override
+    public String getCastBigint(String expression) {
+        return "CAST(" + expression + " AS SIGNED)";
+    }
+
+    /**
+     * Return true in case the database supports recursive common table expressions inside of subqueries. This is
+     * the case for MySQL 8.0 and later, and needs to be enabled explicitly with setRecursiveQuerySupported().
+     *
+     * @return
+     */
+    @Override
+    public boolean isRecursiveQuerySupported() {
+        return recursiveQuerySupported;
+    }
+
+    /**
+     * Enable recursive queries (e.g. for evaluating SPARQL property paths); requires MySQL 8.0 or later.
+     */
+    public void setRecursiveQuerySupported(boolean recursiveQuerySupported) {
+        this.recursiveQuerySupported = recursiveQuerySupported;
+    }
+
 }
@@ -149,4 +149,14 @@ public class PostgreSQLDialect extends KiWiDialect {
         return true;
     }
 
+    /**
+     * Return true in case the database supports recursive common table expressions inside of subqueries
+     *
+     * @return
+     */
+    @Override
+    public boolean isRecursiveQuerySupported() {
+        return true;
+    }
+
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.pgsql;
+
+import org.apache.marmotta.kiwi.exception.DriverNotFoundException;
+
+/**
+ * A variant of the PostgreSQL dialect using a triples table that is declaratively partitioned by the deleted flag
+ * (requires PostgreSQL 11 or later). Live triples and soft-deleted triples are kept in separate partitions, so the
+ * indexes used for querying only cover live triples and stay small, deleted triples waiting for garbage collection
+ * do not bloat the live partition, and vacuuming and garbage collection of deleted triples only touch the
+ * partition holding them.
+ * <p/>
+ * The dialect uses the scripts create_[name]_tables_partitioned.sql and drop_[name]_tables_partitioned.sql if
+ * available and falls back to the scripts of the regular PostgreSQL dialect otherwise; statements defined in
+ * statements_partitioned.properties override the regular statements. Existing databases are not converted,
+ * the partitioned layout needs to be chosen when creating the database.
+ */
+public class PostgreSQLPartitionedDialect extends PostgreSQLDialect {
+
+    public PostgreSQLPartitionedDialect() throws DriverNotFoundException {
+        super();
+
+        loadStatements("statements_partitioned.properties");
+    }
+
+    @Override
+    public String getCreateScript(String scriptName) {
+        String partitioned = "create_"+scriptName+"_tables_partitioned.sql";
+        if(this.getClass().getResource(partitioned) != null) {
+            return getScript(partitioned);
+        }
+        return super.getCreateScript(scriptName);
+    }
+
+    @Override
+    public String getDropScript(String scriptName) {
+        String partitioned = "drop_"+scriptName+"_tables_partitioned.sql";
+        if(this.getClass().getResource(partitioned) != null) {
+            return getScript(partitioned);
+        }
+        return super.getDropScript(scriptName);
+    }
+}
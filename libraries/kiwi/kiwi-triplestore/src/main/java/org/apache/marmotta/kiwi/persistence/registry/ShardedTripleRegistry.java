@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.registry;
+
+import org.apache.marmotta.commons.sesame.tripletable.IntArray;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory triple registry that partitions the registered keys into a fixed number of shards selected by the
+ * hash of the triple cache key. Each shard is guarded by its own lock, so transactions creating different triples
+ * do not contend with each other, while transactions creating the same triple always end up in the same shard and
+ * are serialised. Callers that need to run a lookup and a registration atomically (like the value factory) can
+ * acquire the shard lock of a key using {@link #getLock(IntArray)}.
+ * <p/>
+ * Like the {@link LocalTripleRegistry}, this registry does not synchronize across machines in a cluster.
+ */
+public class ShardedTripleRegistry implements KiWiTripleRegistry {
+
+    /**
+     * Default number of shards, should be considerably larger than the number of concurrent writers.
+     */
+    public static final int DEFAULT_SHARDS = 64;
+
+    private final Shard[] shards;
+
+    private final int mask;
+
+    // key hashes registered per transaction; a transaction may register keys from several threads
+    private final Map<Long,Queue<Long>> transactions;
+
+
+    public ShardedTripleRegistry() {
+        this(DEFAULT_SHARDS);
+    }
+
+    /**
+     * Create a new sharded registry. The number of shards is rounded up to the next power of two.
+     *
+     * @param shardCount minimum number of shards to use
+     */
+    public ShardedTripleRegistry(int shardCount) {
+        if(shardCount <= 0) {
+            throw new IllegalArgumentException("the number of shards must be positive");
+        }
+
+        int size = Integer.highestOneBit(shardCount);
+        if(size < shardCount) {
+            size <<= 1;
+        }
+
+        shards = new Shard[size];
+        for(int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        mask         = size - 1;
+        transactions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Return the lock guarding the shard the given key belongs to. Holding this lock makes a sequence of
+     * {@link #lookupKey(IntArray)} and {@link #registerKey(IntArray, long, long)} calls for the key atomic.
+     * The lock is reentrant, so the registry methods can be called while holding it.
+     *
+     * @param key the key identifying the triple arguments (subject, object, predicate, context)
+     * @return the lock of the shard containing the key
+     */
+    public Lock getLock(IntArray key) {
+        return shard(key.longHashCode()).lock;
+    }
+
+    /**
+     * Register a key/triple id pair in the triple registry for the given transaction ID.
+     *
+     * @param key           the key identifying the triple arguments (subject, object, predicate, context)
+     * @param transactionId the identifier of the transaction registering the triple id
+     * @param tripleId      the new triple identifier
+     */
+    @Override
+    public void registerKey(IntArray key, long transactionId, long tripleId) {
+        long hash = key.longHashCode();
+
+        Queue<Long> transaction = transactions.get(transactionId);
+        if(transaction == null) {
+            Queue<Long> created = new ConcurrentLinkedQueue<>();
+            transaction = transactions.putIfAbsent(transactionId, created);
+            if(transaction == null) {
+                transaction = created;
+            }
+        }
+
+        Shard shard = shard(hash);
+        shard.lock.lock();
+        try {
+            shard.keys.put(hash, tripleId);
+        } finally {
+            shard.lock.unlock();
+        }
+        transaction.add(hash);
+    }
+
+    /**
+     * Check if another (or the same) transaction has already registered an ID for the triple with the
+     * given key. Returns -1 in case no other ID has been registered, or a value >0 otherwise.
+     *
+     * @param key the key identifying the triple arguments (subject, object, predicate, context)
+     * @return id of the triple or -1
+     */
+    @Override
+    public long lookupKey(IntArray key) {
+        long hash = key.longHashCode();
+
+        Shard shard = shard(hash);
+        shard.lock.lock();
+        try {
+            Long value = shard.keys.get(hash);
+            if(value != null) {
+                return value;
+            }
+            return -1;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Free all registry entries claimed by the transaction with the given identifier. Should remove or
+     * expire all registry entries to avoid unnecessary storage consumption.
+     *
+     * @param transactionId the identifier of the transaction registering the triple id
+     */
+    @Override
+    public void releaseTransaction(long transactionId) {
+        Queue<Long> transaction = transactions.remove(transactionId);
+        if(transaction != null) {
+            for(long hash : transaction) {
+                remove(hash);
+            }
+        }
+    }
+
+    /**
+     * Remove the key with the given key, e.g. when a statement is again deleted during a transaction.
+     *
+     * @param key the key identifying the triple arguments (subject, object, predicate, context)
+     */
+    @Override
+    public void deleteKey(IntArray key) {
+        remove(key.longHashCode());
+    }
+
+    private void remove(long hash) {
+        Shard shard = shard(hash);
+        shard.lock.lock();
+        try {
+            shard.keys.remove(hash);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private Shard shard(long hash) {
+        // fold the upper half of the hash into the bits used for selecting the shard
+        long h = hash ^ (hash >>> 32);
+        h ^= (h >>> 16);
+        return shards[(int) h & mask];
+    }
+
+
+    private static class Shard {
+        private final Lock lock = new ReentrantLock();
+
+        private final Map<Long,Long> keys = new HashMap<>();
+    }
+}
@@ -179,6 +179,8 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
             databaseConnection.close();
         } catch (SQLException e) {
             throw new SailException("database error while closing connection",e);
+        } finally {
+            store.transactionFinished(this);
         }
     }
 
@@ -335,6 +337,7 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         // nothing to do, the database transaction is started automatically
         triplesAdded = false;
         triplesRemoved = false;
+        store.transactionStarted(this);
     }
 
     @Override
@@ -342,6 +345,7 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         try {
             valueFactory.releaseRegistry(databaseConnection);
             databaseConnection.commit();
+            store.transactionFinished(this);
         } catch (SQLException e) {
             throw new SailException("database error while committing transaction",e);
         }
@@ -373,6 +377,8 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
             databaseConnection.rollback();
         } catch (SQLException e) {
             throw new SailException("database error while rolling back transaction",e);
+        } finally {
+            store.transactionFinished(this);
         }
     }
 
@@ -722,7 +728,7 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         // handled by garbage collection
     }
 
-    protected static class KiWiEvaluationStatistics extends EvaluationStatistics {
+    protected class KiWiEvaluationStatistics extends EvaluationStatistics {
 
         public KiWiEvaluationStatistics() {
         }
@@ -736,6 +742,17 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
 
             @Override
             protected double getCardinality(StatementPattern sp) {
+                // estimate from the triple statistics of the persistence if available
+                try {
+                    double cardinality = databaseConnection.getTripleStatistics().getCardinality(databaseConnection,
+                            getConstantValue(sp.getSubjectVar()), getConstantValue(sp.getPredicateVar()),
+                            getConstantValue(sp.getObjectVar()), getConstantValue(sp.getContextVar()));
+                    if(cardinality >= 0) {
+                        return cardinality;
+                    }
+                } catch (SQLException ex) {
+                    log.warn("could not look up constants for cardinality estimation: {}", ex.getMessage());
+                }
                 return super.getCardinality(sp);
             }
 
@@ -25,6 +25,9 @@ import org.openrdf.sail.SailException;
 import org.openrdf.sail.helpers.NotifyingSailBase;
 
 import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An implementation of a KiWi triple store without extended transaction support. The KiWiStore holds a reference to
@@ -69,6 +72,11 @@ public class KiWiStore extends NotifyingSailBase {
      */
     private boolean dropTablesOnShutdown = false;
 
+    /**
+     * The start dates of the transactions currently active on connections of this store.
+     */
+    private final Map<KiWiSailConnection, Date> activeTransactions = new ConcurrentHashMap<>();
+
     public KiWiStore(KiWiPersistence persistence, String defaultContext, String inferredContext) {
         this.persistence    = persistence;
         this.defaultContext = defaultContext;
@@ -156,6 +164,35 @@ public class KiWiStore extends NotifyingSailBase {
         return new KiWiSailConnection(this);
     }
 
+    /**
+     * Record the start of a transaction on the given connection.
+     */
+    void transactionStarted(KiWiSailConnection connection) {
+        activeTransactions.put(connection, new Date());
+    }
+
+    /**
+     * Record the end (commit or rollback) of the transaction on the given connection.
+     */
+    void transactionFinished(KiWiSailConnection connection) {
+        activeTransactions.remove(connection);
+    }
+
+    /**
+     * Return the start date of the oldest transaction that is currently active on a connection of this store, or null
+     * if there is no active transaction. Triples added by a transaction are created at or after its start date, but
+     * only become visible to other connections when the transaction commits.
+     */
+    public Date getOldestActiveTransaction() {
+        Date oldest = null;
+        for(Date started : activeTransactions.values()) {
+            if(oldest == null || started.before(oldest)) {
+                oldest = started;
+            }
+        }
+        return oldest;
+    }
+
     /**
      * Do store-specific operations to ensure proper shutdown of the store.
      */
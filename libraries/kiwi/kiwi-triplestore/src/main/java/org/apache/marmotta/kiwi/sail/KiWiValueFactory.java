@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.kiwi.sail;
 
+import com.google.common.util.concurrent.Striped;
 import org.apache.marmotta.commons.sesame.model.LiteralCommons;
 import org.apache.marmotta.commons.sesame.model.Namespaces;
 import org.apache.marmotta.commons.sesame.tripletable.IntArray;
@@ -26,6 +27,7 @@ import org.apache.marmotta.kiwi.persistence.registry.CacheTripleRegistry;
 import org.apache.marmotta.kiwi.persistence.registry.DBTripleRegistry;
 import org.apache.marmotta.kiwi.persistence.registry.KiWiTripleRegistry;
 import org.apache.marmotta.kiwi.persistence.registry.LocalTripleRegistry;
+import org.apache.marmotta.kiwi.persistence.registry.ShardedTripleRegistry;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
 import org.openrdf.model.*;
@@ -36,6 +38,8 @@ import org.slf4j.LoggerFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Add file description here!
@@ -46,17 +50,30 @@ public class KiWiValueFactory implements ValueFactory {
 
     private static Logger log = LoggerFactory.getLogger(KiWiValueFactory.class);
 
+    /**
+     * Number of lock stripes used for guarding node creation.
+     */
+    private static final int NODE_LOCK_STRIPES = 1024;
+
     private Random anonIdGenerator;
 
+    // creating a node is guarded by a lock stripe selected by the node's cache key, so threads creating different
+    // nodes proceed in parallel while threads creating the same node are serialised and do not store duplicates
+    private final Striped<Lock> nodeLocks;
+
 
     private KiWiStore store;
 
     private final KiWiTripleRegistry registry;
 
+    // guards lookup and registration of triple keys for registries that do not provide their own per-key locks
+    private final Lock registryLock = new ReentrantLock();
+
     private String defaultContext;
 
     public KiWiValueFactory(KiWiStore store, String defaultContext) {
         anonIdGenerator = new Random();
+        nodeLocks       = Striped.lock(NODE_LOCK_STRIPES);
 
         switch (store.getPersistence().getConfiguration().getRegistryStrategy()) {
             case DATABASE:
@@ -71,6 +88,10 @@ public class KiWiValueFactory implements ValueFactory {
                 log.info("KiWi Value Factory: in-memory registry");
                 registry        = new LocalTripleRegistry();
                 break;
+            case SHARDED:
+                log.info("KiWi Value Factory: sharded in-memory registry");
+                registry        = new ShardedTripleRegistry();
+                break;
             default:
                 log.info("KiWi Value Factory: in-memory registry");
                 registry        = new LocalTripleRegistry();
@@ -125,10 +146,20 @@ public class KiWiValueFactory implements ValueFactory {
             KiWiUriResource result = connection.loadUriResource(uri);
 
             if(result == null) {
-                result = new KiWiUriResource(uri);
+                Lock lock = nodeLocks.get(uri);
+                lock.lock();
+                try {
+                    // a concurrent thread might have created the resource while we were waiting for the lock
+                    result = connection.loadUriResource(uri);
 
-                connection.storeNode(result);
+                    if(result == null) {
+                        result = new KiWiUriResource(uri);
 
+                        connection.storeNode(result);
+                    }
+                } finally {
+                    lock.unlock();
+                }
             }
             if(result.getId() < 0) {
                 log.error("node ID is null!");
@@ -178,9 +209,20 @@ public class KiWiValueFactory implements ValueFactory {
             KiWiAnonResource result = connection.loadAnonResource(nodeID);
 
             if(result == null) {
-                result = new KiWiAnonResource(nodeID);
+                Lock lock = nodeLocks.get(nodeID);
+                lock.lock();
+                try {
+                    // a concurrent thread might have created the resource while we were waiting for the lock
+                    result = connection.loadAnonResource(nodeID);
+
+                    if(result == null) {
+                        result = new KiWiAnonResource(nodeID);
 
-                connection.storeNode(result);
+                        connection.storeNode(result);
+                    }
+                } finally {
+                    lock.unlock();
+                }
             }
             if(result.getId() < 0) {
                 log.error("node ID is null!");
@@ -399,7 +441,20 @@ public class KiWiValueFactory implements ValueFactory {
             }
 
             if(result.getId() < 0) {
-                connection.storeNode(result);
+                Lock lock = nodeLocks.get(LiteralCommons.createCacheKey(result));
+                lock.lock();
+                try {
+                    // a concurrent thread might have created the literal while we were waiting for the lock
+                    KiWiLiteral existing = reloadLiteral(connection, result, lang);
+
+                    if(existing != null) {
+                        result = existing;
+                    } else {
+                        connection.storeNode(result);
+                    }
+                } finally {
+                    lock.unlock();
+                }
             }
 
             return result;
@@ -413,6 +468,29 @@ public class KiWiValueFactory implements ValueFactory {
         }
     }
 
+    /**
+     * Look up the persistent version of a literal that has been constructed but not yet stored, using the
+     * load method matching the literal type.
+     *
+     * @param connection the connection to use for the lookup
+     * @param literal    the non-persistent literal
+     * @param lang       the language of the literal, or null
+     * @return the persistent literal, or null if it does not exist
+     */
+    private KiWiLiteral reloadLiteral(KiWiConnection connection, KiWiLiteral literal, String lang) throws SQLException {
+        if(literal instanceof KiWiDateLiteral) {
+            return connection.loadLiteral(((KiWiDateLiteral) literal).getDateContent());
+        } else if(literal instanceof KiWiIntLiteral) {
+            return connection.loadLiteral((long) ((KiWiIntLiteral) literal).getIntContent());
+        } else if(literal instanceof KiWiDoubleLiteral) {
+            return connection.loadLiteral((double) ((KiWiDoubleLiteral) literal).getDoubleContent());
+        } else if(literal instanceof KiWiBooleanLiteral) {
+            return connection.loadLiteral(literal.booleanValue());
+        } else {
+            return connection.loadLiteral(literal.getContent(), lang, literal.getType());
+        }
+    }
+
     /**
      * Creates a new <tt>xsd:boolean</tt>-typed literal representing the
      * specified value.
@@ -568,7 +646,9 @@ public class KiWiValueFactory implements ValueFactory {
 
             boolean needsDBLookup = false;
 
-            synchronized (registry) {
+            Lock lock = getRegistryLock(cacheKey);
+            lock.lock();
+            try {
                 long tripleId = registry.lookupKey(cacheKey);
 
                 if(tripleId >= 0) {
@@ -580,6 +660,8 @@ public class KiWiValueFactory implements ValueFactory {
                     // not found in registry, try loading from database
                     needsDBLookup = true;
                 }
+            } finally {
+                lock.unlock();
             }
 
             if(needsDBLookup) {
@@ -588,7 +670,8 @@ public class KiWiValueFactory implements ValueFactory {
 
             // triple has no id from registry or database, so we create one and flag it for reasoning
             if(result.getId() < 0) {
-                synchronized (registry) {
+                lock.lock();
+                try {
                     // It's possible a concurrent thread might have created this
                     // triple while we were blocked.  Check the registry again.
                     long tripleId = registry.lookupKey(cacheKey);
@@ -603,6 +686,8 @@ public class KiWiValueFactory implements ValueFactory {
                     }
 
                     registry.registerKey(cacheKey, connection.getTransactionId(), result.getId());
+                } finally {
+                    lock.unlock();
                 }
             }
 
@@ -622,8 +707,12 @@ public class KiWiValueFactory implements ValueFactory {
         if(triple.getId() >= 0) {
             IntArray cacheKey = IntArray.createSPOCKey(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext());
 
-            synchronized (registry) {
+            Lock lock = getRegistryLock(cacheKey);
+            lock.lock();
+            try {
                 registry.deleteKey(cacheKey);
+            } finally {
+                lock.unlock();
             }
         }
         triple.setDeleted(true);
@@ -633,6 +722,17 @@ public class KiWiValueFactory implements ValueFactory {
         registry.releaseTransaction(connection.getTransactionId());
     }
 
+    /**
+     * Return the lock that needs to be held while looking up and registering the triple with the given key. Sharded
+     * registries only lock the shard containing the key, all other registries use a single global lock.
+     */
+    private Lock getRegistryLock(IntArray cacheKey) {
+        if(registry instanceof ShardedTripleRegistry) {
+            return ((ShardedTripleRegistry) registry).getLock(cacheKey);
+        }
+        return registryLock;
+    }
+
 
     public KiWiResource convert(Resource r) {
         return (KiWiResource)convert((Value)r);
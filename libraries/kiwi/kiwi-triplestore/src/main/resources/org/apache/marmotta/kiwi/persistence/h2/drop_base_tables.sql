@@ -16,7 +16,8 @@
 DROP INDEX IF EXISTS idx_node_content;
 DROP INDEX IF EXISTS idx_literal_lang;
 
-DROP INDEX IF EXISTS idx_triples_p;
+DROP INDEX IF EXISTS idx_triples_pos;
+DROP INDEX IF EXISTS idx_triples_ops;
 DROP INDEX IF EXISTS idx_triples_spo;
 DROP INDEX IF EXISTS idx_triples_cspo;
 
@@ -73,7 +73,8 @@ CREATE TABLE registry (
 CREATE INDEX idx_node_content ON nodes(svalue(256));
 CREATE INDEX idx_literal_lang ON nodes(lang);
 
-CREATE INDEX idx_triples_p ON triples(predicate);
+CREATE INDEX idx_triples_pos ON triples(predicate,object,subject,context);
+CREATE INDEX idx_triples_ops ON triples(object,predicate,subject,context);
 CREATE INDEX idx_triples_spo ON triples(subject,predicate,object);
 CREATE INDEX idx_triples_cspo ON triples(context,subject,predicate,object);
 
@@ -81,5 +82,5 @@ CREATE INDEX idx_namespaces_uri ON namespaces(uri);
 CREATE INDEX idx_namespaces_prefix ON namespaces(prefix);
 
 -- insert initial metadata
-INSERT INTO metadata(mkey,mvalue) VALUES ('version','4');
+INSERT INTO metadata(mkey,mvalue) VALUES ('version','5');
 INSERT INTO metadata(mkey,mvalue) VALUES ('created',DATE_FORMAT(now(),'%Y-%m-%d %H:%i:%s') );
@@ -16,7 +16,8 @@
 DROP INDEX idx_node_content ON nodes;
 DROP INDEX idx_literal_lang ON nodes;
 
-DROP INDEX idx_triples_p ON triples;
+DROP INDEX idx_triples_pos ON triples;
+DROP INDEX idx_triples_ops ON triples;
 DROP INDEX idx_triples_spo ON triples;
 DROP INDEX idx_triples_cspo ON triples;
 
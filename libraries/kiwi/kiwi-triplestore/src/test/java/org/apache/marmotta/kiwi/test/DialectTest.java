@@ -25,6 +25,11 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.hasItem;
@@ -39,8 +44,11 @@ public class DialectTest {
 
     public final KiWiDialect dialect;
 
+    private final KiWiConfiguration configuration;
+
 
     public DialectTest(KiWiConfiguration configuration) {
+        this.configuration = configuration;
         this.dialect = configuration.getDialect();
     }
 
@@ -77,13 +85,30 @@ public class DialectTest {
         Assert.assertNotNull(migrateScript);
         Assert.assertFalse("".equals(migrateScript));
 
-        String migrateScript2 = dialect.getMigrationScript(4,"base");
+        String migrateScript2 = dialect.getMigrationScript(KiWiDialect.VERSION,"base");
 
         Assert.assertNotNull(migrateScript2);
         Assert.assertTrue("".equals(migrateScript2));
     }
 
 
+    /**
+     * The cast of query parameters used by the SPARQL translation needs to be valid SQL for every database.
+     */
+    @Test
+    public void testCastBigint() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(configuration.getJdbcUrl(), configuration.getDbUser(), configuration.getDbPassword());
+             PreparedStatement stmt = connection.prepareStatement("SELECT " + dialect.getCastBigint("?"))) {
+            stmt.setLong(1, 1L << 40);
+
+            try (ResultSet result = stmt.executeQuery()) {
+                Assert.assertTrue(result.next());
+                Assert.assertEquals(1L << 40, result.getLong(1));
+            }
+        }
+    }
+
+
     final Logger logger =
             LoggerFactory.getLogger(DialectTest.class);
 
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.test;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.config.RegistryStrategy;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.test.helper.DBConnectionChecker;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.SailException;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This test starts many triplestore operations in parallel using the sharded triple registry, to check that
+ * transactions creating triples concurrently do not end up with duplicate triples.
+ */
+public class H2ShardedRegistryConcurrencyTest extends ConcurrencyTestBase {
+
+    private static KiWiStore store;
+
+    @BeforeClass
+    public static void setup() throws RepositoryException {
+        logger = LoggerFactory.getLogger(H2ShardedRegistryConcurrencyTest.class);
+
+        KiWiConfiguration h2Config = KiWiDatabaseRunner.createKiWiConfig("H2", new H2Dialect());
+        h2Config.setRegistryStrategy(RegistryStrategy.SHARDED);
+        DBConnectionChecker.checkDatabaseAvailability(h2Config);
+        
+        rnd = new Random();
+
+        store = new KiWiStore(h2Config);
+        store.setDropTablesOnShutdown(true);
+        repository = new SailRepository(store);
+        repository.initialize();
+    }
+
+    @AfterClass
+    public static void dropDatabase() throws RepositoryException, SQLException, SailException {
+        assertTrue(store.checkConsistency());
+        repository.shutDown();
+    }
+}
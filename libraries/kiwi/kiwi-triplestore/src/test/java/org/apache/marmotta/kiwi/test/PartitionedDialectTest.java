@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test;
+
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLPartitionedDialect;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Test if the partitioned PostgreSQL dialect returns its own scripts and statements and falls back to the regular
+ * PostgreSQL dialect otherwise
+ */
+public class PartitionedDialectTest {
+
+    private PostgreSQLDialect regular;
+    private PostgreSQLPartitionedDialect partitioned;
+
+    @Before
+    public void setup() {
+        regular     = new PostgreSQLDialect();
+        partitioned = new PostgreSQLPartitionedDialect();
+    }
+
+    @Test
+    public void testGetCreateScript() {
+        Assert.assertThat(partitioned.getCreateScript("base"), containsString("PARTITION BY LIST (deleted)"));
+        Assert.assertThat(regular.getCreateScript("base"), not(containsString("PARTITION BY")));
+
+        Assert.assertThat(partitioned.getDropScript("base"), containsString("DROP TABLE IF EXISTS triples_live;"));
+    }
+
+    @Test
+    public void testGetStatement() {
+        Assert.assertThat(partitioned.getStatement("store.triple"), containsString("ON CONFLICT DO NOTHING"));
+        Assert.assertThat(regular.getStatement("store.triple"), not(containsString("ON CONFLICT")));
+
+        // statements not overridden are inherited from the regular dialect
+        Assert.assertEquals(regular.getStatement("load.node_by_id"), partitioned.getStatement("load.node_by_id"));
+    }
+}
@@ -32,6 +32,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openrdf.model.Statement;
+import org.openrdf.repository.RepositoryResult;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -1070,6 +1071,144 @@ public class PersistenceTest {
 
     }
 
+    /**
+     * Test that the garbage collector removes deleted triples and reports them in the statistics
+     */
+    @Test
+    public void testGarbageCollectTriples() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred_1   = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+            connection.storeNode(subject);
+            connection.storeNode(pred_1);
+            connection.storeNode(context);
+
+            List<KiWiTriple> triples = new ArrayList<>();
+            for(int i=0; i<10; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8)+i);
+                connection.storeNode(object);
+
+                KiWiTriple triple = new KiWiTriple(subject,pred_1,object,context);
+                connection.storeTriple(triple);
+                triples.add(triple);
+            }
+            connection.commit();
+
+            for(int i=0; i<4; i++) {
+                connection.deleteTriple(triples.get(i));
+            }
+            connection.commit();
+
+            persistence.getStatistics().reset();
+            persistence.garbageCollect();
+
+            Assert.assertEquals(4, persistence.getStatistics().getGarbageCollectedTriples());
+            Assert.assertEquals(1, persistence.getStatistics().getGarbageCollectionRuns());
+            Assert.assertEquals(6, connection.getSize());
+
+            // all deleted triples have been removed, a second run does not find anything
+            persistence.garbageCollect();
+            Assert.assertEquals(4, persistence.getStatistics().getGarbageCollectedTriples());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test that triple queries of the same pattern shape reuse the prepared statement, also when nested
+     */
+    @Test
+    public void testTripleQueryStatementReuse() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred_1   = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource object_1 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+            connection.storeNode(pred_1);
+            connection.storeNode(object_1);
+            connection.storeNode(context);
+
+            KiWiTriple triple1 = new KiWiTriple(subject,pred_1,object_1,context);
+            connection.storeTriple(triple1);
+            connection.commit();
+
+            persistence.getStatistics().reset();
+
+            Assert.assertThat(Iterations.asList(connection.listTriples(subject,null,null,null,false, true)), hasItem((Statement)triple1));
+            Assert.assertThat(Iterations.asList(connection.listTriples(subject,null,null,null,false, true)), hasItem((Statement)triple1));
+
+            Assert.assertEquals(1, persistence.getStatistics().getTripleQueryCacheMisses());
+            Assert.assertEquals(1, persistence.getStatistics().getTripleQueryCacheHits());
+
+            // a nested query of the same shape must not interfere with the open outer query
+            RepositoryResult<Statement> outer = connection.listTriples(subject,null,null,null,false, true);
+            try {
+                Assert.assertThat(Iterations.asList(connection.listTriples(subject,null,null,null,false, true)), hasItem((Statement)triple1));
+                Assert.assertTrue(outer.hasNext());
+                Assert.assertEquals(triple1, outer.next());
+            } finally {
+                outer.close();
+            }
+
+            Assert.assertEquals(2, persistence.getStatistics().getTripleQueryCacheMisses());
+            Assert.assertEquals(2, persistence.getStatistics().getTripleQueryCacheHits());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test batch loading of nodes by id with more ids than fit into a single query, duplicate ids, the null id
+     * and ids that do not exist
+     */
+    @Test
+    public void testLoadNodesByIds() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            List<KiWiUriResource> uris = new ArrayList<>();
+            for(int i = 0; i < 1500; i++) {
+                KiWiUriResource uri = new KiWiUriResource("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8) + "/" + i);
+                connection.storeNode(uri);
+                uris.add(uri);
+            }
+            connection.commit();
+
+            // make sure all nodes are loaded from the database
+            persistence.clearCache();
+
+            long[] ids = new long[uris.size() + 3];
+            for(int i = 0; i < uris.size(); i++) {
+                ids[i] = uris.get(i).getId();
+            }
+            ids[uris.size()]     = uris.get(0).getId();
+            ids[uris.size() + 1] = 0;
+            ids[uris.size() + 2] = Long.MAX_VALUE;
+
+            KiWiNode[] nodes = connection.loadNodesByIds(ids);
+            Assert.assertEquals(ids.length, nodes.length);
+            for(int i = 0; i < uris.size(); i++) {
+                Assert.assertEquals(uris.get(i), nodes[i]);
+                Assert.assertEquals(uris.get(i).getId(), nodes[i].getId());
+            }
+            Assert.assertEquals(uris.get(0), nodes[uris.size()]);
+            Assert.assertNull(nodes[uris.size() + 1]);
+            Assert.assertNull(nodes[uris.size() + 2]);
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
     // TODO: test namespaces
     @Test
     public void testStoreNamespaces() throws SQLException {
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test;
+
+import info.aduna.iteration.Iterations;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiTripleStatistics;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+
+import java.sql.SQLException;
+
+/**
+ * Test the triple statistics used for estimating the cardinality of triple patterns.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class TripleStatisticsTest {
+
+    private static final String NS = "http://localhost/statistics/";
+
+    private Repository repository;
+
+    private KiWiStore store;
+
+    private final KiWiConfiguration kiwiConfiguration;
+
+    public TripleStatisticsTest(KiWiConfiguration kiwiConfiguration) {
+        this.kiwiConfiguration = kiwiConfiguration;
+        kiwiConfiguration.setStatisticsPairThreshold(10);
+    }
+
+    @Before
+    public void initDatabase() throws RepositoryException {
+        store = new KiWiStore(kiwiConfiguration);
+        store.setDropTablesOnShutdown(true);
+        repository = new SailRepository(store);
+        repository.initialize();
+    }
+
+    @After
+    public void dropDatabase() throws RepositoryException, SQLException {
+        repository.shutDown();
+    }
+
+    /**
+     * 100 persons, 5 documents; every person has a name and knows one other person.
+     */
+    private void loadData() throws RepositoryException {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            ValueFactory vf = con.getValueFactory();
+            URI person = vf.createURI(NS + "Person");
+            URI document = vf.createURI(NS + "Document");
+            URI name = vf.createURI(NS + "name");
+            URI knows = vf.createURI(NS + "knows");
+            URI context = vf.createURI(NS + "context");
+
+            con.begin();
+            for(int i = 0; i < 100; i++) {
+                URI p = vf.createURI(NS + "person" + i);
+                con.add(p, RDF.TYPE, person, context);
+                con.add(p, name, vf.createLiteral("Person " + i), context);
+                con.add(p, knows, vf.createURI(NS + "person" + ((i + 1) % 100)), context);
+            }
+            for(int i = 0; i < 5; i++) {
+                con.add(vf.createURI(NS + "document" + i), RDF.TYPE, document);
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        loadData();
+
+        KiWiTripleStatistics statistics = store.getPersistence().getTripleStatistics();
+        Assert.assertFalse(statistics.isAvailable());
+
+        statistics.refresh();
+        Assert.assertTrue(statistics.isAvailable());
+        Assert.assertEquals(305, statistics.getTripleCount());
+        Assert.assertEquals(105, statistics.getSubjectCount());
+
+        try(KiWiConnection con = store.getPersistence().getConnection()) {
+            long type     = con.loadUriResource(RDF.TYPE.stringValue()).getId();
+            long person   = con.loadUriResource(NS + "Person").getId();
+            long document = con.loadUriResource(NS + "Document").getId();
+            long context  = con.loadUriResource(NS + "context").getId();
+
+            Assert.assertEquals(105, statistics.getPredicateCount(type));
+            Assert.assertEquals(300, statistics.getContextCount(context));
+            Assert.assertEquals(100, statistics.getPredicateObjectCount(type, person));
+
+            // only 5 documents, below the threshold of 10
+            Assert.assertEquals(-1, statistics.getPredicateObjectCount(type, document));
+
+            con.commit();
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        loadData();
+
+        KiWiTripleStatistics statistics = store.getPersistence().getTripleStatistics();
+        statistics.refresh();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            ValueFactory vf = con.getValueFactory();
+            con.begin();
+            for(int i = 100; i < 110; i++) {
+                con.add(vf.createURI(NS + "person" + i), RDF.TYPE, vf.createURI(NS + "Person"));
+            }
+            con.remove(vf.createURI(NS + "person0"), vf.createURI(NS + "knows"), null);
+            con.commit();
+
+            // changes rolled back are not counted
+            con.begin();
+            con.add(vf.createURI(NS + "person200"), RDF.TYPE, vf.createURI(NS + "Person"));
+            con.rollback();
+        } finally {
+            con.close();
+        }
+
+        Assert.assertEquals(314, statistics.getTripleCount());
+
+        try(KiWiConnection kcon = store.getPersistence().getConnection()) {
+            long type   = kcon.loadUriResource(RDF.TYPE.stringValue()).getId();
+            long person = kcon.loadUriResource(NS + "Person").getId();
+            long knows  = kcon.loadUriResource(NS + "knows").getId();
+
+            Assert.assertEquals(115, statistics.getPredicateCount(type));
+            Assert.assertEquals(110, statistics.getPredicateObjectCount(type, person));
+            Assert.assertEquals(99, statistics.getPredicateCount(knows));
+
+            kcon.commit();
+        }
+    }
+
+    @Test
+    public void testRepeatedDelete() throws Exception {
+        loadData();
+
+        KiWiTripleStatistics statistics = store.getPersistence().getTripleStatistics();
+        statistics.refresh();
+
+        try(KiWiConnection con = store.getPersistence().getConnection()) {
+            KiWiUriResource person0 = con.loadUriResource(NS + "person0");
+            KiWiUriResource knows   = con.loadUriResource(NS + "knows");
+            KiWiTriple triple = (KiWiTriple) Iterations.asList(con.listTriples(person0, knows, null, null, false, true)).get(0);
+
+            // deleting a triple that has already been deleted does not change the statistics again
+            con.deleteTriple(triple);
+            con.deleteTriple(triple);
+            con.commit();
+            con.deleteTriple(triple);
+            con.commit();
+
+            Assert.assertEquals(304, statistics.getTripleCount());
+            Assert.assertEquals(99, statistics.getPredicateCount(knows.getId()));
+        }
+    }
+
+    @Test
+    public void testCardinality() throws Exception {
+        loadData();
+
+        KiWiTripleStatistics statistics = store.getPersistence().getTripleStatistics();
+        statistics.refresh();
+
+        try(KiWiConnection con = store.getPersistence().getConnection()) {
+            ValueFactory vf = store.getValueFactory();
+
+            // ?x rdf:type Person is much more frequent than ?x rdf:type Document
+            double persons   = statistics.getCardinality(con, null, RDF.TYPE, vf.createURI(NS + "Person"), null);
+            double documents = statistics.getCardinality(con, null, RDF.TYPE, vf.createURI(NS + "Document"), null);
+            Assert.assertEquals(100.0, persons, 0.001);
+            Assert.assertTrue(documents < persons);
+
+            // a predicate that does not exist cannot match any triple
+            Assert.assertEquals(0.0, statistics.getCardinality(con, null, new URIImpl(NS + "unknown"), null, null), 0.001);
+
+            // all triples
+            Assert.assertEquals(305.0, statistics.getCardinality(con, null, null, null, null), 0.001);
+
+            con.commit();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.caching;
+
+import org.apache.marmotta.kiwi.caching.OffHeapCacheMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Test the off-heap cache map used by the OFFHEAP caching backend.
+ */
+public class OffHeapCacheTest {
+
+    private OffHeapCacheMap<String> cache;
+
+    @Before
+    public void setup() {
+        // minimum segment size is 64kB, so the cache holds ~1MB
+        cache = new OffHeapCacheMap<String>(0) {
+            @Override
+            protected void writeValue(DataOutput out, String value) throws IOException {
+                out.writeUTF(value);
+            }
+
+            @Override
+            protected String readValue(DataInput in) throws IOException {
+                return in.readUTF();
+            }
+        };
+    }
+
+    @Test
+    public void testPutGet() {
+        for(long i=0; i<1000; i++) {
+            cache.put(i, "value " + i);
+        }
+
+        Assert.assertEquals(1000, cache.size());
+        for(long i=0; i<1000; i++) {
+            Assert.assertEquals("value " + i, cache.get(i));
+        }
+        Assert.assertNull(cache.get(1000L));
+        Assert.assertNull(cache.get("foo"));
+    }
+
+    @Test
+    public void testOverwrite() {
+        cache.put(1L, "first");
+        cache.put(1L, "second");
+
+        Assert.assertEquals("second", cache.get(1L));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        for(long i=0; i<100; i++) {
+            cache.put(i, "value " + i);
+        }
+        for(long i=0; i<100; i+=2) {
+            cache.remove(i);
+        }
+
+        Assert.assertEquals(50, cache.size());
+        for(long i=0; i<100; i++) {
+            if(i % 2 == 0) {
+                Assert.assertFalse(cache.containsKey(i));
+            } else {
+                Assert.assertEquals("value " + i, cache.get(i));
+            }
+        }
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertTrue(cache.isEmpty());
+    }
+
+    /**
+     * Writing much more data than fits into the cache must evict the oldest entries while keeping the most
+     * recent ones accessible.
+     */
+    @Test
+    public void testEviction() {
+        int count = 200000;
+        for(long i=0; i<count; i++) {
+            cache.put(i, "a somewhat longer value to fill the cache " + i);
+        }
+
+        Assert.assertTrue(cache.size() < count);
+        Assert.assertNull(cache.get(0L));
+        for(long i=count-100; i<count; i++) {
+            Assert.assertEquals("a somewhat longer value to fill the cache " + i, cache.get(i));
+        }
+    }
+}
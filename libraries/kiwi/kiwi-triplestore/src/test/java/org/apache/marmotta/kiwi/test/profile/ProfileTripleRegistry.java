@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.profile;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.config.RegistryStrategy;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.openrdf.sail.SailException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An executable class that compares the triple registry strategies (LOCAL, DATABASE and SHARDED) under concurrent
+ * statement creation through the KiWiValueFactory with 1 to 32 writer threads. Each thread uses its own connection
+ * and creates a fixed number of statements; half of the statements are shared between all threads to also exercise
+ * the duplicate detection of the registry. It requires a JDBC connection string to an existing database for running.
+ */
+public class ProfileTripleRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(ProfileTripleRegistry.class);
+
+    private static final RegistryStrategy[] STRATEGIES = new RegistryStrategy[] {RegistryStrategy.LOCAL, RegistryStrategy.DATABASE, RegistryStrategy.SHARDED};
+
+    private static final int[] THREADS = new int[] {1, 2, 4, 8, 16, 32};
+
+    private static final int STATEMENTS_PER_THREAD = 5000;
+
+    private String jdbcUrl, user, password;
+
+
+    public ProfileTripleRegistry(String jdbcUrl, String user, String password) {
+        this.jdbcUrl  = jdbcUrl;
+        this.user     = user;
+        this.password = password;
+    }
+
+
+    public void profileTripleRegistry() throws Exception {
+        for(RegistryStrategy strategy : STRATEGIES) {
+            KiWiConfiguration cfg = new KiWiConfiguration("profiling",jdbcUrl,user,password, new PostgreSQLDialect());
+            cfg.setRegistryStrategy(strategy);
+
+            KiWiStore store = new KiWiStore(cfg);
+            store.initialize();
+            try {
+                for(int threads : THREADS) {
+                    profileStatementCreation(store, strategy, threads);
+                }
+            } finally {
+                store.shutDown();
+            }
+        }
+    }
+
+
+    private void profileStatementCreation(KiWiStore store, RegistryStrategy strategy, int threads) throws Exception {
+        final KiWiValueFactory valueFactory = (KiWiValueFactory) store.getValueFactory();
+        final String run = RandomStringUtils.randomAlphanumeric(8);
+
+        // create all nodes up front so that only the triple registry is measured
+        final KiWiUriResource predicate = (KiWiUriResource) valueFactory.createURI("http://localhost/profile/" + run + "/p");
+        final KiWiUriResource context   = (KiWiUriResource) valueFactory.createURI("http://localhost/profile/" + run + "/c");
+        final KiWiUriResource[][] subjects = new KiWiUriResource[threads][STATEMENTS_PER_THREAD];
+        for(int t = 0; t < threads; t++) {
+            for(int i = 0; i < STATEMENTS_PER_THREAD; i++) {
+                // even subjects are shared among all threads, odd subjects are private to a thread
+                String key = i % 2 == 0 ? run + "/" + i : run + "/" + t + "/" + i;
+                subjects[t][i] = (KiWiUriResource) valueFactory.createURI("http://localhost/profile/" + key);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(int t = 0; t < threads; t++) {
+                final KiWiUriResource[] threadSubjects = subjects[t];
+                final KiWiConnection connection = store.getPersistence().getConnection();
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            for(KiWiUriResource subject : threadSubjects) {
+                                valueFactory.createStatement(subject, predicate, subject, context, connection);
+                            }
+                        } finally {
+                            connection.rollback();
+                            connection.close();
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            long start = System.currentTimeMillis();
+            for(Future<Void> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+            long end = System.currentTimeMillis();
+
+            long statements = (long) threads * STATEMENTS_PER_THREAD;
+            log.info("{} registry, {} threads: created {} statements in {} ms ({} statements/s)", strategy, threads, statements, end - start, statements * 1000 / Math.max(1, end - start));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        if(args.length != 3) {
+            log.error("arguments: <jdbc-url> <user> <password>");
+            System.exit(1);
+        }
+
+        ProfileTripleRegistry p = new ProfileTripleRegistry(args[0],args[1],args[2]);
+        p.profileTripleRegistry();
+
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.profile;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.openrdf.sail.SailException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An executable class that measures how node creation through the KiWiValueFactory scales with the number of
+ * concurrent writer threads (1 to 32). Each thread creates a fixed number of new URIs and literals; half of the
+ * values are shared between all threads to also exercise concurrent creation of the same node. It requires a JDBC
+ * connection string to an existing database for running.
+ */
+public class ProfileValueCreation {
+
+    private static Logger log = LoggerFactory.getLogger(ProfileValueCreation.class);
+
+    private static final int[] THREADS = new int[] {1, 2, 4, 8, 16, 32};
+
+    private static final int VALUES_PER_THREAD = 5000;
+
+    private KiWiStore store;
+
+
+    public ProfileValueCreation(String jdbcUrl, String user, String password) throws SailException {
+        this(new KiWiConfiguration("profiling",jdbcUrl,user,password, new PostgreSQLDialect()));
+    }
+
+    public ProfileValueCreation(KiWiConfiguration cfg) throws SailException {
+        store = new KiWiStore(cfg);
+        store.initialize();
+    }
+
+
+    public void profileValueCreation() throws Exception {
+        for(int threads : THREADS) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final KiWiValueFactory valueFactory = (KiWiValueFactory) store.getValueFactory();
+                final String run = RandomStringUtils.randomAlphanumeric(8);
+
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for(int t = 0; t < threads; t++) {
+                    final int thread = t;
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for(int i = 0; i < VALUES_PER_THREAD; i++) {
+                                // even values are shared among all threads, odd values are private to this thread
+                                String key = i % 2 == 0 ? run + "/" + i : run + "/" + thread + "/" + i;
+
+                                valueFactory.createURI("http://localhost/profile/" + key);
+                                valueFactory.createLiteral("literal " + key);
+                            }
+                            return null;
+                        }
+                    });
+                }
+
+                long start = System.currentTimeMillis();
+                for(Future<Void> f : executor.invokeAll(tasks)) {
+                    f.get();
+                }
+                long end = System.currentTimeMillis();
+
+                long values = 2L * threads * VALUES_PER_THREAD;
+                log.info("{} threads: created {} values in {} ms ({} values/s)", threads, values, end - start, values * 1000 / Math.max(1, end - start));
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+
+    public void shutdown() throws SailException {
+        store.shutDown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length != 3) {
+            log.error("arguments: <jdbc-url> <user> <password>");
+            System.exit(1);
+        }
+
+        ProfileValueCreation p = new ProfileValueCreation(args[0],args[1],args[2]);
+        p.profileValueCreation();
+        p.shutdown();
+
+    }
+
+}
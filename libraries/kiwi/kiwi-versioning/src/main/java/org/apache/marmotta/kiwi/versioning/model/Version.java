@@ -42,8 +42,10 @@ public class Version extends TransactionData {
     }
 
     public Version(TransactionData data) {
-        this.addedTriples   = data.getAddedTriples();
-        this.removedTriples = data.getRemovedTriples();
+        this.addedTriples   = data.addedTriples;
+        this.removedTriples = data.removedTriples;
+        this.spill          = data.spill;
+        this.spillThreshold = data.spillThreshold;
         this.commitTime     = data.getCommitTime();
     }
 
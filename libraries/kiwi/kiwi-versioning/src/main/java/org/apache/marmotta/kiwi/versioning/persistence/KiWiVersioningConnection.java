@@ -42,7 +42,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Add file description here!
@@ -186,6 +193,130 @@ public class KiWiVersioningConnection extends KiWiConnection {
         }
     }
 
+    /**
+     * Compact all versions in the given time interval into the most recent version of the interval. The added and
+     * removed triples of the earlier versions are moved to the most recent version, which then describes the net
+     * changes of the interval. Since KiWi reuses the id of a triple that is added again after its removal, a triple
+     * may occur in several versions of the interval; its net change is determined by its first and last operation:
+     * <ul>
+     *     <li>if they are opposite (e.g. added and removed again), the triple is dropped from the join tables and
+     *         will later be cleaned up by the garbage collector</li>
+     *     <li>otherwise (e.g. added, removed and added again), a single entry for the last operation is kept</li>
+     * </ul>
+     *
+     * @param from date after which versions will be compacted
+     * @param to   date before which versions will be compacted
+     * @throws SQLException
+     */
+    public void compactVersions(Date from, Date to) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        CloseableIteration<Version, SQLException> it = listVersionsInternal(from,to);
+        try {
+            while(it.hasNext()) {
+                ids.add(it.next().getId());
+            }
+        } finally {
+            it.close();
+        }
+        if(ids.size() < 2) {
+            return;
+        }
+
+        requireJDBCConnection();
+
+        // first and last operation on each triple in version order (true for an addition)
+        Map<Long,Boolean> firstOperation = new HashMap<>();
+        Map<Long,Boolean> lastOperation  = new HashMap<>();
+        Set<Long> repeated = new HashSet<>();
+        for(Long id : ids) {
+            recordOperations(listVersionTriples("load.versions_added", id), true, firstOperation, lastOperation, repeated);
+            recordOperations(listVersionTriples("load.versions_removed", id), false, firstOperation, lastOperation, repeated);
+        }
+
+        long target = ids.get(ids.size() - 1);
+
+        PreparedStatement mergeAdded   = getPreparedStatement("update.version_added_merge");
+        PreparedStatement mergeRemoved = getPreparedStatement("update.version_removed_merge");
+        for(Long id : ids.subList(0, ids.size() - 1)) {
+            mergeAdded.clearParameters();
+            mergeAdded.setLong(1, target);
+            mergeAdded.setLong(2, id);
+            mergeAdded.executeUpdate();
+
+            mergeRemoved.clearParameters();
+            mergeRemoved.setLong(1, target);
+            mergeRemoved.setLong(2, id);
+            mergeRemoved.executeUpdate();
+
+            removeVersion(id);
+        }
+
+        // triples occurring in several versions now have several entries in the target version; replace them by the
+        // net change of the interval
+        if(repeated.size() > 0) {
+            PreparedStatement deleteAdded   = getPreparedStatement("delete.version_added_triple");
+            PreparedStatement deleteRemoved = getPreparedStatement("delete.version_removed_triple");
+            PreparedStatement storeAdded    = getPreparedStatement("store.version_added");
+            PreparedStatement storeRemoved  = getPreparedStatement("store.version_removed");
+            for(Long tripleId : repeated) {
+                deleteAdded.setLong(1, target);
+                deleteAdded.setLong(2, tripleId);
+                deleteAdded.addBatch();
+
+                deleteRemoved.setLong(1, target);
+                deleteRemoved.setLong(2, tripleId);
+                deleteRemoved.addBatch();
+
+                boolean last = lastOperation.get(tripleId);
+                if(firstOperation.get(tripleId) == last) {
+                    PreparedStatement store = last ? storeAdded : storeRemoved;
+                    store.setLong(1, target);
+                    store.setLong(2, tripleId);
+                    store.addBatch();
+                }
+            }
+            deleteAdded.executeBatch();
+            deleteRemoved.executeBatch();
+            storeAdded.executeBatch();
+            storeRemoved.executeBatch();
+        }
+    }
+
+    /**
+     * Record the operation (addition or removal) of a version on the triples given as argument. Triples that already
+     * had an operation in an earlier version are added to the repeated set.
+     */
+    private static void recordOperations(Set<Long> triples, boolean added, Map<Long,Boolean> firstOperation, Map<Long,Boolean> lastOperation, Set<Long> repeated) {
+        for(Long tripleId : triples) {
+            if(lastOperation.put(tripleId, added) == null) {
+                firstOperation.put(tripleId, added);
+            } else {
+                repeated.add(tripleId);
+            }
+        }
+    }
+
+    /**
+     * Return the ids of the triples referenced by a version in one of the join tables, using the given query.
+     */
+    private Set<Long> listVersionTriples(String queryName, long versionId) throws SQLException {
+        Set<Long> result = new HashSet<>();
+
+        PreparedStatement query = getPreparedStatement(queryName);
+        query.clearParameters();
+        query.setLong(1, versionId);
+
+        ResultSet r = query.executeQuery();
+        try {
+            while(r.next()) {
+                result.add(r.getLong(1));
+            }
+        } finally {
+            r.close();
+        }
+        return result;
+    }
+
 
 
     /**
@@ -674,4 +805,136 @@ public class KiWiVersioningConnection extends KiWiConnection {
         }
     }
 
+    /**
+     * Materialize the snapshot at the given date as a checkpoint, i.e. copy all triples that were live at the date
+     * into the versions_snapshot_triples table. Snapshot tables for the date or later dates are then computed from
+     * the latest checkpoint (see {@link #getSnapshotTable(java.util.Date, boolean)}).
+     *
+     * @param snapshotDate the date of the snapshot; must not be in the future
+     * @return the database id of the new checkpoint
+     * @throws SQLException
+     */
+    public long createSnapshotCheckpoint(Date snapshotDate) throws SQLException {
+        Preconditions.checkNotNull(snapshotDate);
+        Preconditions.checkArgument(!snapshotDate.after(new Date()), "snapshot checkpoints cannot be created for future dates");
+
+        requireJDBCConnection();
+
+        long id = getNextSequence();
+
+        PreparedStatement insertSnapshot = getPreparedStatement("store.snapshot");
+        synchronized (insertSnapshot) {
+            insertSnapshot.clearParameters();
+            insertSnapshot.setLong(1, id);
+            insertSnapshot.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
+            insertSnapshot.executeUpdate();
+        }
+
+        PreparedStatement insertTriples = getPreparedStatement("store.snapshot_triples");
+        synchronized (insertTriples) {
+            insertTriples.clearParameters();
+            insertTriples.setLong(1, id);
+            insertTriples.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
+            insertTriples.setTimestamp(3, new Timestamp(snapshotDate.getTime()));
+            int count = insertTriples.executeUpdate();
+
+            log.info("created snapshot checkpoint for {} ({} triples)", snapshotDate, count);
+        }
+
+        return id;
+    }
+
+    /**
+     * Remove all snapshot checkpoints until the date given as argument.
+     *
+     * @param until date until when to delete checkpoints
+     * @throws SQLException
+     */
+    public void removeSnapshotCheckpoints(Date until) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement removeTriples = getPreparedStatement("delete.snapshot_triples");
+        removeTriples.clearParameters();
+        removeTriples.setTimestamp(1, new Timestamp(until.getTime()));
+        removeTriples.executeUpdate();
+
+        PreparedStatement removeSnapshots = getPreparedStatement("delete.snapshots");
+        removeSnapshots.clearParameters();
+        removeSnapshots.setTimestamp(1, new Timestamp(until.getTime()));
+        removeSnapshots.executeUpdate();
+    }
+
+    /**
+     * Return an SQL table reference (a derived table) containing the triples that were live at the given snapshot
+     * date. The table provides the same columns as the triples table used by the SPARQL query builder, so it can be
+     * used in its place for evaluating queries natively against the snapshot.
+     * <p/>
+     * In case a checkpoint exists at or before the snapshot date, the table consists of the triples of the latest such
+     * checkpoint that have not been deleted until the snapshot date, plus the triples created after the checkpoint
+     * and still live at the snapshot date. Otherwise it is computed from the creation and deletion dates of all
+     * triples.
+     *
+     * @param snapshotDate the date of the snapshot
+     * @param inferred     if true, the table will also contain triples inferred by the reasoner, if false not
+     * @return an SQL table reference to be used in the FROM part of a query
+     * @throws SQLException
+     */
+    public String getSnapshotTable(Date snapshotDate, boolean inferred) throws SQLException {
+        requireJDBCConnection();
+
+        long checkpoint = -1;
+        Date checkpointDate = null;
+
+        PreparedStatement queryCheckpoint = getPreparedStatement("load.snapshot_latest");
+        synchronized (queryCheckpoint) {
+            queryCheckpoint.clearParameters();
+            queryCheckpoint.setTimestamp(1, new Timestamp(snapshotDate.getTime()));
+            queryCheckpoint.setMaxRows(1);
+
+            ResultSet r = queryCheckpoint.executeQuery();
+            try {
+                if(r.next()) {
+                    checkpoint     = r.getLong(1);
+                    checkpointDate = new Date(r.getTimestamp(2).getTime());
+                }
+            } finally {
+                r.close();
+            }
+        }
+
+        String date = formatTimestamp(snapshotDate);
+        String inferredCondition = inferred ? "" : " AND inferred = false";
+
+        StringBuilder table = new StringBuilder("(");
+        if(checkpoint < 0) {
+            table.append("SELECT id,subject,predicate,object,context,inferred,false AS deleted FROM triples")
+                    .append(" WHERE createdAt <= ").append(date)
+                    .append(" AND (deleted = false OR deletedAt > ").append(date).append(")")
+                    .append(inferredCondition);
+        } else {
+            table.append("SELECT triple_id AS id,subject,predicate,object,context,inferred,false AS deleted FROM versions_snapshot_triples S")
+                    .append(" WHERE snapshot_id = ").append(checkpoint)
+                    .append(inferredCondition);
+
+            if(checkpointDate.before(snapshotDate)) {
+                table.append(" AND NOT EXISTS (SELECT 1 FROM triples D WHERE D.id = S.triple_id AND D.deleted = true AND D.deletedAt <= ").append(date).append(")")
+                        .append(" UNION ALL SELECT id,subject,predicate,object,context,inferred,false AS deleted FROM triples")
+                        .append(" WHERE createdAt > ").append(formatTimestamp(checkpointDate))
+                        .append(" AND createdAt <= ").append(date)
+                        .append(" AND (deleted = false OR deletedAt > ").append(date).append(")")
+                        .append(inferredCondition);
+            }
+        }
+        table.append(")");
+
+        return table.toString();
+    }
+
+    /**
+     * Format a date as SQL timestamp literal, in the same time zone used by JDBC for timestamp parameters.
+     */
+    private static String formatTimestamp(Date date) {
+        return "TIMESTAMP '" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(date) + "'";
+    }
+
 }
@@ -58,6 +58,10 @@ public class KiWiVersioningPersistence {
         persistence.addNodeTableDependency("versions", "creator");
         persistence.addTripleTableDependency("versions_added","triple_id");
         persistence.addTripleTableDependency("versions_removed","triple_id");
+
+        persistence.initDatabase("versioning_snapshots", new String[] {"versions_snapshots", "versions_snapshot_triples"});
+
+        persistence.addTripleTableDependency("versions_snapshot_triples","triple_id");
     }
 
     /**
@@ -67,6 +71,7 @@ public class KiWiVersioningPersistence {
      * @throws SQLException
      */
     public void dropDatabase() throws SQLException {
+        persistence.dropDatabase("versioning_snapshots");
         persistence.dropDatabase("versioning");
     }
 
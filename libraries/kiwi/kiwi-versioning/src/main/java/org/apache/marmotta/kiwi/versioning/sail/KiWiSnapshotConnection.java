@@ -26,6 +26,7 @@ import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
 import org.openrdf.model.*;
 import org.openrdf.query.BindingSet;
@@ -118,8 +119,11 @@ public class KiWiSnapshotConnection implements SailConnection {
         }
 
         try {
+            // supported parts of the query are evaluated in the database against the triples of the snapshot
+            String snapshotTable = databaseConnection.getSnapshotTable(snapshotDate, includeInferred);
+
             KiWiTripleSource tripleSource = new KiWiTripleSource(this,includeInferred);
-            EvaluationStrategy strategy = new EvaluationStrategyImpl(tripleSource, dataset);
+            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, databaseConnection, valueFactory, parent.getQueryExecutor(), snapshotTable);
 
             new BindingAssigner().optimize(tupleExpr, dataset, bindings);
             new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
@@ -137,6 +141,8 @@ public class KiWiSnapshotConnection implements SailConnection {
 
         } catch (QueryEvaluationException e) {
             throw new SailException(e);
+        } catch (SQLException e) {
+            throw new SailException("database error while preparing snapshot query",e);
         }
     }
 
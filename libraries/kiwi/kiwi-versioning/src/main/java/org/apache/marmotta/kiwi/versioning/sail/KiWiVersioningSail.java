@@ -17,14 +17,17 @@
  */
 package org.apache.marmotta.kiwi.versioning.sail;
 
+import com.google.common.base.Preconditions;
 import org.apache.marmotta.commons.sesame.filter.AlwaysTrueFilter;
 import org.apache.marmotta.commons.sesame.filter.SesameFilter;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
 import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
 import org.apache.marmotta.commons.sesame.transactions.wrapper.TransactionalSailWrapper;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiQueryExecutor;
 import org.apache.marmotta.kiwi.versioning.api.VersioningSail;
 import org.apache.marmotta.kiwi.versioning.model.Version;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
@@ -55,7 +58,12 @@ import java.util.Set;
  *         i.e. it is possible to query the triple store with its state at any given point in history</li>
  *     <li>getVersions() returns a list of all versions that have been tracked in the triple store</li>
  *     <li>getVersions(Date from, Date to) returns a list of all versions that have been tracked between the given dates</li>
+ *     <li>createSnapshotCheckpoint(Date) materializes the snapshot at the given date; snapshots of later dates are
+ *         then computed from the checkpoint and the changes since then</li>
+ *     <li>compactVersions(Date from, Date to) merges the versions of a time interval into a single version</li>
  * </ul>
+ * Snapshot connections evaluate SPARQL queries natively in the database where possible (see
+ * {@link org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy}).
  * Further functionalities like removing old versions or undoing certain versions are planned but currently not yet
  * implemented.
  * <p/>
@@ -73,6 +81,11 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
 
     private SesameFilter<Statement> filter;
 
+    /**
+     * Bounded executor for the native SQL queries of snapshot connections
+     */
+    private KiWiQueryExecutor queryExecutor;
+
     /**
      * Build a new {@link KiWiVersioningSail} based on the provided parent
      * {@link TransactionalSail}.
@@ -124,6 +137,9 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
         } catch (SQLException e) {
             throw new SailException("error while initialising versioning tables in database",e);
         }
+
+        KiWiConfiguration configuration = getBaseStore().getPersistence().getConfiguration();
+        queryExecutor = new KiWiQueryExecutor(configuration.getQueryThreads(), configuration.getQueryQueueSize());
     }
 
     /**
@@ -153,6 +169,15 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
         return persistence;
     }
 
+    /**
+     * Return the executor used for running the native SQL queries of snapshot connections.
+     *
+     * @return
+     */
+    public KiWiQueryExecutor getQueryExecutor() {
+        return queryExecutor;
+    }
+
     /**
      * Called after a transaction has committed. This method will take the transaction data and convert it into a
      * Version object, which will then be persisted in the KiWiVersioningPersistence.
@@ -160,7 +185,7 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
      */
     @Override
     public void afterCommit(TransactionData data) {
-        if(data.getAddedTriples().size() > 0 || data.getRemovedTriples().size() > 0) {
+        if(!data.getAddedTriples().isEmpty() || !data.getRemovedTriples().isEmpty()) {
             Version version = new Version();
 
             version.setCommitTime(data.getCommitTime());
@@ -175,7 +200,7 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
                 }
             }
 
-            if(version.getAddedTriples().size() > 0 || version.getRemovedTriples().size() > 0) {
+            if(!version.getAddedTriples().isEmpty() || !version.getRemovedTriples().isEmpty()) {
 
                 try {
                     final KiWiVersioningConnection connection = persistence.getConnection();
@@ -376,6 +401,79 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
         }
     }
 
+    /**
+     * Compact all versions in the given time interval into a single version, the most recent version of the interval.
+     * Triples whose changes cancel out within the interval (e.g. added and removed again) are dropped from the history
+     * and will later be cleaned up by the garbage collector, so snapshots at dates inside the interval are no longer
+     * exact afterwards.
+     *
+     * @param from date after which versions will be compacted
+     * @param to   date before which versions will be compacted
+     * @throws SailException
+     */
+    public void compactVersions(Date from, Date to) throws SailException {
+        try {
+            try (KiWiVersioningConnection connection = persistence.getConnection()) {
+                connection.compactVersions(from, to);
+                connection.commit();
+            }
+
+        } catch(SQLException ex) {
+            throw new SailException("database error while compacting versions",ex);
+        }
+    }
+
+    /**
+     * Materialize the snapshot of the repository at the given date as a checkpoint. Snapshot queries for the date or
+     * any later date start from the latest checkpoint and only consider the triples created and deleted since then,
+     * so creating checkpoints periodically (e.g. daily) keeps time-travel queries over a long history fast.
+     * <p/>
+     * The checkpoint only contains triples committed when it is created, so the snapshot date must lie before the
+     * start of all transactions that are still active on the store: a transaction that started earlier may still
+     * commit triples created before the snapshot date, and these would be missing from all snapshots computed from
+     * the checkpoint. Checkpoints are therefore typically created for dates some time in the past.
+     *
+     * @param snapshotDate the date of the snapshot to materialize; must not be in the future
+     * @throws IllegalArgumentException in case a transaction that started at or before the snapshot date is still active
+     * @throws SailException
+     */
+    public void createSnapshotCheckpoint(Date snapshotDate) throws SailException {
+        Preconditions.checkNotNull(snapshotDate);
+
+        Date oldestTransaction = getBaseStore().getOldestActiveTransaction();
+        Preconditions.checkArgument(oldestTransaction == null || snapshotDate.before(oldestTransaction),
+                "snapshot checkpoints cannot be created while transactions started before the snapshot date are active (oldest active transaction: %s)", oldestTransaction);
+
+        try {
+            try (KiWiVersioningConnection connection = persistence.getConnection()) {
+                connection.createSnapshotCheckpoint(snapshotDate);
+                connection.commit();
+            }
+
+        } catch(SQLException ex) {
+            throw new SailException("database error while creating snapshot checkpoint",ex);
+        }
+    }
+
+    /**
+     * Remove all snapshot checkpoints until the date given as argument. Snapshots are still available afterwards, but
+     * computed from the triple history instead.
+     *
+     * @param until date until when to delete checkpoints
+     * @throws SailException
+     */
+    public void removeSnapshotCheckpoints(Date until) throws SailException {
+        try {
+            try (KiWiVersioningConnection connection = persistence.getConnection()) {
+                connection.removeSnapshotCheckpoints(until);
+                connection.commit();
+            }
+
+        } catch(SQLException ex) {
+            throw new SailException("database error while removing snapshot checkpoints",ex);
+        }
+    }
+
     /**
      * Return the version that is the most recent version for a resource given a reference date. The method will either
      * return the version that was current for the resource at the given date or return null in case such a version
@@ -518,6 +616,11 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
             }
         }
 
+        if(queryExecutor != null) {
+            queryExecutor.shutdown();
+            queryExecutor = null;
+        }
+
         // call parent
         super.shutDown();
     }
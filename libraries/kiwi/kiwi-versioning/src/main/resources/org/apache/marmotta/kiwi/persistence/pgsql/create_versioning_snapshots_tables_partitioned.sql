@@ -0,0 +1,43 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- variant for the partitioned triples table (PostgreSQLPartitionedDialect): triple ids cannot be referenced by
+-- foreign keys
+
+-- materialized snapshot checkpoints: the set of triples that were live at the snapshot date; snapshot queries for
+-- later dates start from the latest checkpoint and only need to consider the changes after it
+CREATE TABLE versions_snapshots (
+  id           bigint     NOT NULL,
+  snapshotDate timestamp  NOT NULL,
+  PRIMARY KEY(id)
+);
+
+CREATE TABLE versions_snapshot_triples (
+  snapshot_id bigint     NOT NULL REFERENCES versions_snapshots(id),
+  triple_id   bigint     NOT NULL,
+  subject     bigint     NOT NULL,
+  predicate   bigint     NOT NULL,
+  object      bigint     NOT NULL,
+  context     bigint,
+  inferred    boolean    DEFAULT false
+);
+
+CREATE INDEX idx_versions_snapshots_date ON versions_snapshots(snapshotDate);
+CREATE INDEX idx_versions_snapshot_spoc ON versions_snapshot_triples(snapshot_id,subject,predicate,object,context);
+CREATE INDEX idx_versions_snapshot_pos ON versions_snapshot_triples(snapshot_id,predicate,object,subject);
+CREATE INDEX idx_versions_snapshot_tid ON versions_snapshot_triples(triple_id);
+
+-- changes after a checkpoint are selected by creation date
+CREATE INDEX idx_triples_created ON triples(createdAt);
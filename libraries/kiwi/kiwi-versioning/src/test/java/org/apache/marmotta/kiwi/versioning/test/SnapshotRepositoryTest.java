@@ -31,8 +31,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BindingSet;
 import org.openrdf.query.BooleanQuery;
 import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
@@ -43,7 +48,9 @@ import org.slf4j.LoggerFactory;
 import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assume.assumeThat;
@@ -307,6 +314,269 @@ public class SnapshotRepositoryTest {
     }
 
 
+    /**
+     * Test natively evaluated SPARQL queries on snapshots computed from a materialized checkpoint
+     */
+    @Test
+    public void testSnapshotCheckpointSPARQL() throws Exception {
+
+        // doesn't work for H2 because of MERGE statement updating the timestamp when a triple is re-inserted
+        if(dbConfig.getDialect() instanceof H2Dialect) {
+            return;
+        }
+
+        // base data
+        InputStream baseData = this.getClass().getResourceAsStream("version-base.rdf");
+        assumeThat("Could not load test-data: version-base.rdf", baseData, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionBase = repository.getConnection();
+        try {
+            connectionBase.add(baseData, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionBase.commit();
+        } finally {
+            connectionBase.close();
+        }
+
+        Thread.sleep(1000);
+
+        Date date2 = new Date();
+        vsail.createSnapshotCheckpoint(date2);
+
+        Thread.sleep(1000);
+
+        // update 1
+        InputStream update1Data = this.getClass().getResourceAsStream("version-update1.rdf");
+        assumeThat("Could not load test-data: version-update1.rdf", update1Data, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionUpdate1 = repository.getConnection();
+        try {
+            connectionUpdate1.add(update1Data, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionUpdate1.commit();
+        } finally {
+            connectionUpdate1.close();
+        }
+
+        Thread.sleep(1000);
+
+        Date date3 = new Date();
+
+        Thread.sleep(1000);
+
+        // update 2
+        InputStream update2Data = this.getClass().getResourceAsStream("version-update2.rdf");
+        assumeThat("Could not load test-data: version-update2.rdf", update2Data, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionUpdate2 = repository.getConnection();
+        try {
+            connectionUpdate2.add(update2Data, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionUpdate2.commit();
+        } finally {
+            connectionUpdate2.close();
+        }
+
+        String queryP1 = "SELECT ?r WHERE { ?r a <http://marmotta.apache.org/testing/ns1/C> . ?r <http://marmotta.apache.org/testing/ns1/P1> ?v }";
+        String queryP3 = "SELECT ?r WHERE { ?r a <http://marmotta.apache.org/testing/ns1/C> . ?r <http://marmotta.apache.org/testing/ns1/P3> ?v }";
+
+        // snapshot at the checkpoint itself
+        RepositoryConnection snapshot1 = repository.getSnapshot(date2);
+        try {
+            Assert.assertEquals(resources("R1"), selectResources(snapshot1, queryP1));
+            Assert.assertEquals(resources(), selectResources(snapshot1, queryP3));
+        } finally {
+            snapshot1.commit();
+            snapshot1.close();
+        }
+
+        // snapshot after the checkpoint (checkpoint plus first update)
+        RepositoryConnection snapshot2 = repository.getSnapshot(date3);
+        try {
+            Assert.assertEquals(resources("R1", "R2"), selectResources(snapshot2, queryP1));
+            Assert.assertEquals(resources("R2"), selectResources(snapshot2, queryP3));
+        } finally {
+            snapshot2.commit();
+            snapshot2.close();
+        }
+
+        // snapshot after both updates
+        RepositoryConnection snapshot3 = repository.getSnapshot(new Date());
+        try {
+            Assert.assertEquals(resources("R1", "R2"), selectResources(snapshot3, queryP1));
+            Assert.assertEquals(resources("R1", "R2"), selectResources(snapshot3, queryP3));
+        } finally {
+            snapshot3.commit();
+            snapshot3.close();
+        }
+
+        // removing the checkpoint must not change the snapshots
+        vsail.removeSnapshotCheckpoints(new Date());
+
+        RepositoryConnection snapshot4 = repository.getSnapshot(date3);
+        try {
+            Assert.assertEquals(resources("R1", "R2"), selectResources(snapshot4, queryP1));
+            Assert.assertEquals(resources("R2"), selectResources(snapshot4, queryP3));
+        } finally {
+            snapshot4.commit();
+            snapshot4.close();
+        }
+    }
+
+    /**
+     * Test snapshots computed from a checkpoint with added and removed triples; each triple is only added once, so
+     * this test also works on H2
+     */
+    @Test
+    public void testSnapshotCheckpointChanges() throws Exception {
+        ValueFactory vf = repository.getValueFactory();
+        URI r1 = vf.createURI("http://marmotta.apache.org/testing/ns1/R1");
+        URI r2 = vf.createURI("http://marmotta.apache.org/testing/ns1/R2");
+        URI r3 = vf.createURI("http://marmotta.apache.org/testing/ns1/R3");
+        URI p  = vf.createURI("http://marmotta.apache.org/testing/ns1/P");
+        URI a  = vf.createURI("http://marmotta.apache.org/testing/ns1/A");
+        URI b  = vf.createURI("http://marmotta.apache.org/testing/ns1/B");
+
+        RepositoryConnection connectionBase = repository.getConnection();
+        try {
+            connectionBase.begin();
+            connectionBase.add(r1, p, a);
+            connectionBase.add(r1, p, b);
+            connectionBase.commit();
+        } finally {
+            connectionBase.close();
+        }
+
+        Thread.sleep(1000);
+
+        Date date2 = new Date();
+        vsail.createSnapshotCheckpoint(date2);
+
+        Thread.sleep(1000);
+
+        RepositoryConnection connectionUpdate1 = repository.getConnection();
+        try {
+            connectionUpdate1.begin();
+            connectionUpdate1.add(r2, p, a);
+            connectionUpdate1.remove(r1, p, b);
+            connectionUpdate1.commit();
+        } finally {
+            connectionUpdate1.close();
+        }
+
+        Thread.sleep(1000);
+
+        Date date3 = new Date();
+
+        Thread.sleep(1000);
+
+        RepositoryConnection connectionUpdate2 = repository.getConnection();
+        try {
+            connectionUpdate2.begin();
+            connectionUpdate2.add(r3, p, a);
+            connectionUpdate2.commit();
+        } finally {
+            connectionUpdate2.close();
+        }
+
+        String queryA = "SELECT ?r WHERE { ?r <http://marmotta.apache.org/testing/ns1/P> <http://marmotta.apache.org/testing/ns1/A> }";
+        String queryB = "SELECT ?r WHERE { ?r <http://marmotta.apache.org/testing/ns1/P> <http://marmotta.apache.org/testing/ns1/B> }";
+
+        RepositoryConnection snapshot1 = repository.getSnapshot(date2);
+        try {
+            Assert.assertEquals(resources("R1"), selectResources(snapshot1, queryA));
+            Assert.assertEquals(resources("R1"), selectResources(snapshot1, queryB));
+        } finally {
+            snapshot1.commit();
+            snapshot1.close();
+        }
+
+        RepositoryConnection snapshot2 = repository.getSnapshot(date3);
+        try {
+            Assert.assertEquals(resources("R1", "R2"), selectResources(snapshot2, queryA));
+            Assert.assertEquals(resources(), selectResources(snapshot2, queryB));
+        } finally {
+            snapshot2.commit();
+            snapshot2.close();
+        }
+
+        RepositoryConnection snapshot3 = repository.getSnapshot(new Date());
+        try {
+            Assert.assertEquals(resources("R1", "R2", "R3"), selectResources(snapshot3, queryA));
+            Assert.assertEquals(resources(), selectResources(snapshot3, queryB));
+        } finally {
+            snapshot3.commit();
+            snapshot3.close();
+        }
+    }
+
+    /**
+     * Test that checkpoints cannot be created for dates after the start of an active transaction, since the triples
+     * of that transaction would be missing from the checkpoint
+     */
+    @Test
+    public void testSnapshotCheckpointActiveTransaction() throws Exception {
+        ValueFactory vf = repository.getValueFactory();
+        URI r1 = vf.createURI("http://marmotta.apache.org/testing/ns1/R1");
+        URI p  = vf.createURI("http://marmotta.apache.org/testing/ns1/P");
+        URI a  = vf.createURI("http://marmotta.apache.org/testing/ns1/A");
+
+        Date date1;
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            connection.begin();
+            connection.add(r1, p, a);
+
+            Thread.sleep(1000);
+            date1 = new Date();
+
+            try {
+                vsail.createSnapshotCheckpoint(date1);
+                Assert.fail("creating a checkpoint after the start of an active transaction should fail");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+
+        // after the commit, the checkpoint contains the triple created before its date
+        vsail.createSnapshotCheckpoint(date1);
+
+        String queryA = "SELECT ?r WHERE { ?r <http://marmotta.apache.org/testing/ns1/P> <http://marmotta.apache.org/testing/ns1/A> }";
+
+        RepositoryConnection snapshot = repository.getSnapshot(date1);
+        try {
+            Assert.assertEquals(resources("R1"), selectResources(snapshot, queryA));
+        } finally {
+            snapshot.commit();
+            snapshot.close();
+        }
+    }
+
+    private static Set<String> selectResources(RepositoryConnection con, String query) throws Exception {
+        Set<String> result = new HashSet<>();
+
+        TupleQuery tupleQuery = con.prepareTupleQuery(QueryLanguage.SPARQL, query);
+        TupleQueryResult r = tupleQuery.evaluate();
+        try {
+            while(r.hasNext()) {
+                BindingSet row = r.next();
+                result.add(row.getValue("r").stringValue());
+            }
+        } finally {
+            r.close();
+        }
+        return result;
+    }
+
+    private static Set<String> resources(String... names) {
+        Set<String> result = new HashSet<>();
+        for(String name : names) {
+            result.add("http://marmotta.apache.org/testing/ns1/" + name);
+        }
+        return result;
+    }
+
     /**
      * Workaround for https://openrdf.atlassian.net/browse/SES-1702 in Sesame 2.7.0-beta1
      * @param <E>
@@ -25,12 +25,14 @@ import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
 import org.apache.marmotta.kiwi.versioning.model.Version;
+import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
 import org.apache.marmotta.kiwi.versioning.sail.KiWiVersioningSail;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
@@ -42,6 +44,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.List;
@@ -250,6 +254,139 @@ public class VersioningRepositoryTest {
     }
 
 
+    /**
+     * This test creates three versions, the last one removing a triple added by the second one, and checks that
+     * compacting them results in a single version containing only the net changes
+     * @throws Exception
+     */
+    @Test
+    public void testCompactVersions() throws Exception {
+        Date date1 = new Date();
+
+        mysqlSleep();
+
+        // base data
+        InputStream baseData = this.getClass().getResourceAsStream("version-base.rdf");
+        assumeThat("Could not load test-data: version-base.rdf", baseData, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionBase = repository.getConnection();
+        try {
+            connectionBase.add(baseData, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionBase.commit();
+        } finally {
+            connectionBase.close();
+        }
+
+        // update 1
+        InputStream update1Data = this.getClass().getResourceAsStream("version-update1.rdf");
+        assumeThat("Could not load test-data: version-update1.rdf", update1Data, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionUpdate1 = repository.getConnection();
+        try {
+            connectionUpdate1.add(update1Data, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionUpdate1.commit();
+        } finally {
+            connectionUpdate1.close();
+        }
+
+        // remove the P1 property of R2 again
+        RepositoryConnection connectionRemove = repository.getConnection();
+        try {
+            URI subject   = repository.getValueFactory().createURI("http://marmotta.apache.org/testing/ns1/R2");
+            URI predicate = repository.getValueFactory().createURI("http://marmotta.apache.org/testing/ns1/P1");
+            connectionRemove.remove(subject, predicate, null);
+            connectionRemove.commit();
+        } finally {
+            connectionRemove.close();
+        }
+
+        mysqlSleep();
+
+        Date date2 = new Date();
+
+        Assert.assertEquals("expected 3 versions!", 3, asList(vsail.listVersions()).size());
+
+        vsail.compactVersions(date1, date2);
+
+        List<Version> versions = asList(vsail.listVersions());
+        Assert.assertEquals("expected 1 version!", 1, versions.size());
+        Assert.assertEquals(5, (long)versions.get(0).getAddedTriples().size());
+        Assert.assertEquals(0, (long)versions.get(0).getRemovedTriples().size());
+    }
+
+
+    /**
+     * This test adds a triple, removes it and adds it again in three versions, and checks that compacting them keeps
+     * the net addition of the triple exactly once
+     * @throws Exception
+     */
+    @Test
+    public void testCompactVersionsReAdded() throws Exception {
+        URI subject   = repository.getValueFactory().createURI("http://marmotta.apache.org/testing/ns1/R1");
+        URI predicate = repository.getValueFactory().createURI("http://marmotta.apache.org/testing/ns1/P9");
+        URI object    = repository.getValueFactory().createURI("http://marmotta.apache.org/testing/ns1/R9");
+
+        Date date1 = new Date();
+
+        mysqlSleep();
+
+        for(boolean add : new boolean[] { true, false, true }) {
+            RepositoryConnection connection = repository.getConnection();
+            try {
+                if(add) {
+                    connection.add(subject, predicate, object);
+                } else {
+                    connection.remove(subject, predicate, object);
+                }
+                connection.commit();
+            } finally {
+                connection.close();
+            }
+        }
+
+        mysqlSleep();
+
+        Date date2 = new Date();
+
+        Assert.assertEquals("expected 3 versions!", 3, asList(vsail.listVersions()).size());
+
+        vsail.compactVersions(date1, date2);
+
+        List<Version> versions = asList(vsail.listVersions());
+        Assert.assertEquals("expected 1 version!", 1, versions.size());
+        Assert.assertEquals(1, (long)versions.get(0).getAddedTriples().size());
+        Assert.assertEquals(0, (long)versions.get(0).getRemovedTriples().size());
+
+        Statement added = versions.get(0).getAddedTriples().iterator().next();
+        Assert.assertEquals(subject, added.getSubject());
+        Assert.assertEquals(object, added.getObject());
+
+        // the join table contains exactly one entry for the triple
+        KiWiVersioningConnection vcon = vsail.getPersistence().getConnection();
+        try {
+            PreparedStatement count = vcon.getJDBCConnection().prepareStatement("SELECT count(*) FROM versions_added WHERE version_id = ?");
+            try {
+                count.setLong(1, versions.get(0).getId());
+                ResultSet result = count.executeQuery();
+                Assert.assertTrue(result.next());
+                Assert.assertEquals(1, result.getLong(1));
+            } finally {
+                count.close();
+            }
+            vcon.commit();
+        } finally {
+            vcon.close();
+        }
+
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            Assert.assertTrue(connection.hasStatement(subject, predicate, object, true));
+        } finally {
+            connection.close();
+        }
+    }
+
+
     /**
      * MYSQL rounds timestamps to the second, so it is sometimes necessary to sleep before doing a test
      */
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.api.backend;
+
+/**
+ * Optional interface for backends that create their nodes through a factory they share with other backend instances,
+ * e.g. the ValueFactory of a Sesame repository. Backends returning the same factory create interchangeable nodes,
+ * so LDPath expressions parsed with one of them can be reused with the others.
+ * <p/>
+ * Backends not implementing this interface are expected to create nodes that do not depend on the backend instance.
+ */
+public interface NodeFactoryProvider {
+
+    /**
+     * Return the factory used by this backend for creating nodes, or null if it is not known (yet).
+     *
+     * @return the node factory of this backend
+     */
+    Object getNodeFactory();
+
+}
@@ -37,6 +37,7 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import org.apache.marmotta.ldpath.api.backend.NodeFactoryProvider;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
 import org.apache.marmotta.ldpath.util.FormatUtils;
 
@@ -45,7 +46,7 @@ import org.apache.marmotta.ldpath.util.FormatUtils;
  * <p/>
  * Author: Sebastian Schaffert
  */
-public class GenericJenaBackend implements RDFBackend<RDFNode> {
+public class GenericJenaBackend implements RDFBackend<RDFNode>, NodeFactoryProvider {
 
 
     private Model model;
@@ -54,6 +55,14 @@ public class GenericJenaBackend implements RDFBackend<RDFNode> {
         this.model = model;
     }
 
+    /**
+     * Nodes are created by and belong to the model of this backend.
+     */
+    @Override
+    public Model getNodeFactory() {
+        return model;
+    }
+
 
     /**
      * Return true if the underlying backend supports the parallel execution of queries.
@@ -21,6 +21,7 @@ import java.net.URI;
 import java.util.Collection;
 import java.util.Locale;
 
+import org.apache.marmotta.ldpath.api.backend.NodeFactoryProvider;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Value;
@@ -28,7 +29,7 @@ import org.openrdf.model.ValueFactory;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 
-public class SesameConnectionBackend extends AbstractSesameBackend {
+public class SesameConnectionBackend extends AbstractSesameBackend implements NodeFactoryProvider {
 
     private final RepositoryConnection connection;
     private final ValueFactory valueFactory;
@@ -51,6 +52,14 @@ public class SesameConnectionBackend extends AbstractSesameBackend {
         this.includeInferred = includeInferred;
     }
 
+    /**
+     * Return the value factory of the connection; it is shared by all connections to the same repository.
+     */
+    @Override
+    public ValueFactory getNodeFactory() {
+        return valueFactory;
+    }
+
     @Override
     public Literal createLiteral(String content) {
         return createLiteralInternal(valueFactory, content);
@@ -21,9 +21,11 @@ import java.net.URI;
 import java.util.Collection;
 import java.util.Locale;
 
+import org.apache.marmotta.ldpath.api.backend.NodeFactoryProvider;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
@@ -39,7 +41,7 @@ import org.openrdf.repository.RepositoryException;
  * and calling the super constructor.
  * <p/>
  */
-public class SesameRepositoryBackend extends AbstractSesameBackend {
+public class SesameRepositoryBackend extends AbstractSesameBackend implements NodeFactoryProvider {
 
     private Repository repository;
     private final boolean includeInferred;
@@ -84,6 +86,14 @@ public class SesameRepositoryBackend extends AbstractSesameBackend {
         this.repository = repository;
     }
 
+    /**
+     * Return the value factory of the repository, or null if the repository has not been set yet.
+     */
+    @Override
+    public ValueFactory getNodeFactory() {
+        return repository != null ? repository.getValueFactory() : null;
+    }
+
 
     /**
      * Create a literal node with the content passed as argument
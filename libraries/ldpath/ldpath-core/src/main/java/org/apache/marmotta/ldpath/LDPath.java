@@ -20,6 +20,7 @@ package org.apache.marmotta.ldpath;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CharStreams;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
 import org.apache.marmotta.ldpath.api.functions.SelectorFunction;
 import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
@@ -30,11 +31,14 @@ import org.apache.marmotta.ldpath.model.programs.Program;
 import org.apache.marmotta.ldpath.parser.Configuration;
 import org.apache.marmotta.ldpath.parser.DefaultConfiguration;
 import org.apache.marmotta.ldpath.parser.LdPathParser;
+import org.apache.marmotta.ldpath.parser.ParseCache;
 import org.apache.marmotta.ldpath.parser.ParseException;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Main class providing query functionality for the different RDF backends.
@@ -98,23 +102,9 @@ public class LDPath<Node> {
      * @throws LDPathParseException when the path passed as argument is not valid
      */
     public Collection<Node> pathQuery(Node context, String path, Map<String, String> namespaces) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<>(backend, config, new StringReader(path));
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri,transformers.get(typeUri));
-        }
-
-        try {
-            NodeSelector<Node> selector = parser.parseSelector(namespaces);
-
-            return selector.select(backend,context,null,null);
-
-        } catch (ParseException e) {
-            throw new LDPathParseException("error while parsing path expression",e);
-        }
+        NodeSelector<Node> selector = parseSelector(path, namespaces);
 
+        return selector.select(backend,context,null,null);
     }
 
 
@@ -144,23 +134,9 @@ public class LDPath<Node> {
      * @throws LDPathParseException when the path passed as argument is not valid
      */
     public Collection<Node> pathQuery(Node context, String path, Map<String, String> namespaces, Map<Node,List<Node>> paths) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<>(backend, config, new StringReader(path));
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri,transformers.get(typeUri));
-        }
-
-        try {
-            NodeSelector<Node> selector = parser.parseSelector(namespaces);
-
-            return selector.select(backend, context, ImmutableList.<Node> of(), paths);
-
-        } catch (ParseException e) {
-            throw new LDPathParseException("error while parsing path expression",e);
-        }
+        NodeSelector<Node> selector = parseSelector(path, namespaces);
 
+        return selector.select(backend, context, ImmutableList.<Node> of(), paths);
     }
 
 
@@ -188,23 +164,9 @@ public class LDPath<Node> {
      * @throws LDPathParseException when the path passed as argument is not valid
      */
     public <T> Collection<T> pathTransform(Node context, String path, Map<String, String> namespaces) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<>(backend, config, new StringReader(path));
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri,transformers.get(typeUri));
-        }
-
-        try {
-            FieldMapping<T,Node> mapping = parser.parseRule(namespaces);
-
-            return mapping.getValues(backend, context);
-
-        } catch (ParseException e) {
-            throw new LDPathParseException("error while parsing path expression",e);
-        }
+        FieldMapping<T,Node> mapping = parseRule(path, namespaces);
 
+        return mapping.getValues(backend, context);
     }
 
     /**
@@ -217,16 +179,8 @@ public class LDPath<Node> {
      * @throws LDPathParseException
      */
     public Map<String,Collection<?>> programQuery(Node context, Reader program) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<>(backend, config, program);
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri, transformers.get(typeUri));
-        }
-
         try {
-            Program<Node> p = parser.parseProgram();
+            Program<Node> p = parseProgram(read(program));
 
             Map<String,Collection<?>> result = new HashMap<>();
 
@@ -242,23 +196,16 @@ public class LDPath<Node> {
     }
 
     /**
-     * Parse a program passed as argument and return it for further use.
+     * Parse a program passed as argument and return it for further use. Parsed programs are cached in the
+     * configuration and shared between LDPath instances, so the returned program must not be modified.
      *
      * @param program a reader containing the program in LDPath syntax
      * @return the parsed program
      * @throws LDPathParseException
      */
     public Program<Node> parseProgram(Reader program) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<>(backend, config, program);
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri, transformers.get(typeUri));
-        }
-
         try {
-            return parser.parseProgram();
+            return parseProgram(read(program));
         } catch (ParseException e) {
             throw new LDPathParseException("error while parsing path program",e);
         }
@@ -305,4 +252,63 @@ public class LDPath<Node> {
     public Configuration<Node> getConfig() {
         return config;
     }
+
+
+    private NodeSelector<Node> parseSelector(final String path, final Map<String, String> namespaces) throws LDPathParseException {
+        try {
+            return config.getParseCache().get(createKey("selector", path, namespaces), new Callable<NodeSelector<Node>>() {
+                @Override
+                public NodeSelector<Node> call() throws ParseException {
+                    return createParser(path).parseSelector(namespaces);
+                }
+            });
+        } catch (ParseException e) {
+            throw new LDPathParseException("error while parsing path expression",e);
+        }
+    }
+
+    private <T> FieldMapping<T,Node> parseRule(final String path, final Map<String, String> namespaces) throws LDPathParseException {
+        try {
+            return config.getParseCache().get(createKey("rule", path, namespaces), new Callable<FieldMapping<T,Node>>() {
+                @Override
+                public FieldMapping<T,Node> call() throws ParseException {
+                    return createParser(path).parseRule(namespaces);
+                }
+            });
+        } catch (ParseException e) {
+            throw new LDPathParseException("error while parsing path expression",e);
+        }
+    }
+
+    private Program<Node> parseProgram(final String program) throws ParseException {
+        return config.getParseCache().get(createKey("program", program, null), new Callable<Program<Node>>() {
+            @Override
+            public Program<Node> call() throws ParseException {
+                return createParser(program).parseProgram();
+            }
+        });
+    }
+
+    private ParseCache.Key createKey(String kind, String expression, Map<String, String> namespaces) {
+        return ParseCache.createKey(kind, backend, expression, namespaces, functions, transformers);
+    }
+
+    private LdPathParser<Node> createParser(String expression) {
+        LdPathParser<Node> parser = new LdPathParser<>(backend, config, new StringReader(expression));
+        for(SelectorFunction<Node> function : functions) {
+            parser.registerFunction(function);
+        }
+        for(String typeUri : transformers.keySet()) {
+            parser.registerTransformer(typeUri, transformers.get(typeUri));
+        }
+        return parser;
+    }
+
+    private static String read(Reader program) throws LDPathParseException {
+        try {
+            return CharStreams.toString(program);
+        } catch (IOException e) {
+            throw new LDPathParseException("error while reading path program",e);
+        }
+    }
 }
@@ -17,16 +17,32 @@
  */
 package org.apache.marmotta.ldpath.model.selectors;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import org.apache.marmotta.ldpath.api.backend.NodeBackend;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
 import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Applies the delegate selector recursively, e.g. <code>(skos:broader)+</code>. The graph is traversed breadth-first
+ * and every node is expanded at most once per evaluation, so cyclic or densely connected graphs do not cause the same
+ * nodes to be selected over and over again.
+ */
 public class RecursivePathSelector<Node> implements NodeSelector<Node> {
 
 	private final NodeSelector<Node> delegate;
@@ -52,33 +68,128 @@ public class RecursivePathSelector<Node> implements NodeSelector<Node> {
      */
     @Override
     public Collection<Node> select(RDFBackend<Node> rdfBackend, Node context, List<Node> path, Map<Node, List<Node>> resultPaths) {
-		List<Node> result = new LinkedList<>();
+		final boolean trackPaths = path != null && resultPaths != null;
+
+		// the selected nodes; a node reached with at least minRecursions steps is not expanded again when it is
+		// reached a second time, because the first (breadth-first) visit has the larger remaining recursion budget
+		Set<Node> result = new LinkedHashSet<>();
+		// the nodes selected by the delegate for each expanded node, so nodes on cycles that are reached several
+		// times below minRecursions are only evaluated once
+		Map<Node, Collection<Node>> successors = new HashMap<>();
+		// the path leading to each node of the frontier, only used when tracking paths
+		Map<Node, List<Node>> frontierPaths = null;
 
+		Collection<Node> frontier = Collections.singleton(context);
 		if (minRecursions <= 0) {
 			result.add(context);
 		}
-		subSelect(context, 0, rdfBackend, result,path,resultPaths);
+		if (trackPaths) {
+			frontierPaths = Collections.singletonMap(context, path);
+		}
+
+		for (int depth = 1; depth <= maxRecursions && !frontier.isEmpty(); depth++) {
+			expand(rdfBackend, frontier, successors, frontierPaths, resultPaths);
+
+			Set<Node> next = new LinkedHashSet<>();
+			Map<Node, List<Node>> nextPaths = trackPaths ? new HashMap<Node, List<Node>>() : null;
+			for (Node current : frontier) {
+				for (Node n : successors.get(current)) {
+					boolean added = depth >= minRecursions ? result.add(n) : !next.contains(n);
+					if (added) {
+						next.add(n);
+						if (trackPaths) {
+							nextPaths.put(n, new ImmutableList.Builder<Node>().addAll(frontierPaths.get(current)).add(current).build());
+						}
+					}
+				}
+			}
+			frontier = next;
+			frontierPaths = nextPaths;
+		}
 
-		return result;
+		return new ArrayList<>(result);
 	}
 
-	private void subSelect(Node currentContext, int depth, RDFBackend<Node> rdfBackend, List<Node> resultList, List<Node> path, Map<Node, List<Node>> resultPaths) {
-		Collection<Node> nextNodes = delegate.select(rdfBackend, currentContext,path,resultPaths);
-		depth++;
-		for (Node n : nextNodes) {
-			if (!resultList.contains(n)) {
-				if (depth >= minRecursions){
-					resultList.add(n);
+	/**
+	 * Apply the delegate to all nodes of the frontier that have not been expanded before and store the selected
+	 * nodes in the successors map. In case the backend supports threading and paths are not tracked, the nodes
+	 * are expanded in parallel using the thread pool of the backend.
+	 */
+	private void expand(RDFBackend<Node> rdfBackend, Collection<Node> frontier, Map<Node, Collection<Node>> successors, Map<Node, List<Node>> frontierPaths, Map<Node, List<Node>> resultPaths) {
+		List<Node> pending = new ArrayList<>(frontier.size());
+		for (Node n : frontier) {
+			if (!successors.containsKey(n)) {
+				pending.add(n);
+			}
+		}
+
+		if (frontierPaths == null && pending.size() > 1 && rdfBackend.supportsThreading() && rdfBackend.getThreadPool() != null) {
+			List<Collection<Node>> selected = selectParallel(rdfBackend, pending);
+			for (int i = 0; i < pending.size(); i++) {
+				successors.put(pending.get(i), selected.get(i));
+			}
+		} else {
+			for (Node n : pending) {
+				if (frontierPaths != null) {
+					successors.put(n, delegate.select(rdfBackend, n, frontierPaths.get(n), resultPaths));
+				} else {
+					successors.put(n, delegate.select(rdfBackend, n, null, null));
 				}
-				if (depth < maxRecursions) {
-                    if(path != null && resultPaths != null) {
-					    subSelect(n, depth, rdfBackend, resultList, new ImmutableList.Builder<Node>().addAll(path).add(currentContext).build(),resultPaths);
-                    } else {
-                        subSelect(n, depth, rdfBackend, resultList, null,resultPaths);
-                    }
+			}
+		}
+	}
+
+	/**
+	 * Apply the delegate to all nodes in parallel and return the results in the same order. The calling thread
+	 * takes part in the evaluation, so the method also completes when all threads of the pool are busy (e.g. with
+	 * an enclosing recursive path).
+	 */
+	private List<Collection<Node>> selectParallel(final RDFBackend<Node> rdfBackend, final List<Node> nodes) {
+		final AtomicReferenceArray<Collection<Node>> results = new AtomicReferenceArray<>(nodes.size());
+		final AtomicInteger next = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(nodes.size());
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				for (int i = next.getAndIncrement(); i < nodes.size(); i = next.getAndIncrement()) {
+					try {
+						results.set(i, delegate.select(rdfBackend, nodes.get(i), null, null));
+					} catch (RuntimeException | Error ex) {
+						failure.compareAndSet(null, ex);
+					} finally {
+						done.countDown();
+					}
 				}
 			}
+		};
+
+		ThreadPoolExecutor pool = rdfBackend.getThreadPool();
+		try {
+			for (int i = Math.min(nodes.size() - 1, pool.getMaximumPoolSize()); i > 0; i--) {
+				pool.execute(worker);
+			}
+		} catch (RejectedExecutionException ex) {
+			// the pool does not accept more tasks, the remaining nodes are expanded by the current thread
+		}
+		worker.run();
+
+		try {
+			done.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw Throwables.propagate(ex);
+		}
+		if (failure.get() != null) {
+			throw Throwables.propagate(failure.get());
+		}
+
+		List<Collection<Node>> selected = new ArrayList<>(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			selected.add(results.get(i));
 		}
+		return selected;
 	}
 
     /**
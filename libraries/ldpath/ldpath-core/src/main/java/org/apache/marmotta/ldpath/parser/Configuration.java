@@ -60,6 +60,11 @@ public class Configuration<Node> {
      */
     protected Map<String, TestFunction<Node>> testFunctions;
 
+    /**
+     * Parsed expressions of LDPath instances using this configuration; cleared on every change of the configuration
+     */
+    protected final ParseCache parseCache = new ParseCache();
+
     public Configuration() {
         namespaces   = new HashMap<>();
         transformers = new HashMap<>();
@@ -103,6 +108,15 @@ public class Configuration<Node> {
         return ImmutableMap.copyOf(testFunctions);
     }
 
+    /**
+     * Return the cache of parsed expressions shared by all LDPath instances using this configuration.
+     *
+     * @return the {@link ParseCache} of this configuration
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
     /**
      * Add a namespace prefix to URI mapping to this configuration.
      *
@@ -111,6 +125,7 @@ public class Configuration<Node> {
      */
     public void addNamespace(String prefix, String uri) {
         namespaces.put(prefix,uri);
+        parseCache.clear();
     }
 
     /**
@@ -120,6 +135,7 @@ public class Configuration<Node> {
      */
     public void removeNamespace(String prefix) {
         namespaces.remove(prefix);
+        parseCache.clear();
     }
 
     /**
@@ -144,6 +160,7 @@ public class Configuration<Node> {
             throw new IllegalArgumentException("namespaces other than http://www.newmedialab.at/lmf/functions/1.0/ are currently not supported");
         }
         functions.put(uri,function);
+        parseCache.clear();
     }
 
     /**
@@ -153,6 +170,7 @@ public class Configuration<Node> {
      */
     public void removeFunction(String uri) {
         functions.remove(uri);
+        parseCache.clear();
     }
 
     /**
@@ -177,6 +195,7 @@ public class Configuration<Node> {
             throw new IllegalArgumentException("namespaces other than http://www.newmedialab.at/lmf/functions/1.0/ are currently not supported");
         }
         testFunctions.put(uri,test);
+        parseCache.clear();
     }
 
     /**
@@ -186,6 +205,7 @@ public class Configuration<Node> {
      */
     public void removeTestFunction(String uri) {
         testFunctions.remove(uri);
+        parseCache.clear();
     }
 
     /**
@@ -201,6 +221,7 @@ public class Configuration<Node> {
      */
     public void addTransformer(String uri, NodeTransformer<?,Node> transformer) {
         transformers.put(uri,transformer);
+        parseCache.clear();
     }
 
     /**
@@ -209,5 +230,6 @@ public class Configuration<Node> {
      */
     public void removeTransformer(String uri) {
         transformers.remove(uri);
+        parseCache.clear();
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.parser;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.marmotta.ldpath.api.backend.NodeFactoryProvider;
+import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.functions.SelectorFunction;
+import org.apache.marmotta.ldpath.api.transformers.NodeTransformer;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A bounded cache of parsed path expressions, rules and programs, so that evaluating the same LDPath expression
+ * repeatedly does not need to parse it again. Entries are keyed by the expression text, the namespaces passed to the
+ * parser, the functions and transformers registered with the LDPath instance and the node factory used for creating
+ * the constant nodes of the expression; the cache itself belongs to a {@link Configuration} and is cleared whenever
+ * the configuration changes.
+ * <p/>
+ * The node factory is taken from backends implementing {@link NodeFactoryProvider}, so that e.g. Sesame backends
+ * created for different connections to the same repository share their parsed expressions. For other backends, the
+ * backend class is used instead. The node factory is only referenced weakly by the cache.
+ * <p/>
+ * The cached objects are shared between all threads and LDPath instances using the same configuration, so they must
+ * not be modified by callers. The cache can safely be used concurrently.
+ */
+public class ParseCache {
+
+    public static final int DEFAULT_SIZE = 1000;
+
+    private final Cache<Key, Object> cache;
+
+
+    public ParseCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public ParseCache(int size) {
+        cache = CacheBuilder.newBuilder().maximumSize(size).build();
+    }
+
+
+    /**
+     * Return the cached result for the given key, or call the parser and cache its result.
+     *
+     * @throws ParseException in case the expression could not be parsed; parse errors are not cached
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key key, Callable<T> parser) throws ParseException {
+        try {
+            return (T) cache.get(key, parser);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            throw new IllegalStateException("unexpected error while parsing LDPath expression", e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Return the number of cached entries.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+
+    /**
+     * Create the key for an expression of a certain kind (e.g. a selector or a program).
+     *
+     * @param kind         the kind of expression, distinguishes the different parser entry points
+     * @param backend      the backend used by the parser to create constant nodes, identified by its node factory
+     * @param expression   the text of the expression
+     * @param namespaces   namespaces passed to the parser, may be null
+     * @param functions    functions registered with the LDPath instance in addition to the configuration
+     * @param transformers transformers registered with the LDPath instance in addition to the configuration
+     */
+    public static <Node> Key createKey(String kind, RDFBackend<Node> backend, String expression, Map<String, String> namespaces,
+                                       Collection<SelectorFunction<Node>> functions, Map<String, NodeTransformer<?, Node>> transformers) {
+        Object nodeFactory = null;
+        if(backend instanceof NodeFactoryProvider) {
+            nodeFactory = ((NodeFactoryProvider) backend).getNodeFactory();
+        }
+        if(nodeFactory == null) {
+            nodeFactory = backend.getClass();
+        }
+        return new Key(kind, nodeFactory, expression,
+                namespaces != null ? new HashMap<>(namespaces) : null,
+                new HashSet<>(functions), new HashMap<>(transformers));
+    }
+
+
+    public static final class Key {
+        private final String kind;
+        private final WeakReference<Object> nodeFactory;
+        private final String expression;
+        private final Map<String, String> namespaces;
+        private final Object functions;
+        private final Object transformers;
+        private final int hash;
+
+        private Key(String kind, Object nodeFactory, String expression, Map<String, String> namespaces, Object functions, Object transformers) {
+            this.kind = kind;
+            this.nodeFactory = new WeakReference<>(nodeFactory);
+            this.expression = expression;
+            this.namespaces = namespaces;
+            this.functions = functions;
+            this.transformers = transformers;
+
+            int h = kind.hashCode();
+            h = 31 * h + System.identityHashCode(nodeFactory);
+            h = 31 * h + expression.hashCode();
+            h = 31 * h + (namespaces != null ? namespaces.hashCode() : 0);
+            h = 31 * h + functions.hashCode();
+            h = 31 * h + transformers.hashCode();
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (hash != key.hash) return false;
+            if (!kind.equals(key.kind)) return false;
+            // node factories are compared by identity; a key whose factory has been collected does not match anything
+            Object f = nodeFactory.get();
+            if (f == null || f != key.nodeFactory.get()) return false;
+            if (!expression.equals(key.expression)) return false;
+            if (namespaces != null ? !namespaces.equals(key.namespaces) : key.namespaces != null) return false;
+            if (!functions.equals(key.functions)) return false;
+            return transformers.equals(key.transformers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
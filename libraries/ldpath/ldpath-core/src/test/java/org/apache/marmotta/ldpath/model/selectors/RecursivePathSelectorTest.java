@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.model.selectors;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.marmotta.ldpath.api.backend.NodeBackend;
+import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.backend.sesame.ThreadingSesameBackend;
+import org.apache.marmotta.ldpath.test.AbstractTestBase;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepositoryConnection;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Test the evaluation of recursive paths over cyclic graphs.
+ */
+public class RecursivePathSelectorTest extends AbstractTestBase {
+
+    private static final int NODES = 100;
+
+    private URI broader;
+
+    private CountingSelector delegate;
+
+    /**
+     * A chain ex:n0 -> ex:n1 -> ... -> ex:n99 -> ex:n0 where each node also links to the node after the next one,
+     * so every node is reachable on many different paths.
+     */
+    @Before
+    public void setupData() throws RepositoryException {
+        broader = createURI("foo:broader");
+
+        SailRepositoryConnection con = repository.getConnection();
+        try {
+            for (int i = 0; i < NODES; i++) {
+                con.add(node(i), broader, node((i + 1) % NODES));
+                con.add(node(i), broader, node((i + 2) % NODES));
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+
+        delegate = new CountingSelector(new PropertySelector<Value>(broader));
+    }
+
+    @Test
+    public void testCycle() {
+        Collection<Value> result = RecursivePathSelector.getPathSelectorPlused(delegate).select(backend, node(0), null, null);
+        assertEquals(NODES, result.size());
+        assertThat(result, hasItems((Value) node(0), node(1), node(NODES - 1)));
+
+        // every node is only expanded once
+        assertEquals(NODES, delegate.count.get());
+    }
+
+    @Test
+    public void testBounds() {
+        Collection<Value> result = RecursivePathSelector.getPathSelectorMaxBound(delegate, 2).select(backend, node(0), null, null);
+        assertEquals(ImmutableSet.<Value>of(node(0), node(1), node(2), node(3), node(4)), ImmutableSet.copyOf(result));
+
+        result = RecursivePathSelector.getPathSelectorMinMaxBound(delegate, 2, 3).select(backend, node(0), null, null);
+        assertEquals(ImmutableSet.<Value>of(node(2), node(3), node(4), node(5), node(6)), ImmutableSet.copyOf(result));
+
+        // nodes below the minimum number of recursions are only expanded once as well
+        delegate.count.set(0);
+        result = RecursivePathSelector.getPathSelectorMinBound(delegate, NODES).select(backend, node(0), null, null);
+        assertEquals(NODES, result.size());
+        assertEquals(NODES, delegate.count.get());
+    }
+
+    @Test
+    public void testPaths() {
+        Map<Value, List<Value>> paths = new HashMap<>();
+        Collection<Value> result = RecursivePathSelector.getPathSelectorPlused(delegate).select(backend, node(0), ImmutableList.<Value>of(node(0)), paths);
+        assertEquals(NODES, result.size());
+        for (Value n : result) {
+            List<Value> p = paths.get(n);
+            assertEquals(node(0), p.get(0));
+            assertEquals(n, p.get(p.size() - 1));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testThreading() {
+        ThreadingSesameBackend threadingBackend = new ThreadingSesameBackend(repository);
+        try {
+            Collection<Value> result = RecursivePathSelector.getPathSelectorPlused(delegate).select(threadingBackend, node(0), null, null);
+            assertEquals(NODES, result.size());
+            assertEquals(NODES, delegate.count.get());
+
+            // nested recursive paths share the thread pool of the backend
+            NodeSelector<Value> nested = RecursivePathSelector.getPathSelectorPlused(RecursivePathSelector.getPathSelectorMaxBound(new PropertySelector<Value>(broader), 3));
+            assertEquals(NODES, nested.select(threadingBackend, node(0), null, null).size());
+        } finally {
+            threadingBackend.shutdown();
+        }
+    }
+
+    private URI node(int i) {
+        return createURI("ex:n" + i);
+    }
+
+
+    private static class CountingSelector implements NodeSelector<Value> {
+
+        private final NodeSelector<Value> delegate;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private CountingSelector(NodeSelector<Value> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Collection<Value> select(RDFBackend<Value> backend, Value context, List<Value> path, Map<Value, List<Value>> resultPaths) {
+            count.incrementAndGet();
+            return delegate.select(backend, context, path, resultPaths);
+        }
+
+        @Override
+        public String getPathExpression(NodeBackend<Value> backend) {
+            return delegate.getPathExpression(backend);
+        }
+
+        @Override
+        public String getName(NodeBackend<Value> backend) {
+            return delegate.getName(backend);
+        }
+    }
+}
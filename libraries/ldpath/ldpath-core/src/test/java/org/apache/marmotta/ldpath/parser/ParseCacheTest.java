@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.parser;
+
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.marmotta.ldpath.LDPath;
+import org.apache.marmotta.ldpath.backend.sesame.SesameConnectionBackend;
+import org.apache.marmotta.ldpath.backend.sesame.SesameRepositoryBackend;
+import org.apache.marmotta.ldpath.exception.LDPathParseException;
+import org.apache.marmotta.ldpath.model.Constants;
+import org.apache.marmotta.ldpath.model.functions.ConcatenateFunction;
+import org.apache.marmotta.ldpath.test.AbstractTestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.repository.sail.SailRepositoryConnection;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * Test that parsed expressions are cached and reused by LDPath instances sharing a configuration.
+ */
+public class ParseCacheTest extends AbstractTestBase {
+
+    private Configuration<Value> config;
+
+    private URI subject;
+
+    @Before
+    public void setupData() throws RepositoryException {
+        subject = createURI("ex:subject");
+
+        SailRepositoryConnection con = repository.getConnection();
+        try {
+            con.add(subject, createURI("foo:name"), repository.getValueFactory().createLiteral("Subject"));
+            con.add(subject, createURI("foo:knows"), createURI("ex:friend"));
+            con.add(createURI("ex:friend"), createURI("foo:name"), repository.getValueFactory().createLiteral("Friend"));
+            con.commit();
+        } finally {
+            con.close();
+        }
+
+        config = new DefaultConfiguration<>();
+    }
+
+    @Test
+    public void testPathQuery() throws LDPathParseException {
+        Collection<Value> first = new LDPath<>(backend, config).pathQuery(subject, "foo:knows / foo:name", NSS);
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(1, config.getParseCache().size());
+
+        // another LDPath instance with the same configuration reuses the parsed selector
+        Collection<Value> second = new LDPath<>(backend, config).pathQuery(subject, "foo:knows / foo:name", NSS);
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(1, config.getParseCache().size());
+
+        // different expressions and kinds of expressions are cached separately
+        new LDPath<>(backend, config).pathQuery(subject, "foo:name", NSS);
+        Assert.assertEquals(2, config.getParseCache().size());
+        Collection<Object> names = new LDPath<>(backend, config).pathTransform(subject, "foo:name :: xsd:string", NSS);
+        Assert.assertEquals(1, names.size());
+        Assert.assertEquals(3, config.getParseCache().size());
+    }
+
+    @Test
+    public void testProgramQuery() throws LDPathParseException {
+        String program = "@prefix foo: <http://localhost/vcab#> ;\n name = foo:name :: xsd:string ;\n friend = foo:knows / foo:name :: xsd:string ;";
+
+        for(int i = 0; i < 3; i++) {
+            Map<String, Collection<?>> result = new LDPath<>(backend, config).programQuery(subject, new StringReader(program));
+            Assert.assertEquals(2, result.size());
+            Assert.assertTrue(result.get("name").contains("Subject"));
+            Assert.assertTrue(result.get("friend").contains("Friend"));
+        }
+        Assert.assertEquals(1, config.getParseCache().size());
+        Assert.assertSame(new LDPath<>(backend, config).parseProgram(new StringReader(program)), new LDPath<>(backend, config).parseProgram(new StringReader(program)));
+    }
+
+    @Test
+    public void testInvalidation() throws LDPathParseException {
+        new LDPath<>(backend, config).pathQuery(subject, "foo:name", NSS);
+        Assert.assertEquals(1, config.getParseCache().size());
+
+        config.addFunction(Constants.NS_LMF_FUNCS + "concat2", new ConcatenateFunction<Value>());
+        Assert.assertEquals(0, config.getParseCache().size());
+
+        // functions registered with the LDPath instance are part of the key
+        new LDPath<>(backend, config).pathQuery(subject, "foo:name", NSS);
+        LDPath<Value> ldpath = new LDPath<>(backend, config);
+        ldpath.registerFunction(new ConcatenateFunction<Value>());
+        ldpath.pathQuery(subject, "foo:name", NSS);
+        Assert.assertEquals(2, config.getParseCache().size());
+    }
+
+    @Test
+    public void testBackend() throws Exception {
+        String program = "@prefix foo: <http://localhost/vcab#> ;\n name = foo:name :: xsd:string ;";
+
+        // backends using connections to the same repository create the same constant nodes and share parsed expressions
+        SailRepositoryConnection con1 = repository.getConnection();
+        SailRepositoryConnection con2 = repository.getConnection();
+        try {
+            LDPath<Value> ldpath1 = new LDPath<>(SesameConnectionBackend.withConnection(con1), config);
+            LDPath<Value> ldpath2 = new LDPath<>(SesameConnectionBackend.withConnection(con2), config);
+            Assert.assertSame(ldpath1.parseProgram(new StringReader(program)), ldpath2.parseProgram(new StringReader(program)));
+            Assert.assertEquals(1, config.getParseCache().size());
+
+            Assert.assertEquals(ldpath1.pathQuery(subject, "foo:name", NSS), ldpath2.pathQuery(subject, "foo:name", NSS));
+            Assert.assertEquals(2, config.getParseCache().size());
+
+            // the same holds for a repository backend
+            Assert.assertSame(ldpath1.parseProgram(new StringReader(program)), new LDPath<>(backend, config).parseProgram(new StringReader(program)));
+            Assert.assertEquals(2, config.getParseCache().size());
+        } finally {
+            con1.close();
+            con2.close();
+        }
+
+        // constant nodes of a different repository are not shared
+        SailRepository other = new SailRepository(new MemoryStore());
+        other.initialize();
+        try {
+            Assert.assertNotSame(new LDPath<>(backend, config).parseProgram(new StringReader(program)),
+                    new LDPath<>(new SesameRepositoryBackend(other), config).parseProgram(new StringReader(program)));
+            Assert.assertEquals(3, config.getParseCache().size());
+        } finally {
+            other.shutDown();
+        }
+    }
+
+    @Test
+    public void testParseError() {
+        for(int i = 0; i < 2; i++) {
+            try {
+                new LDPath<>(backend, config).pathQuery(subject, "foo:name / (", NSS);
+                Assert.fail("parsing an invalid path should fail");
+            } catch (LDPathParseException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(0, config.getParseCache().size());
+    }
+}
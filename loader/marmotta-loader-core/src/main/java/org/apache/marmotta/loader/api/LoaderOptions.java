@@ -69,6 +69,23 @@ public class LoaderOptions {
     public static final String ARCHIVES    = "loader.archives";
 
 
+    /**
+     * Number of parser threads. In case the value is greater than 1, files, directory entries and archives are
+     * parsed concurrently and the parsed statements are passed to the backend through a bounded queue.
+     */
+    public static final String PARSER_THREADS = "loader.parser.threads";
+
+    /**
+     * Maximum number of statement batches waiting in the queue between parser threads and backend.
+     */
+    public static final String PARSER_QUEUE_SIZE = "loader.parser.queue";
+
+    /**
+     * Number of statements handed over from a parser thread to the backend at a time.
+     */
+    public static final String PARSER_BATCH_SIZE = "loader.parser.batch";
+
+
     /**
      * Enable statistics collection. Configuration value needs to be a boolean.
      */
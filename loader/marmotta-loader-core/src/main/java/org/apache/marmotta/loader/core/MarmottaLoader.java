@@ -46,6 +46,7 @@ import org.apache.marmotta.loader.api.LoaderHandler;
 import org.apache.marmotta.loader.api.LoaderOptions;
 import org.apache.marmotta.loader.context.ContextHandler;
 import org.apache.marmotta.loader.functions.BackendIdentifierFunction;
+import org.apache.marmotta.loader.pipeline.ParserPipeline;
 import org.apache.marmotta.loader.rio.GeonamesFormat;
 import org.apache.marmotta.loader.statistics.StatisticsHandler;
 import org.apache.marmotta.loader.util.DirectoryFilter;
@@ -92,6 +93,23 @@ public class MarmottaLoader {
 
         handler.initialise();
 
+        if(configuration.getInt(LoaderOptions.PARSER_THREADS, 1) > 1) {
+            loadParallel(handler);
+        } else {
+            loadSequential(handler);
+        }
+
+        handler.shutdown();
+
+        return handler;
+    }
+
+    /**
+     * Load all directories, archives and files specified in the configuration one after the other.
+     *
+     * @param handler handler to add the data to
+     */
+    private void loadSequential(LoaderHandler handler) {
         if(configuration.containsKey(LoaderOptions.DIRS)) {
             for(String dirname : configuration.getStringArray(LoaderOptions.DIRS)) {
                 File dir = new File(dirname);
@@ -128,10 +146,70 @@ public class MarmottaLoader {
                 }
             }
         }
+    }
 
-        handler.shutdown();
+    /**
+     * Load all directories, archives and files specified in the configuration concurrently using a parser pipeline.
+     * Each file (also within directories) and each archive is parsed by a separate task; the entries of an archive
+     * are parsed sequentially, since archive streams can only be read in order.
+     *
+     * @param handler handler to add the data to
+     * @throws RDFHandlerException
+     */
+    private void loadParallel(LoaderHandler handler) throws RDFHandlerException {
+        final RDFFormat format = getRDFFormat(configuration.getString(LoaderOptions.FORMAT));
+        final String compression = configuration.getString(LoaderOptions.COMPRESSION);
 
-        return handler;
+        int threads = configuration.getInt(LoaderOptions.PARSER_THREADS);
+        log.info("loading data using {} parser threads ...", threads);
+
+        ParserPipeline pipeline = new ParserPipeline(handler, threads,
+                configuration.getInt(LoaderOptions.PARSER_QUEUE_SIZE, 4 * threads),
+                configuration.getInt(LoaderOptions.PARSER_BATCH_SIZE, 10000));
+
+        if(handler instanceof StatisticsHandler) {
+            ((StatisticsHandler) handler).setPipeline(pipeline);
+        }
+
+        // inputs to load, mapped to whether they are archives
+        Map<File,Boolean> inputs = new LinkedHashMap<>();
+        if(configuration.containsKey(LoaderOptions.DIRS)) {
+            for(String dirname : configuration.getStringArray(LoaderOptions.DIRS)) {
+                File dir = new File(dirname);
+                if(dir.exists() && dir.isDirectory()) {
+                    for(File f : listDirectory(dir)) {
+                        inputs.put(f, isArchive(f));
+                    }
+                } else {
+                    log.warn("error importing directory {}: it does not exist or is not a directory", dir);
+                }
+            }
+        }
+        if(configuration.containsKey(LoaderOptions.ARCHIVES)) {
+            for(String archiveName : configuration.getStringArray(LoaderOptions.ARCHIVES)) {
+                inputs.put(new File(archiveName), true);
+            }
+        }
+        if(configuration.containsKey(LoaderOptions.FILES)) {
+            for(String fname : configuration.getStringArray(LoaderOptions.FILES)) {
+                inputs.put(new File(fname), false);
+            }
+        }
+
+        for(final Map.Entry<File,Boolean> input : inputs.entrySet()) {
+            pipeline.submit(input.getKey().getPath(), new ParserPipeline.Task() {
+                @Override
+                public void run(LoaderHandler h) throws Exception {
+                    if(input.getValue()) {
+                        loadArchive(input.getKey(), h, format);
+                    } else {
+                        loadFile(input.getKey(), h, format, compression);
+                    }
+                }
+            });
+        }
+
+        pipeline.process();
     }
 
     /**
@@ -265,9 +343,7 @@ public class MarmottaLoader {
     public void loadDirectory(File directory, LoaderHandler handler, RDFFormat format, String compression) throws RDFParseException, IOException {
         log.info("loading files in directory {} ...", directory);
         if(directory.exists() && directory.isDirectory()) {
-            final List<File> files = Arrays.asList(directory.listFiles(new DirectoryFilter())); //TODO: follow subdirectories
-            Collections.sort(files); //TODO: somewhere there should be a helper to get them natively ordered from the fs
-            for(File f : files) {
+            for(File f : listDirectory(directory)) {
                 try {
                     if(isArchive(f)) {
                         loadArchive(f, handler, format);
@@ -401,6 +477,15 @@ public class MarmottaLoader {
     }
 
 
+    /**
+     * List the files of a directory to load, in a deterministic order.
+     */
+    private List<File> listDirectory(File directory) {
+        final List<File> files = Arrays.asList(directory.listFiles(new DirectoryFilter())); //TODO: follow subdirectories
+        Collections.sort(files); //TODO: somewhere there should be a helper to get them natively ordered from the fs
+        return files;
+    }
+
     private void logArchiveType(ArchiveInputStream stream) {
         if(log.isInfoEnabled()) {
             if(stream instanceof ZipArchiveInputStream) {
@@ -542,6 +627,7 @@ public class MarmottaLoader {
      *     <li>-d | --dir:  input directory containing files to use for loading</li>
      *     <li>-t | --type: input format to use for parsing (MIME type)</li>
      *     <li>-s | --statistics: collect statistics and write a graph into the file given</li>
+     *     <li>-p | --parsers: number of parser threads for loading several files concurrently</li>
      * </ul>
      *
      * In addition, loader backends can provide their own additional command line options.
@@ -628,6 +714,14 @@ public class MarmottaLoader {
                         .create('s');
         options.addOption(statistics);
 
+        final Option parsers =
+                OptionBuilder.withArgName("parsers")
+                        .hasArgs(1)
+                        .withDescription("number of parser threads for loading several files or archives concurrently")
+                        .withLongOpt("parsers")
+                        .create('p');
+        options.addOption(parsers);
+
         final Option property  =
                 OptionBuilder.withArgName("property=value")
                         .hasArgs(2)
@@ -707,6 +801,14 @@ public class MarmottaLoader {
             result.setProperty(LoaderOptions.STATISTICS_GRAPH,   cmd.getOptionValue('s'));
         }
 
+        if(cmd.hasOption('p')) {
+            try {
+                result.setProperty(LoaderOptions.PARSER_THREADS, Integer.parseInt(cmd.getOptionValue('p')));
+            } catch (NumberFormatException ex) {
+                throw new ParseException("invalid number of parser threads: " + cmd.getOptionValue('p'));
+            }
+        }
+
         if(cmd.hasOption('D')) {
             for(Map.Entry e : cmd.getOptionProperties("D").entrySet()) {
                 result.setProperty(e.getKey().toString(), e.getValue());
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.pipeline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.marmotta.loader.api.LoaderHandler;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pipeline for loading several inputs concurrently. A pool of parser threads parses one input (e.g. a file or an
+ * archive) per task and hands the parsed statements in batches through a bounded queue to a single consumer, which
+ * feeds them into the wrapped loader handler. Loader handlers therefore still only see a single thread.
+ * <p/>
+ * Each input is parsed by its own parser, so blank nodes remain scoped to the input they occur in, and the batches of
+ * an input reach the handler in the order they have been parsed. Batches of different inputs are interleaved, so the
+ * handler sees the whole pipeline as a single RDF document (one startRDF/endRDF pair).
+ */
+public class ParserPipeline {
+
+    private static Logger log = LoggerFactory.getLogger(ParserPipeline.class);
+
+    /**
+     * A unit of work of the pipeline, parsing an input into the handler given as argument.
+     */
+    public interface Task {
+
+        void run(LoaderHandler handler) throws Exception;
+
+    }
+
+    private final LoaderHandler handler;
+
+    private final int batchSize;
+
+    private final BlockingQueue<Batch> queue;
+
+    private final ExecutorService parsers;
+
+    /**
+     * Number of statements parsed so far (i.e. handed over to the queue)
+     */
+    private final AtomicLong parsed = new AtomicLong(0);
+
+    /**
+     * Create a new pipeline feeding the given handler.
+     *
+     * @param handler   the handler to pass all parsed statements to
+     * @param threads   number of parser threads
+     * @param queueSize maximum number of batches waiting in the queue before parsers are blocked
+     * @param batchSize number of statements handed over at a time
+     */
+    public ParserPipeline(LoaderHandler handler, int threads, int queueSize, int batchSize) {
+        this.handler   = handler;
+        this.batchSize = batchSize;
+        this.queue     = new ArrayBlockingQueue<>(queueSize);
+        this.parsers   = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("Loader Parser %d").setDaemon(true).build());
+    }
+
+    /**
+     * Schedule a task for parsing the input with the given name. Errors are logged and do not affect other tasks,
+     * like for sequential loading.
+     *
+     * @param name name of the input used for logging
+     * @param task the task to run
+     */
+    public void submit(final String name, final Task task) {
+        parsers.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run(new BatchingHandler());
+                } catch (Exception e) {
+                    log.warn("error importing {}: {}", name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Pass all statements parsed by the submitted tasks to the handler, returning once all tasks have completed
+     * and all their statements have been handled. No further tasks can be submitted afterwards. In case the handler
+     * fails, the remaining tasks are cancelled.
+     *
+     * @throws RDFHandlerException
+     */
+    public void process() throws RDFHandlerException {
+        parsers.shutdown();
+
+        try {
+            handler.startRDF();
+
+            while(!parsers.isTerminated() || !queue.isEmpty()) {
+                Batch batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(batch != null) {
+                    for(Map.Entry<String,String> ns : batch.namespaces.entrySet()) {
+                        handler.handleNamespace(ns.getKey(), ns.getValue());
+                    }
+                    for(Statement stmt : batch.statements) {
+                        handler.handleStatement(stmt);
+                    }
+                }
+            }
+
+            handler.endRDF();
+        } catch (InterruptedException e) {
+            throw new RDFHandlerException("interrupted while waiting for parsed statements", e);
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * Return the number of statements parsed so far.
+     */
+    public long getParsedTriples() {
+        return parsed.get();
+    }
+
+    /**
+     * Return the number of batches currently waiting in the queue.
+     */
+    public int getQueuedBatches() {
+        return queue.size();
+    }
+
+
+    private static class Batch {
+        private final Map<String,String> namespaces;
+        private final List<Statement> statements;
+
+        private Batch(Map<String, String> namespaces, List<Statement> statements) {
+            this.namespaces = namespaces;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * Handler used by a single parser task, collecting the parsed statements into batches for the queue.
+     */
+    private class BatchingHandler implements LoaderHandler {
+
+        private Map<String,String> namespaces = new LinkedHashMap<>();
+        private List<Statement> statements = new ArrayList<>(batchSize);
+
+        @Override
+        public void initialise() throws RDFHandlerException {
+        }
+
+        @Override
+        public void shutdown() throws RDFHandlerException {
+        }
+
+        @Override
+        public void startRDF() throws RDFHandlerException {
+        }
+
+        @Override
+        public void endRDF() throws RDFHandlerException {
+            flush();
+        }
+
+        @Override
+        public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+            namespaces.put(prefix, uri);
+        }
+
+        @Override
+        public void handleStatement(Statement st) throws RDFHandlerException {
+            statements.add(st);
+
+            if(statements.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void handleComment(String comment) throws RDFHandlerException {
+        }
+
+        private void flush() throws RDFHandlerException {
+            if(statements.isEmpty() && namespaces.isEmpty()) {
+                return;
+            }
+
+            try {
+                queue.put(new Batch(namespaces, statements));
+            } catch (InterruptedException e) {
+                throw new RDFHandlerException("interrupted while handing over parsed statements", e);
+            }
+            parsed.addAndGet(statements.size());
+
+            namespaces = new LinkedHashMap<>();
+            statements = new ArrayList<>(batchSize);
+        }
+    }
+}
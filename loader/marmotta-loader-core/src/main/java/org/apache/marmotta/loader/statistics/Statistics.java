@@ -19,6 +19,7 @@ package org.apache.marmotta.loader.statistics;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.marmotta.loader.api.LoaderOptions;
+import org.apache.marmotta.loader.pipeline.ParserPipeline;
 import org.apache.marmotta.loader.util.UnitFormatter;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.DsType;
@@ -92,6 +93,7 @@ public class Statistics {
             RrdDef stCfg = new RrdDef(statFile.toString());
             stCfg.setStep(SAMPLE_INTERVAL);
             stCfg.addDatasource("triples", DsType.COUNTER, 600, Double.NaN, Double.NaN);
+            stCfg.addDatasource("parsed", DsType.COUNTER, 600, Double.NaN, Double.NaN);
             stCfg.addArchive(ConsolFun.AVERAGE, 0.5, 1, 1440);  // every five seconds for 2 hours
             stCfg.addArchive(ConsolFun.AVERAGE, 0.5, 12, 1440); // every minute for 1 day
             stCfg.addArchive(ConsolFun.AVERAGE, 0.5, 60, 1440); // every five minutes for five days
@@ -153,6 +155,14 @@ public class Statistics {
                 if(triplesLastMin != Double.NaN) {
                     log.info("imported {} triples; statistics: {}/sec (last min), {}/sec (last hour)", UnitFormatter.formatSize(handler.triples), UnitFormatter.formatSize(triplesLastMin), UnitFormatter.formatSize(triplesLastHour));
                 }
+
+                ParserPipeline pipeline = handler.getPipeline();
+                if(pipeline != null) {
+                    double parsedLastMin  = minData.getAggregate("parsed", ConsolFun.AVERAGE);
+                    double parsedLastHour = hourData.getAggregate("parsed", ConsolFun.AVERAGE);
+
+                    log.info("parsed {} triples; statistics: {}/sec (last min), {}/sec (last hour), {} batches queued", UnitFormatter.formatSize(pipeline.getParsedTriples()), UnitFormatter.formatSize(parsedLastMin), UnitFormatter.formatSize(parsedLastHour), pipeline.getQueuedBatches());
+                }
                 previous = System.currentTimeMillis();
 
             } catch (IOException e) {
@@ -174,7 +184,8 @@ public class Statistics {
 
                 synchronized (statSample) {
                     statSample.setTime(time);
-                    statSample.setValues(handler.triples);
+                    ParserPipeline pipeline = handler.getPipeline();
+                    statSample.setValues(handler.triples, pipeline != null ? pipeline.getParsedTriples() : handler.triples);
                     statSample.update();
                 }
 
@@ -209,7 +220,9 @@ public class Statistics {
 
 
                 gDef.datasource("triples", statFile.toString(), "triples", ConsolFun.AVERAGE);
+                gDef.datasource("parsed", statFile.toString(), "parsed", ConsolFun.AVERAGE);
 
+                gDef.line("parsed", Color.RED, "Triples Parsed", 1F);
                 gDef.line("triples", Color.BLUE, "Triples Written", 3F);
 
 
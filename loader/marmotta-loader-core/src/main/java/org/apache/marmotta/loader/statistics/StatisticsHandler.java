@@ -20,6 +20,7 @@ package org.apache.marmotta.loader.statistics;
 import org.apache.commons.configuration.Configuration;
 import org.apache.marmotta.loader.api.LoaderHandler;
 import org.apache.marmotta.loader.api.LoaderOptions;
+import org.apache.marmotta.loader.pipeline.ParserPipeline;
 import org.apache.marmotta.loader.wrapper.LoaderHandlerWrapper;
 import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFHandlerException;
@@ -37,6 +38,8 @@ public class StatisticsHandler extends LoaderHandlerWrapper implements LoaderHan
 
     private Configuration configuration;
 
+    private volatile ParserPipeline pipeline;
+
     public StatisticsHandler(LoaderHandler handler, Configuration configuration) {
         super(handler);
         this.configuration = configuration;
@@ -83,4 +86,18 @@ public class StatisticsHandler extends LoaderHandlerWrapper implements LoaderHan
             statistics.printStatistics();
         }
     }
+
+    /**
+     * Return the parser pipeline feeding this handler, or null in case data is loaded sequentially.
+     */
+    public ParserPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Set the parser pipeline feeding this handler, so that the statistics can also report the parser stage.
+     */
+    public void setPipeline(ParserPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
 }
@@ -130,6 +130,19 @@ public class CLITest {
         Assert.assertEquals("file.png", cfg.getString(LoaderOptions.STATISTICS_GRAPH));
     }
 
+    @Test
+    public void testParsers() throws ParseException {
+        Configuration cfg = MarmottaLoader.parseOptions(new String[] { "-p", "4", "-f", "file1.ttl", "-f", "file2.ttl" });
+
+        Assert.assertEquals(4, cfg.getInt(LoaderOptions.PARSER_THREADS));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testParsersError() throws ParseException {
+        Configuration cfg = MarmottaLoader.parseOptions(new String[] { "-p", "many", "-f", "file1.ttl" });
+    }
+
+
 
     @Test
     public void testProperties() throws ParseException {
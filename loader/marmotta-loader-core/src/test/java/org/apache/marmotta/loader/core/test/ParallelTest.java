@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.core.test;
+
+import org.apache.commons.configuration.MapConfiguration;
+import org.apache.marmotta.loader.api.LoaderOptions;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Test loading several files and archives concurrently using the parser pipeline.
+ */
+@RunWith(Parameterized.class)
+public class ParallelTest extends LoaderTestBase {
+
+    private static Logger log = LoggerFactory.getLogger(ParallelTest.class);
+
+
+    public ParallelTest(int threads, int batchSize) {
+        log.info("running test with {} parser threads (batch size: {})", threads, batchSize);
+
+        List<String> files = new ArrayList<>();
+        for(String filename : new String[] {"demo-data.rdf", "demo-data.rdf.gz", "demo-data.rdf.bz2"}) {
+            files.add(tempDir.toString() + File.separator + filename);
+        }
+        List<String> archives = new ArrayList<>();
+        for(String filename : new String[] {"demo-data.tar.gz", "demo-data.zip"}) {
+            archives.add(tempDir.toString() + File.separator + filename);
+        }
+
+        cfg = new MapConfiguration(new HashMap<String,Object>());
+        cfg.setProperty(LoaderOptions.FILES, files);
+        cfg.setProperty(LoaderOptions.ARCHIVES, archives);
+        cfg.setProperty(LoaderOptions.PARSER_THREADS, threads);
+        cfg.setProperty(LoaderOptions.PARSER_BATCH_SIZE, batchSize);
+    }
+
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data() {
+        Object[][] data = new Object[][] { { 2, 10000 }, { 4, 10 }, { 4, 1 } };
+        return Arrays.asList(data);
+    }
+
+}
@@ -101,6 +101,14 @@ public class KiWiLoaderBackend implements LoaderBackend {
                         .create('I');
         options.add(indexes);
 
+        Option dictionary =
+                OptionBuilder.withArgName("dictionary")
+                        .withLongOpt("dictionary")
+                        .withDescription("directory for memory-mapping the node dictionary used by the bulk loaders (default: off-heap memory)")
+                        .hasArgs(1)
+                        .create();
+        options.add(dictionary);
+
         return options;
     }
 }
@@ -91,6 +91,7 @@ public class KiWiLoaderHandler implements LoaderHandler {
             }
 
             loaderConfiguration.setDropIndexes(configuration.getBoolean("backend.kiwi.drop-indexes", false));
+            loaderConfiguration.setDictionaryDirectory(configuration.getString("backend.kiwi.dictionary", null));
 
             if(kiwi.getDialect() instanceof PostgreSQLDialect) {
                 log.info("- using PostgreSQL bulk loader ... ");
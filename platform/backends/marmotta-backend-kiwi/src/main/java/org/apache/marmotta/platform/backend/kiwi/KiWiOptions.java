@@ -24,6 +24,10 @@ package org.apache.marmotta.platform.backend.kiwi;
  */
 public class KiWiOptions {
     public static final String SPARQL_STRATEGY    = "sparql.strategy";
+    public static final String SPARQL_WINDOW      = "sparql.native.window";
+    public static final String SPARQL_THREADS     = "sparql.native.threads";
+    public static final String SPARQL_QUEUE       = "sparql.native.queue";
+    public static final String SPARQL_CACHE       = "sparql.native.cache";
     public static final String DATACENTER_ID      = "database.datacenter.id";
     public static final String FULLTEXT_ENABLED   = "database.fulltext.enabled";
     public static final String FULLTEXT_LANGUAGES = "database.fulltext.languages";
@@ -33,6 +37,7 @@ public class KiWiOptions {
     public static final String CACHING_BNODE_SIZE = "caching.bnode.size";
     public static final String CACHING_URI_SIZE = "caching.uri.size";
     public static final String CACHING_TRIPLE_SIZE = "caching.triple.size";
+    public static final String CACHING_OFFHEAP_MEMORY = "caching.offheap.memory";
     public static final String CLUSTERING_NAME = "clustering.name";
     public static final String CACHING_QUERY_ENABLED = "caching.query.enabled";
     public static final String CONTEXTS_DEFAULT = "contexts.default";
@@ -46,6 +51,15 @@ public class KiWiOptions {
 
     public static final String TRIPLES_BATCHCOMMIT = "database.triples.batchcommit";
     public static final String TRIPLES_BATCHSIZE = "database.triples.batchsize";
+    public static final String GC_ENABLED = "database.gc.enabled";
+    public static final String GC_INTERVAL = "database.gc.interval";
+    public static final String GC_CHUNKSIZE = "database.gc.chunksize";
+    public static final String GC_RATE = "database.gc.rate";
+    public static final String POSTGRES_PARTITIONED = "database.postgres.partitioned";
+    public static final String MYSQL_RECURSIVE = "database.mysql.recursive";
+    public static final String STATISTICS_ENABLED = "database.statistics.enabled";
+    public static final String STATISTICS_INTERVAL = "database.statistics.interval";
+    public static final String STATISTICS_THRESHOLD = "database.statistics.threshold";
     public static final String CLUSTERING_BACKEND = "clustering.backend";
     public static final String CLUSTERING_MODE = "clustering.mode";
 }
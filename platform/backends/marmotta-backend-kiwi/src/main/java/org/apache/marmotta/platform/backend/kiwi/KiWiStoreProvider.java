@@ -26,6 +26,7 @@ import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
 import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
 import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLPartitionedDialect;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
@@ -86,9 +87,15 @@ public class KiWiStoreProvider implements StoreProvider {
             if("h2".equalsIgnoreCase(database)) {
                 dialect = new H2Dialect();
             } else if("mysql".equalsIgnoreCase(database)) {
-                dialect = new MySQLDialect();
+                MySQLDialect mysql = new MySQLDialect();
+                mysql.setRecursiveQuerySupported(configurationService.getBooleanConfiguration(KiWiOptions.MYSQL_RECURSIVE, false));
+                dialect = mysql;
             } else if("postgres".equalsIgnoreCase(database)) {
-                dialect = new PostgreSQLDialect();
+                if(configurationService.getBooleanConfiguration(KiWiOptions.POSTGRES_PARTITIONED, false)) {
+                    dialect = new PostgreSQLPartitionedDialect();
+                } else {
+                    dialect = new PostgreSQLDialect();
+                }
             } else
                 throw new IllegalStateException("database type "+database+" currently not supported!");
         } catch (DriverNotFoundException dnf) {
@@ -104,6 +111,19 @@ public class KiWiStoreProvider implements StoreProvider {
         configuration.setQueryLoggingEnabled(configurationService.getBooleanConfiguration(KiWiOptions.DEBUG_SLOWQUERIES, false));
         configuration.setTripleBatchCommit(configurationService.getBooleanConfiguration(KiWiOptions.TRIPLES_BATCHCOMMIT, true));
         configuration.setTripleBatchSize(configurationService.getIntConfiguration(KiWiOptions.TRIPLES_BATCHSIZE, 10000));
+        configuration.setResultWindowSize(configurationService.getIntConfiguration(KiWiOptions.SPARQL_WINDOW, 1000));
+        configuration.setQueryThreads(configurationService.getIntConfiguration(KiWiOptions.SPARQL_THREADS, 8));
+        configuration.setQueryQueueSize(configurationService.getIntConfiguration(KiWiOptions.SPARQL_QUEUE, 64));
+        configuration.setTranslationCacheSize(configurationService.getIntConfiguration(KiWiOptions.SPARQL_CACHE, 500));
+
+        configuration.setGarbageCollectionEnabled(configurationService.getBooleanConfiguration(KiWiOptions.GC_ENABLED, false));
+        configuration.setGarbageCollectionInterval(configurationService.getIntConfiguration(KiWiOptions.GC_INTERVAL, 24 * 60) * 60L * 1000L);
+        configuration.setGarbageCollectionChunkSize(configurationService.getIntConfiguration(KiWiOptions.GC_CHUNKSIZE, 1000));
+        configuration.setGarbageCollectionRate(configurationService.getIntConfiguration(KiWiOptions.GC_RATE, 10000));
+
+        configuration.setStatisticsEnabled(configurationService.getBooleanConfiguration(KiWiOptions.STATISTICS_ENABLED, true));
+        configuration.setStatisticsInterval(configurationService.getIntConfiguration(KiWiOptions.STATISTICS_INTERVAL, 60) * 60L * 1000L);
+        configuration.setStatisticsPairThreshold(configurationService.getIntConfiguration(KiWiOptions.STATISTICS_THRESHOLD, 100));
 
         configuration.setDatacenterId(configurationService.getIntConfiguration(KiWiOptions.DATACENTER_ID,0));
         configuration.setFulltextEnabled(configurationService.getBooleanConfiguration(KiWiOptions.FULLTEXT_ENABLED, true));
@@ -116,6 +136,7 @@ public class KiWiStoreProvider implements StoreProvider {
         configuration.setBNodeCacheSize(configurationService.getIntConfiguration(KiWiOptions.CACHING_BNODE_SIZE, 10000));
         configuration.setUriCacheSize(configurationService.getIntConfiguration(KiWiOptions.CACHING_URI_SIZE, 500000));
         configuration.setTripleCacheSize(configurationService.getIntConfiguration(KiWiOptions.CACHING_TRIPLE_SIZE, 100000));
+        configuration.setOffHeapCacheMemory(configurationService.getIntConfiguration(KiWiOptions.CACHING_OFFHEAP_MEMORY, 1024));
 
         configuration.setClusterPort(configurationService.getIntConfiguration(KiWiOptions.CLUSTERING_PORT, 46655));
         configuration.setClusterAddress(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_ADDRESS, "228.6.7.8"));
@@ -126,7 +147,7 @@ public class KiWiStoreProvider implements StoreProvider {
         if(configuration.isClustered()) {
             configuration.setRegistryStrategy(RegistryStrategy.CACHE);
         } else {
-            configuration.setRegistryStrategy(RegistryStrategy.LOCAL);
+            configuration.setRegistryStrategy(RegistryStrategy.SHARDED);
         }
 
         NotifyingSail base = new KiWiStore(configuration);
@@ -184,6 +205,7 @@ public class KiWiStoreProvider implements StoreProvider {
                 e.containsChangedKey(KiWiOptions.CLUSTERING_ENABLED) ||
                 e.containsChangedKey(KiWiOptions.CACHING_LITERAL_SIZE) ||
                 e.containsChangedKey(KiWiOptions.CACHING_TRIPLE_SIZE) ||
+                e.containsChangedKey(KiWiOptions.CACHING_OFFHEAP_MEMORY) ||
                 e.containsChangedKey(KiWiOptions.CACHING_URI_SIZE) ||
                 e.containsChangedKey(KiWiOptions.CACHING_BNODE_SIZE) ||
                 e.containsChangedKey(KiWiOptions.CACHING_QUERY_ENABLED) ||
@@ -174,6 +174,7 @@ public class SesameServiceImpl implements SesameService {
                 log.info("enabling transaction notification");
 
                 KiWiTransactionalSail tsail = new KiWiTransactionalSail(store);
+                tsail.setSpillThreshold(configurationService.getIntConfiguration("transactions.spill_threshold", TransactionData.DEFAULT_SPILL_THRESHOLD));
 
                 // the CDI events should be triggered once all internal events have been handled, so register the transaction listener last
                 tsail.addTransactionListener(new LMFTransactionEventProxy());
@@ -84,6 +84,17 @@ public interface LDPathService {
      */
     Map<Value,Map<String,Collection<?>>> programQuery(String program) throws LDPathParseException;
 
+    /**
+     * Run a path program over all resources in the triplestore matching the program's filter and pass the result for
+     * each resource to the handler as soon as it is available, without collecting all results in memory. The program
+     * is evaluated in parallel; calls to the handler are serialized.
+     *
+     * @param program the path program to evaluate
+     * @param handler the handler receiving the result for each matching resource
+     * @throws LDPathParseException
+     */
+    void programQuery(String program, ProgramResultHandler handler) throws LDPathParseException;
+
     /**
      * Register a result transformer for a type URI. Use this method in your own projects
      * to register custom result transformers.
@@ -17,12 +17,12 @@
  */
 package org.apache.marmotta.platform.ldpath.services;
 
-import org.apache.marmotta.commons.sesame.repository.ResourceUtils;
-import org.apache.marmotta.ldpath.model.fields.FieldMapping;
 import org.apache.marmotta.ldpath.model.programs.Program;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
 import org.apache.marmotta.platform.ldpath.api.LDPathService;
 import org.apache.marmotta.platform.ldpath.api.AutoRegisteredLDPathFunction;
 import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.ldpath.api.ProgramResultHandler;
 
 import org.apache.marmotta.ldpath.LDPath;
 import org.apache.marmotta.ldpath.api.functions.SelectorFunction;
@@ -32,12 +32,15 @@ import org.apache.marmotta.ldpath.exception.LDPathParseException;
 import org.apache.marmotta.ldpath.model.Constants;
 import org.apache.marmotta.ldpath.parser.Configuration;
 import org.apache.marmotta.ldpath.parser.DefaultConfiguration;
+import org.openrdf.model.Resource;
 import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
@@ -45,6 +48,8 @@ import javax.inject.Inject;
 
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Add file description here!
@@ -54,17 +59,39 @@ import java.util.*;
 @ApplicationScoped
 public class LDPathServiceImpl implements LDPathService {
 
+    /**
+     * Number of worker threads evaluating a program over all resources of the triple store
+     */
+    public static final String PROGRAM_THREADS = "ldpath.program.threads";
+
+    /**
+     * Number of candidate resources queued per worker thread
+     */
+    private static final int CANDIDATES_PER_THREAD = 1000;
+
+    /**
+     * Marks the end of the candidates in the worker queue
+     */
+    private static final Resource END_OF_CANDIDATES = new URIImpl("urn:marmotta:ldpath:end-of-candidates");
+
     @Inject
     private Logger log;
 
     @Inject
     private SesameService               sesameService;
 
+    @Inject
+    private ConfigurationService        configurationService;
+
     private Configuration<Value>        config;
 
     @Inject @Any
     private Instance<AutoRegisteredLDPathFunction> functions;
 
+    private ExecutorService             executorService;
+
+    private int workerId = 0;
+
     @PostConstruct
     public void initialise() {
         log.info("initialising LDPath service ...");
@@ -74,6 +101,20 @@ public class LDPathServiceImpl implements LDPathService {
         for(AutoRegisteredLDPathFunction function : functions) {
             config.addFunction(Constants.NS_LMF_FUNCS + function.getLocalName(), function);
         }
+
+        executorService = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LDPath Program Worker " + (++workerId));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
     }
 
 
@@ -202,27 +243,53 @@ public class LDPathServiceImpl implements LDPathService {
      */
     @Override
     public Map<Value, Map<String, Collection<?>>> programQuery(String program) throws LDPathParseException {
-        Map<Value,  Map<String, Collection<?>>> result = new HashMap<>();
+        final Map<Value,  Map<String, Collection<?>>> result = new HashMap<>();
+        programQuery(program, new ProgramResultHandler() {
+            @Override
+            public void handleResult(Value context, Map<String, Collection<?>> binding) {
+                result.put(context, binding);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run a path program over all resources in the triplestore matching the program's filter and pass the result for
+     * each resource to the handler as soon as it is available. The program filter is used to select the candidate
+     * resources directly from the triple store where possible (e.g. is-a tests or property existence), and the
+     * program is evaluated by several worker threads in parallel (configured by ldpath.program.threads).
+     *
+     * @param program the path program to evaluate
+     * @param handler the handler receiving the results
+     * @throws LDPathParseException when the program could not be parsed or evaluated
+     */
+    @Override
+    public void programQuery(String program, final ProgramResultHandler handler) throws LDPathParseException {
+        int threads = Math.max(1, configurationService.getIntConfiguration(PROGRAM_THREADS, 4));
         try {
             RepositoryConnection conn = sesameService.getConnection();
             try {
                 conn.begin();
-                SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
+                final SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
                 LDPath<Value> ldpath = new LDPath<Value>(backend, config);
 
-                Program<Value> p = ldpath.parseProgram(new StringReader(program));
+                final Program<Value> p = ldpath.parseProgram(new StringReader(program));
 
-                // TODO: not very efficient, LDPath should support more efficient listing of resources based on filter
-                for(Value context : ResourceUtils.listResources(conn)) {
-                    if(p.getFilter().apply(backend, context, Collections.singleton(context))) {
-
-                        Map<String,Collection<?>> binding = new HashMap<String, Collection<?>>();
+                ProgramCandidates candidates = new ProgramCandidates(p.getFilter());
+                if(!candidates.isRestricted()) {
+                    log.warn("the filter of the LDPath program cannot be used to select candidates, evaluating the program for all resources");
+                }
 
-                        for(FieldMapping<?,Value> mapping : p.getFields()) {
-                            binding.put(mapping.getFieldName(),mapping.getValues(backend,context));
+                if(threads == 1) {
+                    candidates.listCandidates(conn, new ProgramCandidates.CandidateHandler() {
+                        @Override
+                        public boolean handleCandidate(Resource candidate) {
+                            evaluateProgram(p, backend, candidate, handler);
+                            return true;
                         }
-                        result.put(context,binding);
-                    }
+                    });
+                } else {
+                    evaluateParallel(p, candidates, conn, sesameService, executorService, handler, threads);
                 }
             } finally {
                 conn.commit();
@@ -231,6 +298,127 @@ public class LDPathServiceImpl implements LDPathService {
         } catch (RepositoryException e) {
             throw new LDPathParseException("LDPath evaluation failed", e);
         }
-        return result;
+    }
+
+    /**
+     * Evaluate the program for the candidates on a number of worker threads. The candidates are passed to the workers
+     * through a bounded queue, so candidate selection does not run ahead of the evaluation too far. Each worker uses
+     * its own connection to the triple store. The first error of a worker stops the evaluation and is rethrown.
+     */
+    static void evaluateParallel(final Program<Value> program, ProgramCandidates candidates, RepositoryConnection conn,
+                                 final SesameService sesameService, ExecutorService executorService,
+                                 final ProgramResultHandler handler, int threads) throws RepositoryException, LDPathParseException {
+        final BlockingQueue<Resource> queue = new ArrayBlockingQueue<>(threads * CANDIDATES_PER_THREAD);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Future<Void>> workers = new ArrayList<>(threads);
+        for(int i = 0; i < threads; i++) {
+            workers.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        RepositoryConnection workerConn = sesameService.getConnection();
+                        try {
+                            workerConn.begin();
+                            SesameConnectionBackend workerBackend = SesameConnectionBackend.withConnection(workerConn);
+
+                            for(Resource context = queue.take(); context != END_OF_CANDIDATES; context = queue.take()) {
+                                evaluateProgram(program, workerBackend, context, handler);
+                            }
+                        } finally {
+                            workerConn.commit();
+                            workerConn.close();
+                        }
+                        return null;
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        throw t;
+                    }
+                }
+            }));
+        }
+
+        try {
+            candidates.listCandidates(conn, new ProgramCandidates.CandidateHandler() {
+                @Override
+                public boolean handleCandidate(Resource candidate) {
+                    return enqueue(queue, candidate, failure);
+                }
+            });
+            for(int i = 0; i < threads; i++) {
+                enqueue(queue, END_OF_CANDIDATES, failure);
+            }
+        } finally {
+            if(failure.get() != null || Thread.currentThread().isInterrupted()) {
+                for(Future<Void> worker : workers) {
+                    worker.cancel(true);
+                }
+            }
+        }
+
+        // the workers have been cancelled, so waiting for them would not notice the interruption and return a
+        // partial result
+        if(Thread.currentThread().isInterrupted()) {
+            throw new LDPathParseException("LDPath evaluation interrupted");
+        }
+
+        try {
+            for(Future<Void> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException | CancellationException e) {
+                    // the first failure is reported below
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for(Future<Void> worker : workers) {
+                worker.cancel(true);
+            }
+            throw new LDPathParseException("LDPath evaluation interrupted", e);
+        }
+
+        Throwable error = failure.get();
+        if(error instanceof RepositoryException) {
+            throw (RepositoryException) error;
+        } else if(error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if(error instanceof Error) {
+            throw (Error) error;
+        } else if(error != null) {
+            throw new LDPathParseException("LDPath evaluation failed", error);
+        }
+    }
+
+    /**
+     * Put the candidate into the worker queue, waiting for free space as long as no worker failed.
+     *
+     * @return false in case a worker failed or the current thread has been interrupted
+     */
+    private static boolean enqueue(BlockingQueue<Resource> queue, Resource candidate, AtomicReference<Throwable> failure) {
+        try {
+            while(failure.get() == null) {
+                if(queue.offer(candidate, 1, TimeUnit.SECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Apply the program filter to the context resource and, if it is accepted, pass the values of all program fields
+     * to the handler.
+     */
+    private static void evaluateProgram(Program<Value> program, SesameConnectionBackend backend, Resource context, ProgramResultHandler handler) {
+        if(program.getFilter() == null || program.getFilter().accept(backend, context, context)) {
+            Map<String,Collection<?>> binding = program.execute(backend, context);
+
+            synchronized (handler) {
+                handler.handleResult(context, binding);
+            }
+        }
     }
 }
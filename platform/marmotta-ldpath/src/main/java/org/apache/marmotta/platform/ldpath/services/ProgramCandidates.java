@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldpath.services;
+
+import org.apache.marmotta.commons.sesame.repository.ResourceUtils;
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.api.tests.NodeTest;
+import org.apache.marmotta.ldpath.model.selectors.PathSelector;
+import org.apache.marmotta.ldpath.model.selectors.PropertySelector;
+import org.apache.marmotta.ldpath.model.selectors.TestingSelector;
+import org.apache.marmotta.ldpath.model.tests.AndTest;
+import org.apache.marmotta.ldpath.model.tests.OrTest;
+import org.apache.marmotta.ldpath.model.tests.PathEqualityTest;
+import org.apache.marmotta.ldpath.model.tests.PathTest;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects the candidate resources for evaluating an LDPath program over the whole triple store. The program filter
+ * is compiled into a set of triple patterns (e.g. <code>is-a</code> tests or the existence of a property) whose
+ * subjects are a superset of the resources accepted by the filter, so the triple store can be queried for these
+ * patterns instead of listing all resources. The filter still needs to be applied to each candidate.
+ * <p/>
+ * Filters that cannot be compiled (e.g. function tests or negations) fall back to listing all resources.
+ */
+public class ProgramCandidates {
+
+    /**
+     * Number of subjects remembered for skipping repeated subjects of the same pattern
+     */
+    private static final int RECENT_SUBJECTS = 10000;
+
+    /**
+     * The candidate patterns, or null in case all resources are candidates
+     */
+    private final List<Pattern> patterns;
+
+
+    public ProgramCandidates(NodeTest<Value> filter) {
+        this.patterns = filter != null ? compile(filter) : null;
+    }
+
+    /**
+     * Return true in case the candidates are restricted by the program filter, false in case all resources of the
+     * triple store need to be considered.
+     */
+    public boolean isRestricted() {
+        return patterns != null;
+    }
+
+    /**
+     * Pass all candidate resources to the handler. Candidates matching several patterns are only passed for the first
+     * of them. Within a pattern, only the most recently listed subjects are remembered to keep the memory bounded, so a
+     * resource with many matching triples may in rare cases be passed more than once.
+     *
+     * @param conn    connection used for querying the triple store
+     * @param handler handler receiving the candidates
+     * @return false in case the handler stopped the iteration
+     */
+    public boolean listCandidates(RepositoryConnection conn, CandidateHandler handler) throws RepositoryException {
+        if(patterns == null) {
+            for(Resource resource : ResourceUtils.listResources(conn)) {
+                if(!handler.handleCandidate(resource)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for(int i = 0; i < patterns.size(); i++) {
+            Pattern pattern = patterns.get(i);
+            Set<Resource> recent = createRecentSet();
+
+            RepositoryResult<Statement> statements = conn.getStatements(null, pattern.property, pattern.object, true);
+            try {
+                while(statements.hasNext()) {
+                    Resource subject = statements.next().getSubject();
+                    if(recent.add(subject) && !matchesEarlierPattern(conn, subject, i) && !handler.handleCandidate(subject)) {
+                        return false;
+                    }
+                }
+            } finally {
+                statements.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the subject matches one of the patterns before the given index, i.e. has already been passed
+     * to the handler.
+     */
+    private boolean matchesEarlierPattern(RepositoryConnection conn, Resource subject, int index) throws RepositoryException {
+        for(int i = 0; i < index; i++) {
+            Pattern pattern = patterns.get(i);
+            if(conn.hasStatement(subject, pattern.property, pattern.object, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Resource> createRecentSet() {
+        return Collections.newSetFromMap(new LinkedHashMap<Resource, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Resource, Boolean> eldest) {
+                return size() > RECENT_SUBJECTS;
+            }
+        });
+    }
+
+
+    /**
+     * Compile a test into a list of patterns, or return null in case it cannot be compiled.
+     */
+    static List<Pattern> compile(NodeTest<Value> test) {
+        if(test instanceof AndTest) {
+            List<Pattern> left  = compile(((AndTest<Value>) test).getLeft());
+            List<Pattern> right = compile(((AndTest<Value>) test).getRight());
+            if(left == null) {
+                return right;
+            } else if(right == null) {
+                return left;
+            } else {
+                // both sides restrict the candidates, prefer the one with bound objects as it is usually more selective
+                return isBound(right) && !isBound(left) ? right : left;
+            }
+        } else if(test instanceof OrTest) {
+            List<Pattern> left  = compile(((OrTest<Value>) test).getLeft());
+            List<Pattern> right = compile(((OrTest<Value>) test).getRight());
+            if(left == null || right == null) {
+                return null;
+            }
+            List<Pattern> result = new ArrayList<>(left);
+            result.addAll(right);
+            return result;
+        } else if(test instanceof PathEqualityTest) {
+            // covers is-a tests as well
+            PathEqualityTest<Value> equality = (PathEqualityTest<Value>) test;
+            URI property = getProperty(equality.getPath());
+            if(property != null) {
+                return Collections.singletonList(new Pattern(property, equality.getNode()));
+            }
+            return compileFirstStep(equality.getPath());
+        } else if(test instanceof PathTest) {
+            return compileFirstStep(((PathTest<Value>) test).getPath());
+        }
+        return null;
+    }
+
+    /**
+     * A path can only select values for resources that have the property of its first step.
+     */
+    private static List<Pattern> compileFirstStep(NodeSelector<Value> selector) {
+        if(selector instanceof PathSelector) {
+            return compileFirstStep(((PathSelector<Value>) selector).getLeft());
+        } else if(selector instanceof TestingSelector) {
+            return compileFirstStep(((TestingSelector<Value>) selector).getDelegate());
+        }
+        URI property = getProperty(selector);
+        if(property != null) {
+            return Collections.singletonList(new Pattern(property, null));
+        }
+        return null;
+    }
+
+    private static URI getProperty(NodeSelector<Value> selector) {
+        if(selector instanceof PropertySelector) {
+            Value property = ((PropertySelector<Value>) selector).getProperty();
+            if(property instanceof URI) {
+                return (URI) property;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBound(List<Pattern> patterns) {
+        for(Pattern pattern : patterns) {
+            if(pattern.object == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Receives the candidate resources selected for a program.
+     */
+    public interface CandidateHandler {
+
+        /**
+         * Handle the next candidate.
+         *
+         * @return false to stop listing candidates
+         */
+        boolean handleCandidate(Resource candidate) throws RepositoryException;
+    }
+
+
+    /**
+     * A triple pattern with unbound subject
+     */
+    static class Pattern {
+        private final URI property;
+        private final Value object;
+
+        private Pattern(URI property, Value object) {
+            this.property = property;
+            this.object = object;
+        }
+
+        URI getProperty() {
+            return property;
+        }
+
+        Value getObject() {
+            return object;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldpath.services;
+
+import org.apache.marmotta.ldpath.LDPath;
+import org.apache.marmotta.ldpath.backend.sesame.SesameRepositoryBackend;
+import org.apache.marmotta.ldpath.exception.LDPathParseException;
+import org.apache.marmotta.ldpath.model.programs.Program;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.ldpath.api.ProgramResultHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test the parallel evaluation of LDPath programs over all candidate resources.
+ */
+public class LDPathServiceImplTest {
+
+    private static final String NS = "http://localhost/parallel#";
+
+    private static final int RESOURCES = 500;
+
+    private static final int THREADS = 4;
+
+    private SailRepository repository;
+
+    private SesameService sesameService;
+
+    private ExecutorService executorService;
+
+    private Program<Value> program;
+
+    @Before
+    public void setup() throws Exception {
+        repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+
+        addResources(0, RESOURCES);
+
+        sesameService   = new RepositorySesameService(repository);
+        executorService = Executors.newFixedThreadPool(THREADS);
+
+        String source = "@prefix ex: <" + NS + "> ;\n@filter is-a ex:C ;\nname = ex:name :: xsd:string ;";
+        program = new LDPath<>(new SesameRepositoryBackend(repository)).parseProgram(new StringReader(source));
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        executorService.shutdownNow();
+        Assert.assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        repository.shutDown();
+    }
+
+    @Test
+    public void testEvaluateParallel() throws Exception {
+        final Map<Value, Map<String, Collection<?>>> results = new HashMap<>();
+        evaluate(new ProgramResultHandler() {
+            @Override
+            public void handleResult(Value context, Map<String, Collection<?>> result) {
+                Assert.assertNull("result passed twice for " + context, results.put(context, result));
+            }
+        });
+
+        Assert.assertEquals(RESOURCES, results.size());
+        for(Map<String, Collection<?>> result : results.values()) {
+            Assert.assertEquals(1, result.get("name").size());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testEvaluateParallelError() throws Exception {
+        final IllegalStateException error = new IllegalStateException("handler failed");
+        try {
+            evaluate(new ProgramResultHandler() {
+                @Override
+                public void handleResult(Value context, Map<String, Collection<?>> result) {
+                    throw error;
+                }
+            });
+            Assert.fail("the error of the handler should be passed to the caller");
+        } catch (IllegalStateException ex) {
+            Assert.assertSame(error, ex);
+        }
+
+        // the workers have been stopped, so the executor is available again
+        testEvaluateParallel();
+    }
+
+    @Test(timeout = 30000)
+    public void testEvaluateParallelInterrupted() throws Exception {
+        // more candidates than the queue of the workers can hold
+        addResources(RESOURCES, 10000);
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    evaluate(new ProgramResultHandler() {
+                        @Override
+                        public void handleResult(Value context, Map<String, Collection<?>> result) {
+                            // block the workers until they are cancelled
+                            try {
+                                new CountDownLatch(1).await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        };
+        caller.start();
+
+        // wait until the queue is full and the caller is waiting for free space
+        while(caller.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+        caller.interrupt();
+        caller.join();
+
+        Assert.assertTrue("the interruption should be reported instead of returning a partial result", error.get() instanceof LDPathParseException);
+        Assert.assertEquals("LDPath evaluation interrupted", error.get().getMessage());
+    }
+
+    private void addResources(int from, int to) throws RepositoryException {
+        ValueFactory vf = repository.getValueFactory();
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            for(int i = from; i < to; i++) {
+                URI resource = vf.createURI(NS + "r" + i);
+                con.add(resource, RDF.TYPE, vf.createURI(NS + "C"));
+                con.add(resource, vf.createURI(NS + "name"), vf.createLiteral("Resource " + i));
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    private void evaluate(ProgramResultHandler handler) throws Exception {
+        RepositoryConnection con = sesameService.getConnection();
+        try {
+            con.begin();
+            LDPathServiceImpl.evaluateParallel(program, new ProgramCandidates(program.getFilter()), con, sesameService, executorService, handler, THREADS);
+            con.commit();
+        } finally {
+            // do not let an interruption of the evaluation affect closing the connection
+            boolean interrupted = Thread.interrupted();
+            try {
+                con.close();
+            } finally {
+                if(interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Provides connections to a plain Sesame repository instead of the Marmotta triple store.
+     */
+    private static class RepositorySesameService implements SesameService {
+
+        private final SailRepository repository;
+
+        private RepositorySesameService(SailRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public SailRepository getRepository() {
+            return repository;
+        }
+
+        @Override
+        public RepositoryConnection getConnection() throws RepositoryException {
+            return repository.getConnection();
+        }
+
+        @Override
+        @Deprecated
+        public ValueFactory getValueFactory() {
+            return repository.getValueFactory();
+        }
+
+        @Override
+        public void restart() {
+        }
+
+        @Override
+        public void garbageCollect() {
+        }
+    }
+}
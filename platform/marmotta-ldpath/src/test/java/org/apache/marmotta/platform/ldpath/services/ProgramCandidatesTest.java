@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldpath.services;
+
+import org.apache.marmotta.ldpath.LDPath;
+import org.apache.marmotta.ldpath.api.tests.NodeTest;
+import org.apache.marmotta.ldpath.backend.sesame.SesameRepositoryBackend;
+import org.apache.marmotta.ldpath.exception.LDPathParseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test the compilation of program filters into candidate patterns and the listing of candidates.
+ */
+public class ProgramCandidatesTest {
+
+    private static final String NS = "http://localhost/candidates#";
+
+    private SailRepository repository;
+
+    private URI a1, a2, b1, c1;
+
+    @Before
+    public void setup() throws RepositoryException {
+        repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+
+        ValueFactory vf = repository.getValueFactory();
+        a1 = vf.createURI(NS + "a1");
+        a2 = vf.createURI(NS + "a2");
+        b1 = vf.createURI(NS + "b1");
+        c1 = vf.createURI(NS + "c1");
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            con.add(a1, RDF.TYPE, uri("A"));
+            con.add(a1, uri("p"), uri("x"));
+            con.add(a1, uri("q"), vf.createLiteral("1"));
+            con.add(a1, uri("q"), vf.createLiteral("2"));
+            con.add(a1, uri("q"), vf.createLiteral("3"));
+            con.add(a2, RDF.TYPE, uri("A"));
+            con.add(b1, RDF.TYPE, uri("B"));
+            con.add(b1, uri("q"), vf.createLiteral("4"));
+            con.add(c1, uri("p"), uri("y"));
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @After
+    public void shutdown() throws RepositoryException {
+        repository.shutDown();
+    }
+
+    @Test
+    public void testIsA() throws Exception {
+        ProgramCandidates candidates = candidates("is-a ex:A");
+        Assert.assertTrue(candidates.isRestricted());
+        assertCandidates(candidates, a1, a2);
+    }
+
+    @Test
+    public void testPathEquality() throws Exception {
+        assertCandidates(candidates("ex:p is ex:x"), a1);
+    }
+
+    @Test
+    public void testPath() throws Exception {
+        // a1 has several values for ex:q but is only listed once
+        assertCandidates(candidates("ex:q"), a1, b1);
+
+        // only the first step of a path restricts the candidates
+        assertCandidates(candidates("ex:p / ex:q"), a1, c1);
+    }
+
+    @Test
+    public void testOr() throws Exception {
+        assertCandidates(candidates("is-a ex:A | is-a ex:B"), a1, a2, b1);
+
+        // a1 matches both patterns but is only listed once
+        assertCandidates(candidates("is-a ex:A | ex:q"), a1, a2, b1);
+    }
+
+    @Test
+    public void testAnd() throws Exception {
+        // the pattern with the bound object is preferred
+        List<ProgramCandidates.Pattern> patterns = ProgramCandidates.compile(filter("ex:q & is-a ex:B"));
+        Assert.assertEquals(1, patterns.size());
+        Assert.assertEquals(RDF.TYPE, patterns.get(0).getProperty());
+        Assert.assertEquals(uri("B"), patterns.get(0).getObject());
+
+        assertCandidates(candidates("ex:q & is-a ex:B"), b1);
+
+        // a side that cannot be compiled does not restrict the candidates further
+        assertCandidates(candidates("is-a ex:A & !ex:p"), a1, a2);
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        ProgramCandidates negation = candidates("!is-a ex:A");
+        Assert.assertFalse(negation.isRestricted());
+        Assert.assertEquals(new HashSet<>(Arrays.<Resource>asList(a1, a2, b1, c1)), new HashSet<>(list(negation)));
+
+        Assert.assertFalse(candidates("is-a ex:A | !ex:p").isRestricted());
+        Assert.assertFalse(new ProgramCandidates(null).isRestricted());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            final List<Resource> result = new ArrayList<>();
+            boolean completed = candidates("is-a ex:A | is-a ex:B").listCandidates(con, new ProgramCandidates.CandidateHandler() {
+                @Override
+                public boolean handleCandidate(Resource candidate) {
+                    result.add(candidate);
+                    return false;
+                }
+            });
+            Assert.assertFalse(completed);
+            Assert.assertEquals(1, result.size());
+        } finally {
+            con.close();
+        }
+    }
+
+
+    private URI uri(String localName) {
+        return repository.getValueFactory().createURI(NS + localName);
+    }
+
+    private NodeTest<Value> filter(String filter) throws LDPathParseException {
+        String program = "@prefix ex: <" + NS + "> ;\n@filter " + filter + " ;\nname = ex:p ;";
+        return new LDPath<>(new SesameRepositoryBackend(repository)).parseProgram(new StringReader(program)).getFilter();
+    }
+
+    private ProgramCandidates candidates(String filter) throws LDPathParseException {
+        return new ProgramCandidates(filter(filter));
+    }
+
+    private List<Resource> list(ProgramCandidates candidates) throws RepositoryException {
+        final List<Resource> result = new ArrayList<>();
+        RepositoryConnection con = repository.getConnection();
+        try {
+            candidates.listCandidates(con, new ProgramCandidates.CandidateHandler() {
+                @Override
+                public boolean handleCandidate(Resource candidate) {
+                    result.add(candidate);
+                    return true;
+                }
+            });
+        } finally {
+            con.close();
+        }
+        return result;
+    }
+
+    /**
+     * Check that exactly the expected candidates are listed, each of them once.
+     */
+    private void assertCandidates(ProgramCandidates candidates, Resource... expected) throws RepositoryException {
+        List<Resource> result = list(candidates);
+        Set<Resource> unique = new HashSet<>(result);
+        Assert.assertEquals("candidates listed more than once: " + result, unique.size(), result.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(expected)), unique);
+    }
+}
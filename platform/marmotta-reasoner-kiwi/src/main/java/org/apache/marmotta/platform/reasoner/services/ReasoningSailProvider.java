@@ -81,6 +81,9 @@ public class ReasoningSailProvider implements TransactionalSailProvider {
         ReasoningConfiguration config = new ReasoningConfiguration();
         config.setBatchSize(configurationService.getIntConfiguration("reasoning.batchsize",1000));
         config.setRemoveDuplicateJustifications(configurationService.getBooleanConfiguration("reasoning.remove_duplicate_justifications",false));
+        config.setParallel(configurationService.getBooleanConfiguration("reasoning.parallel",false));
+        config.setWorkers(configurationService.getIntConfiguration("reasoning.workers",4));
+        config.setSemiNaive(configurationService.getBooleanConfiguration("reasoning.semi_naive",false));
 
         sail = new KiWiReasoningSail(parent,config);
 